@@ -0,0 +1,102 @@
+package nl.irp.sepa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.math.BigDecimal;
+
+/**
+ * Exact amount arithmetic in euro cents.
+ *
+ * SEPA amounts have at most two fraction digits, so they fit in a <code>long</code> of cents
+ * without any rounding. Parsing the decimal text directly avoids creating a {@link BigDecimal}
+ * for every amount in a large statement.
+ */
+public class Amounts {
+
+	private Amounts() {
+	}
+
+	/**
+	 * Parse a decimal amount like <code>105678.50</code>, <code>-3</code> or <code>0.1</code>
+	 * to cents. Trailing zeros beyond the second fraction digit are accepted, anything else
+	 * beyond the cents is rejected.
+	 */
+	public static long toCents(CharSequence amount) {
+		int length = amount.length();
+		checkArgument(length > 0, "empty amount");
+
+		int i = 0;
+		boolean negative = false;
+		char first = amount.charAt(0);
+		if(first=='-' || first=='+') {
+			negative = first=='-';
+			i++;
+		}
+
+		long cents = 0;
+		int fractionDigits = -1;
+		boolean digits = false;
+		for(; i<length; i++) {
+			char c = amount.charAt(i);
+			if(c=='.' && fractionDigits<0) {
+				fractionDigits = 0;
+			} else if(c>='0' && c<='9') {
+				digits = true;
+				if(fractionDigits>=2) {
+					checkArgument(c=='0', "more than 2 fraction digits in amount '%s'", amount);
+					continue;
+				}
+				if(fractionDigits>=0)
+					fractionDigits++;
+				checkArgument(cents <= (Long.MAX_VALUE-(c-'0'))/10, "amount '%s' is too large", amount);
+				cents = cents*10 + (c-'0');
+			} else {
+				throw new IllegalArgumentException("This doesn't look like an amount '"+amount+"'");
+			}
+		}
+		checkArgument(digits, "This doesn't look like an amount '%s'", amount);
+
+		// scale to cents
+		for(int scale = Math.max(fractionDigits, 0); scale<2; scale++) {
+			checkArgument(cents <= Long.MAX_VALUE/10, "amount '%s' is too large", amount);
+			cents = cents*10;
+		}
+
+		return negative ? -cents : cents;
+	}
+
+	public static long toCents(BigDecimal amount) {
+		return amount.movePointRight(2).longValueExact();
+	}
+
+	public static BigDecimal toBigDecimal(long cents) {
+		return BigDecimal.valueOf(cents, 2);
+	}
+
+	/**
+	 * Format cents as a decimal amount with two fraction digits, e.g. <code>849.50</code>.
+	 */
+	public static String format(long cents) {
+		StringBuilder sb = new StringBuilder(24);
+		if(cents<0) {
+			sb.append('-');
+			// Long.MIN_VALUE has no positive counterpart
+			checkArgument(cents!=Long.MIN_VALUE, "amount out of range");
+			cents = -cents;
+		}
+		sb.append(cents/100).append('.');
+		long fraction = cents%100;
+		if(fraction<10)
+			sb.append('0');
+		sb.append(fraction);
+		return sb.toString();
+	}
+
+	/**
+	 * Signed cents for a camt <code>CdtDbtInd</code>: credits are positive, debits negative.
+	 */
+	public static long signed(long cents, String cdtDbtInd) {
+		return "DBIT".equals(cdtDbtInd) ? -cents : cents;
+	}
+
+}
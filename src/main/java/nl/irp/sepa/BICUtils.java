@@ -0,0 +1,38 @@
+package nl.irp.sepa;
+
+/**
+ * Structural check of a BIC (ISO 9362): a bank code and country code of six letters, a location
+ * code of two letters or digits and an optional branch code of three letters or digits, for
+ * example <code>ABNANL2A</code> or <code>RABONL2UXXX</code>.
+ *
+ * The check runs over the characters once and doesn't allocate, it replaces the regular
+ * expression that was matched for every transaction.
+ */
+public class BICUtils {
+
+	private BICUtils() {
+	}
+
+	/**
+	 * <code>true</code> if the text has the structure of a BIC. Lower case letters are accepted.
+	 */
+	public static boolean isValid(CharSequence bic) {
+		int length = bic.length();
+		if(length!=8 && length!=11)
+			return false;
+		for(int i=0; i<6; i++)
+			if(!isLetter(bic.charAt(i)))
+				return false;
+		for(int i=6; i<length; i++) {
+			char c = bic.charAt(i);
+			if(!isLetter(c) && (c<'0' || c>'9'))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isLetter(char c) {
+		return (c>='A' && c<='Z') || (c>='a' && c<='z');
+	}
+
+}
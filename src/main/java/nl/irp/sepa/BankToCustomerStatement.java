@@ -29,6 +29,11 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.stream.StreamSource;
 
+import nl.irp.sepa.metrics.Measurement;
+import nl.irp.sepa.metrics.MessageType;
+import nl.irp.sepa.metrics.Metrics;
+import nl.irp.sepa.metrics.Phase;
+
 import com.google.common.collect.Lists;
 
 
@@ -39,6 +44,9 @@ import com.google.common.collect.Lists;
  */
 public class BankToCustomerStatement {
 
+	// creating a JAXBContext is expensive, the context itself is thread safe
+	private static final JAXBContext jaxbContext = createContext();
+
 	private Document document;
 	private BankToCustomerStatementV02 bankToCustomerStatement;
 	private GroupHeader42 groupHeader;
@@ -50,18 +58,34 @@ public class BankToCustomerStatement {
 	}
 
 	public static BankToCustomerStatement read(InputStream is) throws JAXBException {
-		JAXBContext jc = JAXBContext.newInstance(Document.class);
-		Unmarshaller unmarshaller = jc.createUnmarshaller();
+		Measurement measurement = Metrics.start(MessageType.CAMT_053);
+		is = measurement.count(is);
+		Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+		measurement.phase(Phase.CONTEXT);
 		
 		// The UTF-8 character encoding standard must be used in the UNIFI messages.
 		//unmarshaller.setProperty(Unm .JAXB_ENCODING, "UTF-8");
 		
 		StreamSource streamSource = new StreamSource(is);
 		JAXBElement<Document> root = unmarshaller.unmarshal(streamSource, Document.class);
+		measurement.phase(Phase.UNMARSHAL);
 		
-		return new BankToCustomerStatement(root.getValue());
+		BankToCustomerStatement statement = new BankToCustomerStatement(root.getValue());
+		long entries = 0;
+		for(AccountStatement2 stmt : statement.bankToCustomerStatement.getStmt())
+			entries += stmt.getNtry().size();
+		measurement.completed(entries);
+		return statement;
 	}
 	
+	private static JAXBContext createContext() {
+		try {
+			return JAXBContext.newInstance(Document.class);
+		} catch (JAXBException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Returns the point to point reference, as assigned by the account servicing institution, and sent to the account
 	 * owner or the party authorised to receive the message, to unambiguously identify the message.
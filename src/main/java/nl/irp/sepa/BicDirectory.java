@@ -0,0 +1,223 @@
+package nl.irp.sepa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.io.Resources;
+
+/**
+ * Derives the BIC of a bank from an IBAN, using the bank code in the IBAN (for example
+ * <code>ABNA</code> in NL91ABNA0417164300).
+ *
+ * The directory is read from a text file, the bundled <code>bic-directory.txt</code> contains
+ * the Dutch banks. Every line is either a bank or the position of the bank code within the
+ * IBANs of a country:
+ * <pre>
+ * # country, start and length of the bank code
+ * &#64;NL 4 4
+ * # country, bank code, BIC
+ * NL ABNA ABNANL2A
+ * </pre>
+ *
+ * The entries are kept in an immutable open addressing table; a lookup hashes the country
+ * and bank code straight from the IBAN, so it takes constant time and doesn't allocate.
+ * {@link #reload(InputStream)} builds a new table and then replaces the old one, readers are
+ * never blocked.
+ */
+public class BicDirectory {
+
+	private static final String BUNDLED = "bic-directory.txt";
+	private static final Pattern bicRegex = Pattern.compile("[A-Z]{6}[A-Z0-9]{2}([A-Z0-9]{3})?");
+
+	private static class DefaultHolder {
+		static final BicDirectory instance = bundled();
+	}
+
+	/**
+	 * An immutable snapshot of the directory.
+	 */
+	private static class Table {
+		// start and length of the bank code per country, indexed by country code
+		final byte[] codeStart = new byte[26*26];
+		final byte[] codeLength = new byte[26*26];
+		// open addressing, the key is country + bank code
+		final String[] keys;
+		final String[] bics;
+		final int mask;
+
+		Table(int entries) {
+			int capacity = Integer.highestOneBit(Math.max(entries, 8) * 2 - 1) << 1;
+			keys = new String[capacity];
+			bics = new String[capacity];
+			mask = capacity - 1;
+		}
+
+		void put(String key, String bic) {
+			int i = hash(key, 2, key.length() - 2) & mask;
+			while(keys[i]!=null && !keys[i].equals(key))
+				i = (i + 1) & mask;
+			keys[i] = key;
+			bics[i] = bic;
+		}
+
+		String get(String iban) {
+			if(iban.length()<5)
+				return null;
+			int country = country(iban);
+			if(country<0)
+				return null;
+			int start = codeStart[country];
+			int length = codeLength[country];
+			if(length==0 || iban.length()<start+length)
+				return null;
+
+			for(int i = hash(iban, start, length) & mask; keys[i]!=null; i = (i + 1) & mask) {
+				String key = keys[i];
+				if(key.length()==2+length && iban.regionMatches(0, key, 0, 2)
+						&& iban.regionMatches(start, key, 2, length))
+					return bics[i];
+			}
+			return null;
+		}
+	}
+
+	private volatile Table table;
+
+	/**
+	 * An empty directory, fill it with {@link #reload(InputStream)}.
+	 */
+	public BicDirectory() {
+		table = new Table(0);
+	}
+
+	/**
+	 * The directory of the bundled file.
+	 */
+	public static BicDirectory getDefault() {
+		return DefaultHolder.instance;
+	}
+
+	/**
+	 * A directory read from a file.
+	 */
+	public static BicDirectory load(File file) throws IOException {
+		BicDirectory directory = new BicDirectory();
+		directory.reload(file);
+		return directory;
+	}
+
+	/**
+	 * The BIC of the bank of the IBAN, or <code>null</code> if the bank is not in the directory.
+	 * The IBAN must be in electronic format: upper case, without spaces.
+	 */
+	public String getBic(String iban) {
+		return table.get(iban);
+	}
+
+	/**
+	 * Replace the directory with the contents of a file.
+	 */
+	public void reload(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			reload(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Replace the directory. Lookups continue on the old table until the new one is complete.
+	 * @throws IllegalArgumentException if a line is not valid; the directory is not changed then
+	 */
+	public void reload(InputStream is) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, Charsets.UTF_8));
+		List<String[]> positions = Lists.newArrayList();
+		List<String[]> banks = Lists.newArrayList();
+		Splitter splitter = Splitter.on(Pattern.compile("\\s+")).omitEmptyStrings();
+
+		int lineNumber = 0;
+		String line;
+		while((line = reader.readLine())!=null) {
+			lineNumber++;
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#"))
+				continue;
+			String[] fields = Lists.newArrayList(splitter.split(line)).toArray(new String[0]);
+			checkArgument(fields.length==3, "line %s: expected 3 fields: %s", lineNumber, line);
+			if(fields[0].startsWith("@")) {
+				fields[0] = fields[0].substring(1);
+				checkArgument(country(fields[0])>=0, "line %s: not a country code: %s", lineNumber, line);
+				positions.add(fields);
+			} else {
+				checkArgument(country(fields[0])>=0, "line %s: not a country code: %s", lineNumber, line);
+				checkArgument(bicRegex.matcher(fields[2]).matches(), "line %s: not a BIC: %s", lineNumber, line);
+				banks.add(fields);
+			}
+		}
+
+		Table next = new Table(banks.size());
+		for(String[] position : positions) {
+			int country = country(position[0]);
+			next.codeStart[country] = Byte.parseByte(position[1]);
+			next.codeLength[country] = Byte.parseByte(position[2]);
+		}
+		for(String[] bank : banks) {
+			int country = country(bank[0]);
+			checkArgument(next.codeLength[country]==bank[1].length(),
+					"bank code %s doesn't match the bank code length of %s", bank[1], bank[0]);
+			next.put(bank[0] + bank[1], bank[2]);
+		}
+		table = next;
+	}
+
+	private static BicDirectory bundled() {
+		BicDirectory directory = new BicDirectory();
+		InputStream is = null;
+		try {
+			is = Resources.getResource(BUNDLED).openStream();
+			directory.reload(is);
+		} catch (IOException e) {
+			throw new IllegalStateException("can't read " + BUNDLED, e);
+		} finally {
+			Closeables.closeQuietly(is);
+		}
+		return directory;
+	}
+
+	/**
+	 * Index of a two letter country code, -1 if it isn't one.
+	 */
+	private static int country(CharSequence s) {
+		if(s.length()<2)
+			return -1;
+		char c1 = s.charAt(0);
+		char c2 = s.charAt(1);
+		if(c1<'A' || c1>'Z' || c2<'A' || c2>'Z')
+			return -1;
+		return (c1 - 'A') * 26 + (c2 - 'A');
+	}
+
+	/**
+	 * Hash of the country code (the first two characters) and the bank code.
+	 */
+	private static int hash(String s, int codeStart, int codeLength) {
+		int h = s.charAt(0) * 31 + s.charAt(1);
+		for(int i=codeStart; i<codeStart+codeLength; i++)
+			h = h * 31 + s.charAt(i);
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,145 @@
+package nl.irp.sepa;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A SHA-256 of the content of a payment message, without the fields that change every time the
+ * same message is generated: the message id and the creation time. Two messages with the same
+ * hash have the same XML apart from those two fields.
+ *
+ * The hash is taken over the message as it is marshalled, so it covers every change made to the
+ * JAXB objects of the message, also through the objects a builder returns, like the transaction
+ * of {@link nl.irp.sepa.sdd.DirectDebitInitiation.PaymentInstruction#addTransaction}. The content
+ * of the first <code>MsgId</code> and <code>CreDtTm</code> elements, those of the group header,
+ * is skipped as it streams by; the document itself is not touched. Amounts are compared as they
+ * are written: 100.5 and 100.50 are different.
+ */
+public class ContentHash {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final byte[][] OPEN = { tag("<MsgId>"), tag("<CreDtTm>") };
+	private static final byte[][] CLOSE = { tag("</MsgId>"), tag("</CreDtTm>") };
+
+	private final String type;
+	private final MessageDigest digest = sha256();
+	private final OutputStream os = new OutputStream() {
+		@Override
+		public void write(int b) {
+			if(element==OPEN.length) {
+				digest.update((byte) b);
+				return;
+			}
+			if(!inside)
+				digest.update((byte) b);
+			// a tag only has a '<' at its start, so a mismatch restarts at the '<' or before it
+			byte[] tag = inside ? CLOSE[element] : OPEN[element];
+			if(b==tag[matched])
+				matched++;
+			else
+				matched = b=='<' ? 1 : 0;
+			if(matched==tag.length) {
+				matched = 0;
+				if(inside)
+					element++;
+				inside = !inside;
+			}
+		}
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if(element==OPEN.length) {
+				digest.update(b, off, len);
+				return;
+			}
+			for(int i=off; i<off+len; i++)
+				write(b[i] & 0xff);
+		}
+	};
+	// the element that is skipped next, inside it or not, and how much of its tag was seen
+	private int element;
+	private boolean inside;
+	private int matched;
+
+	/**
+	 * @param type the message type, so that messages of different types never have the same hash
+	 */
+	public ContentHash(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * The hash of a document as 64 lower case hexadecimal characters.
+	 * @param marshaller the marshaller the message is written with
+	 * @param document the complete document, the message id and creation time are skipped
+	 */
+	public synchronized String getHex(Marshaller marshaller, Object document) throws JAXBException {
+		start();
+		marshaller.marshal(document, os);
+		return finish();
+	}
+
+	/**
+	 * Marshal a document to a stream and return its hash, see {@link #getHex(Marshaller, Object)}.
+	 * The document is marshalled once, for the stream and the hash together.
+	 */
+	public synchronized String getHex(Marshaller marshaller, Object document, final OutputStream out) throws JAXBException {
+		start();
+		marshaller.marshal(document, new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				os.write(b);
+			}
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				os.write(b, off, len);
+			}
+			@Override
+			public void flush() throws IOException {
+				out.flush();
+			}
+		});
+		return finish();
+	}
+
+	private void start() {
+		digest.reset();
+		element = 0;
+		inside = false;
+		matched = 0;
+		digest.update(type.getBytes(Charsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	private String finish() {
+		byte[] hash = digest.digest();
+		char[] hex = new char[hash.length * 2];
+		for(int i=0; i<hash.length; i++) {
+			hex[2*i] = HEX[(hash[i] >> 4) & 0xf];
+			hex[2*i+1] = HEX[hash[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	private static byte[] tag(String tag) {
+		return tag.getBytes(Charsets.UTF_8);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,468 @@
+package nl.irp.sepa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import iso.std.iso._20022.tech.xsd.pain_001_001.CreditTransferTransactionInformation10;
+import iso.std.iso._20022.tech.xsd.pain_001_001.Document;
+import iso.std.iso._20022.tech.xsd.pain_001_001.GroupHeader32;
+import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentInstructionInformation3;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+/**
+ * A pain.001 credit transfer that is built on disk, for payments that trickle in during the day.
+ * The journal can be closed and reopened at any time to add more transactions, and is turned
+ * into the message at the cut-off time:
+ * <pre>
+ * CreditTransferJournal journal = CreditTransferJournal.create(file, "MSG-20130402", "Klantnaam", new Date());
+ * journal.betaalgroep("PMT-1", date, "Debiteur", "NL02ABNA0123456789", "ABNANL2A");
+ * journal.close();
+ * ...
+ * journal = CreditTransferJournal.open(file);
+ * journal.getBetaalgroep("PMT-1").creditTransfer("E2E-1", amount, "Crediteur", "NL44RABO0123456789", "Factuur 1");
+ * journal.finish(os);
+ * </pre>
+ *
+ * Every transaction is marshalled once, when it is added, and appended to <code>file.data</code>.
+ * A sidecar index, <code>file.idx</code>, records the message and group parameters and where
+ * every transaction is stored, with its amount. Reopening only reads the index; finishing writes
+ * the headers with the totals from the index and copies the stored transactions group by group,
+ * without parsing them again.
+ *
+ * A transaction is stored before its index line, so after a crash the journal reopens with the
+ * transactions that were completely written. Call {@link #sync()} to force them to the disk.
+ * A journal must not be used by more than one thread, or opened twice.
+ */
+public class CreditTransferJournal implements Closeable {
+
+	private static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:pain.001.001.03";
+	private static final byte[] NAMESPACE_DECLARATION = (" xmlns=\"" + NAMESPACE + "\"").getBytes(Charsets.UTF_8);
+
+	private static final char HEADER = 'H';
+	private static final char GROUP = 'G';
+	private static final char TRANSACTION = 'T';
+	private static final Joiner joiner = Joiner.on('\t');
+	private static final Splitter splitter = Splitter.on('\t');
+
+	private static class ContextHolder {
+		static final JAXBContext context = createContext();
+	}
+
+	private final RandomAccessFile data;
+	private final OutputStream index;
+	private final Marshaller marshaller;
+
+	private String msgId;
+	private String initgPtyNm;
+	private Date creDtTm;
+	private final Map<String, Betaalgroep> groups = Maps.newLinkedHashMap();
+	private final List<Betaalgroep> groupList = Lists.newArrayList();
+
+	private CreditTransferJournal(File file) throws IOException {
+		data = new RandomAccessFile(dataFile(file), "rw");
+		index = new FileOutputStream(indexFile(file), true);
+		try {
+			marshaller = ContextHolder.context.createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+			marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+		} catch (JAXBException e) {
+			close();
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Start a new journal, an existing journal of the file is replaced.
+	 * @param file the base name, <code>file.data</code> and <code>file.idx</code> are created
+	 * @param msgId <code>null</code> to generate one
+	 */
+	public static CreditTransferJournal create(File file, String msgId, String initgPtyNm, Date creDtTm) throws IOException {
+		// validates the header, and generates the msgId if there is none
+		msgId = SEPACreditTransfer.createGroupHeader(msgId, initgPtyNm, creDtTm).getMsgId();
+		checkNotNull(initgPtyNm, "the journal needs the name of the initiating party");
+		checkFields(msgId, initgPtyNm);
+
+		// only replace an existing journal with a header that can be written
+		indexFile(file).delete();
+		dataFile(file).delete();
+		CreditTransferJournal journal = new CreditTransferJournal(file);
+		try {
+			journal.msgId = msgId;
+			journal.initgPtyNm = initgPtyNm;
+			journal.creDtTm = creDtTm;
+			journal.log(HEADER, msgId, String.valueOf(creDtTm.getTime()), initgPtyNm);
+		} catch (IOException e) {
+			journal.close();
+			throw e;
+		} catch (RuntimeException e) {
+			journal.close();
+			throw e;
+		}
+		return journal;
+	}
+
+	/**
+	 * Reopen a journal to add more transactions or finish it.
+	 */
+	public static CreditTransferJournal open(File file) throws IOException {
+		CreditTransferJournal journal = new CreditTransferJournal(file);
+		try {
+			journal.replay(indexFile(file));
+		} catch (IOException e) {
+			journal.close();
+			throw e;
+		} catch (RuntimeException e) {
+			journal.close();
+			throw e;
+		}
+		return journal;
+	}
+
+	/**
+	 * Add a payment information group, see
+	 * {@link SEPACreditTransfer#betaalgroep(String, LocalDate, String, String, String)}.
+	 * @throws IllegalArgumentException if the journal already has a group with the id
+	 */
+	public Betaalgroep betaalgroep(String pmtInfId, LocalDate reqdExctnDt,
+			String debtorNm, String debtorAccountIBAN, String financialInstitutionBIC) throws IOException {
+		checkArgument(!groups.containsKey(pmtInfId), "journal already has a group '%s'", pmtInfId);
+		// validates the group
+		SEPACreditTransfer.createPaymentInstruction(pmtInfId, reqdExctnDt, debtorNm, debtorAccountIBAN, financialInstitutionBIC);
+
+		Betaalgroep group = new Betaalgroep(groupList.size(), pmtInfId, reqdExctnDt,
+				debtorNm, debtorAccountIBAN, financialInstitutionBIC);
+		log(GROUP, pmtInfId, reqdExctnDt.toString(), debtorNm, debtorAccountIBAN,
+				financialInstitutionBIC==null ? "" : financialInstitutionBIC);
+		groups.put(pmtInfId, group);
+		groupList.add(group);
+		return group;
+	}
+
+	/**
+	 * The group with the id, <code>null</code> if the journal doesn't have it.
+	 */
+	public Betaalgroep getBetaalgroep(String pmtInfId) {
+		return groups.get(pmtInfId);
+	}
+
+	public String getMsgId() {
+		return msgId;
+	}
+
+	/**
+	 * Number of transactions in the journal.
+	 */
+	public long getNbOfTxs() {
+		long nbOfTxs = 0;
+		for(Betaalgroep group : groupList)
+			nbOfTxs += group.nbOfTxs;
+		return nbOfTxs;
+	}
+
+	/**
+	 * Total amount of the transactions in the journal.
+	 */
+	public BigDecimal getCtrlSum() {
+		BigDecimal ctrlSum = BigDecimal.ZERO;
+		for(Betaalgroep group : groupList)
+			ctrlSum = ctrlSum.add(group.ctrlSum);
+		return ctrlSum;
+	}
+
+	/**
+	 * Force the transactions that were added to the disk.
+	 */
+	public void sync() throws IOException {
+		data.getChannel().force(false);
+		index.flush();
+		((FileOutputStream) index).getChannel().force(false);
+	}
+
+	/**
+	 * Write the pain.001 message. Groups without transactions are left out.
+	 * The journal stays open, more transactions can be added for a next message.
+	 * @throws IllegalStateException if the journal has no transactions
+	 */
+	public void finish(OutputStream os) throws IOException {
+		checkState(getNbOfTxs()>0, "journal %s has no transactions", msgId);
+
+		GroupHeader32 groupHeader = SEPACreditTransfer.createGroupHeader(msgId, initgPtyNm, creDtTm);
+		groupHeader.setNbOfTxs(String.valueOf(getNbOfTxs()));
+		groupHeader.setCtrlSum(getCtrlSum());
+
+		os.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+				+ "<Document xmlns=\"" + NAMESPACE + "\"><CstmrCdtTrfInitn>").getBytes(Charsets.UTF_8));
+		os.write(marshal("GrpHdr", GroupHeader32.class, groupHeader));
+
+		WritableByteChannel out = Channels.newChannel(os);
+		FileChannel channel = data.getChannel();
+		for(Betaalgroep group : groupList) {
+			if(group.nbOfTxs==0)
+				continue;
+			PaymentInstructionInformation3 paymentInstruction = SEPACreditTransfer.createPaymentInstruction(
+					group.pmtInfId, group.reqdExctnDt, group.debtorNm, group.debtorAccountIBAN, group.financialInstitutionBIC);
+			paymentInstruction.setNbOfTxs(String.valueOf(group.nbOfTxs));
+			paymentInstruction.setCtrlSum(group.ctrlSum);
+
+			// the group without transactions, the transactions go before its end tag
+			byte[] pmtInf = marshal("PmtInf", PaymentInstructionInformation3.class, paymentInstruction);
+			int endTag = lastIndexOf(pmtInf, "</".getBytes(Charsets.UTF_8));
+			os.write(pmtInf, 0, endTag);
+			for(long[] range : group.ranges) {
+				long position = range[0];
+				while(position<range[1])
+					position += channel.transferTo(position, range[1] - position, out);
+			}
+			os.write(pmtInf, endTag, pmtInf.length - endTag);
+		}
+		os.write("</CstmrCdtTrfInitn></Document>\n".getBytes(Charsets.UTF_8));
+		os.flush();
+	}
+
+	public void close() throws IOException {
+		try {
+			index.close();
+		} finally {
+			data.close();
+		}
+	}
+
+	/**
+	 * A payment information group of the journal.
+	 */
+	public class Betaalgroep {
+
+		private final int number;
+		private final String pmtInfId;
+		private final LocalDate reqdExctnDt;
+		private final String debtorNm;
+		private final String debtorAccountIBAN;
+		private final String financialInstitutionBIC;
+
+		// start and end offsets of the stored transactions, adjacent ones are merged
+		private final List<long[]> ranges = Lists.newArrayList();
+		private long nbOfTxs;
+		private BigDecimal ctrlSum = BigDecimal.ZERO;
+
+		Betaalgroep(int number, String pmtInfId, LocalDate reqdExctnDt,
+				String debtorNm, String debtorAccountIBAN, String financialInstitutionBIC) {
+			this.number = number;
+			this.pmtInfId = pmtInfId;
+			this.reqdExctnDt = reqdExctnDt;
+			this.debtorNm = debtorNm;
+			this.debtorAccountIBAN = debtorAccountIBAN;
+			this.financialInstitutionBIC = financialInstitutionBIC;
+		}
+
+		/**
+		 * A credit transfer to an account of which the BIC is derived from the IBAN, see {@link BicDirectory}.
+		 */
+		public Betaalgroep creditTransfer(String endToEndId, BigDecimal amount,
+				String creditorNm, String iban,
+				String text) throws IOException {
+			return creditTransfer(endToEndId, amount, null, creditorNm, iban, text);
+		}
+
+		/**
+		 * Add a transaction, see
+		 * {@link SEPACreditTransfer.Betaalgroep#creditTransfer(String, BigDecimal, String, String, String, String)}.
+		 * The transaction is in the journal when this method returns.
+		 */
+		public Betaalgroep creditTransfer(String endToEndId, BigDecimal amount,
+				String creditorfinancialInstitutionBic,
+				String creditorNm, String iban,
+				String text) throws IOException {
+			CreditTransferTransactionInformation10 transaction = SEPACreditTransfer.createCreditTransfer(
+					endToEndId, amount, creditorfinancialInstitutionBic, creditorNm, iban, text);
+			byte[] xml = marshal("CdtTrfTxInf", CreditTransferTransactionInformation10.class, transaction);
+
+			long offset = data.length();
+			data.seek(offset);
+			data.write(xml);
+			log(TRANSACTION, String.valueOf(number), String.valueOf(offset), String.valueOf(xml.length),
+					amount.toPlainString());
+			added(offset, xml.length, amount);
+			return this;
+		}
+
+		public String getPmtInfId() {
+			return pmtInfId;
+		}
+
+		public long getNbOfTxs() {
+			return nbOfTxs;
+		}
+
+		public BigDecimal getCtrlSum() {
+			return ctrlSum;
+		}
+
+		private void added(long offset, int length, BigDecimal amount) {
+			long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+			if(last!=null && last[1]==offset)
+				last[1] += length;
+			else
+				ranges.add(new long[] { offset, offset + length });
+			nbOfTxs++;
+			ctrlSum = ctrlSum.add(amount);
+		}
+
+	}
+
+	/**
+	 * Rebuild the journal from the index. A last line or transaction that was not completely
+	 * written is dropped.
+	 */
+	private void replay(File indexFile) throws IOException {
+		long dataLength = data.length();
+		long dataEnd = 0;
+		long indexEnd = 0;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), Charsets.UTF_8));
+		try {
+			StringBuilder line = new StringBuilder();
+			int c;
+			while((c = reader.read())>=0) {
+				if(c!='\n') {
+					line.append((char) c);
+					continue;
+				}
+				List<String> fields = Lists.newArrayList(splitter.split(line));
+				int lineLength = line.toString().getBytes(Charsets.UTF_8).length + 1;
+				line.setLength(0);
+
+				char type = fields.get(0).charAt(0);
+				if(type==HEADER) {
+					msgId = fields.get(1);
+					creDtTm = new Date(Long.parseLong(fields.get(2)));
+					initgPtyNm = fields.get(3);
+				} else if(type==GROUP) {
+					String bic = fields.get(5);
+					Betaalgroep group = new Betaalgroep(groupList.size(), fields.get(1), new LocalDate(fields.get(2)),
+							fields.get(3), fields.get(4), bic.isEmpty() ? null : bic);
+					groups.put(group.pmtInfId, group);
+					groupList.add(group);
+				} else if(type==TRANSACTION) {
+					long offset = Long.parseLong(fields.get(2));
+					int length = Integer.parseInt(fields.get(3));
+					if(offset + length > dataLength)
+						break;
+					groupList.get(Integer.parseInt(fields.get(1))).added(offset, length, new BigDecimal(fields.get(4)));
+					dataEnd = Math.max(dataEnd, offset + length);
+				} else {
+					throw new IOException("not a journal index line: " + fields);
+				}
+				indexEnd += lineLength;
+			}
+		} finally {
+			Closeables.closeQuietly(reader);
+		}
+		checkState(msgId!=null, "%s is not a credit transfer journal", indexFile);
+
+		// drop what was written after the last complete transaction
+		data.setLength(dataEnd);
+		((FileOutputStream) index).getChannel().truncate(indexEnd);
+	}
+
+	private void log(char type, String... fields) throws IOException {
+		checkFields(fields);
+		index.write((type + "\t" + joiner.join(fields) + "\n").getBytes(Charsets.UTF_8));
+	}
+
+	private static void checkFields(String... fields) {
+		for(String field : fields)
+			checkArgument(field.indexOf('\t')<0 && field.indexOf('\n')<0 && field.indexOf('\r')<0,
+					"tab or line break in '%s'", field);
+	}
+
+	/**
+	 * An element without the namespace declaration, which the enclosing document already has.
+	 */
+	private <T> byte[] marshal(String name, Class<T> type, T value) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+		try {
+			marshaller.marshal(new JAXBElement<T>(new QName(NAMESPACE, name), type, value), os);
+		} catch (JAXBException e) {
+			throw new IOException(e);
+		}
+		byte[] xml = os.toByteArray();
+		int declaration = indexOf(xml, NAMESPACE_DECLARATION);
+		if(declaration<0 || declaration>name.length() + 1)
+			return xml;
+		byte[] stripped = new byte[xml.length - NAMESPACE_DECLARATION.length];
+		System.arraycopy(xml, 0, stripped, 0, declaration);
+		System.arraycopy(xml, declaration + NAMESPACE_DECLARATION.length, stripped, declaration, stripped.length - declaration);
+		return stripped;
+	}
+
+	private static int indexOf(byte[] bytes, byte[] pattern) {
+		outer:
+		for(int i=0; i<=bytes.length - pattern.length; i++) {
+			for(int j=0; j<pattern.length; j++)
+				if(bytes[i+j]!=pattern[j])
+					continue outer;
+			return i;
+		}
+		return -1;
+	}
+
+	private static int lastIndexOf(byte[] bytes, byte[] pattern) {
+		outer:
+		for(int i=bytes.length - pattern.length; i>=0; i--) {
+			for(int j=0; j<pattern.length; j++)
+				if(bytes[i+j]!=pattern[j])
+					continue outer;
+			return i;
+		}
+		return -1;
+	}
+
+	private static File dataFile(File file) {
+		return new File(file.getPath() + ".data");
+	}
+
+	private static File indexFile(File file) {
+		return new File(file.getPath() + ".idx");
+	}
+
+	private static JAXBContext createContext() {
+		try {
+			return JAXBContext.newInstance(Document.class);
+		} catch (JAXBException e) {
+			throw new IllegalStateException("can't create the JAXB context for pain.001", e);
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package nl.irp.sepa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The RF creditor reference of ISO 11649, a structured reference for invoices that the debtor
+ * returns unchanged with the payment: <code>RF</code>, two check digits and a reference of 1 to
+ * 21 letters and digits, e.g. <code>RF18539007547034</code>.
+ *
+ * The check digits are computed with {@link Mod97} on the reference followed by <code>RF00</code>;
+ * validation moves the first four characters to the end and checks for remainder 1, as for an
+ * IBAN. Neither allocates, so millions of references can be created or checked cheaply.
+ */
+public class CreditorReference {
+
+	private static final String PREFIX = "RF";
+	private static final int MAX_REFERENCE_LENGTH = 21;
+
+	private CreditorReference() {
+	}
+
+	/**
+	 * The creditor reference for an own reference, like an invoice number. Letters are upper cased.
+	 * @throws IllegalArgumentException if the reference is not 1 to 21 letters and digits
+	 */
+	public static String create(String reference) {
+		checkArgument(reference.length()>=1 && reference.length()<=MAX_REFERENCE_LENGTH,
+				"length of reference '%s' is not 1 to 21", reference);
+		int remainder = Mod97.remainder(reference, 0, reference.length(), 0);
+		checkArgument(remainder>=0, "reference '%s' is not alphanumeric", reference);
+		remainder = Mod97.remainder("RF00", 0, 4, remainder);
+		int check = 98 - remainder;
+		return new StringBuilder(4 + reference.length())
+			.append(PREFIX).append((char) ('0' + check/10)).append((char) ('0' + check%10))
+			.append(reference.toUpperCase())
+			.toString();
+	}
+
+	/**
+	 * <code>true</code> for a valid RF creditor reference in electronic format (without spaces).
+	 * Letters may be lower case.
+	 */
+	public static boolean isValid(CharSequence reference) {
+		int length = reference.length();
+		if(length<5 || length>4+MAX_REFERENCE_LENGTH)
+			return false;
+		char c0 = reference.charAt(0), c1 = reference.charAt(1);
+		if((c0!='R' && c0!='r') || (c1!='F' && c1!='f'))
+			return false;
+		char c2 = reference.charAt(2), c3 = reference.charAt(3);
+		if(c2<'0' || c2>'9' || c3<'0' || c3>'9')
+			return false;
+		int remainder = Mod97.remainder(reference, 4, length, 0);
+		return remainder>=0 && Mod97.remainder(reference, 0, 4, remainder)==1;
+	}
+
+	/**
+	 * <code>true</code> if the reference starts with RF and two check digits and so claims to be
+	 * a creditor reference; other structured references, like the Dutch payment reference or
+	 * "rfq-2013", are left alone.
+	 */
+	public static boolean isCreditorReference(CharSequence reference) {
+		return reference.length()>=4
+				&& reference.charAt(0)=='R' && reference.charAt(1)=='F'
+				&& reference.charAt(2)>='0' && reference.charAt(2)<='9'
+				&& reference.charAt(3)>='0' && reference.charAt(3)<='9';
+	}
+
+	/**
+	 * The reference in groups of four characters, as printed on an invoice: <code>RF18 5390 0754 7034</code>.
+	 */
+	public static String makeReadable(String reference) {
+		return IBANUtils.makeReadable(reference);
+	}
+
+}
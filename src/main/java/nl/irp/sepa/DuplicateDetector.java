@@ -0,0 +1,433 @@
+package nl.irp.sepa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import iso.std.iso._20022.tech.xsd.pain_001_001.CreditTransferTransactionInformation10;
+import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentInstructionInformation3;
+import iso.std.iso._20022.tech.xsd.pain_001_001.RemittanceInformation5;
+import iso.std.iso._20022.tech.xsd.pain_001_001.StructuredRemittanceInformation7;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Set;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Catches credit transfers that are sent again by accident: the same creditor IBAN, amount and
+ * remittance information within a number of days.
+ *
+ * Every transaction is reduced to a 64-bit fingerprint, which is kept with its day in an open
+ * addressing table outside the heap: in a direct buffer, or in a memory mapped file so the
+ * history survives a restart. Fingerprints expire per day; expired slots are dropped when the
+ * table is compacted, which happens when it is half full. What expired is decided against the
+ * newest day recorded so far, but never against a day after today: a transfer dated in the
+ * future doesn't push out the transactions of this week. A file is compacted into a new file
+ * next to it, which then replaces the old one, so a crash leaves one complete table behind. A
+ * lookup hashes the fields and probes a few slots, without allocating.
+ *
+ * <pre>
+ * DuplicateDetector detector = DuplicateDetector.open(file, 30, 1 &lt;&lt; 20);
+ * List&lt;DuplicateDetector.Suspect&gt; suspects = detector.check(transfer);
+ * if(suspects.isEmpty()) {
+ *     transfer.write(os);
+ *     detector.record(transfer);
+ * }
+ * </pre>
+ *
+ * The day of a transaction is the requested execution date of its group; two transactions
+ * match when their days are less than the period apart, in either direction. A detector is
+ * thread-safe. Two different transactions have the same fingerprint with a chance of about
+ * 1 in 2<sup>64</sup> per pair, so a suspect is almost certainly a real duplicate.
+ */
+public class DuplicateDetector implements Closeable {
+
+	private static final long MAGIC = 0x5345504144555031L; // SEPADUP1
+	private static final int HEADER = 16;
+	private static final long EMPTY = 0;
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	// the table is addressed with an int, header included
+	private static final int MAX_SLOTS = 1 << 26;
+
+	/**
+	 * A transaction of a message that matches an earlier transaction.
+	 */
+	public static class Suspect {
+
+		private final String pmtInfId;
+		private final String endToEndId;
+		private final LocalDate earlier;
+
+		Suspect(String pmtInfId, String endToEndId, LocalDate earlier) {
+			this.pmtInfId = pmtInfId;
+			this.endToEndId = endToEndId;
+			this.earlier = earlier;
+		}
+
+		public String getPmtInfId() {
+			return pmtInfId;
+		}
+
+		public String getEndToEndId() {
+			return endToEndId;
+		}
+
+		/**
+		 * The day of the earlier transaction, <code>null</code> if it is in the same message.
+		 */
+		public LocalDate getEarlier() {
+			return earlier;
+		}
+
+		@Override
+		public String toString() {
+			return pmtInfId + "/" + endToEndId + (earlier==null ? " twice in message" : " also on " + earlier);
+		}
+
+	}
+
+	private final int days;
+	private final File path;
+	private RandomAccessFile file;
+	private ByteBuffer buffer;
+	// slot i: fingerprint at 2*i, epoch day at 2*i + 1
+	private LongBuffer slots;
+	private int capacity;
+	private int used;
+	private LocalDate lastDay;
+	private long lastEpochDay;
+	// the newest day ever recorded, only moves forward
+	private long newestDay = Long.MIN_VALUE;
+
+	private DuplicateDetector(int days, File path, RandomAccessFile file, int capacity, boolean reopen) throws IOException {
+		checkArgument(days>0, "days must be positive: %s", days);
+		this.days = days;
+		this.path = path;
+		this.file = file;
+		capacity = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+		allocate(file, capacity, reopen);
+	}
+
+	/**
+	 * A detector that keeps its history in memory only.
+	 * @param days how long a transaction is remembered
+	 * @param capacity the expected number of transactions within that period
+	 */
+	public static DuplicateDetector inMemory(int days, int capacity) {
+		checkCapacity(capacity);
+		try {
+			return new DuplicateDetector(days, null, null, capacity * 2, false);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * A detector that keeps its history in a file, which is created if it doesn't exist.
+	 * @param days how long a transaction is remembered
+	 * @param capacity the expected number of transactions within that period, used for a new file
+	 * @throws IOException if the file is not a complete table, it is left as it is
+	 */
+	public static DuplicateDetector open(File file, int days, int capacity) throws IOException {
+		checkCapacity(capacity);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			boolean reopen = raf.length()>0;
+			if(reopen) {
+				if(raf.length()<HEADER)
+					throw new IOException(file + " is not a complete duplicate table: " + raf.length() + " bytes");
+				checkArgument(raf.readLong()==MAGIC, "%s is not a duplicate detector file", file);
+				long slots = raf.readLong();
+				if(slots<16 || slots>MAX_SLOTS || Long.bitCount(slots)!=1 || raf.length()!=HEADER + 16 * slots)
+					throw new IOException(file + " is not a complete duplicate table: "
+						+ slots + " slots in " + raf.length() + " bytes");
+				capacity = (int) slots;
+			} else {
+				capacity = capacity * 2;
+			}
+			return new DuplicateDetector(days, file, raf, capacity, reopen);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		} catch (RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * The fingerprint of a payment to an account. The IBAN is compared without spaces and case,
+	 * the text as is.
+	 * @param amount in cents
+	 * @param text the remittance information or creditor reference, can be <code>null</code>
+	 */
+	public static long fingerprint(CharSequence iban, long amount, CharSequence text) {
+		// FNV-1a over the fields, finished with the MurmurHash3 mixer
+		long h = 0xcbf29ce484222325L;
+		for(int i=0; i<iban.length(); i++) {
+			char c = iban.charAt(i);
+			if(c==' ')
+				continue;
+			h = (h ^ Character.toUpperCase(c)) * 0x100000001b3L;
+		}
+		h = (h ^ amount) * 0x100000001b3L;
+		h = (h ^ (amount >>> 32)) * 0x100000001b3L;
+		if(text!=null)
+			for(int i=0; i<text.length(); i++)
+				h = (h ^ text.charAt(i)) * 0x100000001b3L;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h==EMPTY ? 1 : h;
+	}
+
+	/**
+	 * Whether the fingerprint was recorded for a day less than the period away from the day.
+	 */
+	public synchronized boolean contains(long fingerprint, LocalDate day) {
+		return find(fingerprint, epochDay(day))>=0;
+	}
+
+	/**
+	 * Record a fingerprint.
+	 * @return <code>true</code> if it was already recorded for a day less than the period away
+	 */
+	public synchronized boolean add(long fingerprint, LocalDate day) {
+		return put(fingerprint, epochDay(day))>=0;
+	}
+
+	/**
+	 * The transactions of a credit transfer that were recorded before, or that occur earlier in
+	 * the same message. Nothing is recorded.
+	 */
+	public synchronized List<Suspect> check(SEPACreditTransfer transfer) {
+		List<Suspect> suspects = Lists.newArrayList();
+		Set<Long> message = Sets.newHashSet();
+		for(PaymentInstructionInformation3 group : transfer.getDocument().getCstmrCdtTrfInitn().getPmtInf()) {
+			long day = epochDay(new LocalDate(group.getReqdExctnDt().toGregorianCalendar().getTime()));
+			for(CreditTransferTransactionInformation10 tx : group.getCdtTrfTxInf()) {
+				long fingerprint = fingerprint(tx);
+				long earlier = find(fingerprint, day);
+				if(earlier>=0)
+					suspects.add(new Suspect(group.getPmtInfId(), tx.getPmtId().getEndToEndId(), toDate(earlier)));
+				else if(!message.add(fingerprint))
+					suspects.add(new Suspect(group.getPmtInfId(), tx.getPmtId().getEndToEndId(), null));
+			}
+		}
+		return suspects;
+	}
+
+	/**
+	 * Record all transactions of a credit transfer, after it has been sent.
+	 */
+	public synchronized void record(SEPACreditTransfer transfer) {
+		for(PaymentInstructionInformation3 group : transfer.getDocument().getCstmrCdtTrfInitn().getPmtInf()) {
+			long day = epochDay(new LocalDate(group.getReqdExctnDt().toGregorianCalendar().getTime()));
+			for(CreditTransferTransactionInformation10 tx : group.getCdtTrfTxInf())
+				put(fingerprint(tx), day);
+		}
+	}
+
+	/**
+	 * Number of slots in use, including fingerprints that expired but were not dropped yet.
+	 */
+	public synchronized int size() {
+		return used;
+	}
+
+	/**
+	 * Write the table to the file, a no-op for a detector in memory.
+	 */
+	public synchronized void flush() {
+		if(buffer instanceof MappedByteBuffer)
+			((MappedByteBuffer) buffer).force();
+	}
+
+	public synchronized void close() throws IOException {
+		flush();
+		if(file!=null)
+			file.close();
+	}
+
+	private static void checkCapacity(int capacity) {
+		checkArgument(capacity>0 && capacity<=MAX_SLOTS/2, "capacity must be between 1 and %s: %s", MAX_SLOTS/2, capacity);
+	}
+
+	private static long fingerprint(CreditTransferTransactionInformation10 tx) {
+		String iban = tx.getCdtrAcct().getId().getIBAN();
+		long amount = Amounts.toCents(tx.getAmt().getInstdAmt().getValue());
+		return fingerprint(iban, amount, text(tx.getRmtInf()));
+	}
+
+	private static String text(RemittanceInformation5 remittanceInformation) {
+		if(remittanceInformation==null)
+			return null;
+		if(!remittanceInformation.getUstrd().isEmpty())
+			return remittanceInformation.getUstrd().get(0);
+		for(StructuredRemittanceInformation7 strd : remittanceInformation.getStrd())
+			if(strd.getCdtrRefInf()!=null)
+				return strd.getCdtrRefInf().getRef();
+		return null;
+	}
+
+	/**
+	 * The day of the fingerprint if it is live on the day, or -1.
+	 */
+	private long find(long fingerprint, long day) {
+		int mask = capacity - 1;
+		for(int i = index(fingerprint) & mask; ; i = (i + 1) & mask) {
+			long f = slots.get(2*i);
+			if(f==EMPTY)
+				return -1;
+			if(f==fingerprint) {
+				long recorded = slots.get(2*i + 1);
+				return isLive(recorded, day) ? recorded : -1;
+			}
+		}
+	}
+
+	/**
+	 * Record the fingerprint on the day.
+	 * @return the day it was recorded before if that is within the period, or -1
+	 */
+	private long put(long fingerprint, long day) {
+		int mask = capacity - 1;
+		int i = index(fingerprint) & mask;
+		for(long f; (f = slots.get(2*i))!=EMPTY; i = (i + 1) & mask) {
+			if(f==fingerprint) {
+				long recorded = slots.get(2*i + 1);
+				if(isLive(recorded, day))
+					return recorded;
+				if(day>recorded)
+					slots.put(2*i + 1, day);
+				newestDay = Math.max(newestDay, day);
+				return -1;
+			}
+		}
+		slots.put(2*i, fingerprint);
+		slots.put(2*i + 1, day);
+		newestDay = Math.max(newestDay, day);
+		if(++used > capacity/2)
+			compact();
+		return -1;
+	}
+
+	private boolean isLive(long recorded, long day) {
+		return Math.abs(recorded - day) < days;
+	}
+
+	/**
+	 * Drop the expired fingerprints, and double the table if it is still more than a quarter full.
+	 */
+	private void compact() {
+		long day = Math.min(newestDay, System.currentTimeMillis() / MILLIS_PER_DAY);
+		long[] live = new long[2*used];
+		int count = 0;
+		for(int i=0; i<capacity; i++) {
+			long f = slots.get(2*i);
+			long recorded = slots.get(2*i + 1);
+			// keep everything that can still be live on a later day
+			if(f!=EMPTY && recorded > day - days) {
+				live[2*count] = f;
+				live[2*count + 1] = recorded;
+				count++;
+			}
+		}
+		int grown = count > capacity/4 ? capacity*2 : capacity;
+		checkState(grown<=MAX_SLOTS, "the duplicate table is full at %s slots", capacity);
+		if(path==null) {
+			try {
+				allocate(null, grown, false);
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+			for(int i=0; i<count; i++)
+				put(live[2*i], live[2*i + 1]);
+			return;
+		}
+
+		// fill a new file, and only then put it in the place of the old one
+		File next = new File(path.getPath() + ".tmp");
+		RandomAccessFile old = file;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(next, "rw");
+			try {
+				raf.setLength(0);
+				allocate(raf, grown, false);
+			} catch (IOException e) {
+				raf.close();
+				throw e;
+			}
+			file = raf;
+			for(int i=0; i<count; i++)
+				put(live[2*i], live[2*i + 1]);
+			((MappedByteBuffer) buffer).force();
+			old.close();
+			if(!next.renameTo(path))
+				throw new IOException("can't replace " + path + " with " + next);
+		} catch (IOException e) {
+			throw new IllegalStateException("can't compact the duplicate table", e);
+		}
+	}
+
+	/**
+	 * Map a new, empty table; or with <code>reopen</code> the table that is already in the file.
+	 */
+	private void allocate(RandomAccessFile file, int capacity, boolean reopen) throws IOException {
+		long size = HEADER + 16L * capacity;
+		ByteBuffer buffer;
+		if(file==null) {
+			buffer = ByteBuffer.allocateDirect((int) size);
+		} else {
+			if(!reopen)
+				file.setLength(size);
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		buffer.putLong(0, MAGIC);
+		buffer.putLong(8, capacity);
+		buffer.position(HEADER);
+		this.buffer = buffer;
+		slots = buffer.slice().asLongBuffer();
+		this.capacity = capacity;
+
+		used = 0;
+		if(reopen)
+			for(int i=0; i<capacity; i++)
+				if(slots.get(2*i)!=EMPTY) {
+					used++;
+					newestDay = Math.max(newestDay, slots.get(2*i + 1));
+				}
+	}
+
+	private static int index(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	private long epochDay(LocalDate day) {
+		// transactions come in by day, so the conversion is mostly skipped
+		if(!day.equals(lastDay)) {
+			lastEpochDay = day.toDateMidnight(DateTimeZone.UTC).getMillis() / MILLIS_PER_DAY;
+			lastDay = day;
+		}
+		return lastEpochDay;
+	}
+
+	private static LocalDate toDate(long epochDay) {
+		return new LocalDate(epochDay * MILLIS_PER_DAY, DateTimeZone.UTC);
+	}
+
+}
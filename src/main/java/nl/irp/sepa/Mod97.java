@@ -0,0 +1,47 @@
+package nl.irp.sepa;
+
+/**
+ * ISO 7064 mod 97-10, the check digit scheme of IBANs and RF creditor references (ISO 11649).
+ *
+ * Letters count as the two digit numbers 10 (A) to 35 (Z). The remainder is computed one
+ * character at a time on an <code>int</code>, so no big number or expanded digit string is
+ * built and nothing is allocated.
+ */
+public class Mod97 {
+
+	private Mod97() {
+	}
+
+	/**
+	 * Continue a remainder with the characters <code>start</code> to <code>end</code> of the text.
+	 * Letters may be upper or lower case.
+	 * @return the remainder, or -1 if the text contains another character
+	 */
+	public static int remainder(CharSequence text, int start, int end, int remainder) {
+		for(int i=start; i<end; i++) {
+			char c = text.charAt(i);
+			if(c>='0' && c<='9')
+				remainder = (remainder*10 + (c - '0')) % 97;
+			else if(c>='A' && c<='Z')
+				remainder = (remainder*100 + (c - 'A' + 10)) % 97;
+			else if(c>='a' && c<='z')
+				remainder = (remainder*100 + (c - 'a' + 10)) % 97;
+			else
+				return -1;
+		}
+		return remainder;
+	}
+
+	/**
+	 * The two check digits for a text that ends with the country or RF prefix and
+	 * <code>00</code>, e.g. the BBAN followed by <code>NL00</code>.
+	 */
+	public static String checkDigits(CharSequence text) {
+		int remainder = remainder(text, 0, text.length(), 0);
+		if(remainder<0)
+			throw new IllegalArgumentException("not alphanumeric: " + text);
+		int check = 98 - remainder;
+		return check<10 ? "0" + check : String.valueOf(check);
+	}
+
+}
@@ -0,0 +1,30 @@
+package nl.irp.sepa;
+
+import java.io.OutputStream;
+
+import javax.xml.bind.JAXBException;
+
+/**
+ * A payment initiation message that can be written as XML: a {@link SEPACreditTransfer}
+ * (pain.001) or a {@link nl.irp.sepa.sdd.DirectDebitInitiation} (pain.008).
+ */
+public interface PaymentMessage {
+
+	/**
+	 * Write the message as UTF-8 encoded XML. The stream is flushed, not closed.
+	 */
+	void write(OutputStream os) throws JAXBException;
+
+	/**
+	 * SHA-256 of the content of the message as hexadecimal text, the same for every message
+	 * with the same groups and transactions whatever its message id and creation time.
+	 */
+	String getContentHash() throws JAXBException;
+
+	/**
+	 * {@link #write(OutputStream)} the message and return its {@link #getContentHash()}, which is
+	 * taken while the message is written instead of marshalling it once more.
+	 */
+	String writeWithContentHash(OutputStream os) throws JAXBException;
+
+}
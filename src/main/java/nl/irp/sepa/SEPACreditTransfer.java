@@ -1,6 +1,7 @@
 package nl.irp.sepa;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static nl.irp.sepa.Utils.*;
 import iso.std.iso._20022.tech.xsd.pain_001_001.ChargeBearerType1Code;
 import iso.std.iso._20022.tech.xsd.pain_001_001.CreditTransferTransactionInformation10;
@@ -9,12 +10,12 @@ import iso.std.iso._20022.tech.xsd.pain_001_001.Document;
 import iso.std.iso._20022.tech.xsd.pain_001_001.GroupHeader32;
 import iso.std.iso._20022.tech.xsd.pain_001_001.LocalInstrument2Choice;
 import iso.std.iso._20022.tech.xsd.pain_001_001.ObjectFactory;
-import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentIdentification1;
 import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentInstructionInformation3;
 import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentMethod3Code;
 import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentTypeInformation19;
-import iso.std.iso._20022.tech.xsd.pain_001_001.ServiceLevel8Choice;
+import iso.std.iso._20022.tech.xsd.pain_001_001.RemittanceInformation5;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -22,9 +23,15 @@ import java.util.UUID;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.MarshalException;
 import javax.xml.bind.Marshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
 
+import nl.irp.sepa.metrics.Measurement;
+import nl.irp.sepa.metrics.MessageType;
+import nl.irp.sepa.metrics.Metrics;
+import nl.irp.sepa.metrics.Phase;
+
 import org.joda.time.LocalDate;
 
 /**
@@ -40,25 +47,137 @@ import org.joda.time.LocalDate;
  * 
  * @author Jasper Krijgsman <jasper@irp.nl>
  */
-public class SEPACreditTransfer {
+public class SEPACreditTransfer implements PaymentMessage {
 	
-	private Document document = new Document();
+	private static class ContextHolder {
+		// creating a JAXBContext is expensive, the context itself is thread safe
+		static final JAXBContext context = createContext();
+	}
+
+	private static final ObjectFactory factory = new ObjectFactory();
+
+	private static final ThreadLocal<SEPACreditTransfer> perThread = new ThreadLocal<SEPACreditTransfer>() {
+		@Override
+		protected SEPACreditTransfer initialValue() {
+			return new SEPACreditTransfer();
+		}
+	};
+
+	private Document document;
 	private CustomerCreditTransferInitiationV03 customerCreditTransferInitiation;
 	private GroupHeader32 groupHeader;
+	private Measurement measurement;
+	private final ContentHash contentHash = new ContentHash("pain.001.001.03");
+	// created on the first write and kept by reset()
+	private Marshaller marshaller;
 	
 	public SEPACreditTransfer() {
-		customerCreditTransferInitiation= new CustomerCreditTransferInitiationV03();
+		clear();
+	}
+	
+	/**
+	 * The builder of the current thread, {@link #reset()} for a new message. Every call on the
+	 * same thread returns the same builder, so write the message before the next call and don't
+	 * pass the builder to another thread.
+	 */
+	public static SEPACreditTransfer forCurrentThread() {
+		SEPACreditTransfer builder = perThread.get();
+		builder.reset();
+		return builder;
+	}
+	
+	/**
+	 * Forget the message, to build the next one with the same builder. The marshaller is kept,
+	 * so the next message doesn't pay for its setup. The document of the previous message must
+	 * not be used anymore, and its groups throw {@link IllegalStateException} when a transaction
+	 * is added.
+	 */
+	public void reset() {
+		clear();
+	}
+	
+	private void clear() {
+		document = new Document();
+		customerCreditTransferInitiation = new CustomerCreditTransferInitiationV03();
 		document.setCstmrCdtTrfInitn(customerCreditTransferInitiation);
+		groupHeader = null;
+		measurement = Metrics.start(MessageType.PAIN_001);
 	}
 	
 	public void write(OutputStream os) throws JAXBException {
-		JAXBContext jc = JAXBContext.newInstance(Document.class);
-		Marshaller marshaller = jc.createMarshaller();
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        
-        // The UTF-8 character encoding standard must be used in the UNIFI messages.
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-        marshaller.marshal(new ObjectFactory().createDocument(document), os);
+		write(os, false);
+	}
+	
+	public String writeWithContentHash(OutputStream os) throws JAXBException {
+		return write(os, true);
+	}
+	
+	private String write(OutputStream os, boolean hash) throws JAXBException {
+		measurement.restart();
+		os = measurement.count(os);
+		Marshaller marshaller = getMarshaller();
+		measurement.phase(Phase.CONTEXT);
+		String hex = null;
+		if(hash)
+			hex = contentHash.getHex(marshaller, factory.createDocument(document), os);
+		else
+			marshaller.marshal(factory.createDocument(document), os);
+        measurement.phase(Phase.MARSHAL);
+        flush(os);
+        measurement.phase(Phase.FLUSH);
+        measurement.completed(countTransactions());
+        return hex;
+	}
+	
+	private Marshaller getMarshaller() throws JAXBException {
+		if(marshaller==null) {
+			marshaller = ContextHolder.context.createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			
+			// The UTF-8 character encoding standard must be used in the UNIFI messages.
+			marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+		}
+		return marshaller;
+	}
+	
+	private static JAXBContext createContext() {
+		try {
+			return JAXBContext.newInstance(Document.class);
+		} catch (JAXBException e) {
+			throw new IllegalStateException("can't create the JAXB context for pain.001", e);
+		}
+	}
+	
+	// counted in the groups, the group header is optional until the message is written
+	private long countTransactions() {
+		long transactions = 0;
+		for(PaymentInstructionInformation3 group : customerCreditTransferInitiation.getPmtInf())
+			transactions += group.getCdtTrfTxInf().size();
+		return transactions;
+	}
+	
+	private static void flush(OutputStream os) throws MarshalException {
+		try {
+			os.flush();
+		} catch (IOException e) {
+			throw new MarshalException(e);
+		}
+	}
+	
+	/**
+	 * Returns the JAXB document that is being built.
+	 */
+	public Document getDocument() {
+		return document;
+	}
+	
+	/**
+	 * SHA-256 of the content of the message, without the message id and creation time. See
+	 * {@link ContentHash}. The message is marshalled for it, so take the hash when the message
+	 * is complete.
+	 */
+	public String getContentHash() throws JAXBException {
+		return contentHash.getHex(getMarshaller(), factory.createDocument(document));
 	}
 		
 	/**
@@ -70,7 +189,12 @@ public class SEPACreditTransfer {
 	 * @throws DatatypeConfigurationException 
 	 */
 	public void buildGroupHeader(String msgId, String name, Date date) {
-		groupHeader =  new GroupHeader32();
+		groupHeader = createGroupHeader(msgId, name, date);
+		customerCreditTransferInitiation.setGrpHdr(groupHeader);
+	}
+	
+	static GroupHeader32 createGroupHeader(String msgId, String name, Date date) {
+		GroupHeader32 groupHeader = new GroupHeader32();
 		// Point to point reference, as assigned by the instructing party, and sent to the next
 		// party in the chain to unambiguously identify the message.
 		// The instructing party has to make sure that MessageIdentification is unique per
@@ -94,7 +218,7 @@ public class SEPACreditTransfer {
 		// Party that initiates the payment.
 		groupHeader.setInitgPty( createParty(name) );
 	
-		customerCreditTransferInitiation.setGrpHdr(groupHeader);
+		return groupHeader;
 	}
 	
 	/**
@@ -110,13 +234,28 @@ public class SEPACreditTransfer {
 	 * @param debtorNm Party that owes an amount of money to the (ultimate) creditor.
 	 * @param debtorAccountIBAN Unambiguous identification of the account of the debtor to which a debit 
 	 * entry will be made as a result of the transaction.
+	 * @param financialInstitutionBIC BIC of the debtor's bank, <code>null</code> to derive it from the IBAN.
 	 * @return 
 	 * @throws DatatypeConfigurationException
 	 */
 	public Betaalgroep betaalgroep(
 			String pmtInfId, LocalDate reqdExctnDt,
 			String debtorNm, String debtorAccountIBAN, String financialInstitutionBIC) {
+		long start = measurement.time();
+		PaymentInstructionInformation3 paymentInstructionInformation = createPaymentInstruction(
+				pmtInfId, reqdExctnDt, debtorNm, debtorAccountIBAN, financialInstitutionBIC);
+		customerCreditTransferInitiation.getPmtInf().add(paymentInstructionInformation);
 		
+		measurement.built(start);
+		return new Betaalgroep(paymentInstructionInformation);
+	}
+	
+	/**
+	 * The payment information group without transactions, see {@link #betaalgroep(String, LocalDate, String, String, String)}.
+	 */
+	static PaymentInstructionInformation3 createPaymentInstruction(
+			String pmtInfId, LocalDate reqdExctnDt,
+			String debtorNm, String debtorAccountIBAN, String financialInstitutionBIC) {
 		checkArgument(pmtInfId.length()<=35, "length of pmtInfId is more than 35");
 		checkArgument(pmtInfId.length()>1, "length of pmtInfId is less than 1");
 		
@@ -140,9 +279,7 @@ public class SEPACreditTransfer {
 		
 		// Payment Type Information
 		PaymentTypeInformation19 paymentTypeInformation = new PaymentTypeInformation19();
-		ServiceLevel8Choice serviceLevel8Choice = new ServiceLevel8Choice();
-		serviceLevel8Choice.setCd("SEPA");//Vaste waarde 'SEPA'
-		paymentTypeInformation.setSvcLvl(serviceLevel8Choice);
+		paymentTypeInformation.setSvcLvl(createServiceLevel("SEPA"));//Vaste waarde 'SEPA'
 		paymentInstructionInformation.setPmtTpInf(paymentTypeInformation);
 
 		// This is the date on which the debtor's account is to be debited. 
@@ -156,24 +293,33 @@ public class SEPACreditTransfer {
 		paymentInstructionInformation.setDbtrAcct( createAccount(debtorAccountIBAN) );
 		
 		// Financial institution servicing an account for the debtor.
-		paymentInstructionInformation.setDbtrAgt( createFinInstnId(financialInstitutionBIC) );
+		paymentInstructionInformation.setDbtrAgt( createFinInstnId(financialInstitutionBIC, debtorAccountIBAN) );
 		
 		paymentInstructionInformation.setChrgBr(ChargeBearerType1Code.SLEV);
 		
-		customerCreditTransferInitiation.getPmtInf().add(paymentInstructionInformation);
-		
-		return new Betaalgroep(paymentInstructionInformation);
+		return paymentInstructionInformation;
 	}
 	
 	
 	public class Betaalgroep {
 		
 		private PaymentInstructionInformation3 paymentInstructionInformation3;
+		// the message of the group, a group from before reset() can't add to the next message
+		private final Document message = document;
 		
 		public Betaalgroep(PaymentInstructionInformation3 paymentInstructionInformation3) {
 			this.paymentInstructionInformation3 = paymentInstructionInformation3;
 		}
 		
+		/**
+		 * A credit transfer to an account of which the BIC is derived from the IBAN, see {@link BicDirectory}.
+		 */
+		public Betaalgroep creditTransfer(String endToEndId, BigDecimal amount,
+				String creditorNm, String iban,
+				String text) {
+			return creditTransfer(endToEndId, amount, null, creditorNm, iban, text);
+		}
+		
 		/**
 		 * Set of elements used to provide information on the individual transaction(s) included in the message.
 		 * 
@@ -181,7 +327,8 @@ public class SEPACreditTransfer {
 		 * transaction. This identification is passed on, unchanged, throughout the entire end-to-end chain. maxLength: 35
 		 * @param amount Amount of money to be moved between the debtor and creditor, before deduction of 
 		 * charges, expressed in the currency as ordered by the initiating party.
-		 * @param creditorfinancialInstitutionBic Financial institution servicing an account for the creditor.
+		 * @param creditorfinancialInstitutionBic Financial institution servicing an account for the creditor,
+		 * <code>null</code> to derive it from the IBAN.
 		 * @param creditorNm Party to which an amount of money is due.
 		 * @param iban Unambiguous identification of the account of the creditor to which a credit entry will
 		 * be posted as a result of the payment transaction.
@@ -192,35 +339,32 @@ public class SEPACreditTransfer {
 				String creditorfinancialInstitutionBic,
 				String creditorNm, String iban,
 				String text) {
-			
-			CreditTransferTransactionInformation10 creditTransferTransactionInformation 
-				= new CreditTransferTransactionInformation10();
-			
-			// Unique identification as assigned by an instructing party for an instructed party to
-			// unambiguously identify the instruction.
-			PaymentIdentification1 paymentIdentification = new PaymentIdentification1();
-			paymentIdentification.setEndToEndId(endToEndId);
-			creditTransferTransactionInformation.setPmtId(paymentIdentification);
-			
-			// Amount of money to be moved between the debtor and creditor, before deduction of 
-			// charges, expressed in the currency as ordered by the initiating party.
-			creditTransferTransactionInformation.setAmt( createAmount(amount) );
-			
-			// Only 'SLEV' is allowed. 
-			//creditTransferTransactionInformation.setChrgBr(ChargeBearerType1Code.SLEV);
-			
-			// Financial institution servicing an account for the creditor.
-			creditTransferTransactionInformation.setCdtrAgt( createFinInstnId(creditorfinancialInstitutionBic) );
-			
-			// Party to which an amount of money is due.
-			creditTransferTransactionInformation.setCdtr( createParty(creditorNm) );
-			
-			// Unambiguous identification of the account of the creditor to which a credit entry will
-			// be posted as a result of the payment transaction.
-			creditTransferTransactionInformation.setCdtrAcct( createAccount(iban) );
-			
-			creditTransferTransactionInformation.setRmtInf( createRmtInf(text) );
-			
+			long start = measurement.time();
+			add(createCreditTransfer(endToEndId, amount, creditorfinancialInstitutionBic, creditorNm, iban, text), amount);
+			measurement.built(start);
+			return this;
+		}
+		
+		/**
+		 * A credit transfer with structured remittance information instead of a text: the creditor
+		 * reference of the invoice, for example an RF creditor reference (see {@link CreditorReference}).
+		 * @param creditorfinancialInstitutionBic <code>null</code> to derive it from the IBAN.
+		 * @param creditorReference at most 35 characters, a reference starting with RF must be valid
+		 */
+		public Betaalgroep creditTransferWithReference(String endToEndId, BigDecimal amount,
+				String creditorfinancialInstitutionBic,
+				String creditorNm, String iban,
+				String creditorReference) {
+			long start = measurement.time();
+			add(createCreditTransfer(endToEndId, amount, creditorfinancialInstitutionBic, creditorNm, iban,
+					createRmtInf_struct(creditorReference)), amount);
+			measurement.built(start);
+			return this;
+		}
+		
+		private void add(CreditTransferTransactionInformation10 creditTransferTransactionInformation, BigDecimal amount) {
+			checkState(message==document, "betaalgroep %s belongs to a message before reset()",
+					paymentInstructionInformation3.getPmtInfId());
 			paymentInstructionInformation3.getCdtTrfTxInf().add(creditTransferTransactionInformation);
 			
 			// Control sum
@@ -232,10 +376,56 @@ public class SEPACreditTransfer {
 			Integer nbOfTxs = Integer.parseInt(groupHeader.getNbOfTxs());
 			nbOfTxs = nbOfTxs + 1;
 			groupHeader.setNbOfTxs(nbOfTxs.toString());
-			
-			return this;
 		}
 
 	}
 	
+	/**
+	 * A single transaction, see {@link Betaalgroep#creditTransfer(String, BigDecimal, String, String, String, String)}.
+	 */
+	static CreditTransferTransactionInformation10 createCreditTransfer(String endToEndId, BigDecimal amount,
+			String creditorfinancialInstitutionBic,
+			String creditorNm, String iban,
+			String text) {
+		return createCreditTransfer(endToEndId, amount, creditorfinancialInstitutionBic, creditorNm, iban,
+				createRmtInf(text));
+	}
+	
+	static CreditTransferTransactionInformation10 createCreditTransfer(String endToEndId, BigDecimal amount,
+			String creditorfinancialInstitutionBic,
+			String creditorNm, String iban,
+			RemittanceInformation5 remittanceInformation) {
+		CreditTransferTransactionInformation10 creditTransferTransactionInformation 
+			= new CreditTransferTransactionInformation10();
+		
+		// Unique identification as assigned by an instructing party for an instructed party to
+		// unambiguously identify the instruction.
+		creditTransferTransactionInformation.setPmtId( createPaymentIdentification(endToEndId) );
+		
+		// Amount of money to be moved between the debtor and creditor, before deduction of 
+		// charges, expressed in the currency as ordered by the initiating party.
+		creditTransferTransactionInformation.setAmt( createAmount(amount) );
+		
+		// Only 'SLEV' is allowed. 
+		//creditTransferTransactionInformation.setChrgBr(ChargeBearerType1Code.SLEV);
+		
+		// Financial institution servicing an account for the creditor. Optional, it is left
+		// out when no BIC is given and the bank of the IBAN is unknown.
+		if(creditorfinancialInstitutionBic==null)
+			creditorfinancialInstitutionBic = BicDirectory.getDefault().getBic(iban);
+		if(creditorfinancialInstitutionBic!=null)
+			creditTransferTransactionInformation.setCdtrAgt( createFinInstnId(creditorfinancialInstitutionBic) );
+		
+		// Party to which an amount of money is due.
+		creditTransferTransactionInformation.setCdtr( createParty(creditorNm) );
+		
+		// Unambiguous identification of the account of the creditor to which a credit entry will
+		// be posted as a result of the payment transaction.
+		creditTransferTransactionInformation.setCdtrAcct( createAccount(iban) );
+		
+		creditTransferTransactionInformation.setRmtInf( remittanceInformation );
+		
+		return creditTransferTransactionInformation;
+	}
+	
 }
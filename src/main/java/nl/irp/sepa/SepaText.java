@@ -0,0 +1,162 @@
+package nl.irp.sepa;
+
+import java.text.Normalizer;
+
+/**
+ * Maps text to the Latin character set that SEPA messages may contain:
+ * <pre>
+ * a b c d e f g h i j k l m n o p q r s t u v w x y z
+ * A B C D E F G H I J K L M N O P Q R S T U V W X Y Z
+ * 0 1 2 3 4 5 6 7 8 9
+ * / - ? : ( ) . , ' + space
+ * </pre>
+ * Banks reject a whole file for a single other character, so names and remittance information
+ * are transliterated before they are added to a message: accents are removed (é becomes e),
+ * ligatures and special letters are written out (ß becomes ss, æ becomes ae) and &amp; becomes +.
+ * Characters without a sensible replacement, like emoji, become a full stop.
+ *
+ * The replacements are looked up in a table that is computed once. Text that is already valid
+ * is returned as is, without copying.
+ */
+public class SepaText {
+
+	private static final char UNKNOWN = '.';
+
+	// the replacements for U+0000 to U+024F (Basic Latin up to Latin Extended-B)
+	private static final int TABLE_SIZE = 0x250;
+	private static final boolean[] allowed = new boolean[128];
+	private static final String[] replacements = new String[TABLE_SIZE];
+
+	static {
+		for(char c = 'a'; c<='z'; c++)
+			allowed[c] = true;
+		for(char c = 'A'; c<='Z'; c++)
+			allowed[c] = true;
+		for(char c = '0'; c<='9'; c++)
+			allowed[c] = true;
+		for(char c : "/-?:().,'+ ".toCharArray())
+			allowed[c] = true;
+
+		for(int c = 0; c<TABLE_SIZE; c++)
+			replacements[c] = c<128 && allowed[c] ? String.valueOf((char) c) : decompose((char) c);
+
+		replace("&", "+");
+		replace("\t\n\r\u00a0", " ");
+		replace("\"", "'");
+		replace("_", "-");
+		replace("[{<", "(");
+		replace("]}>", ")");
+		replace(";", ",");
+		replace("!", ".");
+		replace("\u00ab\u00bb", "'");   // guillemets
+		replace("\u00df", "ss");         // sharp s
+		replace("\u00c6", "AE");
+		replace("\u00e6", "ae");
+		replace("\u0152", "OE");
+		replace("\u0153", "oe");
+		replace("\u00d8", "O");          // O with stroke
+		replace("\u00f8", "o");
+		replace("\u0110\u00d0", "D");   // D with stroke, eth
+		replace("\u0111\u00f0", "d");
+		replace("\u00de", "TH");         // thorn
+		replace("\u00fe", "th");
+		replace("\u0141", "L");          // L with stroke
+		replace("\u0142", "l");
+		replace("\u0131", "i");          // dotless i
+		replace("\u00d7", "x");
+		replace("\u00f7", "/");
+	}
+
+	private SepaText() {
+	}
+
+	/**
+	 * The text with every character outside the SEPA character set replaced. Returns the
+	 * same instance if the text is valid.
+	 */
+	public static String transliterate(String text) {
+		int length = text.length();
+		for(int i=0; i<length; i++) {
+			char c = text.charAt(i);
+			if(c>=128 || !allowed[c])
+				return transliterate(text, i, Integer.MAX_VALUE);
+		}
+		return text;
+	}
+
+	/**
+	 * Transliterate the text and cut it off at <code>maxLength</code> characters. Trailing
+	 * spaces that would end up at the end are removed. Returns the same instance if the text
+	 * is valid and short enough.
+	 */
+	public static String sanitize(String text, int maxLength) {
+		int length = text.length();
+		for(int i=0; i<length; i++) {
+			char c = text.charAt(i);
+			if(c>=128 || !allowed[c])
+				return transliterate(text, i, maxLength);
+		}
+		return length<=maxLength ? text : trim(text.substring(0, maxLength));
+	}
+
+	/**
+	 * <code>true</code> if the text only contains SEPA characters.
+	 */
+	public static boolean isValid(String text) {
+		int length = text.length();
+		for(int i=0; i<length; i++) {
+			char c = text.charAt(i);
+			if(c>=128 || !allowed[c])
+				return false;
+		}
+		return true;
+	}
+
+	private static String transliterate(String text, int start, int maxLength) {
+		int length = text.length();
+		StringBuilder sb = new StringBuilder(Math.min(length + 8, maxLength));
+		sb.append(text, 0, Math.min(start, maxLength));
+		for(int i=start; i<length && sb.length()<maxLength; i++) {
+			char c = text.charAt(i);
+			if(c<TABLE_SIZE) {
+				sb.append(replacements[c]);
+			} else {
+				if(Character.isHighSurrogate(c) && i+1<length && Character.isLowSurrogate(text.charAt(i+1)))
+					i++;
+				sb.append(decompose(c));
+			}
+		}
+		if(sb.length()>maxLength)
+			sb.setLength(maxLength);
+		return trim(sb);
+	}
+
+	private static String trim(CharSequence text) {
+		int end = text.length();
+		while(end>0 && text.charAt(end-1)==' ')
+			end--;
+		return text.subSequence(0, end).toString();
+	}
+
+	/**
+	 * The base letter of an accented letter, or {@link #UNKNOWN}.
+	 */
+	private static String decompose(char c) {
+		String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKD);
+		StringBuilder sb = new StringBuilder(decomposed.length());
+		for(int i=0; i<decomposed.length(); i++) {
+			char d = decomposed.charAt(i);
+			if(d<128 && allowed[d])
+				sb.append(d);
+			else if(Character.getType(d)!=Character.NON_SPACING_MARK)
+				return String.valueOf(UNKNOWN);
+		}
+		return sb.length()==0 ? String.valueOf(UNKNOWN) : sb.toString();
+	}
+
+	private static void replace(String characters, String replacement) {
+		for(char c : characters.toCharArray())
+			replacements[c] = replacement;
+	}
+
+}
@@ -11,15 +11,17 @@ import iso.std.iso._20022.tech.xsd.pain_001_001.CreditorReferenceType1Choice;
 import iso.std.iso._20022.tech.xsd.pain_001_001.CreditorReferenceType2;
 import iso.std.iso._20022.tech.xsd.pain_001_001.DocumentType3Code;
 import iso.std.iso._20022.tech.xsd.pain_001_001.FinancialInstitutionIdentification7;
+import iso.std.iso._20022.tech.xsd.pain_001_001.GenericFinancialIdentification1;
 import iso.std.iso._20022.tech.xsd.pain_001_001.PartyIdentification32;
+import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentIdentification1;
 import iso.std.iso._20022.tech.xsd.pain_001_001.RemittanceInformation5;
+import iso.std.iso._20022.tech.xsd.pain_001_001.ServiceLevel8Choice;
 import iso.std.iso._20022.tech.xsd.pain_001_001.StructuredRemittanceInformation7;
 
 import java.math.BigDecimal;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.regex.Pattern;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeConstants;
@@ -29,8 +31,6 @@ import javax.xml.datatype.XMLGregorianCalendar;
 public class Utils {
 	
 	
-	private static Pattern bicRegex =
-			Pattern.compile("([a-zA-Z]{4}[a-zA-Z]{2}[a-zA-Z0-9]{2}([a-zA-Z0-9]{3})?)");
 
 	public static XMLGregorianCalendar createXMLGregorianCalendar(Date currentDateTime) {
 		GregorianCalendar calendar = new GregorianCalendar();
@@ -68,11 +68,12 @@ public class Utils {
 	 * Information supplied to enable the matching of an entry with the items that the
 	 * transfer is intended to settle, such as commercial invoices in an accounts' receivable
 	 * system
-	 * max length: 140
+	 * max length: 140, longer text is cut off and characters outside the SEPA character set
+	 * are transliterated (see {@link SepaText})
 	 * @return
 	 */
 	public static RemittanceInformation5 createRmtInf(String info) {
-		checkArgument(info.length() <= 140); //maxLength: 140
+		info = SepaText.sanitize(info, 140); //maxLength: 140
 		checkArgument(info.length() >= 1);   //minLength: 1
 		
 		RemittanceInformation5 remittanceInformation = new RemittanceInformation5();
@@ -84,12 +85,16 @@ public class Utils {
 	 * Information supplied to enable the matching of an entry with the items that the
 	 * transfer is intended to settle, such as commercial invoices in an accounts' receivable
 	 * system
-	 * max length: 140
+	 * The creditor reference (SCOR) has at most 35 SEPA characters; a reference that starts
+	 * with RF must be a valid ISO 11649 creditor reference, see {@link CreditorReference}.
 	 * @return
 	 */
 	public static RemittanceInformation5 createRmtInf_struct(String ref) {
 		checkArgument(ref.length() <= 35, "maxLength: 35");
 		checkArgument(ref.length() >= 1,  "minLength: 1");
+		checkArgument(SepaText.isValid(ref), "reference '%s' contains characters outside the SEPA character set", ref);
+		checkArgument(!CreditorReference.isCreditorReference(ref) || CreditorReference.isValid(ref),
+				"'%s' is not a valid RF creditor reference", ref);
 		
 		RemittanceInformation5 remittanceInformation = new RemittanceInformation5();
 		StructuredRemittanceInformation7 structuredRemittanceInformation = new StructuredRemittanceInformation7();
@@ -130,21 +135,73 @@ public class Utils {
 		return account;
 	}
 	
+	/**
+	 * A party with a name of at most 70 SEPA characters, see {@link SepaText}. The name is
+	 * optional and may be <code>null</code>.
+	 */
 	public static PartyIdentification32 createParty(String nm) {
 		PartyIdentification32 party = new PartyIdentification32();
-		party.setNm(nm);
+		party.setNm(nm==null ? null : SepaText.sanitize(nm, 70));
 		return party;
 	}
 	
+	/**
+	 * @param endToEndIdentification Unique identification assigned by the initiating party to unumbiguously identify the
+	 * transaction. Characters outside the SEPA character set are transliterated, but the
+	 * identification is never cut off.
+	 */
+	public static PaymentIdentification1 createPaymentIdentification(String endToEndIdentification) {
+		endToEndIdentification = SepaText.transliterate(endToEndIdentification);
+		checkArgument(endToEndIdentification.length()<=35, "length of endToEndId is more than 35");
+		checkArgument(endToEndIdentification.length()>=1, "length of endToEndId is less than 1");
+		
+		PaymentIdentification1 paymentIdentification = new PaymentIdentification1();
+		paymentIdentification.setEndToEndId(endToEndIdentification);
+		return paymentIdentification;
+	}
+	
+	/**
+	 * The agent that services an account: the given BIC, or if <code>bic</code> is <code>null</code>
+	 * the BIC of the IBAN according to the {@link BicDirectory}. An unknown bank is identified as
+	 * <code>Othr/Id</code> NOTPROVIDED, as allowed for payments with only an IBAN.
+	 */
+	public static BranchAndFinancialInstitutionIdentification4 createFinInstnId(String bic, String iban) {
+		if(bic==null)
+			bic = BicDirectory.getDefault().getBic(iban);
+		if(bic!=null)
+			return createFinInstnId(bic);
+		
+		return createNotProvided();
+	}
+	
 	public static BranchAndFinancialInstitutionIdentification4 createFinInstnId(String bic) {
-		checkArgument(bicRegex.matcher(bic).matches(), "This doesn't look like a correct BIC id '"+bic+"'");
+		checkArgument(BICUtils.isValid(bic), "This doesn't look like a correct BIC id '%s'", bic);
 		
-		BranchAndFinancialInstitutionIdentification4 creditorAgent = new BranchAndFinancialInstitutionIdentification4();
-		FinancialInstitutionIdentification7 creditorfinancialInstitutionIdentification = new FinancialInstitutionIdentification7();
+		BranchAndFinancialInstitutionIdentification4 agent = new BranchAndFinancialInstitutionIdentification4();
+		FinancialInstitutionIdentification7 financialInstitutionIdentification = new FinancialInstitutionIdentification7();
 		// Only BIC is allowed.
-		creditorfinancialInstitutionIdentification.setBIC(bic);
-		creditorAgent.setFinInstnId(creditorfinancialInstitutionIdentification);
-		return creditorAgent;
+		financialInstitutionIdentification.setBIC(bic);
+		agent.setFinInstnId(financialInstitutionIdentification);
+		return agent;
+	}
+	
+	/**
+	 * The service level, for example 'SEPA'.
+	 */
+	public static ServiceLevel8Choice createServiceLevel(String cd) {
+		ServiceLevel8Choice serviceLevel = new ServiceLevel8Choice();
+		serviceLevel.setCd(cd);
+		return serviceLevel;
+	}
+	
+	private static BranchAndFinancialInstitutionIdentification4 createNotProvided() {
+		BranchAndFinancialInstitutionIdentification4 agent = new BranchAndFinancialInstitutionIdentification4();
+		FinancialInstitutionIdentification7 financialInstitutionIdentification = new FinancialInstitutionIdentification7();
+		GenericFinancialIdentification1 other = new GenericFinancialIdentification1();
+		other.setId("NOTPROVIDED");
+		financialInstitutionIdentification.setOthr(other);
+		agent.setFinInstnId(financialInstitutionIdentification);
+		return agent;
 	}
 	
 	public static AmountType3Choice createAmount(BigDecimal amount) {
@@ -0,0 +1,76 @@
+package nl.irp.sepa;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Shared StAX infrastructure for the streaming readers.
+ *
+ * Creating an {@link XMLInputFactory} is expensive, so all readers share one factory, and all
+ * writers share one {@link XMLOutputFactory}.
+ * DTDs and external entities are disabled, bank files never need them.
+ */
+public class XmlStreams {
+
+	private static final XMLInputFactory inputFactory = createInputFactory();
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	private XmlStreams() {
+	}
+
+	public static XMLStreamReader createReader(InputStream is) throws XMLStreamException {
+		return inputFactory.createXMLStreamReader(is);
+	}
+
+	/**
+	 * A writer of UTF-8 encoded XML.
+	 */
+	public static XMLStreamWriter createWriter(OutputStream os) throws XMLStreamException {
+		return outputFactory.createXMLStreamWriter(os, "UTF-8");
+	}
+
+	/**
+	 * Read the text of a direct child element and skip the rest of the current element.
+	 */
+	public static String readChildText(XMLStreamReader reader, String child) throws XMLStreamException {
+		String text = null;
+		while(reader.nextTag()==START_ELEMENT) {
+			if(text==null && child.equals(reader.getLocalName()))
+				text = reader.getElementText();
+			else
+				skipElement(reader);
+		}
+		return text;
+	}
+
+	/**
+	 * Skip the current element including all its children, the reader is left at its end tag.
+	 */
+	public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while(depth>0) {
+			int event = reader.next();
+			if(event==START_ELEMENT)
+				depth++;
+			else if(event==END_ELEMENT)
+				depth--;
+		}
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+}
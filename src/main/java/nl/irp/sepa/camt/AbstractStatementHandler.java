@@ -0,0 +1,23 @@
+package nl.irp.sepa.camt;
+
+/**
+ * A {@link StatementHandler} that ignores everything, override what you need.
+ */
+public abstract class AbstractStatementHandler implements StatementHandler {
+
+	public void startStatement(StatementHeader statement) {
+	}
+
+	public void balance(StatementBalance balance) {
+	}
+
+	public void transactionsSummary(TransactionsSummary summary) {
+	}
+
+	public void entry(StatementEntry entry) {
+	}
+
+	public void endStatement(StatementHeader statement) {
+	}
+
+}
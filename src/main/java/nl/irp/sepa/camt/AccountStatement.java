@@ -0,0 +1,68 @@
+package nl.irp.sepa.camt;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * One account statement (or notification) with its balances and entries, as handed to a
+ * {@link StatementProcessor} by the {@link ParallelStatementReader}.
+ */
+public class AccountStatement {
+
+	private final StatementHeader header;
+	private final List<StatementBalance> balances = Lists.newArrayListWithCapacity(2);
+	private TransactionsSummary summary;
+	private final List<StatementEntry> entries = Lists.newArrayList();
+
+	AccountStatement(StatementHeader header) {
+		this.header = header;
+	}
+
+	public StatementHeader getHeader() {
+		return header;
+	}
+
+	public List<StatementBalance> getBalances() {
+		return Collections.unmodifiableList(balances);
+	}
+
+	/**
+	 * The transactions summary, <code>null</code> if the statement has none.
+	 */
+	public TransactionsSummary getSummary() {
+		return summary;
+	}
+
+	public List<StatementEntry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Report the statement to a handler, in the order the {@link StatementReader} would have.
+	 */
+	public void replay(StatementHandler handler) {
+		handler.startStatement(header);
+		for(StatementBalance balance : balances)
+			handler.balance(balance);
+		if(summary!=null)
+			handler.transactionsSummary(summary);
+		for(StatementEntry entry : entries)
+			handler.entry(entry);
+		handler.endStatement(header);
+	}
+
+	void add(StatementBalance balance) {
+		balances.add(balance);
+	}
+
+	void setSummary(TransactionsSummary summary) {
+		this.summary = summary;
+	}
+
+	void add(StatementEntry entry) {
+		entries.add(entry);
+	}
+
+}
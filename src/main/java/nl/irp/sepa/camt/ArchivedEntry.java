@@ -0,0 +1,60 @@
+package nl.irp.sepa.camt;
+
+import nl.irp.sepa.Amounts;
+
+/**
+ * One row of a {@link StatementArchive}: a transaction of an entry, or an entry without
+ * transaction details, with the values of all {@link EntryField}s as they were read from the
+ * statement.
+ */
+public class ArchivedEntry {
+
+	private final String[] values;
+
+	ArchivedEntry(String[] values) {
+		this.values = values;
+	}
+
+	/**
+	 * The value of a field, <code>null</code> if the statement didn't have it.
+	 */
+	public String get(EntryField field) {
+		return values[field.ordinal()];
+	}
+
+	public String getAccount() {
+		return get(EntryField.ACCOUNT_IBAN);
+	}
+
+	/**
+	 * Booking date as yyyy-MM-dd.
+	 */
+	public String getBookingDate() {
+		return get(EntryField.BOOKING_DATE);
+	}
+
+	/**
+	 * Amount in cents, always positive.
+	 */
+	public long getAmount() {
+		return Amounts.toCents(get(EntryField.AMOUNT));
+	}
+
+	/**
+	 * Amount in cents, negative for debit entries.
+	 */
+	public long getSignedAmount() {
+		return Amounts.signed(getAmount(), get(EntryField.CDT_DBT_IND));
+	}
+
+	public boolean isCredit() {
+		return "CRDT".equals(get(EntryField.CDT_DBT_IND));
+	}
+
+	@Override
+	public String toString() {
+		return getAccount() + " " + getBookingDate() + " " + get(EntryField.CDT_DBT_IND) + " " + get(EntryField.AMOUNT)
+				+ " " + get(EntryField.END_TO_END_ID);
+	}
+
+}
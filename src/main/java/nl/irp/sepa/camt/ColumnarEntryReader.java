@@ -0,0 +1,134 @@
+package nl.irp.sepa.camt;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import nl.irp.sepa.Amounts;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Reads a file written by the {@link ColumnarEntryWriter}. Columns outside the projection
+ * are skipped per row group without being decoded.
+ */
+public class ColumnarEntryReader implements Closeable {
+
+	private final DataInputStream in;
+	private final List<EntryField> columns;
+	private final Set<EntryField> projection;
+
+	private String[][] rowGroup;
+	private int rows;
+	private int row;
+	private boolean finished;
+
+	public ColumnarEntryReader(InputStream in) throws IOException {
+		this(in, EnumSet.allOf(EntryField.class));
+	}
+
+	public ColumnarEntryReader(InputStream in, Set<EntryField> projection) throws IOException {
+		this.in = new DataInputStream(in);
+		this.projection = projection;
+
+		byte[] magic = new byte[ColumnarEntryWriter.MAGIC.length];
+		this.in.readFully(magic);
+		if(!Arrays.equals(magic, ColumnarEntryWriter.MAGIC))
+			throw new IOException("not a columnar entry file");
+		int version = this.in.read();
+		if(version!=ColumnarEntryWriter.VERSION)
+			throw new IOException("unsupported version "+version);
+
+		int count = Varints.readInt(this.in);
+		columns = Lists.newArrayListWithCapacity(count);
+		for(int i=0; i<count; i++)
+			columns.add(EntryField.valueOf(this.in.readUTF()));
+	}
+
+	/**
+	 * The columns in the file, in order.
+	 */
+	public List<EntryField> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Returns the values of the next row in the order of {@link #getColumns()}, or <code>null</code>
+	 * when there are no more rows. Columns outside the projection are <code>null</code>.
+	 */
+	public String[] next() throws IOException {
+		while(row==rows) {
+			if(finished || !readRowGroup())
+				return null;
+		}
+		String[] values = new String[columns.size()];
+		for(int i=0; i<values.length; i++)
+			values[i] = rowGroup[i]==null ? null : rowGroup[i][row];
+		row++;
+		return values;
+	}
+
+	private boolean readRowGroup() throws IOException {
+		rows = Varints.readInt(in);
+		row = 0;
+		if(rows==0) {
+			finished = true;
+			return false;
+		}
+
+		rowGroup = new String[columns.size()][];
+		for(int i=0; i<columns.size(); i++) {
+			int length = Varints.readInt(in);
+			EntryField column = columns.get(i);
+			if(!projection.contains(column)) {
+				ByteStreams.skipFully(in, length);
+				continue;
+			}
+			byte[] block = new byte[length];
+			in.readFully(block);
+			rowGroup[i] = decode(new DataInputStream(new ByteArrayInputStream(block)), column.getType(), rows);
+		}
+		return true;
+	}
+
+	private String[] decode(DataInputStream block, EntryField.Type type, int rows) throws IOException {
+		String[] values = new String[rows];
+		for(int i=0; i<rows; i++) {
+			switch(type) {
+			case AMOUNT:
+				long cents = Varints.read(block);
+				values[i] = cents==0 ? null : Amounts.format(cents - 1);
+				break;
+			case DATE:
+				int date = Varints.readInt(block);
+				values[i] = date==0 ? null : String.format("%04d-%02d-%02d", date/10000, date/100%100, date%100);
+				break;
+			case INDICATOR:
+				int indicator = block.read();
+				values[i] = indicator==0 ? null : indicator==ColumnarEntryWriter.DBIT ? "DBIT" : "CRDT";
+				break;
+			default:
+				int length = Varints.readInt(block);
+				if(length==0)
+					break;
+				byte[] bytes = new byte[length - 1];
+				block.readFully(bytes);
+				values[i] = new String(bytes, Charsets.UTF_8);
+			}
+		}
+		return values;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,120 @@
+package nl.irp.sepa.camt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import nl.irp.sepa.Amounts;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Writes statement entries to a compact columnar binary file.
+ *
+ * Rows are buffered in row groups. Within a row group each column is written as one block,
+ * so a reader can skip the columns it doesn't need. Values are encoded by their
+ * {@link EntryField.Type}: amounts as cents, dates as <code>yyyymmdd</code> and indicators as a
+ * single byte, all as variable length integers.
+ *
+ * <pre>
+ * file      = magic version columns rowGroup* 0
+ * columns   = count (name)*
+ * rowGroup  = rows (length block)*
+ * </pre>
+ *
+ * @see ColumnarEntryReader
+ */
+public class ColumnarEntryWriter implements EntryWriter {
+
+	static final byte[] MAGIC = "SEPACOL".getBytes(Charsets.US_ASCII);
+	static final int VERSION = 1;
+
+	static final int CRDT = 1;
+	static final int DBIT = 2;
+
+	private final DataOutputStream out;
+	private final List<EntryField> columns;
+	private final ByteArrayOutputStream[] blocks;
+	private final int rowGroupSize;
+	private int rows;
+
+	public ColumnarEntryWriter(OutputStream out, List<EntryField> columns) throws IOException {
+		this(out, columns, 8192);
+	}
+
+	public ColumnarEntryWriter(OutputStream out, List<EntryField> columns, int rowGroupSize) throws IOException {
+		this.out = new DataOutputStream(out);
+		this.columns = ImmutableList.copyOf(columns);
+		this.rowGroupSize = rowGroupSize;
+		this.blocks = new ByteArrayOutputStream[this.columns.size()];
+		for(int i=0; i<blocks.length; i++)
+			blocks[i] = new ByteArrayOutputStream(rowGroupSize*4);
+
+		this.out.write(MAGIC);
+		this.out.write(VERSION);
+		Varints.write(this.out, this.columns.size());
+		for(EntryField column : this.columns)
+			this.out.writeUTF(column.name());
+	}
+
+	public List<EntryField> getColumns() {
+		return columns;
+	}
+
+	public void write(StatementEntry entry, int tx) throws IOException {
+		for(int i=0; i<blocks.length; i++) {
+			EntryField column = columns.get(i);
+			encode(blocks[i], column.getType(), entry.get(column, tx));
+		}
+		if(++rows==rowGroupSize)
+			flushRowGroup();
+	}
+
+	private void encode(ByteArrayOutputStream block, EntryField.Type type, String value) throws IOException {
+		if(value==null) {
+			block.write(0);
+			return;
+		}
+		switch(type) {
+		case AMOUNT:
+			Varints.write(block, Amounts.toCents(value) + 1);
+			break;
+		case DATE:
+			// yyyy-MM-dd
+			int date = Integer.parseInt(value.substring(0, 4))*10000
+				+ Integer.parseInt(value.substring(5, 7))*100
+				+ Integer.parseInt(value.substring(8, 10));
+			Varints.write(block, date);
+			break;
+		case INDICATOR:
+			block.write("DBIT".equals(value) ? DBIT : CRDT);
+			break;
+		default:
+			byte[] bytes = value.getBytes(Charsets.UTF_8);
+			Varints.write(block, bytes.length + 1);
+			block.write(bytes);
+		}
+	}
+
+	private void flushRowGroup() throws IOException {
+		if(rows==0)
+			return;
+		Varints.write(out, rows);
+		for(ByteArrayOutputStream block : blocks) {
+			Varints.write(out, block.size());
+			block.writeTo(out);
+			block.reset();
+		}
+		rows = 0;
+	}
+
+	public void close() throws IOException {
+		flushRowGroup();
+		Varints.write(out, 0);
+		out.close();
+	}
+
+}
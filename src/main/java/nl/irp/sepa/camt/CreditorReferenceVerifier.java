@@ -0,0 +1,129 @@
+package nl.irp.sepa.camt;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.CreditorReference;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Checks the RF creditor references (<code>RmtInf/Strd/CdtrRefInf/Ref</code>) of the
+ * transactions in camt.053 statements or camt.054 notifications while they are streamed, for
+ * example to find the payments that can't be matched to an invoice automatically.
+ *
+ * References that don't start with RF, like the Dutch payment reference, are counted but not
+ * checked. Like the {@link StatementVerifier} it can share a streaming pass with other handlers
+ * in a {@link TeeStatementHandler}, as long as the reader decodes the {@link #REQUIRED_FIELDS}.
+ */
+public class CreditorReferenceVerifier extends AbstractStatementHandler {
+
+	/**
+	 * The entry fields the verifier needs.
+	 */
+	public static final Set<EntryField> REQUIRED_FIELDS = Collections.unmodifiableSet(
+			EnumSet.of(EntryField.CREDITOR_REFERENCE, EntryField.END_TO_END_ID));
+
+	private static final StatementReader reader = new StatementReader(REQUIRED_FIELDS);
+
+	/**
+	 * A transaction with a reference that starts with RF but is not a valid creditor reference.
+	 */
+	public static class InvalidReference {
+
+		private final StatementEntry entry;
+		private final int transaction;
+
+		InvalidReference(StatementEntry entry, int transaction) {
+			this.entry = entry;
+			this.transaction = transaction;
+		}
+
+		public StatementEntry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * Index of the transaction within the entry.
+		 */
+		public int getTransaction() {
+			return transaction;
+		}
+
+		public String getReference() {
+			return entry.get(EntryField.CREDITOR_REFERENCE, transaction);
+		}
+
+		public String getEndToEndId() {
+			return entry.get(EntryField.END_TO_END_ID, transaction);
+		}
+
+		@Override
+		public String toString() {
+			return entry.getStatement().getAccount() + " " + getEndToEndId() + ": " + getReference();
+		}
+
+	}
+
+	private final List<InvalidReference> invalid = Lists.newArrayList();
+	private long creditorReferences;
+	private long otherReferences;
+
+	/**
+	 * Check the references of a message.
+	 * @return the invalid references in this message
+	 */
+	public List<InvalidReference> verify(InputStream is) throws XMLStreamException {
+		int before = invalid.size();
+		reader.read(is, this);
+		return Collections.unmodifiableList(Lists.newArrayList(invalid.subList(before, invalid.size())));
+	}
+
+	@Override
+	public void entry(StatementEntry entry) {
+		int transactions = Math.max(entry.getTransactionCount(), 1);
+		for(int tx=0; tx<transactions; tx++) {
+			String reference = entry.get(EntryField.CREDITOR_REFERENCE, tx);
+			if(reference==null)
+				continue;
+			if(!CreditorReference.isCreditorReference(reference)) {
+				otherReferences++;
+				continue;
+			}
+			creditorReferences++;
+			if(!CreditorReference.isValid(reference))
+				invalid.add(new InvalidReference(entry, tx));
+		}
+	}
+
+	/**
+	 * All invalid creditor references found so far.
+	 */
+	public List<InvalidReference> getInvalidReferences() {
+		return Collections.unmodifiableList(invalid);
+	}
+
+	/**
+	 * Number of RF creditor references checked so far.
+	 */
+	public long getCreditorReferences() {
+		return creditorReferences;
+	}
+
+	/**
+	 * Number of other structured references seen so far.
+	 */
+	public long getOtherReferences() {
+		return otherReferences;
+	}
+
+	public boolean isValid() {
+		return invalid.isEmpty();
+	}
+
+}
@@ -0,0 +1,75 @@
+package nl.irp.sepa.camt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Writes statement entries as RFC 4180 CSV with a header line.
+ */
+public class CsvEntryWriter implements EntryWriter {
+
+	private final Writer out;
+	private final List<EntryField> columns;
+	private final char separator;
+
+	public CsvEntryWriter(Writer out, List<EntryField> columns) throws IOException {
+		this(out, columns, ',');
+	}
+
+	public CsvEntryWriter(Writer out, List<EntryField> columns, char separator) throws IOException {
+		this.out = out;
+		this.columns = ImmutableList.copyOf(columns);
+		this.separator = separator;
+
+		for(int i=0; i<this.columns.size(); i++) {
+			if(i>0)
+				out.write(separator);
+			out.write(this.columns.get(i).getColumnName());
+		}
+		out.write("\r\n");
+	}
+
+	public List<EntryField> getColumns() {
+		return columns;
+	}
+
+	public void write(StatementEntry entry, int tx) throws IOException {
+		for(int i=0; i<columns.size(); i++) {
+			if(i>0)
+				out.write(separator);
+			String value = entry.get(columns.get(i), tx);
+			if(value!=null)
+				writeValue(value);
+		}
+		out.write("\r\n");
+	}
+
+	private void writeValue(String value) throws IOException {
+		boolean quote = false;
+		for(int i=0; i<value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c==separator || c=='"' || c=='\r' || c=='\n';
+		}
+		if(!quote) {
+			out.write(value);
+			return;
+		}
+
+		out.write('"');
+		for(int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			if(c=='"')
+				out.write('"');
+			out.write(c);
+		}
+		out.write('"');
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
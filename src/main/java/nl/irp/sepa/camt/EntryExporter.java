@@ -0,0 +1,100 @@
+package nl.irp.sepa.camt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Exports the entries of a camt.053 message to an {@link EntryWriter} in one streaming pass,
+ * with one row per transaction. Only the columns of the writer are decoded.
+ *
+ * <pre>
+ * EntryExporter.exportCsv(in, out, ImmutableList.of(ACCOUNT_IBAN, BOOKING_DATE, AMOUNT, CDT_DBT_IND));
+ * </pre>
+ */
+public class EntryExporter extends AbstractStatementHandler {
+
+	private final EntryWriter writer;
+	private long rows;
+
+	public EntryExporter(EntryWriter writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Export all entries of the message to the writer, the writer is closed afterwards.
+	 * @return the number of rows written
+	 */
+	public static long export(InputStream is, EntryWriter writer) throws XMLStreamException, IOException {
+		EntryExporter exporter = new EntryExporter(writer);
+		try {
+			reader(writer.getColumns()).read(is, exporter);
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			writer.close();
+		}
+		return exporter.getRows();
+	}
+
+	public static long exportCsv(InputStream is, OutputStream out, List<EntryField> columns)
+			throws XMLStreamException, IOException {
+		Writer writer = new OutputStreamWriter(out, Charsets.UTF_8);
+		return export(is, new CsvEntryWriter(writer, columns));
+	}
+
+	public static long exportColumnar(InputStream is, OutputStream out, List<EntryField> columns)
+			throws XMLStreamException, IOException {
+		return export(is, new ColumnarEntryWriter(out, columns));
+	}
+
+	/**
+	 * A reader that only decodes the given columns.
+	 */
+	public static StatementReader reader(List<EntryField> columns) {
+		EnumSet<EntryField> fields = EnumSet.noneOf(EntryField.class);
+		fields.addAll(columns);
+		return new StatementReader(fields);
+	}
+
+	@Override
+	public void entry(StatementEntry entry) {
+		int transactions = Math.max(1, entry.getTransactionCount());
+		try {
+			for(int tx=0; tx<transactions; tx++)
+				writer.write(entry, tx);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		rows += transactions;
+	}
+
+	/**
+	 * Number of rows written so far.
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	private static class UncheckedIOException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		UncheckedIOException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+
+}
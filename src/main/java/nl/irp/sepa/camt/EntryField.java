@@ -0,0 +1,115 @@
+package nl.irp.sepa.camt;
+
+/**
+ * The fields of a flattened camt.053 entry (<code>Ntry</code>) and its transaction details
+ * (<code>TxDtls</code>).
+ *
+ * The {@link StatementReader} only decodes the fields it is asked for, everything else in
+ * the entry is skipped.
+ */
+public enum EntryField {
+
+	/**
+	 * IBAN of the reported account: <code>Stmt/Acct/Id/IBAN</code>, or <code>Acct/Id/Othr/Id</code>
+	 * when the account servicer does not report an IBAN.
+	 */
+	ACCOUNT_IBAN(Level.STATEMENT, Type.TEXT),
+
+	/**
+	 * Booking date (yyyy-MM-dd) from <code>BookgDt/Dt</code> or <code>BookgDt/DtTm</code>.
+	 */
+	BOOKING_DATE(Level.ENTRY, Type.DATE),
+
+	/**
+	 * Value date (yyyy-MM-dd) from <code>ValDt/Dt</code> or <code>ValDt/DtTm</code>.
+	 */
+	VALUE_DATE(Level.ENTRY, Type.DATE),
+
+	/**
+	 * Amount of the entry (<code>Amt</code>). On transaction level this is the
+	 * <code>TxDtls/AmtDtls/TxAmt/Amt</code> if the bank reports one.
+	 */
+	AMOUNT(Level.ENTRY, Type.AMOUNT),
+
+	/**
+	 * Currency of the amount, the <code>Ccy</code> attribute of <code>Amt</code>.
+	 */
+	CURRENCY(Level.ENTRY, Type.TEXT),
+
+	/**
+	 * CRDT or DBIT.
+	 */
+	CDT_DBT_IND(Level.ENTRY, Type.INDICATOR),
+
+	/**
+	 * Status of the entry: BOOK, PDNG or INFO.
+	 */
+	STATUS(Level.ENTRY, Type.TEXT),
+
+	/**
+	 * Unique reference of the entry, as assigned by the account servicer (<code>AcctSvcrRef</code>).
+	 */
+	ACCOUNT_SERVICER_REFERENCE(Level.ENTRY, Type.TEXT),
+
+	/**
+	 * <code>TxDtls/Refs/EndToEndId</code>
+	 */
+	END_TO_END_ID(Level.TRANSACTION, Type.TEXT),
+
+	/**
+	 * Name of the other party: the debtor for a credit entry, the creditor for a debit entry.
+	 */
+	COUNTERPARTY_NAME(Level.TRANSACTION, Type.TEXT),
+
+	/**
+	 * IBAN of the other party: the debtor account for a credit entry, the creditor account for a debit entry.
+	 */
+	COUNTERPARTY_IBAN(Level.TRANSACTION, Type.TEXT),
+
+	/**
+	 * Unstructured remittance information (<code>RmtInf/Ustrd</code>, joined by spaces) or the
+	 * structured creditor reference (<code>RmtInf/Strd/CdtrRefInf/Ref</code>).
+	 */
+	REMITTANCE_INFO(Level.TRANSACTION, Type.TEXT),
+
+	/**
+	 * The structured creditor reference only (<code>RmtInf/Strd/CdtrRefInf/Ref</code>), for
+	 * example an RF creditor reference.
+	 */
+	CREDITOR_REFERENCE(Level.TRANSACTION, Type.TEXT);
+
+	public enum Level {
+		STATEMENT, ENTRY, TRANSACTION
+	}
+
+	/**
+	 * How a value is encoded in compact output formats.
+	 */
+	public enum Type {
+		TEXT, DATE, AMOUNT, INDICATOR
+	}
+
+	private final Level level;
+	private final Type type;
+
+	private EntryField(Level level, Type type) {
+		this.level = level;
+		this.type = type;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * The column name used in exports.
+	 */
+	public String getColumnName() {
+		return name().toLowerCase();
+	}
+
+}
@@ -0,0 +1,29 @@
+package nl.irp.sepa.camt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes flattened statement entries as rows, one row per transaction.
+ *
+ * @see EntryExporter
+ */
+public interface EntryWriter extends Closeable {
+
+	/**
+	 * The columns that are written, in order.
+	 */
+	List<EntryField> getColumns();
+
+	/**
+	 * Write the row of one transaction of an entry.
+	 */
+	void write(StatementEntry entry, int tx) throws IOException;
+
+	/**
+	 * Write any buffered rows and close the underlying stream.
+	 */
+	void close() throws IOException;
+
+}
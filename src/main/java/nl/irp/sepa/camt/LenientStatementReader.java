@@ -0,0 +1,608 @@
+package nl.irp.sepa.camt;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.camt.ReadProblem.Level;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Reads a camt.053 or camt.054 message like {@link StatementReader}, but skips the parts that
+ * can't be read instead of failing on the first one:
+ * <pre>
+ * List&lt;ReadProblem&gt; problems = new LenientStatementReader().read(is, handler);
+ * for(ReadProblem problem : problems)
+ *     log.warn("skipped {}", problem);
+ * </pre>
+ *
+ * The message is split at the byte level, in one pass and without parsing, into the head of
+ * every statement (everything before its first <code>Ntry</code>) and its entries. The parts are
+ * then parsed with the namespace declarations of the root and statement element: the entries in
+ * batches, and one by one only if a batch fails. A part that is not well-formed, or on which the
+ * handler throws a {@link RuntimeException}, is skipped and reported as a {@link ReadProblem}
+ * with its byte offset and length:
+ * <ul>
+ * <li>a bad entry only loses that entry</li>
+ * <li>a balance or summary on which the handler fails only loses that item, the statement goes
+ * on</li>
+ * <li>a bad statement head loses the statement with all its entries, the handler doesn't hear
+ * of it</li>
+ * </ul>
+ * The handler gets the same calls as from the {@link StatementReader} for the parts that could
+ * be read; <code>endStatement</code> is also called for a statement that was cut off by the end
+ * of the message, which is reported as a problem too. Markup is recognized byte by byte, so
+ * the message must be UTF-8 (or ASCII) encoded, as camt messages are.
+ *
+ * A reader can be shared between threads.
+ */
+public class LenientStatementReader {
+
+	private final StatementReader reader;
+
+	public LenientStatementReader() {
+		this(new StatementReader());
+	}
+
+	/**
+	 * Read the parts with the given reader, for example one that only decodes some fields.
+	 */
+	public LenientStatementReader(StatementReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Read a message and report what could be read to the handler. The stream is not closed.
+	 * @return the skipped statements and entries, in the order of the message
+	 * @throws IOException only if the stream can't be read
+	 */
+	public List<ReadProblem> read(InputStream is, StatementHandler handler) throws IOException {
+		Splitter splitter = new Splitter(is, handler);
+		splitter.split();
+		return ImmutableList.copyOf(splitter.problems);
+	}
+
+	/**
+	 * A growing byte array that can be read without copying. Unlike a
+	 * {@link java.io.ByteArrayOutputStream} it isn't synchronized, every byte of the message passes
+	 * through it.
+	 */
+	private static class Buffer {
+		private byte[] bytes;
+		private int count;
+
+		Buffer(int size) {
+			bytes = new byte[size];
+		}
+
+		void write(int b) {
+			if(count==bytes.length)
+				bytes = Arrays.copyOf(bytes, count * 2);
+			bytes[count++] = (byte) b;
+		}
+
+		void write(byte[] b, int off, int length) {
+			if(count + length>bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(count * 2, count + length));
+			System.arraycopy(b, off, bytes, count, length);
+			count += length;
+		}
+
+		void write(byte[] b) {
+			write(b, 0, b.length);
+		}
+
+		void write(Buffer buffer) {
+			write(buffer.bytes, 0, buffer.count);
+		}
+
+		boolean endsWith(byte[] suffix) {
+			if(count<suffix.length)
+				return false;
+			for(int i=0; i<suffix.length; i++)
+				if(bytes[count - suffix.length + i]!=suffix[i])
+					return false;
+			return true;
+		}
+
+		int size() {
+			return count;
+		}
+
+		void reset() {
+			count = 0;
+		}
+
+		void truncate(int size) {
+			count = size;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, count);
+		}
+
+		InputStream open() {
+			return new ByteArrayInputStream(bytes, 0, count);
+		}
+	}
+
+	// the number of entries that is parsed at once
+	private static final int BATCH = 64;
+
+	private static final int OUTSIDE = 0;
+	private static final int HEAD = 1;
+	private static final int ENTRY = 2;
+	private static final int BETWEEN_ENTRIES = 3;
+
+	/**
+	 * The state of reading one message.
+	 */
+	private class Splitter {
+
+		private final InputStream in;
+		private final StatementHandler handler;
+		final List<ReadProblem> problems = Lists.newArrayList();
+
+		private final byte[] chunk = new byte[64 * 1024];
+		private int position;
+		private int limit;
+		private long offset;
+
+		// the markup that was read last
+		private final Buffer token = new Buffer(256);
+		private long tokenStart;
+		// the local name of the tag in the token, and where the qualified name starts
+		private int nameStart;
+		private int localStart;
+		private int nameEnd;
+		private boolean emptyTag;
+		private int terminator;
+
+		private byte[] rootTag;
+		private byte[] rootEndTag;
+
+		// the statement that is being read
+		private int state = OUTSIDE;
+		private byte[] statementTag;
+		private byte[] statementEndTag;
+		private long statementStart;
+		private StatementHeader statement;
+		private ReadProblem statementProblem;
+		private int entries;
+
+		// the head or the batch of entries that is being read, after the start tags they are parsed in
+		private final Buffer head = new Buffer(4096);
+		private final Buffer batch = new Buffer(64 * 1024);
+		private Buffer part;
+		private int prefix;
+
+		// where the entries of the batch start in the batch and in the message, and their numbers
+		private int batched;
+		private final int[] starts = new int[BATCH + 1];
+		private final long[] offsets = new long[BATCH];
+		private final int[] numbers = new int[BATCH];
+		private final Buffer single = new Buffer(4096);
+
+		Splitter(InputStream in, StatementHandler handler) {
+			this.in = in;
+			this.handler = handler;
+		}
+
+		void split() throws IOException {
+			int b;
+			while((b = read())>=0) {
+				if(b!='<') {
+					if(state==HEAD || state==ENTRY)
+						part.write(b);
+					continue;
+				}
+				int kind = readMarkup();
+				if(kind=='<')
+					startTag();
+				else if(kind=='/')
+					endTag();
+				else if(state==HEAD || state==ENTRY)
+					part.write(token);
+			}
+
+			if(state!=OUTSIDE) {
+				if(state==HEAD)
+					head(offset);
+				else if(state==ENTRY)
+					entryProblem("the entry is not closed");
+				else if(statement!=null)
+					flush(); // the problems of the entries come before that of the statement
+				if(statementProblem==null)
+					problems.add(new ReadProblem(Level.STATEMENT, statementStart, offset - statementStart,
+							statement.getId(), 0, "the message ends inside the statement"));
+				endStatement();
+			}
+		}
+
+		private void startTag() {
+			if(rootTag==null) {
+				rootTag = token.toByteArray();
+				rootEndTag = closingTag();
+			} else if(state==OUTSIDE) {
+				if(!emptyTag && isStatement()) {
+					state = HEAD;
+					statementTag = token.toByteArray();
+					statementEndTag = closingTag();
+					statementStart = tokenStart;
+					statement = null;
+					statementProblem = null;
+					entries = 0;
+					startPart();
+				}
+			} else if(isLocalName("Ntry")) {
+				if(state==HEAD)
+					head(tokenStart);
+				else if(state==ENTRY)
+					entryProblem("the entry is not closed");
+				state = ENTRY;
+				entries++;
+				startPart();
+				if(emptyTag)
+					entry();
+			} else if(state==HEAD || state==ENTRY) {
+				part.write(token);
+			}
+		}
+
+		private void endTag() {
+			if(state==ENTRY && isLocalName("Ntry")) {
+				part.write(token);
+				entry();
+			} else if(state!=OUTSIDE && isStatement()) {
+				if(state==HEAD) {
+					part.write(token);
+					head(offset);
+				} else if(state==ENTRY) {
+					entryProblem("the entry is not closed");
+				}
+				endStatement();
+			} else if(state==HEAD || state==ENTRY) {
+				part.write(token);
+			}
+		}
+
+		private void startPart() {
+			if(state==HEAD) {
+				part = head;
+				part.reset();
+				part.write(rootTag);
+			} else {
+				part = batch;
+				if(batched==0) {
+					part.reset();
+					part.write(rootTag);
+					part.write(statementTag);
+					prefix = part.size();
+				}
+				starts[batched] = part.size();
+				offsets[batched] = tokenStart;
+				numbers[batched] = entries;
+			}
+			part.write(token);
+		}
+
+		/**
+		 * Parse the head of the statement, up to the first entry or the end of the statement.
+		 * @param end the offset in the message where the head ends
+		 */
+		private void head(long end) {
+			state = BETWEEN_ENTRIES;
+			HeadHandler head = new HeadHandler();
+			try {
+				if(!this.head.endsWith(statementEndTag))
+					this.head.write(statementEndTag);
+				this.head.write(rootEndTag);
+				reader.read(this.head.open(), head);
+				handler.startStatement(head.statement);
+			} catch(XMLStreamException e) {
+				statementFailed(head.statement, e);
+				return;
+			} catch(RuntimeException e) {
+				statementFailed(head.statement, e);
+				return;
+			}
+
+			// the statement is started, so it gets its entries and end whatever the handler does now
+			statement = head.statement;
+			for(Object item : head.items) {
+				try {
+					if(item instanceof StatementBalance)
+						handler.balance((StatementBalance) item);
+					else
+						handler.transactionsSummary((TransactionsSummary) item);
+				} catch(RuntimeException e) {
+					problems.add(new ReadProblem(Level.HEAD, statementStart, end - statementStart,
+							statement.getId(), 0, reason(e)));
+				}
+			}
+		}
+
+		private void statementFailed(StatementHeader header, Exception e) {
+			statementProblem = new ReadProblem(Level.STATEMENT, statementStart, -1,
+					header==null ? null : header.getId(), 0, reason(e));
+			problems.add(statementProblem);
+			statement = null;
+		}
+
+		private void entry() {
+			state = BETWEEN_ENTRIES;
+			if(statement==null) {
+				batch.truncate(starts[batched]); // the statement is skipped
+				return;
+			}
+			if(++batched==BATCH)
+				flush();
+		}
+
+		private void entryProblem(String reason) {
+			state = BETWEEN_ENTRIES;
+			long start = offsets[batched];
+			int length = batch.size() - starts[batched];
+			batch.truncate(starts[batched]);
+			if(statement!=null) {
+				flush();
+				problems.add(new ReadProblem(Level.ENTRY, start, length, statement.getId(), entries, reason));
+			}
+		}
+
+		/**
+		 * Parse the batch of entries with a single stream reader and report them. Every entry is
+		 * balanced, so the batch is well-formed if all entries are; if it fails the entries are
+		 * parsed one by one to find the broken ones.
+		 */
+		private void flush() {
+			if(batched==0)
+				return;
+			starts[batched] = batch.size();
+			batch.write(statementEndTag);
+			batch.write(rootEndTag);
+			List<StatementEntry> read = Lists.newArrayListWithCapacity(batched);
+			try {
+				reader.readEntries(batch.open(), statement, read);
+			} catch(XMLStreamException e) {
+				read.clear();
+			} catch(RuntimeException e) {
+				read.clear();
+			}
+			if(read.size()!=batched) {
+				read.clear();
+				for(int i=0; i<batched; i++)
+					read.add(readEntry(i));
+			}
+
+			for(int i=0; i<batched; i++) {
+				if(read.get(i)==null)
+					continue;
+				try {
+					handler.entry(read.get(i));
+				} catch(RuntimeException e) {
+					entryProblem(i, reason(e));
+				}
+			}
+			batched = 0;
+			batch.reset();
+		}
+
+		/**
+		 * Parse one entry of the batch on its own.
+		 * @return <code>null</code> if it can't be read
+		 */
+		private StatementEntry readEntry(int i) {
+			single.reset();
+			single.write(batch.bytes, 0, prefix);
+			single.write(batch.bytes, starts[i], starts[i+1] - starts[i]);
+			single.write(statementEndTag);
+			single.write(rootEndTag);
+			List<StatementEntry> read = Lists.newArrayListWithCapacity(1);
+			try {
+				reader.readEntries(single.open(), statement, read);
+				return read.get(0);
+			} catch(XMLStreamException e) {
+				entryProblem(i, reason(e));
+			} catch(RuntimeException e) {
+				entryProblem(i, reason(e));
+			}
+			return null;
+		}
+
+		private void entryProblem(int i, String reason) {
+			problems.add(new ReadProblem(Level.ENTRY, offsets[i], starts[i+1] - starts[i],
+					statement.getId(), numbers[i], reason));
+		}
+
+		private void endStatement() {
+			state = OUTSIDE;
+			if(statement!=null) {
+				flush();
+				try {
+					handler.endStatement(statement);
+				} catch(RuntimeException e) {
+					problems.add(new ReadProblem(Level.STATEMENT, statementStart, offset - statementStart,
+							statement.getId(), 0, reason(e)));
+				}
+			} else if(statementProblem!=null) {
+				statementProblem.setLength(offset - statementStart);
+			}
+		}
+
+		/**
+		 * Read the rest of the markup after a <code>&lt;</code> into {@link #token}.
+		 * @return <code>&lt;</code> for a start tag, / for an end tag, ! or ? for the rest
+		 */
+		private int readMarkup() throws IOException {
+			token.reset();
+			token.write('<');
+			tokenStart = offset - 1;
+			emptyTag = false;
+			int c = read();
+			if(c=='!') {
+				token.write(c);
+				c = read();
+				if(c<0)
+					return '!';
+				token.write(c);
+				if(c=='-')
+					copyUntil("-->");
+				else if(c=='[')
+					copyUntil("]]>");
+				else {
+					terminator = read();
+					copyTag();
+				}
+				return '!';
+			} else if(c=='?') {
+				token.write(c);
+				copyUntil("?>");
+				return '?';
+			} else if(c=='/') {
+				token.write(c);
+				readName(read());
+				copyTag();
+				return '/';
+			} else if(c>=0) {
+				readName(c);
+				emptyTag = copyTag();
+				return '<';
+			} else {
+				return '!';
+			}
+		}
+
+		/**
+		 * Copy the tag name that starts with the given byte; the first byte after the name is
+		 * kept in {@link #terminator}.
+		 */
+		private void readName(int b) throws IOException {
+			nameStart = token.size();
+			localStart = nameStart;
+			while(b>=0 && b!='>' && b!='/' && b!=' ' && b!='\t' && b!='\r' && b!='\n') {
+				token.write(b);
+				if(b==':')
+					localStart = token.size();
+				b = read();
+			}
+			nameEnd = token.size();
+			terminator = b;
+		}
+
+		/**
+		 * Compare the local name of the tag without decoding it, this is done for every tag.
+		 */
+		private boolean isLocalName(String name) {
+			if(nameEnd - localStart!=name.length())
+				return false;
+			for(int i=0; i<name.length(); i++)
+				if(token.bytes[localStart + i]!=name.charAt(i))
+					return false;
+			return true;
+		}
+
+		private boolean isStatement() {
+			return isLocalName("Stmt") || isLocalName("Ntfctn");
+		}
+
+		/**
+		 * The end tag for the start tag in the token.
+		 */
+		private byte[] closingTag() {
+			String name = new String(token.bytes, nameStart, nameEnd - nameStart, Charsets.UTF_8);
+			return ("</" + name + ">").getBytes(Charsets.UTF_8);
+		}
+
+		/**
+		 * Copy the rest of the tag, honouring quoted attribute values.
+		 * @return <code>true</code> for an empty element tag
+		 */
+		private boolean copyTag() throws IOException {
+			int b = terminator;
+			int previous = -1;
+			int quote = -1;
+			while(b>=0) {
+				token.write(b);
+				if(quote>=0) {
+					if(b==quote)
+						quote = -1;
+				} else if(b=='"' || b=='\'') {
+					quote = b;
+				} else if(b=='>') {
+					return previous=='/';
+				}
+				previous = b;
+				b = read();
+			}
+			return false;
+		}
+
+		private void copyUntil(String end) throws IOException {
+			int matched = 0;
+			int b;
+			while(matched<end.length() && (b = read())>=0) {
+				token.write(b);
+				if(b==end.charAt(matched))
+					matched++;
+				else if(b!=end.charAt(0))
+					matched = 0;
+				else if(matched<2 || end.charAt(matched-1)!=b)
+					matched = 1;
+			}
+		}
+
+		private int read() throws IOException {
+			if(position==limit) {
+				limit = in.read(chunk);
+				position = 0;
+				if(limit<=0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			offset++;
+			return chunk[position++] & 0xff;
+		}
+
+	}
+
+	/**
+	 * Collects what the head of a statement holds, so that nothing reaches the handler if the
+	 * head turns out to be broken.
+	 */
+	private static class HeadHandler extends AbstractStatementHandler {
+
+		StatementHeader statement;
+		final List<Object> items = Lists.newArrayList();
+
+		@Override
+		public void startStatement(StatementHeader statement) {
+			this.statement = statement;
+		}
+
+		@Override
+		public void balance(StatementBalance balance) {
+			items.add(balance);
+		}
+
+		@Override
+		public void transactionsSummary(TransactionsSummary summary) {
+			items.add(summary);
+		}
+
+	}
+
+	private static String reason(Exception e) {
+		String message = e.getMessage();
+		return message!=null ? message : e.toString();
+	}
+
+}
@@ -0,0 +1,49 @@
+package nl.irp.sepa.camt;
+
+/**
+ * A problem with the pages of a paginated message, found by {@link StatementPages}.
+ */
+public class PaginationProblem {
+
+	public enum Type {
+		/** A page arrived after a page with a higher number. The page is used. */
+		OUT_OF_ORDER,
+		/** A page with this number was already added. The page is ignored. */
+		DUPLICATE,
+		/** The last page arrived, but a page before it didn't. */
+		MISSING,
+		/** The page number is higher than that of the page marked as last. The page is ignored. */
+		BEYOND_LAST_PAGE
+	}
+
+	private final Type type;
+	private final int pgNb;
+	private final StatementPage page;
+
+	PaginationProblem(Type type, int pgNb, StatementPage page) {
+		this.type = type;
+		this.pgNb = pgNb;
+		this.page = page;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getPgNb() {
+		return pgNb;
+	}
+
+	/**
+	 * The page that caused the problem, <code>null</code> for a missing page.
+	 */
+	public StatementPage getPage() {
+		return page;
+	}
+
+	@Override
+	public String toString() {
+		return type + " page " + pgNb + (page==null ? "" : " (" + page.getFile().getName() + ")");
+	}
+
+}
@@ -0,0 +1,186 @@
+package nl.irp.sepa.camt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Processes the account statements of a camt.053 (or the notifications of a camt.054) message
+ * in parallel. The message is streamed by a {@link StatementReader} on the calling thread; as
+ * soon as the end of a <code>Stmt</code> is read, the statement is handed to the executor, so
+ * parsing the next statements and processing the previous ones overlap.
+ *
+ * <pre>
+ * ParallelStatementReader reader = new ParallelStatementReader(executor);
+ * List&lt;BigDecimal&gt; totals = reader.read(is, new StatementProcessor&lt;BigDecimal&gt;() {
+ *     public BigDecimal process(AccountStatement statement) { ... }
+ * });
+ * </pre>
+ *
+ * The results are returned in document order. At most <code>maxPending</code> statements are
+ * parsed but not yet processed; the parser waits when the workers fall behind, so a large
+ * message is not held in memory at once.
+ *
+ * A reader can be shared between threads.
+ */
+public class ParallelStatementReader {
+
+	private static final int DEFAULT_MAX_PENDING = 64;
+
+	private final StatementReader reader;
+	private final ExecutorService executor;
+	private final int maxPending;
+
+	/**
+	 * A reader that decodes all fields and processes the statements on the executor.
+	 */
+	public ParallelStatementReader(ExecutorService executor) {
+		this(new StatementReader(), executor, DEFAULT_MAX_PENDING);
+	}
+
+	/**
+	 * @param reader reads the statements, for example one that only decodes some fields
+	 * @param maxPending the number of statements that are read ahead of the workers
+	 */
+	public ParallelStatementReader(StatementReader reader, ExecutorService executor, int maxPending) {
+		checkArgument(maxPending>0, "maxPending must be positive: %s", maxPending);
+		this.reader = reader;
+		this.executor = executor;
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * Read the message and process every statement. The stream is not closed.
+	 * @return the results of the processor, in document order
+	 * @throws ExecutionException if processing a statement failed; the message is not read further
+	 *  and the statements that were not processed yet are cancelled
+	 */
+	public <T> List<T> read(InputStream is, StatementProcessor<T> processor)
+			throws XMLStreamException, InterruptedException, ExecutionException {
+		Dispatcher<T> dispatcher = new Dispatcher<T>(processor);
+		try {
+			reader.read(is, dispatcher);
+		} catch (Stop e) {
+			// a statement failed, reported below
+		} catch (XMLStreamException e) {
+			cancel(dispatcher.futures, 0);
+			throw e;
+		} catch (RuntimeException e) {
+			cancel(dispatcher.futures, 0);
+			throw e;
+		}
+		if(dispatcher.failure!=null) {
+			cancel(dispatcher.futures, 0);
+			throw new ExecutionException(dispatcher.failure);
+		}
+
+		List<T> results = Lists.newArrayListWithCapacity(dispatcher.futures.size());
+		for(Future<T> future : dispatcher.futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				cancel(dispatcher.futures, results.size());
+				throw e;
+			} catch (InterruptedException e) {
+				cancel(dispatcher.futures, results.size());
+				throw e;
+			}
+		}
+		return results;
+	}
+
+	private static void cancel(List<? extends Future<?>> futures, int from) {
+		for(Future<?> future : futures.subList(from, futures.size()))
+			future.cancel(false);
+	}
+
+	/**
+	 * Collects the events of a statement and submits it at its end.
+	 */
+	private class Dispatcher<T> implements StatementHandler {
+
+		private final StatementProcessor<T> processor;
+		private final Semaphore pending = new Semaphore(maxPending);
+		final List<Future<T>> futures = Lists.newArrayList();
+		// the first statement that failed
+		volatile Throwable failure;
+		private AccountStatement statement;
+
+		Dispatcher(StatementProcessor<T> processor) {
+			this.processor = processor;
+		}
+
+		public void startStatement(StatementHeader header) {
+			statement = new AccountStatement(header);
+		}
+
+		public void balance(StatementBalance balance) {
+			statement.add(balance);
+		}
+
+		public void transactionsSummary(TransactionsSummary summary) {
+			statement.setSummary(summary);
+		}
+
+		public void entry(StatementEntry entry) {
+			statement.add(entry);
+		}
+
+		public void endStatement(StatementHeader header) {
+			final AccountStatement current = statement;
+			statement = null;
+
+			pending.acquireUninterruptibly();
+			if(failure!=null) {
+				pending.release();
+				throw new Stop();
+			}
+			boolean submitted = false;
+			try {
+				futures.add(executor.submit(new Callable<T>() {
+					public T call() throws Exception {
+						try {
+							return processor.process(current);
+						} catch (Exception e) {
+							failed(e);
+							throw e;
+						} catch (Error e) {
+							failed(e);
+							throw e;
+						} finally {
+							pending.release();
+						}
+					}
+				}));
+				submitted = true;
+			} finally {
+				if(!submitted)
+					pending.release();
+			}
+		}
+
+		private synchronized void failed(Throwable e) {
+			if(failure==null)
+				failure = e;
+		}
+
+	}
+
+	/**
+	 * Stops the parse after a statement failed.
+	 */
+	private static class Stop extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+}
@@ -0,0 +1,451 @@
+package nl.irp.sepa.camt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static nl.irp.sepa.XmlStreams.skipElement;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.irp.sepa.XmlStreams;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Reads a few fields from a camt message without unmarshalling it. The caller names a record
+ * element and the paths of the fields within it, and gets a row for every record:
+ * <pre>
+ * Projection projection = Projection.compile("Stmt",
+ *         "Acct/Id/IBAN", "Bal[Tp=CLBD]/Amt", "Bal[Tp=CLBD]/Amt/@Ccy", "Ntry[RvslInd=true]/Amt");
+ * for(Projection.Row row : projection.read(is))
+ *     dashboard.add(row.get(0), row.get(1), row.getAll(3).size());
+ * </pre>
+ *
+ * Paths are relative to the record, the record is relative to the message element
+ * (<code>BkToCstmrStmt</code>, <code>BkToCstmrDbtCdtNtfctn</code>). A step is an element name,
+ * optionally followed by conditions <code>[path=value]</code> on its descendants; the last step
+ * of a field can be an attribute, <code>@Ccy</code>. The value of an element is its text with
+ * the text of all its descendants, like the string value in XPath without the whitespace
+ * between the tags: the value of <code>Tp</code> in a balance is <code>CLBD</code>. A condition
+ * holds when one of the elements on its path has the value. The record itself can have
+ * conditions as well: <code>Stmt[Acct/Id/IBAN=NL91ABNA0417164300]</code>.
+ *
+ * The paths are compiled into a tree. While the message is streamed, every element that is not
+ * on a path is skipped as a whole without looking at its contents; values below an element with
+ * a condition are held until the end of that element, so the condition may come after the value
+ * in the document. A projection is immutable and can be used by several threads.
+ */
+public class Projection {
+
+	private final List<String> recordPath;
+	private final List<String> paths;
+	private final Node root;
+	private int nodes;
+
+	private Projection(String record, List<String> paths) {
+		this.paths = paths;
+		List<String> steps = split(record);
+		checkArgument(!steps.isEmpty(), "no record element");
+		recordPath = Lists.newArrayList();
+		for(String step : steps.subList(0, steps.size()-1)) {
+			checkArgument(step.indexOf('[')<0 && !step.startsWith("@"), "only the record element itself can have conditions: %s", record);
+			recordPath.add(step);
+		}
+		root = node(null, steps.get(steps.size()-1));
+		for(int field=0; field<paths.size(); field++)
+			compile(field, paths.get(field));
+	}
+
+	/**
+	 * Compile the paths of the fields.
+	 * @param record the path of the record element, for example <code>Stmt</code> or <code>Ntfctn</code>
+	 * @throws IllegalArgumentException if a path can't be parsed
+	 */
+	public static Projection compile(String record, String... paths) {
+		return new Projection(record, ImmutableList.copyOf(paths));
+	}
+
+	/**
+	 * The paths of the fields, by field index.
+	 */
+	public List<String> getPaths() {
+		return paths;
+	}
+
+	/**
+	 * The rows of all records.
+	 */
+	public List<Row> read(InputStream is) throws XMLStreamException {
+		final List<Row> rows = Lists.newArrayList();
+		read(is, new ProjectionHandler() {
+			public void row(Row row) {
+				rows.add(row);
+			}
+		});
+		return rows;
+	}
+
+	/**
+	 * Stream the rows to the handler.
+	 */
+	public void read(InputStream is, ProjectionHandler handler) throws XMLStreamException {
+		XMLStreamReader xml = XmlStreams.createReader(is);
+		try {
+			xml.nextTag(); // Document
+			if(xml.nextTag()==START_ELEMENT) // BkToCstmrStmt
+				records(xml, 0, handler);
+		} finally {
+			xml.close();
+		}
+	}
+
+	/**
+	 * The values of the fields of one record.
+	 */
+	public class Row {
+
+		private final List<String>[] values;
+
+		@SuppressWarnings("unchecked")
+		Row() {
+			values = new List[paths.size()];
+		}
+
+		/**
+		 * The first value of a field, <code>null</code> if the record doesn't have it.
+		 */
+		public String get(int field) {
+			return values[field]==null ? null : values[field].get(0);
+		}
+
+		public String get(String path) {
+			return get(index(path));
+		}
+
+		/**
+		 * All values of a field, in document order.
+		 */
+		public List<String> getAll(int field) {
+			return values[field]==null ? Collections.<String>emptyList() : Collections.unmodifiableList(values[field]);
+		}
+
+		public List<String> getAll(String path) {
+			return getAll(index(path));
+		}
+
+		void add(int field, String value) {
+			if(values[field]==null)
+				values[field] = Lists.newArrayListWithCapacity(2);
+			values[field].add(value);
+		}
+
+		private int index(String path) {
+			int index = paths.indexOf(path);
+			checkArgument(index>=0, "not a path of the projection: %s", path);
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for(int i=0; i<values.length; i++)
+				sb.append(i==0 ? "" : ", ").append(paths.get(i)).append('=').append(values[i]);
+			return sb.toString();
+		}
+
+	}
+
+	/**
+	 * An element on one or more paths.
+	 */
+	private static class Node {
+		final int id;
+		final String key;
+		final String name;
+		// nearest ancestor with conditions, the values below this node are held there
+		final Node holder;
+		final List<Node> children = Lists.newArrayListWithCapacity(2);
+		final List<Capture> texts = Lists.newArrayListWithCapacity(1);
+		final List<Capture> attributes = Lists.newArrayListWithCapacity(1);
+		int conditions;
+
+		Node(int id, String key, String name, Node holder) {
+			this.id = id;
+			this.key = key;
+			this.name = name;
+			this.holder = holder;
+		}
+	}
+
+	/**
+	 * A value to take from an element: a field, or the value a condition compares.
+	 */
+	private static class Capture {
+		final int field;
+		final String attribute;
+		// for a condition: the node with the condition, its index and the expected value
+		final Node condition;
+		final int index;
+		final String expected;
+
+		Capture(int field, String attribute) {
+			this.field = field;
+			this.attribute = attribute;
+			this.condition = null;
+			this.index = -1;
+			this.expected = null;
+		}
+
+		Capture(Node condition, int index, String expected) {
+			this.field = -1;
+			this.attribute = null;
+			this.condition = condition;
+			this.index = index;
+			this.expected = expected;
+		}
+	}
+
+	/**
+	 * The state of an element with conditions while it is read.
+	 */
+	private static class Scope {
+		final boolean[] holds;
+		final List<Integer> fields = Lists.newArrayList();
+		final List<String> values = Lists.newArrayList();
+
+		Scope(int conditions) {
+			holds = new boolean[conditions];
+		}
+
+		boolean holds() {
+			for(boolean h : holds)
+				if(!h)
+					return false;
+			return true;
+		}
+	}
+
+	/**
+	 * The state of reading one record.
+	 */
+	private class Read {
+		final Row row = new Row();
+		final Scope[] scopes = new Scope[nodes];
+		boolean dropped;
+
+		void capture(Capture capture, Node node, String value) {
+			if(capture.condition!=null) {
+				if(capture.expected.equals(value))
+					scopes[capture.condition.id].holds[capture.index] = true;
+			} else {
+				// a value at an element with conditions waits for the end of that element
+				Node holder = node.conditions>0 ? node : node.holder;
+				put(holder, capture.field, value);
+			}
+		}
+
+		void close(Node node) {
+			Scope scope = scopes[node.id];
+			scopes[node.id] = null;
+			if(!scope.holds()) {
+				if(node==root)
+					dropped = true;
+				return;
+			}
+			for(int i=0; i<scope.fields.size(); i++)
+				put(node.holder, scope.fields.get(i), scope.values.get(i));
+		}
+
+		private void put(Node holder, int field, String value) {
+			if(holder==null) {
+				row.add(field, value);
+			} else {
+				Scope scope = scopes[holder.id];
+				scope.fields.add(field);
+				scope.values.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Find the records below the current element.
+	 */
+	private void records(XMLStreamReader xml, int step, ProjectionHandler handler) throws XMLStreamException {
+		String name = step<recordPath.size() ? recordPath.get(step) : root.name;
+		while(xml.nextTag()==START_ELEMENT) {
+			if(!name.equals(xml.getLocalName())) {
+				skipElement(xml);
+			} else if(step<recordPath.size()) {
+				records(xml, step + 1, handler);
+			} else {
+				Read read = new Read();
+				element(read, xml, Collections.singletonList(root), null);
+				if(!read.dropped)
+					handler.row(read.row);
+			}
+		}
+	}
+
+	/**
+	 * Read an element that is on the path of the nodes, the reader is left at its end tag.
+	 * @param outer the text of the enclosing element that is being collected, or <code>null</code>
+	 */
+	private void element(Read read, XMLStreamReader xml, List<Node> matched, StringBuilder outer) throws XMLStreamException {
+		boolean collect = outer!=null;
+		for(Node node : matched) {
+			if(node.conditions>0)
+				read.scopes[node.id] = new Scope(node.conditions);
+			for(Capture capture : node.attributes) {
+				String value = xml.getAttributeValue(null, capture.attribute);
+				if(value!=null)
+					read.capture(capture, node, value);
+			}
+			collect |= !node.texts.isEmpty();
+		}
+
+		StringBuilder text = collect ? new StringBuilder() : null;
+		for(int event = xml.next(); event!=END_ELEMENT; event = xml.next()) {
+			if(event==CHARACTERS || event==CDATA) {
+				if(text!=null && !xml.isWhiteSpace())
+					text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+			} else if(event==START_ELEMENT) {
+				List<Node> next = children(matched, xml.getLocalName());
+				if(!next.isEmpty() || text!=null)
+					element(read, xml, next, text);
+				else
+					skipElement(xml);
+			}
+		}
+
+		String value = text==null ? null : text.toString().trim();
+		for(Node node : matched)
+			for(Capture capture : node.texts)
+				read.capture(capture, node, value);
+		for(Node node : matched)
+			if(node.conditions>0)
+				read.close(node);
+		if(outer!=null)
+			outer.append(value);
+	}
+
+	private static List<Node> children(List<Node> nodes, String name) {
+		List<Node> children = Collections.emptyList();
+		for(Node node : nodes) {
+			for(Node child : node.children) {
+				if(child.name.equals(name)) {
+					if(children.isEmpty())
+						children = Lists.newArrayListWithCapacity(2);
+					children.add(child);
+				}
+			}
+		}
+		return children;
+	}
+
+	private void compile(int field, String path) {
+		List<String> steps = split(path);
+		checkArgument(!steps.isEmpty(), "empty path");
+		Node node = root;
+		for(int i=0; i<steps.size(); i++) {
+			String step = steps.get(i);
+			if(step.startsWith("@")) {
+				checkArgument(i==steps.size()-1, "an attribute must be the last step: %s", path);
+				node.attributes.add(new Capture(field, step.substring(1)));
+				return;
+			}
+			node = child(node, step);
+		}
+		node.texts.add(new Capture(field, null));
+	}
+
+	/**
+	 * The child node of a step, created with the paths of its conditions if it doesn't exist yet.
+	 */
+	private Node child(Node parent, String step) {
+		for(Node child : parent.children)
+			if(child.key.equals(step))
+				return child;
+		Node holder = parent.conditions>0 ? parent : parent.holder;
+		Node child = node(holder, step);
+		parent.children.add(child);
+		return child;
+	}
+
+	private Node node(Node holder, String step) {
+		int bracket = step.indexOf('[');
+		String name = bracket<0 ? step : step.substring(0, bracket);
+		checkArgument(isName(name), "not an element name: %s", step);
+
+		List<String> conditions = Lists.newArrayList();
+		while(bracket>=0) {
+			int end = step.indexOf(']', bracket);
+			checkArgument(end>0, "missing ]: %s", step);
+			conditions.add(step.substring(bracket + 1, end));
+			bracket = end + 1<step.length() ? step.indexOf('[', end) : -1;
+			checkArgument(bracket<0 ? end==step.length()-1 : bracket==end+1, "unexpected text after ]: %s", step);
+		}
+
+		Node node = new Node(nodes++, step, name, holder);
+		node.conditions = conditions.size();
+		for(int i=0; i<conditions.size(); i++) {
+			String condition = conditions.get(i);
+			int is = condition.indexOf('=');
+			checkArgument(is>0, "condition without =: %s", step);
+			Node target = node;
+			for(String element : split(condition.substring(0, is).trim())) {
+				checkArgument(isName(element), "a condition can only have element names: %s", step);
+				target = child(target, element);
+			}
+			target.texts.add(new Capture(node, i, unquote(condition.substring(is + 1).trim())));
+		}
+		return node;
+	}
+
+	/**
+	 * The steps of a path, a / within a condition doesn't split.
+	 */
+	private static List<String> split(String path) {
+		List<String> steps = Lists.newArrayList();
+		int depth = 0;
+		int start = 0;
+		for(int i=0; i<=path.length(); i++) {
+			char c = i<path.length() ? path.charAt(i) : '/';
+			if(c=='[')
+				depth++;
+			else if(c==']')
+				depth--;
+			else if(c=='/' && depth==0) {
+				String step = path.substring(start, i).trim();
+				checkArgument(!step.isEmpty(), "empty step in %s", path);
+				steps.add(step);
+				start = i + 1;
+			}
+		}
+		checkArgument(depth==0, "unbalanced [ ] in %s", path);
+		return steps;
+	}
+
+	private static boolean isName(String name) {
+		if(name.isEmpty())
+			return false;
+		for(int i=0; i<name.length(); i++)
+			if(!Character.isLetterOrDigit(name.charAt(i)) && name.charAt(i)!='_' && name.charAt(i)!='-')
+				return false;
+		return true;
+	}
+
+	private static String unquote(String value) {
+		if(value.length()>=2 && (value.charAt(0)=='\'' || value.charAt(0)=='"') && value.charAt(value.length()-1)==value.charAt(0))
+			return value.substring(1, value.length()-1);
+		return value;
+	}
+
+}
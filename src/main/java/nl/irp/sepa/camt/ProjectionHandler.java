@@ -0,0 +1,10 @@
+package nl.irp.sepa.camt;
+
+/**
+ * Receives the rows of a {@link Projection}, one for every record element, in document order.
+ */
+public interface ProjectionHandler {
+
+	void row(Projection.Row row);
+
+}
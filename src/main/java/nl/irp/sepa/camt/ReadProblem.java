@@ -0,0 +1,89 @@
+package nl.irp.sepa.camt;
+
+/**
+ * An element of a camt message that {@link LenientStatementReader} skipped, with its position
+ * in the message so that it can be cut out and processed again.
+ */
+public class ReadProblem {
+
+	public enum Level {
+		/** The statement (or notification) could not be read, none of its entries were reported. */
+		STATEMENT,
+		/**
+		 * The handler failed on a balance or transactions summary of the statement; the statement
+		 * and its entries were reported. The offset and length are those of the statement head.
+		 */
+		HEAD,
+		/** One entry could not be read or the handler failed on it; the other entries were reported. */
+		ENTRY
+	}
+
+	private final Level level;
+	private final long offset;
+	private long length;
+	private final String statementId;
+	private final int entry;
+	private final String reason;
+
+	ReadProblem(Level level, long offset, long length, String statementId, int entry, String reason) {
+		this.level = level;
+		this.offset = offset;
+		this.length = length;
+		this.statementId = statementId;
+		this.entry = entry;
+		this.reason = reason;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * The byte offset of the start tag of the element in the message.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * The length of the element in bytes, up to the end of the message if it isn't closed.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	void setLength(long length) {
+		this.length = length;
+	}
+
+	/**
+	 * <code>Stmt/Id</code> of the statement, <code>null</code> if it couldn't be read.
+	 */
+	public String getStatementId() {
+		return statementId;
+	}
+
+	/**
+	 * The number of the entry within its statement, starting at 1; 0 for a statement.
+	 */
+	public int getEntry() {
+		return entry;
+	}
+
+	/**
+	 * Why the element was skipped: the message of the parse error or of the exception of the handler.
+	 */
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * One line: level, offset, length, statement, entry and reason, separated by tabs.
+	 */
+	@Override
+	public String toString() {
+		return level + "\t" + offset + "\t" + length + "\t" + (statementId==null ? "" : statementId)
+				+ "\t" + entry + "\t" + reason.replace('\n', ' ').replace('\t', ' ');
+	}
+
+}
@@ -0,0 +1,589 @@
+package nl.irp.sepa.camt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+/**
+ * A local archive of statement entries that answers historical questions without reading the
+ * camt files again: all entries of an account between two booking dates, or the entries with an
+ * EndToEndId.
+ * <pre>
+ * StatementArchive archive = StatementArchive.open(new File("archive"));
+ * archive.add(camt053);
+ * for(ArchivedEntry entry : archive.find("NL91ABNA0417164300", from, to)) ...
+ * </pre>
+ *
+ * A message is read once with a {@link StatementReader} and appended as one row per
+ * transaction, with all {@link EntryField}s, to segment files of at most 256 MB:
+ * <pre>
+ * segment = magic version count (field name)* record*
+ * record  = length (varint(length+1) utf8)*     one value per field, 0 for null
+ * </pre>
+ * For every row a fixed size entry is appended to <code>index.dat</code>: the account number
+ * (the line of the IBAN in <code>accounts.txt</code>), the booking date, the position of the
+ * record and a 64-bit hash of the EndToEndId. Opening the archive reads only the index; it
+ * keeps a list per account sorted on (booking date, row) for range queries and a hash table
+ * with chains for the EndToEndIds. Records are read from memory mapped segments.
+ *
+ * The segment is always written before the index, so a crash can only leave records without an
+ * index entry; they are truncated when the archive is opened. A message is added completely or
+ * not at all when it can't be parsed. The archive doesn't check whether a message was added
+ * before. It is thread-safe.
+ */
+public class StatementArchive implements Closeable {
+
+	private static final byte[] MAGIC = "SEPAARC".getBytes(Charsets.US_ASCII);
+	private static final int VERSION = 1;
+	private static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+	// account, booking date, segment and offset, hash of the EndToEndId
+	private static final int INDEX_ENTRY = 4 + 4 + 8 + 8;
+	private static final int OFFSET_BITS = 40;
+	private static final long NO_HASH = 0;
+
+	private final File directory;
+	private final long segmentSize;
+	private final StatementReader reader = new StatementReader();
+	private final List<Segment> segments = Lists.newArrayList();
+	private final ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+	private DataOutputStream index;
+	private Writer accountsFile;
+
+	private final List<String> accounts = Lists.newArrayList();
+	private final Map<String, Integer> accountIds = Maps.newHashMap();
+	// per account: booking date << 32 | row, sorted when it is queried
+	private long[][] byAccount = new long[16][];
+	private int[] byAccountSize = new int[16];
+	private boolean[] unsorted = new boolean[16];
+
+	// per row: segment << OFFSET_BITS | offset, and the chains of the EndToEndId hash table
+	private long[] pointers = new long[1024];
+	private long[] endToEndHashes = new long[1024];
+	private int[] next = new int[1024];
+	private int[] heads = newHeads(1024);
+	private int rows;
+
+	/**
+	 * A segment file: its fields, and while it is the last segment a stream to append records.
+	 */
+	private static class Segment {
+		final RandomAccessFile file;
+		final EntryField[] fields;
+		final long headerLength;
+		long size;
+		DataOutputStream out;
+		MappedByteBuffer map;
+
+		Segment(RandomAccessFile file, EntryField[] fields, long headerLength) throws IOException {
+			this.file = file;
+			this.fields = fields;
+			this.headerLength = headerLength;
+			this.size = file.length();
+		}
+
+		void append() throws IOException {
+			FileChannel channel = file.getChannel();
+			channel.position(size);
+			out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+		}
+
+		ByteBuffer map() throws IOException {
+			if(map==null || map.capacity()<size)
+				map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return map.duplicate();
+		}
+	}
+
+	/**
+	 * Open or create the archive in a directory, with segments of 256 MB.
+	 */
+	public static StatementArchive open(File directory) throws IOException {
+		return new StatementArchive(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param segmentSize the size at which a new segment is started
+	 */
+	public StatementArchive(File directory, long segmentSize) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("can't create " + directory);
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		boolean opened = false;
+		try {
+			open();
+			opened = true;
+		} finally {
+			if(!opened)
+				close();
+		}
+	}
+
+	/**
+	 * Archive the entries of a camt.053 or camt.054 message.
+	 * @return the number of rows that were added
+	 */
+	public long add(InputStream is) throws XMLStreamException, IOException {
+		final List<String[]> rows = Lists.newArrayList();
+		reader.read(is, new AbstractStatementHandler() {
+			@Override
+			public void entry(StatementEntry entry) {
+				int transactions = Math.max(1, entry.getTransactionCount());
+				for(int tx=0; tx<transactions; tx++) {
+					String[] values = new String[StatementEntry.FIELDS];
+					for(EntryField field : EntryField.values())
+						values[field.ordinal()] = entry.get(field, tx);
+					rows.add(values);
+				}
+			}
+		});
+
+		synchronized(this) {
+			try {
+				for(String[] values : rows)
+					append(values);
+			} finally {
+				flush();
+			}
+		}
+		return rows.size();
+	}
+
+	/**
+	 * The rows of an account with a booking date from <code>from</code> up to and including
+	 * <code>to</code>, by booking date and then in the order they were added.
+	 */
+	public synchronized List<ArchivedEntry> find(String account, LocalDate from, LocalDate to) throws IOException {
+		Integer id = accountIds.get(account);
+		if(id==null)
+			return Collections.emptyList();
+		long[] keys = byAccount[id];
+		int size = byAccountSize[id];
+		if(unsorted[id]) {
+			Arrays.sort(keys, 0, size);
+			unsorted[id] = false;
+		}
+
+		long low = (long) date(from) << 32;
+		long high = (long) date(to) << 32 | 0xffffffffL;
+		List<ArchivedEntry> result = Lists.newArrayList();
+		for(int i = lowerBound(keys, size, low); i<size && keys[i]<=high; i++)
+			result.add(read((int) keys[i]));
+		return result;
+	}
+
+	/**
+	 * The rows with an EndToEndId, in the order they were added.
+	 */
+	public synchronized List<ArchivedEntry> findByEndToEndId(String endToEndId) throws IOException {
+		long hash = hash(endToEndId);
+		List<ArchivedEntry> result = Lists.newArrayList();
+		for(int row = heads[bucket(hash)]; row>=0; row = next[row]) {
+			if(endToEndHashes[row]!=hash)
+				continue;
+			ArchivedEntry entry = read(row);
+			if(endToEndId.equals(entry.get(EntryField.END_TO_END_ID)))
+				result.add(entry);
+		}
+		// the chains start with the newest row
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * The accounts in the archive, in the order they were first added.
+	 */
+	public synchronized List<String> getAccounts() {
+		return Collections.unmodifiableList(Lists.newArrayList(accounts));
+	}
+
+	/**
+	 * Number of rows in the archive.
+	 */
+	public synchronized int size() {
+		return rows;
+	}
+
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			Closeables.closeQuietly(index);
+			Closeables.closeQuietly(accountsFile);
+			for(Segment segment : segments)
+				Closeables.closeQuietly(segment.file);
+		}
+	}
+
+	private void append(String[] values) throws IOException {
+		record.reset();
+		for(EntryField field : EntryField.values()) {
+			String value = values[field.ordinal()];
+			if(value==null) {
+				record.write(0);
+			} else {
+				byte[] bytes = value.getBytes(Charsets.UTF_8);
+				Varints.write(record, bytes.length + 1);
+				record.write(bytes);
+			}
+		}
+
+		Segment segment = segments.get(segments.size()-1);
+		if(segment.size>segment.headerLength && segment.size + 4 + record.size()>segmentSize)
+			segment = createSegment();
+		long pointer = (long) (segments.size()-1) << OFFSET_BITS | segment.size;
+		segment.out.writeInt(record.size());
+		record.writeTo(segment.out);
+		segment.size += 4 + record.size();
+
+		String iban = values[EntryField.ACCOUNT_IBAN.ordinal()];
+		int account = account(iban==null ? "" : iban);
+		int date = date(values[EntryField.BOOKING_DATE.ordinal()]);
+		long hash = hash(values[EntryField.END_TO_END_ID.ordinal()]);
+		index.writeInt(account);
+		index.writeInt(date);
+		index.writeLong(pointer);
+		index.writeLong(hash);
+		index(account, date, pointer, hash);
+	}
+
+	/**
+	 * Write the buffered records, the new accounts and then the index entries.
+	 */
+	private void flush() throws IOException {
+		for(Segment segment : segments)
+			if(segment.out!=null)
+				segment.out.flush();
+		if(accountsFile!=null)
+			accountsFile.flush();
+		if(index!=null)
+			index.flush();
+	}
+
+	private int account(String iban) throws IOException {
+		Integer id = accountIds.get(iban);
+		if(id==null) {
+			id = accounts.size();
+			accounts.add(iban);
+			accountIds.put(iban, id);
+			accountsFile.write(iban);
+			accountsFile.write('\n');
+		}
+		return id;
+	}
+
+	private void index(int account, int date, long pointer, long hash) {
+		if(rows==pointers.length) {
+			pointers = Arrays.copyOf(pointers, rows*2);
+			endToEndHashes = Arrays.copyOf(endToEndHashes, rows*2);
+			next = Arrays.copyOf(next, rows*2);
+		}
+		int row = rows++;
+		pointers[row] = pointer;
+		endToEndHashes[row] = hash;
+		next[row] = -1;
+		if(hash!=NO_HASH) {
+			if(rows>heads.length)
+				rehash(heads.length*2);
+			int bucket = bucket(hash);
+			next[row] = heads[bucket];
+			heads[bucket] = row;
+		}
+
+		if(account>=byAccount.length) {
+			byAccount = Arrays.copyOf(byAccount, account*2);
+			byAccountSize = Arrays.copyOf(byAccountSize, account*2);
+			unsorted = Arrays.copyOf(unsorted, account*2);
+		}
+		long[] keys = byAccount[account];
+		int size = byAccountSize[account];
+		if(keys==null)
+			keys = byAccount[account] = new long[16];
+		else if(size==keys.length)
+			keys = byAccount[account] = Arrays.copyOf(keys, size*2);
+		long key = (long) date << 32 | row;
+		if(size>0 && keys[size-1]>key)
+			unsorted[account] = true;
+		keys[size] = key;
+		byAccountSize[account] = size + 1;
+	}
+
+	private void rehash(int capacity) {
+		heads = newHeads(capacity);
+		for(int row=0; row<rows; row++) {
+			next[row] = -1;
+			if(endToEndHashes[row]!=NO_HASH) {
+				int bucket = bucket(endToEndHashes[row]);
+				next[row] = heads[bucket];
+				heads[bucket] = row;
+			}
+		}
+	}
+
+	private ArchivedEntry read(int row) throws IOException {
+		Segment segment = segments.get((int) (pointers[row] >>> OFFSET_BITS));
+		ByteBuffer buffer = segment.map();
+		buffer.position((int) (pointers[row] & ((1L << OFFSET_BITS) - 1)) + 4);
+		String[] values = new String[StatementEntry.FIELDS];
+		for(EntryField field : segment.fields) {
+			int length = (int) readVarint(buffer) - 1;
+			if(length<0)
+				continue;
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			// fields of a newer version of the archive are skipped
+			if(field!=null)
+				values[field.ordinal()] = new String(bytes, Charsets.UTF_8);
+		}
+		return new ArchivedEntry(values);
+	}
+
+	private void open() throws IOException {
+		for(int i=0; segmentFile(i).exists(); i++)
+			segments.add(openSegment(segmentFile(i)));
+
+		File accountsPath = new File(directory, "accounts.txt");
+		if(accountsPath.exists()) {
+			BufferedReader lines = new BufferedReader(new InputStreamReader(new FileInputStream(accountsPath), Charsets.UTF_8));
+			try {
+				String line;
+				while((line = lines.readLine())!=null) {
+					accountIds.put(line, accounts.size());
+					accounts.add(line);
+				}
+			} finally {
+				lines.close();
+			}
+		}
+
+		// the index entries up to the first one that points outside the segments
+		File indexPath = new File(directory, "index.dat");
+		int entries = (int) (indexPath.length() / INDEX_ENTRY);
+		int[] accountNumbers = new int[entries];
+		int[] dates = new int[entries];
+		long[] recordPointers = new long[entries];
+		long[] hashes = new long[entries];
+		int valid = 0;
+		if(entries>0) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexPath), 64 * 1024));
+			try {
+				for(; valid<entries; valid++) {
+					accountNumbers[valid] = in.readInt();
+					dates[valid] = in.readInt();
+					recordPointers[valid] = in.readLong();
+					hashes[valid] = in.readLong();
+					if(accountNumbers[valid]>=accounts.size() || !isInSegment(recordPointers[valid]))
+						break;
+				}
+			} finally {
+				in.close();
+			}
+		}
+		// records are written in order, only the last ones can be incomplete
+		long end = -1;
+		while(valid>0 && (end = recordEnd(recordPointers[valid-1]))<0)
+			valid--;
+		for(int i=0; i<valid; i++)
+			index(accountNumbers[i], dates[i], recordPointers[i], hashes[i]);
+
+		RandomAccessFile indexFile = new RandomAccessFile(indexPath, "rw");
+		try {
+			indexFile.setLength((long) valid * INDEX_ENTRY);
+		} finally {
+			indexFile.close();
+		}
+		truncateSegments(valid==0 ? -1 : (int) (pointers[valid-1] >>> OFFSET_BITS), end);
+
+		if(segments.isEmpty())
+			createSegment();
+		else
+			segments.get(segments.size()-1).append();
+		index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath, true), 64 * 1024));
+		accountsFile = new OutputStreamWriter(new FileOutputStream(accountsPath, true), Charsets.UTF_8);
+	}
+
+	private boolean isInSegment(long pointer) {
+		int index = (int) (pointer >>> OFFSET_BITS);
+		long offset = pointer & ((1L << OFFSET_BITS) - 1);
+		return index<segments.size() && offset>=segments.get(index).headerLength && offset + 4<=segments.get(index).size;
+	}
+
+	/**
+	 * Where the record ends, or -1 if it isn't complete.
+	 */
+	private long recordEnd(long pointer) throws IOException {
+		if(!isInSegment(pointer))
+			return -1;
+		Segment segment = segments.get((int) (pointer >>> OFFSET_BITS));
+		long offset = pointer & ((1L << OFFSET_BITS) - 1);
+		segment.file.seek(offset);
+		long end = offset + 4 + segment.file.readInt();
+		return end<=segment.size ? end : -1;
+	}
+
+	/**
+	 * Drop everything after the last indexed record.
+	 */
+	private void truncateSegments(int last, long end) throws IOException {
+		for(int i=segments.size()-1; i>Math.max(last, 0); i--) {
+			segments.remove(i).file.close();
+			if(!segmentFile(i).delete())
+				throw new IOException("can't delete " + segmentFile(i));
+		}
+		if(!segments.isEmpty()) {
+			Segment segment = segments.get(segments.size()-1);
+			segment.size = last<0 ? segment.headerLength : end;
+			segment.file.setLength(segment.size);
+		}
+	}
+
+	private Segment openSegment(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try {
+			file.seek(0);
+			byte[] magic = new byte[MAGIC.length];
+			file.readFully(magic);
+			if(!Arrays.equals(magic, MAGIC) || file.read()!=VERSION)
+				throw new IOException(path + " is not a segment of a statement archive");
+			DataInputStream in = new DataInputStream(Channels.newInputStream(file.getChannel()));
+			EntryField[] fields = new EntryField[Varints.readInt(in)];
+			for(int i=0; i<fields.length; i++)
+				fields[i] = field(in.readUTF());
+			return new Segment(file, fields, file.getFilePointer());
+		} catch (EOFException e) {
+			file.close();
+			throw new IOException(path + " is not a segment of a statement archive", e);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	private Segment createSegment() throws IOException {
+		if(!segments.isEmpty()) {
+			Segment last = segments.get(segments.size()-1);
+			last.out.flush();
+			last.out = null;
+		}
+		File path = segmentFile(segments.size());
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		file.setLength(0);
+		file.write(MAGIC);
+		file.write(VERSION);
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(header);
+		Varints.write(out, EntryField.values().length);
+		for(EntryField field : EntryField.values())
+			out.writeUTF(field.name());
+		file.write(header.toByteArray());
+
+		Segment segment = new Segment(file, EntryField.values(), file.getFilePointer());
+		segment.append();
+		segments.add(segment);
+		return segment;
+	}
+
+	private File segmentFile(int index) {
+		return new File(directory, String.format("segment-%05d.dat", index));
+	}
+
+	private static EntryField field(String name) {
+		try {
+			return EntryField.valueOf(name);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A yyyy-MM-dd date as yyyymmdd, 0 for <code>null</code>.
+	 */
+	private static int date(String date) {
+		if(date==null || date.length()<10)
+			return 0;
+		return Integer.parseInt(date.substring(0, 4)) * 10000
+				+ Integer.parseInt(date.substring(5, 7)) * 100
+				+ Integer.parseInt(date.substring(8, 10));
+	}
+
+	private static int date(LocalDate date) {
+		return date.getYear() * 10000 + date.getMonthOfYear() * 100 + date.getDayOfMonth();
+	}
+
+	private static long readVarint(ByteBuffer buffer) {
+		long value = 0;
+		for(int shift = 0; ; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80)==0)
+				return value;
+		}
+	}
+
+	private static int lowerBound(long[] keys, int size, long key) {
+		int low = 0;
+		int high = size;
+		while(low<high) {
+			int middle = (low + high) >>> 1;
+			if(keys[middle]<key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * FNV-1a of the EndToEndId, {@link #NO_HASH} for <code>null</code>.
+	 */
+	private static long hash(String endToEndId) {
+		if(endToEndId==null)
+			return NO_HASH;
+		long h = 0xcbf29ce484222325L;
+		for(int i=0; i<endToEndId.length(); i++)
+			h = (h ^ endToEndId.charAt(i)) * 0x100000001b3L;
+		return h==NO_HASH ? 1 : h;
+	}
+
+	private int bucket(long hash) {
+		return (int) (hash ^ (hash >>> 32)) & (heads.length - 1);
+	}
+
+	private static int[] newHeads(int capacity) {
+		int[] heads = new int[capacity];
+		Arrays.fill(heads, -1);
+		return heads;
+	}
+
+}
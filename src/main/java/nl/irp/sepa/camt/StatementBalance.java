@@ -0,0 +1,67 @@
+package nl.irp.sepa.camt;
+
+import nl.irp.sepa.Amounts;
+
+/**
+ * A balance (<code>Bal</code>) of a streamed account statement.
+ */
+public class StatementBalance {
+
+	private final StatementHeader statement;
+	String type;
+	String amount;
+	String currency;
+	String cdtDbtInd;
+	String date;
+
+	StatementBalance(StatementHeader statement) {
+		this.statement = statement;
+	}
+
+	public StatementHeader getStatement() {
+		return statement;
+	}
+
+	/**
+	 * The balance type code, for example:
+	 * <dl>
+	 * <dt>OPBD</dt><dd>Opening booked balance</dd>
+	 * <dt>PRCD</dt><dd>Previously closed booked balance</dd>
+	 * <dt>CLBD</dt><dd>Closing booked balance</dd>
+	 * <dt>CLAV</dt><dd>Closing available balance</dd>
+	 * </dl>
+	 */
+	public String getType() {
+		return type;
+	}
+
+	public String getAmount() {
+		return amount;
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * CRDT for a positive balance, DBIT for a negative balance.
+	 */
+	public String getCdtDbtInd() {
+		return cdtDbtInd;
+	}
+
+	/**
+	 * The date of the balance (yyyy-MM-dd).
+	 */
+	public String getDate() {
+		return date;
+	}
+
+	/**
+	 * The balance in cents, negative for a debit balance.
+	 */
+	public long getSignedAmount() {
+		return Amounts.signed(Amounts.toCents(amount), cdtDbtInd);
+	}
+
+}
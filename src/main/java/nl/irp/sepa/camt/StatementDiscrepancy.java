@@ -0,0 +1,96 @@
+package nl.irp.sepa.camt;
+
+import nl.irp.sepa.Amounts;
+
+/**
+ * An inconsistency found by the {@link StatementVerifier} in an account statement.
+ */
+public class StatementDiscrepancy {
+
+	public enum Type {
+		/** Opening balance plus the booked entries is not the closing balance. */
+		BALANCE,
+		/** The opening balance is not the closing balance of the previous statement of the account. */
+		BALANCE_CONTINUITY,
+		/** <code>TxsSummry/TtlNtries/NbOfNtries</code> doesn't match the entries. */
+		TOTAL_COUNT,
+		/** <code>TxsSummry/TtlNtries/Sum</code> doesn't match the entries. */
+		TOTAL_SUM,
+		/** <code>TxsSummry/TtlNtries/TtlNetNtryAmt</code> doesn't match the entries, as credit minus debit. */
+		TOTAL_NET,
+		CREDIT_COUNT,
+		CREDIT_SUM,
+		DEBIT_COUNT,
+		DEBIT_SUM,
+		/** <code>ElctrncSeqNb</code> is not one more than that of the previous statement of the account. */
+		SEQUENCE,
+		/**
+		 * An amount or count of the statement can't be read, for example an amount with more than
+		 * two decimals; see {@link StatementDiscrepancy#getValue()}. The checks that need it are skipped.
+		 */
+		UNREADABLE
+	}
+
+	private final StatementHeader statement;
+	private final Type type;
+	private final long expected;
+	private final long actual;
+	private final String value;
+
+	StatementDiscrepancy(StatementHeader statement, Type type, long expected, long actual) {
+		this.statement = statement;
+		this.type = type;
+		this.expected = expected;
+		this.actual = actual;
+		this.value = null;
+	}
+
+	StatementDiscrepancy(StatementHeader statement, String value) {
+		this.statement = statement;
+		this.type = Type.UNREADABLE;
+		this.expected = 0;
+		this.actual = 0;
+		this.value = value;
+	}
+
+	public StatementHeader getStatement() {
+		return statement;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * The value computed from the entries or previous statement: cents, a count, or a sequence number.
+	 */
+	public long getExpected() {
+		return expected;
+	}
+
+	/**
+	 * The value as reported in the statement.
+	 */
+	public long getActual() {
+		return actual;
+	}
+
+	/**
+	 * The value that can't be read, only for {@link Type#UNREADABLE}.
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		if(type==Type.UNREADABLE)
+			return statement + ": " + type + " '" + value + "'";
+		boolean amount = type!=Type.TOTAL_COUNT && type!=Type.CREDIT_COUNT && type!=Type.DEBIT_COUNT
+				&& type!=Type.SEQUENCE;
+		return statement + ": " + type + " expected "
+				+ (amount ? Amounts.format(expected) : String.valueOf(expected))
+				+ " but was " + (amount ? Amounts.format(actual) : String.valueOf(actual));
+	}
+
+}
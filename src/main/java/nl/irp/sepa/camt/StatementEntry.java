@@ -0,0 +1,105 @@
+package nl.irp.sepa.camt;
+
+import java.util.Collections;
+import java.util.List;
+
+import nl.irp.sepa.Amounts;
+
+/**
+ * A flattened camt.053 entry (<code>Ntry</code>) with its transaction details.
+ *
+ * Only the fields that the {@link StatementReader} was asked for are filled, other fields
+ * return <code>null</code>.
+ */
+public class StatementEntry {
+
+	static final int FIELDS = EntryField.values().length;
+
+	private final StatementHeader statement;
+	private final String[] values;
+	private final List<String[]> transactions;
+
+	StatementEntry(StatementHeader statement, String[] values, List<String[]> transactions) {
+		this.statement = statement;
+		this.values = values;
+		this.transactions = transactions;
+	}
+
+	/**
+	 * The statement this entry is reported in.
+	 */
+	public StatementHeader getStatement() {
+		return statement;
+	}
+
+	/**
+	 * Returns an entry level value. For transaction level fields the value of the first
+	 * transaction is returned.
+	 */
+	public String get(EntryField field) {
+		if(field.getLevel()==EntryField.Level.ENTRY)
+			return values[field.ordinal()];
+		return get(field, 0);
+	}
+
+	/**
+	 * Returns the value of a field for a transaction of this entry.
+	 * The {@link EntryField#AMOUNT} of a transaction is the reported transaction amount, or
+	 * the entry amount if the entry has exactly one transaction.
+	 * @param tx index of the transaction, <code>0</code> is allowed for entries without transaction details
+	 */
+	public String get(EntryField field, int tx) {
+		switch(field.getLevel()) {
+		case STATEMENT:
+			return statement.getAccount();
+		case ENTRY:
+			if(field==EntryField.AMOUNT || field==EntryField.CURRENCY) {
+				String[] transaction = transaction(tx);
+				if(transaction!=null && transaction[EntryField.AMOUNT.ordinal()]!=null)
+					return transaction[field.ordinal()];
+				if(transactions.size()>1)
+					return null;
+			}
+			return values[field.ordinal()];
+		default:
+			String[] transaction = transaction(tx);
+			return transaction==null ? null : transaction[field.ordinal()];
+		}
+	}
+
+	/**
+	 * Number of transaction details (<code>TxDtls</code>) of this entry.
+	 */
+	public int getTransactionCount() {
+		return transactions.size();
+	}
+
+	/**
+	 * Amount of the entry in cents, always positive.
+	 */
+	public long getAmount() {
+		return Amounts.toCents(values[EntryField.AMOUNT.ordinal()]);
+	}
+
+	/**
+	 * Amount of the entry in cents, negative for debit entries.
+	 */
+	public long getSignedAmount() {
+		return Amounts.signed(getAmount(), values[EntryField.CDT_DBT_IND.ordinal()]);
+	}
+
+	public boolean isCredit() {
+		return "CRDT".equals(values[EntryField.CDT_DBT_IND.ordinal()]);
+	}
+
+	private String[] transaction(int tx) {
+		if(tx==0 && transactions.isEmpty())
+			return null;
+		return transactions.get(tx);
+	}
+
+	static List<String[]> noTransactions() {
+		return Collections.emptyList();
+	}
+
+}
@@ -0,0 +1,28 @@
+package nl.irp.sepa.camt;
+
+/**
+ * Receives the account statements and entries of a camt.053 message while it is being
+ * streamed by the {@link StatementReader}, in document order.
+ */
+public interface StatementHandler {
+
+	/**
+	 * Called when the header of an account statement has been read, before its balances and entries.
+	 */
+	void startStatement(StatementHeader statement);
+
+	/**
+	 * Called for every balance (<code>Bal</code>) of the statement.
+	 */
+	void balance(StatementBalance balance);
+
+	/**
+	 * Called for the transactions summary (<code>TxsSummry</code>), if the statement has one.
+	 */
+	void transactionsSummary(TransactionsSummary summary);
+
+	void entry(StatementEntry entry);
+
+	void endStatement(StatementHeader statement);
+
+}
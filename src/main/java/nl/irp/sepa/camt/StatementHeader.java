@@ -0,0 +1,92 @@
+package nl.irp.sepa.camt;
+
+/**
+ * The identifying elements of a streamed camt.053 account statement (<code>Stmt</code>) or
+ * camt.054 notification (<code>Ntfctn</code>), everything that precedes the balances and entries.
+ */
+public class StatementHeader {
+
+	private final boolean notification;
+	String id;
+	String elctrncSeqNb;
+	String lglSeqNb;
+	String creDtTm;
+	String frDtTm;
+	String toDtTm;
+	String accountIban;
+	String accountOther;
+	String accountCurrency;
+
+	StatementHeader(boolean notification) {
+		this.notification = notification;
+	}
+
+	/**
+	 * <code>true</code> for a camt.054 debit/credit notification. Notifications report entries
+	 * but no balances, and are numbered apart from the statements of the account.
+	 */
+	public boolean isNotification() {
+		return notification;
+	}
+
+	/**
+	 * Unique identification, as assigned by the account servicer, to unambiguously identify the account
+	 * statement.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Sequential number of the statement, as assigned by the account servicer.
+	 */
+	public String getElctrncSeqNb() {
+		return elctrncSeqNb;
+	}
+
+	/**
+	 * Legal sequential number of the statement, as assigned by the account servicer.
+	 */
+	public String getLglSeqNb() {
+		return lglSeqNb;
+	}
+
+	/**
+	 * Date and time at which the statement was created, as reported.
+	 */
+	public String getCreDtTm() {
+		return creDtTm;
+	}
+
+	public String getFrDtTm() {
+		return frDtTm;
+	}
+
+	public String getToDtTm() {
+		return toDtTm;
+	}
+
+	/**
+	 * IBAN of the account, <code>null</code> when the account is identified otherwise.
+	 */
+	public String getAccountIban() {
+		return accountIban;
+	}
+
+	/**
+	 * The account identification: the IBAN, or <code>Othr/Id</code> when no IBAN is reported.
+	 */
+	public String getAccount() {
+		return accountIban!=null ? accountIban : accountOther;
+	}
+
+	public String getAccountCurrency() {
+		return accountCurrency;
+	}
+
+	@Override
+	public String toString() {
+		return (notification ? "Ntfctn " : "Stmt ") + id + " (" + getAccount() + ")";
+	}
+
+}
@@ -0,0 +1,70 @@
+package nl.irp.sepa.camt;
+
+import java.io.File;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * One page of a paginated camt.053 message, as registered with {@link StatementPages}:
+ * the pagination of its group header and the byte offsets of its statements.
+ */
+public class StatementPage {
+
+	/**
+	 * A statement on a page: its identification and where to find it in the file.
+	 */
+	static class Fragment {
+		String id;
+		String account;
+		long start;
+		long end;
+	}
+
+	private final File file;
+	String msgId;
+	int pgNb = 1;
+	boolean lastPage = true;
+	byte[] rootTag;
+	byte[] rootEndTag;
+	final List<Fragment> fragments = Lists.newArrayList();
+
+	StatementPage(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getMsgId() {
+		return msgId;
+	}
+
+	/**
+	 * <code>GrpHdr/MsgPgntn/PgNb</code>, 1 for a message without pagination.
+	 */
+	public int getPgNb() {
+		return pgNb;
+	}
+
+	/**
+	 * <code>GrpHdr/MsgPgntn/LastPgInd</code>, <code>true</code> for a message without pagination.
+	 */
+	public boolean isLastPage() {
+		return lastPage;
+	}
+
+	/**
+	 * The number of statements (or parts of statements) on this page.
+	 */
+	public int getStatementCount() {
+		return fragments.size();
+	}
+
+	@Override
+	public String toString() {
+		return msgId + " page " + pgNb + (lastPage ? " (last)" : "") + " " + file.getName();
+	}
+
+}
@@ -0,0 +1,395 @@
+package nl.irp.sepa.camt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static nl.irp.sepa.XmlStreams.readChildText;
+import static nl.irp.sepa.XmlStreams.skipElement;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.irp.sepa.XmlStreams;
+import nl.irp.sepa.camt.PaginationProblem.Type;
+import nl.irp.sepa.camt.StatementPage.Fragment;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.LimitInputStream;
+
+/**
+ * Stitches the pages of a camt.053 message that the bank split over several files
+ * (<code>GrpHdr/MsgPgntn</code>) back into one statement stream per account.
+ *
+ * Pages can be added in any order. Adding a page only reads its group header and the
+ * identification of its statements, and remembers where every statement starts and ends in
+ * the file; the entries are not parsed until the message is read. Once all pages up to the last
+ * one arrived, {@link #read(StatementHandler)} streams the statements account by account.
+ * A statement that continues on the next page (same <code>Stmt/Id</code>) is reported as one
+ * statement.
+ *
+ * <pre>
+ * StatementPages pages = new StatementPages();
+ * for(File file : incoming)
+ *     pages.add(file);
+ * if(pages.isComplete())
+ *     pages.read(handler);
+ * </pre>
+ *
+ * The files must not change between adding and reading.
+ */
+public class StatementPages {
+
+	private final StatementReader reader;
+	private final SortedMap<Integer, StatementPage> pages = Maps.newTreeMap();
+	private final List<PaginationProblem> problems = Lists.newArrayList();
+	private String msgId;
+	private int highest;
+
+	public StatementPages() {
+		this(new StatementReader());
+	}
+
+	/**
+	 * Read the statements with the given reader, for example one that only decodes some fields.
+	 */
+	public StatementPages(StatementReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Register a page.
+	 * @return the page, or <code>null</code> if a page with the same number was already added
+	 * @throws IllegalArgumentException if the page belongs to another message
+	 */
+	public StatementPage add(File file) throws IOException, XMLStreamException {
+		StatementPage page = new StatementPage(file);
+		readHeader(page);
+		scan(page);
+
+		checkArgument(msgId==null || msgId.equals(page.msgId),
+				"page of message '%s' is not part of message '%s'", page.msgId, msgId);
+		msgId = page.msgId;
+
+		if(pages.containsKey(page.pgNb)) {
+			problems.add(new PaginationProblem(Type.DUPLICATE, page.pgNb, page));
+			return null;
+		}
+		if(page.pgNb<highest)
+			problems.add(new PaginationProblem(Type.OUT_OF_ORDER, page.pgNb, page));
+		highest = Math.max(highest, page.pgNb);
+		pages.put(page.pgNb, page);
+		return page;
+	}
+
+	/**
+	 * The number of the (first) page marked as last page, or 0 if it didn't arrive yet.
+	 */
+	public int getLastPgNb() {
+		for(StatementPage page : pages.values())
+			if(page.lastPage)
+				return page.pgNb;
+		return 0;
+	}
+
+	/**
+	 * The numbers of the pages before the last page that didn't arrive.
+	 * Empty as long as the last page itself didn't arrive.
+	 */
+	public List<Integer> getMissingPages() {
+		List<Integer> missing = Lists.newArrayList();
+		int last = getLastPgNb();
+		for(int pgNb = 1; pgNb<last; pgNb++)
+			if(!pages.containsKey(pgNb))
+				missing.add(pgNb);
+		return missing;
+	}
+
+	/**
+	 * <code>true</code> when the last page and all pages before it arrived.
+	 */
+	public boolean isComplete() {
+		return getLastPgNb()>0 && getMissingPages().isEmpty();
+	}
+
+	/**
+	 * The out of order, duplicate, missing and superfluous pages.
+	 */
+	public List<PaginationProblem> getProblems() {
+		List<PaginationProblem> result = Lists.newArrayList(problems);
+		for(int pgNb : getMissingPages())
+			result.add(new PaginationProblem(Type.MISSING, pgNb, null));
+		int last = getLastPgNb();
+		if(last>0)
+			for(StatementPage page : pages.tailMap(last + 1).values())
+				result.add(new PaginationProblem(Type.BEYOND_LAST_PAGE, page.pgNb, page));
+		return result;
+	}
+
+	/**
+	 * The pages that were added, by page number.
+	 */
+	public List<StatementPage> getPages() {
+		return ImmutableList.copyOf(pages.values());
+	}
+
+	/**
+	 * The accounts of the message, in order of appearance.
+	 */
+	public Set<String> getAccounts() {
+		Set<String> accounts = Sets.newLinkedHashSet();
+		for(StatementPage page : pages())
+			for(Fragment fragment : page.fragments)
+				accounts.add(fragment.account);
+		return Collections.unmodifiableSet(accounts);
+	}
+
+	/**
+	 * Stream the statements of all accounts, account by account.
+	 * @throws IllegalStateException if the message is not complete
+	 */
+	public void read(StatementHandler handler) throws IOException, XMLStreamException {
+		checkComplete();
+		for(String account : getAccounts())
+			read(account, handler);
+	}
+
+	/**
+	 * Stream the statements of one account, in page order.
+	 * @throws IllegalStateException if the message is not complete
+	 */
+	public void read(String account, StatementHandler handler) throws IOException, XMLStreamException {
+		checkComplete();
+
+		// the parts of a statement that is continued on the next pages
+		Map<String, List<Fragment>> statements = Maps.newLinkedHashMap();
+		Map<Fragment, StatementPage> pageOf = Maps.newIdentityHashMap();
+		for(StatementPage page : pages()) {
+			for(Fragment fragment : page.fragments) {
+				if(!Objects.equal(account, fragment.account))
+					continue;
+				List<Fragment> parts = statements.get(fragment.id);
+				if(parts==null)
+					statements.put(fragment.id, parts = Lists.newArrayList());
+				parts.add(fragment);
+				pageOf.put(fragment, page);
+			}
+		}
+
+		StitchingHandler stitcher = new StitchingHandler(handler);
+		for(List<Fragment> parts : statements.values()) {
+			stitcher.current = null;
+			for(int i=0; i<parts.size(); i++) {
+				Fragment fragment = parts.get(i);
+				stitcher.last = i==parts.size()-1;
+				InputStream is = open(pageOf.get(fragment), fragment);
+				try {
+					reader.read(is, stitcher);
+				} finally {
+					Closeables.closeQuietly(is);
+				}
+			}
+		}
+	}
+
+	private void checkComplete() {
+		checkState(isComplete(), "message %s is not complete, last page %s, missing pages %s",
+				msgId, getLastPgNb(), getMissingPages());
+	}
+
+	/**
+	 * The pages up to and including the last page.
+	 */
+	private Iterable<StatementPage> pages() {
+		int last = getLastPgNb();
+		return last>0 ? pages.headMap(last + 1).values() : pages.values();
+	}
+
+	/**
+	 * The group header: MsgId and MsgPgntn.
+	 */
+	private void readHeader(StatementPage page) throws IOException, XMLStreamException {
+		InputStream is = new BufferedInputStream(new FileInputStream(page.getFile()));
+		try {
+			XMLStreamReader xml = XmlStreams.createReader(is);
+			try {
+				while(xml.hasNext()) {
+					if(xml.next()!=START_ELEMENT)
+						continue;
+					String name = xml.getLocalName();
+					if("GrpHdr".equals(name))
+						readGroupHeader(xml, page);
+					else if("Stmt".equals(name) || "Ntfctn".equals(name))
+						break;
+				}
+			} finally {
+				xml.close();
+			}
+		} finally {
+			is.close();
+		}
+	}
+
+	private void readGroupHeader(XMLStreamReader xml, StatementPage page) throws XMLStreamException {
+		while(xml.nextTag()==START_ELEMENT) {
+			String name = xml.getLocalName();
+			if("MsgId".equals(name)) {
+				page.msgId = xml.getElementText();
+			} else if("MsgPgntn".equals(name)) {
+				while(xml.nextTag()==START_ELEMENT) {
+					if("PgNb".equals(xml.getLocalName()))
+						page.pgNb = Integer.parseInt(xml.getElementText().trim());
+					else if("LastPgInd".equals(xml.getLocalName()))
+						page.lastPage = Boolean.parseBoolean(xml.getElementText().trim());
+					else
+						skipElement(xml);
+				}
+			} else {
+				skipElement(xml);
+			}
+		}
+	}
+
+	/**
+	 * Find the statements and read their identification.
+	 */
+	private void scan(StatementPage page) throws IOException, XMLStreamException {
+		InputStream is = new BufferedInputStream(new FileInputStream(page.getFile()));
+		StatementScanner scanner = new StatementScanner(is);
+		try {
+			scanner.scan();
+		} finally {
+			is.close();
+		}
+		page.rootTag = scanner.getRootTag();
+		page.rootEndTag = scanner.getRootEndTag();
+
+		for(long[] offsets : scanner.getStatements()) {
+			Fragment fragment = new Fragment();
+			fragment.start = offsets[0];
+			fragment.end = offsets[1];
+			readIdentification(page, fragment);
+			page.fragments.add(fragment);
+		}
+	}
+
+	/**
+	 * Stmt/Id and Stmt/Acct, the rest of the statement is not read.
+	 */
+	private void readIdentification(StatementPage page, Fragment fragment) throws IOException, XMLStreamException {
+		InputStream is = open(page, fragment);
+		try {
+			XMLStreamReader xml = XmlStreams.createReader(is);
+			try {
+				xml.nextTag(); // root
+				xml.nextTag(); // Stmt
+				while(xml.nextTag()==START_ELEMENT && (fragment.id==null || fragment.account==null)) {
+					String name = xml.getLocalName();
+					if("Id".equals(name))
+						fragment.id = xml.getElementText();
+					else if("Acct".equals(name))
+						fragment.account = readAccount(xml);
+					else
+						skipElement(xml);
+				}
+			} finally {
+				xml.close();
+			}
+		} finally {
+			is.close();
+		}
+	}
+
+	private String readAccount(XMLStreamReader xml) throws XMLStreamException {
+		String account = null;
+		while(xml.nextTag()==START_ELEMENT) {
+			if("Id".equals(xml.getLocalName())) {
+				while(xml.nextTag()==START_ELEMENT) {
+					if("IBAN".equals(xml.getLocalName()))
+						account = xml.getElementText();
+					else if("Othr".equals(xml.getLocalName()))
+						account = readChildText(xml, "Id");
+					else
+						skipElement(xml);
+				}
+			} else {
+				skipElement(xml);
+			}
+		}
+		return account;
+	}
+
+	/**
+	 * A statement as a document of its own: the root tag of the page, the statement and the root end tag.
+	 */
+	private InputStream open(StatementPage page, Fragment fragment) throws IOException {
+		FileInputStream file = new FileInputStream(page.getFile());
+		try {
+			file.getChannel().position(fragment.start);
+		} catch(IOException e) {
+			file.close();
+			throw e;
+		}
+		InputStream statement = new LimitInputStream(new BufferedInputStream(file), fragment.end - fragment.start);
+		return new SequenceInputStream(
+				new ByteArrayInputStream(page.rootTag),
+				new SequenceInputStream(statement, new ByteArrayInputStream(page.rootEndTag)));
+	}
+
+	/**
+	 * Reports the parts of a continued statement as one statement.
+	 */
+	private static class StitchingHandler implements StatementHandler {
+
+		private final StatementHandler handler;
+		StatementHeader current;
+		boolean last;
+
+		StitchingHandler(StatementHandler handler) {
+			this.handler = handler;
+		}
+
+		public void startStatement(StatementHeader statement) {
+			if(current==null) {
+				current = statement;
+				handler.startStatement(statement);
+			}
+		}
+
+		public void balance(StatementBalance balance) {
+			handler.balance(balance);
+		}
+
+		public void transactionsSummary(TransactionsSummary summary) {
+			handler.transactionsSummary(summary);
+		}
+
+		public void entry(StatementEntry entry) {
+			handler.entry(entry);
+		}
+
+		public void endStatement(StatementHeader statement) {
+			if(last)
+				handler.endStatement(current);
+		}
+
+	}
+
+}
@@ -0,0 +1,11 @@
+package nl.irp.sepa.camt;
+
+/**
+ * Processes one account statement on a worker thread of the {@link ParallelStatementReader}.
+ * Statements of the same message are processed concurrently, so a processor must be thread-safe.
+ */
+public interface StatementProcessor<T> {
+
+	T process(AccountStatement statement) throws Exception;
+
+}
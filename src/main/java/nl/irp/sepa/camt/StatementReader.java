@@ -0,0 +1,394 @@
+package nl.irp.sepa.camt;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static nl.irp.sepa.XmlStreams.readChildText;
+import static nl.irp.sepa.XmlStreams.skipElement;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.irp.sepa.XmlStreams;
+
+/**
+ * Streams the account statements and entries of a camt.053 message to a {@link StatementHandler},
+ * without building the JAXB object tree of {@link nl.irp.sepa.BankToCustomerStatement}.
+ *
+ * The intraday camt.054 debit/credit notifications are read the same way: every
+ * <code>Ntfctn</code> is reported as a statement without balances (see
+ * {@link StatementHeader#isNotification()}), so one handler can consume both messages.
+ *
+ * The reader is configured with the {@link EntryField}s that are needed. Elements of an entry
+ * that can not contain one of those fields are skipped without decoding their text.
+ *
+ * A reader can be shared between threads.
+ */
+public class StatementReader {
+
+	private static final String TX = "NtryDtls/TxDtls";
+
+	// transaction slots that are resolved to a field at the end of the transaction
+	private static final int DBTR_NM = StatementEntry.FIELDS;
+	private static final int CDTR_NM = StatementEntry.FIELDS + 1;
+	private static final int DBTR_IBAN = StatementEntry.FIELDS + 2;
+	private static final int CDTR_IBAN = StatementEntry.FIELDS + 3;
+	private static final int STRD_REF = StatementEntry.FIELDS + 4;
+	private static final int TX_SLOTS = StatementEntry.FIELDS + 5;
+
+	private final Set<EntryField> fields;
+	private final Map<String, Integer> entryPaths = new HashMap<String, Integer>();
+	private final Map<String, Integer> txPaths = new HashMap<String, Integer>();
+	private final Set<String> prefixes = new HashSet<String>();
+
+	/**
+	 * A reader that decodes all {@link EntryField}s.
+	 */
+	public StatementReader() {
+		this(EnumSet.allOf(EntryField.class));
+	}
+
+	/**
+	 * A reader that only decodes the given fields.
+	 */
+	public StatementReader(Set<EntryField> fields) {
+		this.fields = fields.isEmpty() ? EnumSet.noneOf(EntryField.class) : EnumSet.copyOf(fields);
+
+		// transactions are always counted, so that exports have a row per transaction
+		prefixes.add("NtryDtls");
+
+		if(has(EntryField.BOOKING_DATE)) {
+			entry("BookgDt/Dt", EntryField.BOOKING_DATE);
+			entry("BookgDt/DtTm", EntryField.BOOKING_DATE);
+		}
+		if(has(EntryField.VALUE_DATE)) {
+			entry("ValDt/Dt", EntryField.VALUE_DATE);
+			entry("ValDt/DtTm", EntryField.VALUE_DATE);
+		}
+		if(has(EntryField.AMOUNT) || has(EntryField.CURRENCY)) {
+			entry("Amt", EntryField.AMOUNT);
+			tx(TX + "/AmtDtls/TxAmt/Amt", EntryField.AMOUNT.ordinal());
+		}
+		if(has(EntryField.CDT_DBT_IND) || has(EntryField.COUNTERPARTY_NAME) || has(EntryField.COUNTERPARTY_IBAN))
+			entry("CdtDbtInd", EntryField.CDT_DBT_IND);
+		if(has(EntryField.STATUS))
+			entry("Sts", EntryField.STATUS);
+		if(has(EntryField.ACCOUNT_SERVICER_REFERENCE))
+			entry("AcctSvcrRef", EntryField.ACCOUNT_SERVICER_REFERENCE);
+		if(has(EntryField.END_TO_END_ID))
+			tx(TX + "/Refs/EndToEndId", EntryField.END_TO_END_ID.ordinal());
+		if(has(EntryField.COUNTERPARTY_NAME)) {
+			tx(TX + "/RltdPties/Dbtr/Nm", DBTR_NM);
+			tx(TX + "/RltdPties/Cdtr/Nm", CDTR_NM);
+		}
+		if(has(EntryField.COUNTERPARTY_IBAN)) {
+			tx(TX + "/RltdPties/DbtrAcct/Id/IBAN", DBTR_IBAN);
+			tx(TX + "/RltdPties/CdtrAcct/Id/IBAN", CDTR_IBAN);
+		}
+		if(has(EntryField.REMITTANCE_INFO))
+			tx(TX + "/RmtInf/Ustrd", EntryField.REMITTANCE_INFO.ordinal());
+		if(has(EntryField.REMITTANCE_INFO) || has(EntryField.CREDITOR_REFERENCE))
+			tx(TX + "/RmtInf/Strd/CdtrRefInf/Ref", STRD_REF);
+	}
+
+	/**
+	 * The fields this reader decodes.
+	 */
+	public Set<EntryField> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Read a camt.053 or camt.054 message and report its statements or notifications and their
+	 * entries to the handler. The stream is not closed.
+	 */
+	public void read(InputStream is, StatementHandler handler) throws XMLStreamException {
+		XMLStreamReader reader = XmlStreams.createReader(is);
+		try {
+			while(reader.hasNext()) {
+				if(reader.next()!=START_ELEMENT)
+					continue;
+				String name = reader.getLocalName();
+				if("Stmt".equals(name))
+					readStatement(reader, new StatementHeader(false), handler);
+				else if("Ntfctn".equals(name))
+					readStatement(reader, new StatementHeader(true), handler);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read a fragment that holds only <code>Ntry</code> elements within its statement element, as
+	 * entries of the given statement. The whole fragment must be well-formed, nothing is added to
+	 * the list if it isn't.
+	 */
+	void readEntries(InputStream fragment, StatementHeader statement, List<StatementEntry> entries)
+			throws XMLStreamException {
+		List<StatementEntry> read = new ArrayList<StatementEntry>();
+		XMLStreamReader reader = XmlStreams.createReader(fragment);
+		try {
+			reader.nextTag(); // root
+			reader.nextTag(); // Stmt or Ntfctn
+			while(reader.nextTag()==START_ELEMENT) {
+				if(!"Ntry".equals(reader.getLocalName()))
+					throw new XMLStreamException("not an entry: " + reader.getLocalName(), reader.getLocation());
+				read.add(readEntry(reader, statement));
+			}
+			while(reader.hasNext())
+				reader.next();
+		} finally {
+			reader.close();
+		}
+		entries.addAll(read);
+	}
+
+	private void readStatement(XMLStreamReader reader, StatementHeader statement, StatementHandler handler)
+			throws XMLStreamException {
+		boolean started = false;
+
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if(!started) {
+				if("Id".equals(name)) {
+					statement.id = reader.getElementText();
+					continue;
+				} else if("ElctrncSeqNb".equals(name)) {
+					statement.elctrncSeqNb = reader.getElementText();
+					continue;
+				} else if("LglSeqNb".equals(name)) {
+					statement.lglSeqNb = reader.getElementText();
+					continue;
+				} else if("CreDtTm".equals(name)) {
+					statement.creDtTm = reader.getElementText();
+					continue;
+				} else if("FrToDt".equals(name)) {
+					readPeriod(reader, statement);
+					continue;
+				} else if("Acct".equals(name)) {
+					readAccount(reader, statement);
+					continue;
+				} else if("Intrst".equals(name) || "Bal".equals(name) || "TxsSummry".equals(name)
+						|| "Ntry".equals(name) || "AddtlStmtInf".equals(name) || "AddtlNtfctnInf".equals(name)) {
+					handler.startStatement(statement);
+					started = true;
+				}
+			}
+
+			if("Ntry".equals(name))
+				handler.entry(readEntry(reader, statement));
+			else if("Bal".equals(name))
+				handler.balance(readBalance(reader, statement));
+			else if("TxsSummry".equals(name))
+				handler.transactionsSummary(readSummary(reader, statement));
+			else
+				skipElement(reader);
+		}
+
+		if(!started)
+			handler.startStatement(statement);
+		handler.endStatement(statement);
+	}
+
+	private void readPeriod(XMLStreamReader reader, StatementHeader statement) throws XMLStreamException {
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("FrDtTm".equals(name))
+				statement.frDtTm = reader.getElementText();
+			else if("ToDtTm".equals(name))
+				statement.toDtTm = reader.getElementText();
+			else
+				skipElement(reader);
+		}
+	}
+
+	private void readAccount(XMLStreamReader reader, StatementHeader statement) throws XMLStreamException {
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("Id".equals(name)) {
+				while(reader.nextTag()==START_ELEMENT) {
+					if("IBAN".equals(reader.getLocalName()))
+						statement.accountIban = reader.getElementText();
+					else if("Othr".equals(reader.getLocalName()))
+						statement.accountOther = readChildText(reader, "Id");
+					else
+						skipElement(reader);
+				}
+			} else if("Ccy".equals(name)) {
+				statement.accountCurrency = reader.getElementText();
+			} else {
+				skipElement(reader);
+			}
+		}
+	}
+
+	private StatementBalance readBalance(XMLStreamReader reader, StatementHeader statement) throws XMLStreamException {
+		StatementBalance balance = new StatementBalance(statement);
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("Tp".equals(name)) {
+				// Tp/CdOrPrtry/Cd
+				while(reader.nextTag()==START_ELEMENT) {
+					if("CdOrPrtry".equals(reader.getLocalName()))
+						balance.type = readChildText(reader, "Cd");
+					else
+						skipElement(reader);
+				}
+			} else if("Amt".equals(name)) {
+				balance.currency = reader.getAttributeValue(null, "Ccy");
+				balance.amount = reader.getElementText();
+			} else if("CdtDbtInd".equals(name)) {
+				balance.cdtDbtInd = reader.getElementText();
+			} else if("Dt".equals(name)) {
+				while(reader.nextTag()==START_ELEMENT) {
+					String date = reader.getElementText();
+					balance.date = date.length()>10 ? date.substring(0, 10) : date;
+				}
+			} else {
+				skipElement(reader);
+			}
+		}
+		return balance;
+	}
+
+	private TransactionsSummary readSummary(XMLStreamReader reader, StatementHeader statement) throws XMLStreamException {
+		TransactionsSummary summary = new TransactionsSummary(statement);
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("TtlNtries".equals(name))
+				summary.total = readNumberAndSum(reader);
+			else if("TtlCdtNtries".equals(name))
+				summary.credit = readNumberAndSum(reader);
+			else if("TtlDbtNtries".equals(name))
+				summary.debit = readNumberAndSum(reader);
+			else
+				skipElement(reader);
+		}
+		return summary;
+	}
+
+	private TransactionsSummary.NumberAndSum readNumberAndSum(XMLStreamReader reader) throws XMLStreamException {
+		TransactionsSummary.NumberAndSum numberAndSum = new TransactionsSummary.NumberAndSum();
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("NbOfNtries".equals(name))
+				numberAndSum.nbOfNtries = reader.getElementText();
+			else if("Sum".equals(name))
+				numberAndSum.sum = reader.getElementText();
+			else if("TtlNetNtryAmt".equals(name))
+				numberAndSum.ttlNetNtryAmt = reader.getElementText();
+			else if("CdtDbtInd".equals(name))
+				numberAndSum.cdtDbtInd = reader.getElementText();
+			else
+				skipElement(reader);
+		}
+		return numberAndSum;
+	}
+
+	private StatementEntry readEntry(XMLStreamReader reader, StatementHeader statement) throws XMLStreamException {
+		String[] values = new String[StatementEntry.FIELDS];
+		List<String[]> transactions = StatementEntry.noTransactions();
+		String[] transaction = null;
+
+		StringBuilder path = new StringBuilder(64);
+		int[] marks = new int[16];
+		int depth = 0;
+		int txDepth = -1;
+
+		while(true) {
+			int event = reader.next();
+			if(event==START_ELEMENT) {
+				if(depth==marks.length)
+					marks = Arrays.copyOf(marks, depth*2);
+				marks[depth++] = path.length();
+				if(path.length()>0)
+					path.append('/');
+				path.append(reader.getLocalName());
+				String current = path.toString();
+
+				Integer slot = transaction!=null ? txPaths.get(current) : entryPaths.get(current);
+				if(slot!=null) {
+					String[] target = transaction!=null ? transaction : values;
+					read(reader, target, slot);
+					path.setLength(marks[--depth]);
+				} else if(transaction==null && TX.equals(current)) {
+					transaction = new String[TX_SLOTS];
+					txDepth = depth;
+				} else if(!prefixes.contains(current)) {
+					skipElement(reader);
+					path.setLength(marks[--depth]);
+				}
+			} else if(event==END_ELEMENT) {
+				if(depth==0)
+					break;
+				if(depth==txDepth) {
+					if(transactions.isEmpty())
+						transactions = new ArrayList<String[]>(2);
+					transactions.add(resolve(transaction, values[EntryField.CDT_DBT_IND.ordinal()]));
+					transaction = null;
+					txDepth = -1;
+				}
+				path.setLength(marks[--depth]);
+			}
+		}
+
+		return new StatementEntry(statement, values, transactions);
+	}
+
+	private void read(XMLStreamReader reader, String[] target, int slot) throws XMLStreamException {
+		if(slot==EntryField.AMOUNT.ordinal())
+			target[EntryField.CURRENCY.ordinal()] = reader.getAttributeValue(null, "Ccy");
+
+		String text = reader.getElementText();
+		if(slot==EntryField.BOOKING_DATE.ordinal() || slot==EntryField.VALUE_DATE.ordinal()) {
+			// DtTm is reduced to the date
+			if(text.length()>10)
+				text = text.substring(0, 10);
+		} else if(slot==EntryField.REMITTANCE_INFO.ordinal() && target[slot]!=null) {
+			// multiple Ustrd lines
+			text = target[slot] + " " + text;
+		}
+		target[slot] = text;
+	}
+
+	private String[] resolve(String[] transaction, String cdtDbtInd) {
+		// the counterparty of a credit is the debtor and the other way around
+		boolean credit = !"DBIT".equals(cdtDbtInd);
+		transaction[EntryField.COUNTERPARTY_NAME.ordinal()] = credit ? transaction[DBTR_NM] : transaction[CDTR_NM];
+		transaction[EntryField.COUNTERPARTY_IBAN.ordinal()] = credit ? transaction[DBTR_IBAN] : transaction[CDTR_IBAN];
+		if(transaction[EntryField.REMITTANCE_INFO.ordinal()]==null && has(EntryField.REMITTANCE_INFO))
+			transaction[EntryField.REMITTANCE_INFO.ordinal()] = transaction[STRD_REF];
+		transaction[EntryField.CREDITOR_REFERENCE.ordinal()] = transaction[STRD_REF];
+		return Arrays.copyOf(transaction, StatementEntry.FIELDS);
+	}
+
+	private boolean has(EntryField field) {
+		return fields.contains(field);
+	}
+
+	private void entry(String path, EntryField field) {
+		entryPaths.put(path, field.ordinal());
+		addPrefixes(path);
+	}
+
+	private void tx(String path, int slot) {
+		txPaths.put(path, slot);
+		addPrefixes(path);
+	}
+
+	private void addPrefixes(String path) {
+		for(int i = path.indexOf('/'); i>=0; i = path.indexOf('/', i+1))
+			prefixes.add(path.substring(0, i));
+	}
+
+}
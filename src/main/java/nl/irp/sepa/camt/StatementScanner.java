@@ -0,0 +1,159 @@
+package nl.irp.sepa.camt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+/**
+ * Finds the byte offsets of the <code>Stmt</code> and <code>Ntfctn</code> elements of a camt
+ * message without parsing it. Markup is ASCII in UTF-8, so it can be recognized byte by byte;
+ * comments, CDATA sections and processing instructions are skipped.
+ *
+ * The start tag of the root element is kept, so that a single statement can later be parsed on
+ * its own with the namespace declarations of the document.
+ */
+class StatementScanner {
+
+	private final InputStream in;
+	private long offset;
+	private int terminator;
+
+	private byte[] rootTag;
+	private String rootName;
+	private final List<long[]> statements = Lists.newArrayList();
+
+	StatementScanner(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Scan the whole stream.
+	 */
+	void scan() throws IOException {
+		long open = -1;
+		int b;
+		while((b = read())>=0) {
+			if(b!='<')
+				continue;
+			long start = offset - 1;
+			int c = read();
+			if(c=='!') {
+				c = read();
+				if(c=='-')
+					skipUntil("-->");
+				else if(c=='[')
+					skipUntil("]]>");
+				else
+					skipTag(null);
+			} else if(c=='?') {
+				skipUntil("?>");
+			} else if(c=='/') {
+				String name = readName(read(), null);
+				skipTag(null);
+				if(open>=0 && isStatement(name)) {
+					statements.add(new long[] { open, offset });
+					open = -1;
+				}
+			} else if(c>=0) {
+				ByteArrayOutputStream tag = null;
+				if(rootTag==null) {
+					tag = new ByteArrayOutputStream(256);
+					tag.write('<');
+				}
+				String name = readName(c, tag);
+				boolean empty = skipTag(tag);
+				if(tag!=null) {
+					rootTag = tag.toByteArray();
+					rootName = name;
+				} else if(!empty && open<0 && isStatement(name)) {
+					open = start;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The start tag of the root element, including its namespace declarations.
+	 */
+	byte[] getRootTag() {
+		return rootTag;
+	}
+
+	byte[] getRootEndTag() {
+		return ("</" + rootName + ">").getBytes(Charsets.UTF_8);
+	}
+
+	/**
+	 * Start (the <code>&lt;</code>) and end (after the <code>&gt;</code>) offset of every statement.
+	 */
+	List<long[]> getStatements() {
+		return statements;
+	}
+
+	private static boolean isStatement(String name) {
+		String local = name.substring(name.indexOf(':') + 1);
+		return "Stmt".equals(local) || "Ntfctn".equals(local);
+	}
+
+	private String readName(int b, ByteArrayOutputStream tag) throws IOException {
+		StringBuilder name = new StringBuilder(16);
+		while(b>=0 && b!='>' && b!='/' && b!=' ' && b!='\t' && b!='\r' && b!='\n') {
+			name.append((char) b);
+			if(tag!=null)
+				tag.write(b);
+			b = read();
+		}
+		terminator = b;
+		return name.toString();
+	}
+
+	/**
+	 * Skip to the end of the tag, honouring quoted attribute values.
+	 * @return <code>true</code> for an empty element tag
+	 */
+	private boolean skipTag(ByteArrayOutputStream tag) throws IOException {
+		int b = terminator;
+		int previous = -1;
+		int quote = -1;
+		while(b>=0) {
+			if(tag!=null)
+				tag.write(b);
+			if(quote>=0) {
+				if(b==quote)
+					quote = -1;
+			} else if(b=='"' || b=='\'') {
+				quote = b;
+			} else if(b=='>') {
+				return previous=='/';
+			}
+			previous = b;
+			b = read();
+		}
+		return false;
+	}
+
+	private void skipUntil(String end) throws IOException {
+		int matched = 0;
+		int b;
+		while(matched<end.length() && (b = read())>=0) {
+			if(b==end.charAt(matched))
+				matched++;
+			else if(b!=end.charAt(0))
+				matched = 0;
+			else if(matched<2 || end.charAt(matched-1)!=b)
+				matched = 1;
+		}
+	}
+
+	private int read() throws IOException {
+		int b = in.read();
+		if(b>=0)
+			offset++;
+		return b;
+	}
+
+}
@@ -0,0 +1,270 @@
+package nl.irp.sepa.camt;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.Amounts;
+import nl.irp.sepa.camt.StatementDiscrepancy.Type;
+import nl.irp.sepa.metrics.Measurement;
+import nl.irp.sepa.metrics.MessageType;
+import nl.irp.sepa.metrics.Metrics;
+import nl.irp.sepa.metrics.Phase;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Verifies the integrity of camt.053 account statements while they are streamed:
+ * <ul>
+ * <li>the opening balance (OPBD, or PRCD) plus the booked entries equals the closing balance (CLBD)</li>
+ * <li>the transactions summary (TxsSummry) matches the number and sum of the entries</li>
+ * <li>consecutive statements of an account have consecutive electronic sequence numbers
+ * (ElctrncSeqNb) and the opening balance equals the previous closing balance</li>
+ * </ul>
+ * camt.054 notifications have no balances; their summary and sequence numbers are checked,
+ * the latter apart from those of the statements.
+ * All arithmetic is done in cents; an amount that can't be expressed in cents is reported as
+ * {@link Type#UNREADABLE} and the checks that need it are skipped.
+ *
+ * A verifier remembers the last statement of every account, so use one verifier for a series
+ * of files and feed them in order. It can be combined with other handlers in one pass with a
+ * {@link TeeStatementHandler}, as long as the reader decodes the {@link #REQUIRED_FIELDS}.
+ */
+public class StatementVerifier extends AbstractStatementHandler {
+
+	/**
+	 * The entry fields the verifier needs.
+	 */
+	public static final Set<EntryField> REQUIRED_FIELDS = Collections.unmodifiableSet(
+			EnumSet.of(EntryField.AMOUNT, EntryField.CDT_DBT_IND, EntryField.STATUS));
+
+	private static final StatementReader reader = new StatementReader(REQUIRED_FIELDS);
+
+	private final List<StatementDiscrepancy> discrepancies = Lists.newArrayList();
+	private final Map<String, Long> lastSequence = Maps.newHashMap();
+	private final Map<String, Long> lastNotificationSequence = Maps.newHashMap();
+	private final Map<String, Long> lastClosing = Maps.newHashMap();
+	private long statements;
+	private long entries;
+	// the message that is verified holds notifications
+	private boolean notifications;
+
+	// the statement that is being read
+	private StatementBalance opening;
+	private StatementBalance closing;
+	private TransactionsSummary summary;
+	private long booked;
+	private long credits, creditSum;
+	private long debits, debitSum;
+	// an amount of an entry couldn't be read, the sums are not known
+	private boolean unreadable;
+	private final List<String> unreadableValues = Lists.newArrayList();
+
+	/**
+	 * Verify the statements of a camt.053 message or the notifications of a camt.054 message.
+	 * @return the discrepancies found in this message
+	 */
+	public List<StatementDiscrepancy> verify(InputStream is) throws XMLStreamException {
+		int before = discrepancies.size();
+		long entriesBefore = entries;
+		notifications = false;
+		Measurement measurement = Metrics.start(MessageType.CAMT_053);
+		reader.read(measurement.count(is), this);
+		if(notifications)
+			measurement.setType(MessageType.CAMT_054);
+		measurement.phase(Phase.READ);
+		measurement.completed(entries - entriesBefore);
+		return Collections.unmodifiableList(Lists.newArrayList(discrepancies.subList(before, discrepancies.size())));
+	}
+
+	@Override
+	public void startStatement(StatementHeader statement) {
+		notifications |= statement.isNotification();
+		opening = null;
+		closing = null;
+		summary = null;
+		booked = credits = creditSum = debits = debitSum = 0;
+		unreadable = false;
+		unreadableValues.clear();
+	}
+
+	@Override
+	public void balance(StatementBalance balance) {
+		String type = balance.getType();
+		if(readAmount(balance.getAmount())==null)
+			return;
+		if("OPBD".equals(type) || ("PRCD".equals(type) && opening==null))
+			opening = balance;
+		else if("CLBD".equals(type) && closing==null)
+			closing = balance;
+	}
+
+	@Override
+	public void transactionsSummary(TransactionsSummary summary) {
+		this.summary = summary;
+	}
+
+	@Override
+	public void entry(StatementEntry entry) {
+		entries++;
+		Long cents = readAmount(entry.get(EntryField.AMOUNT));
+		if(cents==null) {
+			unreadable = true;
+			if(entry.isCredit())
+				credits++;
+			else
+				debits++;
+			return;
+		}
+		long amount = cents;
+		if(entry.isCredit()) {
+			credits++;
+			creditSum += amount;
+		} else {
+			debits++;
+			debitSum += amount;
+		}
+
+		// only booked entries change the booked balance
+		String status = entry.get(EntryField.STATUS);
+		if(status==null || "BOOK".equals(status))
+			booked += entry.isCredit() ? amount : -amount;
+	}
+
+	@Override
+	public void endStatement(StatementHeader statement) {
+		statements++;
+		String account = statement.getAccount();
+		for(String value : unreadableValues)
+			discrepancies.add(new StatementDiscrepancy(statement, value));
+
+		if(opening!=null && closing!=null && !unreadable)
+			check(statement, Type.BALANCE, opening.getSignedAmount() + booked, closing.getSignedAmount());
+
+		if(summary!=null) {
+			TransactionsSummary.NumberAndSum total = summary.getTtlNtries();
+			if(total!=null) {
+				checkCount(statement, Type.TOTAL_COUNT, credits + debits, total.getNbOfNtries());
+				checkSum(statement, Type.TOTAL_SUM, creditSum + debitSum, total.getSum());
+				Long net = total.getTtlNetNtryAmt()==null ? null : reportedAmount(statement, total.getTtlNetNtryAmt());
+				if(net!=null && !unreadable)
+					check(statement, Type.TOTAL_NET, creditSum - debitSum, Amounts.signed(net, total.getCdtDbtInd()));
+			}
+			TransactionsSummary.NumberAndSum credit = summary.getTtlCdtNtries();
+			if(credit!=null) {
+				checkCount(statement, Type.CREDIT_COUNT, credits, credit.getNbOfNtries());
+				checkSum(statement, Type.CREDIT_SUM, creditSum, credit.getSum());
+			}
+			TransactionsSummary.NumberAndSum debit = summary.getTtlDbtNtries();
+			if(debit!=null) {
+				checkCount(statement, Type.DEBIT_COUNT, debits, debit.getNbOfNtries());
+				checkSum(statement, Type.DEBIT_SUM, debitSum, debit.getSum());
+			}
+		}
+
+		if(account==null)
+			return;
+
+		if(statement.getElctrncSeqNb()!=null) {
+			Map<String, Long> last = statement.isNotification() ? lastNotificationSequence : lastSequence;
+			Long sequence = null;
+			try {
+				sequence = Long.parseLong(statement.getElctrncSeqNb());
+			} catch(NumberFormatException e) {
+				// the balances are still checked; the next number is not compared to this one
+				discrepancies.add(new StatementDiscrepancy(statement, statement.getElctrncSeqNb()));
+				last.remove(account);
+			}
+			if(sequence!=null) {
+				Long previous = last.put(account, sequence);
+				if(previous!=null)
+					check(statement, Type.SEQUENCE, previous + 1, sequence);
+			}
+		}
+
+		if(opening!=null) {
+			Long previous = lastClosing.get(account);
+			if(previous!=null)
+				check(statement, Type.BALANCE_CONTINUITY, previous, opening.getSignedAmount());
+		}
+		if(closing!=null)
+			lastClosing.put(account, closing.getSignedAmount());
+	}
+
+	private void checkCount(StatementHeader statement, Type type, long expected, String reported) {
+		if(reported==null)
+			return;
+		try {
+			check(statement, type, expected, Long.parseLong(reported));
+		} catch(NumberFormatException e) {
+			discrepancies.add(new StatementDiscrepancy(statement, reported));
+		}
+	}
+
+	private void checkSum(StatementHeader statement, Type type, long expected, String reported) {
+		if(reported==null)
+			return;
+		Long actual = reportedAmount(statement, reported);
+		if(actual!=null && !unreadable)
+			check(statement, type, expected, actual);
+	}
+
+	/**
+	 * The amount in cents, <code>null</code> if it can't be read; it is reported when the
+	 * statement ends.
+	 */
+	private Long readAmount(String amount) {
+		if(amount==null) {
+			unreadableValues.add(null);
+			return null;
+		}
+		try {
+			return Amounts.toCents(amount);
+		} catch(IllegalArgumentException e) {
+			unreadableValues.add(amount);
+			return null;
+		}
+	}
+
+	/**
+	 * An amount of the transactions summary, <code>null</code> if it can't be read.
+	 */
+	private Long reportedAmount(StatementHeader statement, String amount) {
+		try {
+			return Amounts.toCents(amount);
+		} catch(IllegalArgumentException e) {
+			discrepancies.add(new StatementDiscrepancy(statement, amount));
+			return null;
+		}
+	}
+
+	private void check(StatementHeader statement, Type type, long expected, long actual) {
+		if(expected!=actual)
+			discrepancies.add(new StatementDiscrepancy(statement, type, expected, actual));
+	}
+
+	/**
+	 * All discrepancies found so far.
+	 */
+	public List<StatementDiscrepancy> getDiscrepancies() {
+		return Collections.unmodifiableList(discrepancies);
+	}
+
+	/**
+	 * Number of statements verified so far.
+	 */
+	public long getStatements() {
+		return statements;
+	}
+
+	public boolean isValid() {
+		return discrepancies.isEmpty();
+	}
+
+}
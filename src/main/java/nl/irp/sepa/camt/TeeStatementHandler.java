@@ -0,0 +1,40 @@
+package nl.irp.sepa.camt;
+
+/**
+ * Passes every event to several handlers in turn, so that for example an export and a
+ * verification can share one streaming pass.
+ */
+public class TeeStatementHandler implements StatementHandler {
+
+	private final StatementHandler[] handlers;
+
+	public TeeStatementHandler(StatementHandler... handlers) {
+		this.handlers = handlers.clone();
+	}
+
+	public void startStatement(StatementHeader statement) {
+		for(StatementHandler handler : handlers)
+			handler.startStatement(statement);
+	}
+
+	public void balance(StatementBalance balance) {
+		for(StatementHandler handler : handlers)
+			handler.balance(balance);
+	}
+
+	public void transactionsSummary(TransactionsSummary summary) {
+		for(StatementHandler handler : handlers)
+			handler.transactionsSummary(summary);
+	}
+
+	public void entry(StatementEntry entry) {
+		for(StatementHandler handler : handlers)
+			handler.entry(entry);
+	}
+
+	public void endStatement(StatementHeader statement) {
+		for(StatementHandler handler : handlers)
+			handler.endStatement(statement);
+	}
+
+}
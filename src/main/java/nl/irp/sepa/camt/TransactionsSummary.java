@@ -0,0 +1,72 @@
+package nl.irp.sepa.camt;
+
+/**
+ * The transactions summary (<code>TxsSummry</code>) of a streamed account statement, as reported
+ * by the account servicer.
+ */
+public class TransactionsSummary {
+
+	private final StatementHeader statement;
+	NumberAndSum total;
+	NumberAndSum credit;
+	NumberAndSum debit;
+
+	TransactionsSummary(StatementHeader statement) {
+		this.statement = statement;
+	}
+
+	public StatementHeader getStatement() {
+		return statement;
+	}
+
+	/**
+	 * <code>TtlNtries</code>: number and sum of all entries, <code>null</code> if not reported.
+	 */
+	public NumberAndSum getTtlNtries() {
+		return total;
+	}
+
+	/**
+	 * <code>TtlCdtNtries</code>: number and sum of the credit entries, <code>null</code> if not reported.
+	 */
+	public NumberAndSum getTtlCdtNtries() {
+		return credit;
+	}
+
+	/**
+	 * <code>TtlDbtNtries</code>: number and sum of the debit entries, <code>null</code> if not reported.
+	 */
+	public NumberAndSum getTtlDbtNtries() {
+		return debit;
+	}
+
+	public static class NumberAndSum {
+		String nbOfNtries;
+		String sum;
+		String ttlNetNtryAmt;
+		String cdtDbtInd;
+
+		public String getNbOfNtries() {
+			return nbOfNtries;
+		}
+
+		public String getSum() {
+			return sum;
+		}
+
+		/**
+		 * Resulting amount of the netted amounts for all debit and credit entries, only for TtlNtries.
+		 */
+		public String getTtlNetNtryAmt() {
+			return ttlNetNtryAmt;
+		}
+
+		/**
+		 * Indicates whether the net amount is a credit or a debit, only for TtlNtries.
+		 */
+		public String getCdtDbtInd() {
+			return cdtDbtInd;
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package nl.irp.sepa.camt;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Unsigned LEB128 variable length integers, as used by the columnar formats.
+ */
+class Varints {
+
+	private Varints() {
+	}
+
+	static void write(OutputStream out, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static long read(DataInput in) throws IOException {
+		long value = 0;
+		for(int shift = 0; shift<64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80)==0)
+				return value;
+		}
+		throw new IOException("malformed varint");
+	}
+
+	static int readInt(DataInput in) throws IOException {
+		long value = read(in);
+		if(value>Integer.MAX_VALUE)
+			throw new IOException("varint out of range: "+value);
+		return (int) value;
+	}
+
+}
@@ -0,0 +1,521 @@
+package nl.irp.sepa.generator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static nl.irp.sepa.Amounts.format;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.io.XmlWriter;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Generates large, schema valid messages for benchmarks and soak tests: camt.053 statements
+ * (optionally split over pages), pain.001 credit transfers and pain.008 direct debits.
+ *
+ * The output only depends on the seed, so a benchmark can be repeated with exactly the same
+ * data. The messages are written while they are generated; the totals that come before the
+ * transactions (control sums, transaction summaries, balances) are computed in a first pass
+ * over the same random numbers. Memory use doesn't depend on the size of the message.
+ * <pre>
+ * MessageGenerator generator = new MessageGenerator(42);
+ * generator.writeStatements(os, 1000, 5000);     // 1000 accounts, 5 million entries
+ * </pre>
+ * Or from the command line:
+ * <pre>
+ * java -cp ... nl.irp.sepa.generator.MessageGenerator camt053 statement.xml 42 1000 5000
+ * java -cp ... nl.irp.sepa.generator.MessageGenerator camt053-pages pages/ 42 1000 5000 100000
+ * java -cp ... nl.irp.sepa.generator.MessageGenerator pain001 pain.001.xml 42 10 100000
+ * java -cp ... nl.irp.sepa.generator.MessageGenerator pain008 pain.008.xml 42 10 100000
+ * </pre>
+ */
+public class MessageGenerator {
+
+	private static final String CAMT_053 = "urn:iso:std:iso:20022:tech:xsd:camt.053.001.02";
+	private static final String PAIN_001 = "urn:iso:std:iso:20022:tech:xsd:pain.001.001.03";
+	private static final String PAIN_008 = "urn:iso:std:iso:20022:tech:xsd:pain.008.001.02";
+
+	private final long seed;
+	private final LocalDate date;
+
+	/**
+	 * A generator of messages dated 2 April 2013.
+	 */
+	public MessageGenerator(long seed) {
+		this(seed, new LocalDate(2013, 4, 2));
+	}
+
+	/**
+	 * @param date the statement date, and the creation date of the payment messages
+	 */
+	public MessageGenerator(long seed, LocalDate date) {
+		this.seed = seed;
+		this.date = date;
+	}
+
+	/**
+	 * A camt.053 message with one statement per account, on a single page.
+	 */
+	public void writeStatements(final OutputStream os, int accounts, int entriesPerAccount) throws IOException {
+		Pages pages = new Pages(1) {
+			@Override
+			OutputStream open(int pgNb) {
+				return os;
+			}
+			@Override
+			void close(OutputStream page) throws IOException {
+				page.flush();
+			}
+		};
+		writeStatements(pages, accounts, entriesPerAccount, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * A camt.053 message split over pages of at most <code>entriesPerPage</code> entries, written
+	 * to <code>camt.053-0001.xml</code>, <code>camt.053-0002.xml</code> etc. in the directory.
+	 * Statements that don't fit on a page continue on the next page with the same <code>Id</code>.
+	 * @return the pages
+	 */
+	public List<File> writeStatementPages(final File directory, int accounts, int entriesPerAccount,
+			int entriesPerPage) throws IOException {
+		checkArgument(entriesPerPage>0, "entries per page %s", entriesPerPage);
+		long entries = (long) accounts * entriesPerAccount;
+		final List<File> files = Lists.newArrayList();
+		Pages pages = new Pages((int) Math.max(1, (entries + entriesPerPage - 1) / entriesPerPage)) {
+			@Override
+			OutputStream open(int pgNb) throws IOException {
+				File file = new File(directory, String.format("camt.053-%04d.xml", pgNb));
+				files.add(file);
+				return new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+			}
+			@Override
+			void close(OutputStream page) throws IOException {
+				page.close();
+			}
+		};
+		writeStatements(pages, accounts, entriesPerAccount, entriesPerPage);
+		return files;
+	}
+
+	/**
+	 * A pain.001 message with <code>groups</code> payment information groups (debtors).
+	 */
+	public void writeCreditTransfers(OutputStream os, int groups, int transactionsPerGroup) throws IOException {
+		long[] sums = controlSums(groups, transactionsPerGroup);
+		try {
+			XmlWriter xml = new XmlWriter(os);
+			xml.startDocument(PAIN_001);
+			xml.start("CstmrCdtTrfInitn");
+			groupHeader(xml, "PAIN001-" + seed, groups, transactionsPerGroup, sums);
+
+			for(int g=0; g<groups; g++) {
+				Random amounts = random(g, 0);
+				Random details = random(g, 1);
+				int bank = Parties.bank(details);
+
+				xml.start("PmtInf");
+				xml.element("PmtInfId", "PMT-" + g);
+				xml.element("PmtMtd", "TRF");
+				xml.element("NbOfTxs", String.valueOf(transactionsPerGroup));
+				xml.element("CtrlSum", format(sums[g]));
+				xml.start("PmtTpInf");
+				xml.nested("SvcLvl", "Cd", "SEPA");
+				xml.end();
+				xml.element("ReqdExctnDt", date.plusDays(1).toString());
+				xml.nested("Dbtr", "Nm", Parties.company(details));
+				xml.nested("DbtrAcct", "Id", "IBAN", Parties.iban(bank, details.nextLong()));
+				xml.nested("DbtrAgt", "FinInstnId", "BIC", Parties.bic(bank));
+				xml.element("ChrgBr", "SLEV");
+
+				for(int i=0; i<transactionsPerGroup; i++) {
+					long cents = Parties.cents(amounts);
+					int creditorBank = Parties.bank(details);
+					xml.start("CdtTrfTxInf");
+					xml.nested("PmtId", "EndToEndId", "E2E-" + g + "-" + i);
+					xml.start("Amt");
+					xml.amount("InstdAmt", format(cents));
+					xml.end();
+					xml.nested("CdtrAgt", "FinInstnId", "BIC", Parties.bic(creditorBank));
+					xml.nested("Cdtr", "Nm", details.nextInt(3)==0 ? Parties.company(details) : Parties.person(details));
+					xml.nested("CdtrAcct", "Id", "IBAN", Parties.iban(creditorBank, details.nextLong()));
+					xml.nested("RmtInf", "Ustrd", "Factuur " + (100000 + details.nextInt(900000)));
+					xml.end();
+				}
+				xml.end();
+			}
+
+			xml.end();
+			xml.endDocument();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * A pain.008 message with <code>groups</code> payment information groups (creditors).
+	 */
+	public void writeDirectDebits(OutputStream os, int groups, int transactionsPerGroup) throws IOException {
+		long[] sums = controlSums(groups, transactionsPerGroup);
+		try {
+			XmlWriter xml = new XmlWriter(os);
+			xml.startDocument(PAIN_008);
+			xml.start("CstmrDrctDbtInitn");
+			groupHeader(xml, "PAIN008-" + seed, groups, transactionsPerGroup, sums);
+
+			for(int g=0; g<groups; g++) {
+				Random amounts = random(g, 0);
+				Random details = random(g, 1);
+				int bank = Parties.bank(details);
+				String creditorId = Parties.creditorId(details.nextInt(100000000));
+
+				xml.start("PmtInf");
+				xml.element("PmtInfId", "PMT-" + g);
+				xml.element("PmtMtd", "DD");
+				xml.element("NbOfTxs", String.valueOf(transactionsPerGroup));
+				xml.element("CtrlSum", format(sums[g]));
+				xml.start("PmtTpInf");
+				xml.nested("SvcLvl", "Cd", "SEPA");
+				xml.nested("LclInstrm", "Cd", "CORE");
+				xml.element("SeqTp", "RCUR");
+				xml.end();
+				xml.element("ReqdColltnDt", date.plusDays(5).toString());
+				xml.start("Cdtr");
+				xml.element("Nm", Parties.company(details));
+				xml.start("PstlAdr");
+				xml.element("Ctry", "NL");
+				xml.element("AdrLine", "Dorpstraat " + (1 + details.nextInt(200)));
+				xml.end();
+				xml.end();
+				xml.nested("CdtrAcct", "Id", "IBAN", Parties.iban(bank, details.nextLong()));
+				xml.nested("CdtrAgt", "FinInstnId", "BIC", Parties.bic(bank));
+				xml.element("ChrgBr", "SLEV");
+
+				for(int i=0; i<transactionsPerGroup; i++) {
+					long cents = Parties.cents(amounts);
+					int debtorBank = Parties.bank(details);
+					xml.start("DrctDbtTxInf");
+					xml.start("PmtId");
+					xml.element("InstrId", "I-" + g + "-" + i);
+					xml.element("EndToEndId", "E2E-" + g + "-" + i);
+					xml.end();
+					xml.amount("InstdAmt", format(cents));
+					xml.start("DrctDbtTx");
+					xml.start("MndtRltdInf");
+					xml.element("MndtId", "MNDT-" + g + "-" + i);
+					xml.element("DtOfSgntr", date.minusDays(30 + details.nextInt(1000)).toString());
+					xml.element("AmdmntInd", "false");
+					xml.end();
+					xml.start("CdtrSchmeId");
+					xml.start("Id");
+					xml.start("PrvtId");
+					xml.start("Othr");
+					xml.element("Id", creditorId);
+					xml.nested("SchmeNm", "Prtry", "SEPA");
+					xml.end();
+					xml.end();
+					xml.end();
+					xml.end();
+					xml.end();
+					xml.nested("DbtrAgt", "FinInstnId", "BIC", Parties.bic(debtorBank));
+					xml.nested("Dbtr", "Nm", Parties.person(details));
+					xml.nested("DbtrAcct", "Id", "IBAN", Parties.iban(debtorBank, details.nextLong()));
+					xml.nested("Purp", "Cd", "OTHR");
+					xml.nested("RmtInf", "Ustrd", "Contributie " + date.getYear() + " lid " + (1000 + details.nextInt(9000)));
+					xml.end();
+				}
+				xml.end();
+			}
+
+			xml.end();
+			xml.endDocument();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void groupHeader(XmlWriter xml, String msgId, int groups, int transactionsPerGroup, long[] sums)
+			throws XMLStreamException {
+		long total = 0;
+		for(long sum : sums)
+			total += sum;
+		xml.start("GrpHdr");
+		xml.element("MsgId", msgId);
+		xml.element("CreDtTm", date + "T09:00:00");
+		xml.element("NbOfTxs", String.valueOf((long) groups * transactionsPerGroup));
+		xml.element("CtrlSum", format(total));
+		xml.nested("InitgPty", "Nm", "Synthetic " + seed);
+		xml.end();
+	}
+
+	/**
+	 * The first pass over the amounts of a payment message.
+	 */
+	private long[] controlSums(int groups, int transactionsPerGroup) {
+		long[] sums = new long[groups];
+		for(int g=0; g<groups; g++) {
+			Random amounts = random(g, 0);
+			for(int i=0; i<transactionsPerGroup; i++)
+				sums[g] += Parties.cents(amounts);
+		}
+		return sums;
+	}
+
+	/**
+	 * The destination of the pages of a statement message.
+	 */
+	private abstract static class Pages {
+		final int count;
+		Pages(int count) {
+			this.count = count;
+		}
+		abstract OutputStream open(int pgNb) throws IOException;
+		abstract void close(OutputStream page) throws IOException;
+	}
+
+	private void writeStatements(Pages pages, int accounts, int entriesPerAccount, int entriesPerPage) throws IOException {
+		try {
+			int pgNb = 1;
+			OutputStream page = pages.open(pgNb);
+			XmlWriter xml = startPage(page, pgNb, pages.count);
+			int onPage = 0;
+
+			for(int a=0; a<accounts; a++) {
+				Statement statement = new Statement(a, entriesPerAccount);
+				boolean last;
+				do {
+					if(onPage==entriesPerPage && statement.remaining()>0) {
+						endPage(xml);
+						pages.close(page);
+						page = pages.open(++pgNb);
+						xml = startPage(page, pgNb, pages.count);
+						onPage = 0;
+					}
+					int n = (int) Math.min(statement.remaining(), (long) entriesPerPage - onPage);
+					last = n==statement.remaining();
+					statement.write(xml, n, last);
+					onPage += n;
+				} while(!last);
+			}
+
+			endPage(xml);
+			pages.close(page);
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private XmlWriter startPage(OutputStream os, int pgNb, int pageCount) throws XMLStreamException {
+		XmlWriter xml = new XmlWriter(os);
+		xml.startDocument(CAMT_053);
+		xml.start("BkToCstmrStmt");
+		xml.start("GrpHdr");
+		xml.element("MsgId", "CAMT053-" + seed);
+		xml.element("CreDtTm", date + "T18:00:00");
+		xml.start("MsgPgntn");
+		xml.element("PgNb", String.valueOf(pgNb));
+		xml.element("LastPgInd", String.valueOf(pgNb==pageCount));
+		xml.end();
+		xml.end();
+		return xml;
+	}
+
+	private void endPage(XmlWriter xml) throws XMLStreamException {
+		xml.end();
+		xml.endDocument();
+	}
+
+	/**
+	 * The statement of one account, written in one or more parts.
+	 */
+	private class Statement {
+
+		final int account;
+		final int entries;
+		final String id;
+		final String iban;
+		final long opening;
+		long credits, creditSum, debits, debitSum;
+
+		// the second pass
+		final Random amounts;
+		final Random details;
+		int written;
+		long balance;
+
+		Statement(int account, int entries) {
+			this.account = account;
+			this.entries = entries;
+			this.id = "STMT-" + account + "-" + date.getDayOfYear();
+			Random random = random(account, 2);
+			this.iban = Parties.iban(Parties.bank(random), random.nextLong());
+
+			Random first = random(account, 0);
+			opening = Parties.cents(first) * 10;
+			for(int i=0; i<entries; i++) {
+				boolean credit = first.nextBoolean();
+				long cents = Parties.cents(first);
+				if(credit) {
+					credits++;
+					creditSum += cents;
+				} else {
+					debits++;
+					debitSum += cents;
+				}
+			}
+
+			amounts = random(account, 0);
+			details = random(account, 1);
+			balance = Parties.cents(amounts) * 10;
+		}
+
+		long remaining() {
+			return entries - written;
+		}
+
+		void write(XmlWriter xml, int n, boolean last) throws XMLStreamException {
+			boolean first = written==0;
+			xml.start("Stmt");
+			xml.element("Id", id);
+			xml.element("ElctrncSeqNb", String.valueOf(date.getDayOfYear()));
+			xml.element("CreDtTm", date + "T18:00:00");
+			xml.start("FrToDt");
+			xml.element("FrDtTm", date + "T00:00:00");
+			xml.element("ToDtTm", date + "T23:59:59");
+			xml.end();
+			xml.start("Acct");
+			xml.nested("Id", "IBAN", iban);
+			xml.element("Ccy", "EUR");
+			xml.end();
+
+			if(first)
+				balance(xml, "OPBD", opening, date.minusDays(1));
+			else if(!last)
+				balance(xml, "ITBD", balance, date);
+			if(last)
+				balance(xml, "CLBD", opening + creditSum - debitSum, date);
+			if(first)
+				transactionsSummary(xml);
+
+			for(int i=0; i<n; i++)
+				entry(xml);
+			xml.end();
+		}
+
+		private void balance(XmlWriter xml, String type, long cents, LocalDate day) throws XMLStreamException {
+			xml.start("Bal");
+			xml.start("Tp");
+			xml.nested("CdOrPrtry", "Cd", type);
+			xml.end();
+			xml.amount("Amt", format(Math.abs(cents)));
+			xml.element("CdtDbtInd", cents<0 ? "DBIT" : "CRDT");
+			xml.nested("Dt", "Dt", day.toString());
+			xml.end();
+		}
+
+		private void transactionsSummary(XmlWriter xml) throws XMLStreamException {
+			long net = creditSum - debitSum;
+			xml.start("TxsSummry");
+			xml.start("TtlNtries");
+			xml.element("NbOfNtries", String.valueOf(credits + debits));
+			xml.element("Sum", format(creditSum + debitSum));
+			xml.element("TtlNetNtryAmt", format(Math.abs(net)));
+			xml.element("CdtDbtInd", net<0 ? "DBIT" : "CRDT");
+			xml.end();
+			xml.start("TtlCdtNtries");
+			xml.element("NbOfNtries", String.valueOf(credits));
+			xml.element("Sum", format(creditSum));
+			xml.end();
+			xml.start("TtlDbtNtries");
+			xml.element("NbOfNtries", String.valueOf(debits));
+			xml.element("Sum", format(debitSum));
+			xml.end();
+			xml.end();
+		}
+
+		private void entry(XmlWriter xml) throws XMLStreamException {
+			boolean credit = amounts.nextBoolean();
+			long cents = Parties.cents(amounts);
+			balance += credit ? cents : -cents;
+			int nr = written++;
+
+			// incoming transfers, outgoing transfers and collected direct debits
+			boolean directDebit = !credit && details.nextInt(4)==0;
+			int bank = Parties.bank(details);
+
+			xml.start("Ntry");
+			xml.amount("Amt", format(cents));
+			xml.element("CdtDbtInd", credit ? "CRDT" : "DBIT");
+			xml.element("Sts", "BOOK");
+			xml.nested("BookgDt", "Dt", date.toString());
+			xml.nested("ValDt", "Dt", date.toString());
+			xml.element("AcctSvcrRef", id + "-" + nr);
+			xml.start("BkTxCd");
+			xml.start("Domn");
+			xml.element("Cd", "PMNT");
+			xml.start("Fmly");
+			xml.element("Cd", credit ? "RCDT" : directDebit ? "RDDT" : "ICDT");
+			xml.element("SubFmlyCd", directDebit ? "ESDD" : "ESCT");
+			xml.end();
+			xml.end();
+			xml.end();
+			xml.start("NtryDtls");
+			xml.start("TxDtls");
+			xml.nested("Refs", "EndToEndId", "E2E-" + account + "-" + nr);
+			xml.start("RltdPties");
+			String party = credit ? "Dbtr" : "Cdtr";
+			xml.nested(party, "Nm", details.nextInt(3)==0 ? Parties.company(details) : Parties.person(details));
+			xml.nested(party + "Acct", "Id", "IBAN", Parties.iban(bank, details.nextLong()));
+			xml.end();
+			xml.nested("RmtInf", "Ustrd", (directDebit ? "Incasso " : "Factuur ") + (100000 + details.nextInt(900000)));
+			xml.end();
+			xml.end();
+			xml.end();
+		}
+
+	}
+
+	private Random random(int index, int stream) {
+		return new Random((seed * 1000003 + index) * 31 + stream);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length<5) {
+			System.err.println("usage: MessageGenerator camt053|camt053-pages|pain001|pain008 file|directory seed count count [entriesPerPage]");
+			System.exit(1);
+		}
+		MessageGenerator generator = new MessageGenerator(Long.parseLong(args[2]));
+		int first = Integer.parseInt(args[3]);
+		int second = Integer.parseInt(args[4]);
+		File file = new File(args[1]);
+		if("camt053-pages".equals(args[0])) {
+			file.mkdirs();
+			generator.writeStatementPages(file, first, second, Integer.parseInt(args[5]));
+			return;
+		}
+
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+		try {
+			if("camt053".equals(args[0]))
+				generator.writeStatements(os, first, second);
+			else if("pain001".equals(args[0]))
+				generator.writeCreditTransfers(os, first, second);
+			else if("pain008".equals(args[0]))
+				generator.writeDirectDebits(os, first, second);
+			else
+				throw new IllegalArgumentException("unknown message type " + args[0]);
+		} finally {
+			os.close();
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+package nl.irp.sepa.generator;
+
+import java.util.Random;
+
+import nl.irp.sepa.Mod97;
+
+/**
+ * Realistic names, Dutch IBANs with valid check digits and their BICs.
+ */
+class Parties {
+
+	private static final String[] BANKS = { "ABNA", "INGB", "RABO", "SNSB", "ASNB", "TRIO", "KNAB", "BUNQ" };
+	private static final String[] BICS = { "ABNANL2A", "INGBNL2A", "RABONL2U", "SNSBNL2A", "ASNBNL21", "TRIONL2U", "KNABNL2H", "BUNQNL2A" };
+	private static final String[] INITIALS = { "A.", "B.", "C.", "D.", "E.", "F.", "G.", "H.", "J.", "K.", "L.", "M.", "P.", "R.", "S.", "T.", "W." };
+	private static final String[] LAST = { "de Jong", "Jansen", "de Vries", "van den Berg", "van Dijk", "Bakker",
+		"Janssen", "Visser", "Smit", "Meijer", "de Boer", "Mulder", "de Groot", "Bos", "Vos", "Peters",
+		"Hendriks", "van Leeuwen", "Dekker", "Brouwer" };
+	private static final String[] COMPANIES = { "Bakkerij", "Garage", "Installatiebedrijf", "Kapsalon",
+		"Zorggroep", "Woningcorporatie", "Energie", "Verzekeringen", "Sportvereniging", "Drukkerij" };
+	private static final String[] CITIES = { "Amsterdam", "Rotterdam", "Utrecht", "Zwolle", "Groningen",
+		"Eindhoven", "Tilburg", "Haarlem", "Leiden", "Delft" };
+
+
+	private Parties() {
+	}
+
+	static String person(Random random) {
+		return INITIALS[random.nextInt(INITIALS.length)] + " " + LAST[random.nextInt(LAST.length)];
+	}
+
+	static String company(Random random) {
+		return COMPANIES[random.nextInt(COMPANIES.length)] + " " + LAST[random.nextInt(LAST.length)]
+				+ " " + CITIES[random.nextInt(CITIES.length)] + " B.V.";
+	}
+
+	/**
+	 * Index of a bank, for {@link #iban(int, long)} and {@link #bic(int)}.
+	 */
+	static int bank(Random random) {
+		return random.nextInt(BANKS.length);
+	}
+
+	static String bic(int bank) {
+		return BICS[bank];
+	}
+
+	/**
+	 * A Dutch IBAN of the bank with a 10 digit account number.
+	 */
+	static String iban(int bank, long account) {
+		StringBuilder number = new StringBuilder(10).append(Math.abs(account % 10000000000L));
+		while(number.length()<10)
+			number.insert(0, '0');
+		String bban = BANKS[bank] + number;
+
+		return "NL" + Mod97.checkDigits(bban + "NL00") + bban;
+	}
+
+	/**
+	 * A Dutch creditor identifier (incassant ID) for a chamber of commerce number:
+	 * <code>NLkkZZZ</code>, the 8 digit number and <code>0000</code>.
+	 */
+	static String creditorId(int kvk) {
+		String id = String.format("%08d0000", kvk);
+		// the business code ZZZ is not part of the check digits
+		return "NL" + Mod97.checkDigits(id + "NL00") + "ZZZ" + id;
+	}
+
+	/**
+	 * An amount in cents between 1 cent and 10,000 euro, small amounts are more likely.
+	 * Uses {@link StrictMath} so that the amounts are the same on every platform.
+	 */
+	static long cents(Random random) {
+		return Math.max(1, (long) StrictMath.exp(random.nextDouble() * StrictMath.log(1000000)));
+	}
+
+}
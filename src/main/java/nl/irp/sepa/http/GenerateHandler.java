@@ -0,0 +1,164 @@
+package nl.irp.sepa.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import iso.std.iso._20022.tech.xsd.pain_008_001.SequenceType1Code;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import nl.irp.sepa.PaymentMessage;
+import nl.irp.sepa.SEPACreditTransfer;
+import nl.irp.sepa.sdd.DirectDebitInitiation;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * <code>POST /generate/pain.001</code> and <code>/generate/pain.008</code>: builds a message
+ * from tab separated lines, one line per group header, payment information group or
+ * transaction. Empty fields are <code>null</code>, a missing BIC is derived from the IBAN;
+ * empty lines and lines starting with # are skipped.
+ * <pre>
+ * H  msgId  initgPtyNm  [creDtTm]
+ *
+ * pain.001:
+ * G  pmtInfId  reqdExctnDt  debtorNm  debtorIban  [debtorBic]
+ * T  endToEndId  amount  creditorNm  creditorIban  creditorBic  text
+ *
+ * pain.008:
+ * G  pmtInfId  reqdColltnDt  seqTp  creditorNm  creditorIban  creditorBic  country  [addressLine...]
+ * T  instrId  endToEndId  amount  mandateId  dtOfSgntr  cdtrSchmeId  debtorNm  debtorIban  debtorBic  text
+ * </pre>
+ * The message is built with the builder of the handler thread, see
+ * {@link SEPACreditTransfer#forCurrentThread()}, and marshalled straight into the response.
+ */
+class GenerateHandler extends PostHandler {
+
+	private static final Splitter splitter = Splitter.on('\t');
+
+	@Override
+	protected void handle(HttpExchange exchange, String type) throws IOException, JAXBException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), Charsets.UTF_8));
+		PaymentMessage message;
+		if("pain.001".equals(type))
+			message = readCreditTransfer(reader);
+		else if("pain.008".equals(type))
+			message = readDirectDebit(reader);
+		else
+			throw new UnknownTypeException(type);
+
+		OutputStream os = new BufferedOutputStream(startResponse(exchange, "application/xml; charset=UTF-8"));
+		message.write(os);
+		os.close();
+	}
+
+	private SEPACreditTransfer readCreditTransfer(BufferedReader reader) throws IOException {
+		SEPACreditTransfer creditTransfer = SEPACreditTransfer.forCurrentThread();
+		SEPACreditTransfer.Betaalgroep group = null;
+		boolean header = false;
+		int lineNumber = 0;
+		String line;
+		while((line = reader.readLine())!=null) {
+			lineNumber++;
+			List<String> f = fields(line);
+			if(f==null)
+				continue;
+			try {
+				char record = record(f);
+				if(record=='H') {
+					creditTransfer.buildGroupHeader(get(f, 1), get(f, 2), date(f, 3));
+					header = true;
+				} else if(record=='G') {
+					checkArgument(header, "expected the H line first");
+					group = creditTransfer.betaalgroep(get(f, 1), new LocalDate(get(f, 2)), get(f, 3), get(f, 4), optional(f, 5));
+				} else {
+					checkArgument(group!=null, "expected a G line before the transactions");
+					group.creditTransfer(get(f, 1), new BigDecimal(get(f, 2)), optional(f, 5), get(f, 3), get(f, 4), get(f, 6));
+				}
+			} catch(IllegalArgumentException e) {
+				throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+			}
+		}
+		checkArgument(header, "no H line");
+		return creditTransfer;
+	}
+
+	private DirectDebitInitiation readDirectDebit(BufferedReader reader) throws IOException {
+		DirectDebitInitiation directDebit = DirectDebitInitiation.forCurrentThread();
+		DirectDebitInitiation.PaymentInstruction instruction = null;
+		boolean header = false;
+		int lineNumber = 0;
+		String line;
+		while((line = reader.readLine())!=null) {
+			lineNumber++;
+			List<String> f = fields(line);
+			if(f==null)
+				continue;
+			try {
+				char record = record(f);
+				if(record=='H') {
+					directDebit.buildGroupHeader(get(f, 1), get(f, 2), date(f, 3));
+					header = true;
+				} else if(record=='G') {
+					checkArgument(header, "expected the H line first");
+					instruction = directDebit.paymentInstruction(get(f, 1), new LocalDate(get(f, 2)).toDate(),
+							get(f, 4), SequenceType1Code.valueOf(get(f, 3)), get(f, 7), f.subList(Math.min(8, f.size()), f.size()),
+							get(f, 5), optional(f, 6));
+				} else {
+					checkArgument(instruction!=null, "expected a G line before the transactions");
+					instruction.addTransaction(get(f, 1), get(f, 2), new BigDecimal(get(f, 3)),
+							get(f, 4), new LocalDate(get(f, 5)), get(f, 6), get(f, 7), get(f, 8), optional(f, 9),
+							null, null, get(f, 10));
+				}
+			} catch(IllegalArgumentException e) {
+				throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+			}
+		}
+		checkArgument(header, "no H line");
+		return directDebit;
+	}
+
+	/**
+	 * The fields of a line, <code>null</code> for an empty line or a comment.
+	 */
+	private static List<String> fields(String line) {
+		if(line.trim().isEmpty() || line.startsWith("#"))
+			return null;
+		return Lists.newArrayList(splitter.split(line));
+	}
+
+	private static char record(List<String> fields) {
+		String record = fields.get(0);
+		checkArgument(record.equals("H") || record.equals("G") || record.equals("T"), "unknown record: %s", record);
+		return record.charAt(0);
+	}
+
+	private static String get(List<String> fields, int index) {
+		String value = optional(fields, index);
+		checkArgument(value!=null, "field %s is missing", index + 1);
+		return value;
+	}
+
+	private static String optional(List<String> fields, int index) {
+		return index<fields.size() && !fields.get(index).isEmpty() ? fields.get(index) : null;
+	}
+
+	private static Date date(List<String> fields, int index) {
+		String value = optional(fields, index);
+		return value==null ? new Date() : new LocalDateTime(value).toDate();
+	}
+
+}
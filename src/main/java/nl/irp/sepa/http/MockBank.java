@@ -0,0 +1,320 @@
+package nl.irp.sepa.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static nl.irp.sepa.XmlStreams.skipElement;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.irp.sepa.Amounts;
+import nl.irp.sepa.IBANUtils;
+import nl.irp.sepa.XmlStreams;
+import nl.irp.sepa.io.XmlWriter;
+
+import org.joda.time.LocalDateTime;
+
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * A stand-in for the upload endpoint of a bank, for end-to-end and load tests:
+ * <code>POST /bank</code> with a pain.001 or pain.008 message answers with a pain.002.001.03
+ * status report, which can be read with {@link nl.irp.sepa.status.PaymentStatusIndex}.
+ *
+ * The upload is read in one streaming pass and checked the way a bank does before it accepts a
+ * file:
+ * <ul>
+ * <li>a document that is not a pain.001 or pain.008 is rejected as a whole (FF01)</li>
+ * <li>a message of which the NbOfTxs or CtrlSum of the group header doesn't match the
+ * transactions is rejected as a whole (AM18, AM10)</li>
+ * <li>a transaction with an invalid counterparty IBAN is rejected (AC01)</li>
+ * <li>a share of the other transactions, see {@link #setRejectRate(double)}, is rejected as if
+ * the account were closed (AC04); which ones depends only on the EndToEndId, so the same
+ * upload always gets the same report</li>
+ * </ul>
+ * The report has a status for the message and every payment information group (ACCP, PART or
+ * RJCT) and lists the rejected transactions only.
+ */
+public class MockBank extends PostHandler {
+
+	private static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:pain.002.001.03";
+
+	private volatile double rejectRate;
+	private volatile long delayMillis;
+	private final AtomicLong reports = new AtomicLong();
+
+	/**
+	 * The share of the valid transactions that is rejected, 0 (the default) to 1.
+	 */
+	public void setRejectRate(double rejectRate) {
+		checkArgument(rejectRate>=0 && rejectRate<=1, "reject rate %s is not between 0 and 1", rejectRate);
+		this.rejectRate = rejectRate;
+	}
+
+	/**
+	 * The time the bank takes to process an upload, before it answers.
+	 */
+	public void setDelay(long millis) {
+		checkArgument(millis>=0, "negative delay: %s", millis);
+		this.delayMillis = millis;
+	}
+
+	/**
+	 * The number of reports sent.
+	 */
+	public long getReports() {
+		return reports.get();
+	}
+
+	private static class Transaction {
+		String instrId;
+		String endToEndId;
+		String reason;
+	}
+
+	private static class Group {
+		String pmtInfId;
+		int nbOfTxs;
+		final List<Transaction> rejected = Lists.newArrayList();
+	}
+
+	/**
+	 * What was read of the upload.
+	 */
+	private static class Upload {
+		String msgNmId;
+		String msgId;
+		String nbOfTxs;
+		BigDecimal ctrlSum;
+		int transactions;
+		long cents;
+		String reason;
+		final List<Group> groups = Lists.newArrayList();
+	}
+
+	@Override
+	protected void handle(HttpExchange exchange, String type) throws IOException, XMLStreamException {
+		Upload upload = new Upload();
+		try {
+			read(XmlStreams.createReader(exchange.getRequestBody()), upload);
+		} catch(XMLStreamException e) {
+			upload.reason = "FF01";
+		}
+		if(upload.reason==null && upload.msgId!=null) {
+			if(upload.nbOfTxs==null || !upload.nbOfTxs.equals(String.valueOf(upload.transactions)))
+				upload.reason = "AM18";
+			else if(upload.ctrlSum!=null && Amounts.toCents(upload.ctrlSum)!=upload.cents)
+				upload.reason = "AM10";
+		}
+		if(upload.msgId==null)
+			upload.reason = "FF01";
+
+		if(delayMillis>0) {
+			try {
+				Thread.sleep(delayMillis);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		OutputStream os = new BufferedOutputStream(startResponse(exchange, "application/xml; charset=UTF-8"));
+		writeReport(os, upload, reports.incrementAndGet());
+		os.close();
+	}
+
+	private void read(XMLStreamReader xml, Upload upload) throws XMLStreamException {
+		try {
+			xml.nextTag(); // Document
+			xml.nextTag();
+			String root = xml.getLocalName();
+			if("CstmrCdtTrfInitn".equals(root))
+				upload.msgNmId = "pain.001.001.03";
+			else if("CstmrDrctDbtInitn".equals(root))
+				upload.msgNmId = "pain.008.001.02";
+			else
+				return;
+
+			while(xml.nextTag()==START_ELEMENT) {
+				String name = xml.getLocalName();
+				if("GrpHdr".equals(name))
+					readGroupHeader(xml, upload);
+				else if("PmtInf".equals(name))
+					readGroup(xml, upload);
+				else
+					skipElement(xml);
+			}
+		} finally {
+			xml.close();
+		}
+	}
+
+	private void readGroupHeader(XMLStreamReader xml, Upload upload) throws XMLStreamException {
+		while(xml.nextTag()==START_ELEMENT) {
+			String name = xml.getLocalName();
+			if("MsgId".equals(name))
+				upload.msgId = xml.getElementText();
+			else if("NbOfTxs".equals(name))
+				upload.nbOfTxs = xml.getElementText().trim();
+			else if("CtrlSum".equals(name))
+				upload.ctrlSum = new BigDecimal(xml.getElementText().trim());
+			else
+				skipElement(xml);
+		}
+	}
+
+	private void readGroup(XMLStreamReader xml, Upload upload) throws XMLStreamException {
+		Group group = new Group();
+		upload.groups.add(group);
+		while(xml.nextTag()==START_ELEMENT) {
+			String name = xml.getLocalName();
+			if("PmtInfId".equals(name))
+				group.pmtInfId = xml.getElementText();
+			else if("CdtTrfTxInf".equals(name) || "DrctDbtTxInf".equals(name))
+				readTransaction(xml, upload, group);
+			else
+				skipElement(xml);
+		}
+	}
+
+	private void readTransaction(XMLStreamReader xml, Upload upload, Group group) throws XMLStreamException {
+		Transaction tx = new Transaction();
+		boolean validIban = true;
+		while(xml.nextTag()==START_ELEMENT) {
+			String name = xml.getLocalName();
+			if("PmtId".equals(name)) {
+				while(xml.nextTag()==START_ELEMENT) {
+					if("InstrId".equals(xml.getLocalName()))
+						tx.instrId = xml.getElementText();
+					else if("EndToEndId".equals(xml.getLocalName()))
+						tx.endToEndId = xml.getElementText();
+					else
+						skipElement(xml);
+				}
+			} else if("Amt".equals(name)) {
+				// credit transfers: Amt/InstdAmt
+				while(xml.nextTag()==START_ELEMENT)
+					upload.cents += Amounts.toCents(xml.getElementText().trim());
+			} else if("InstdAmt".equals(name)) {
+				upload.cents += Amounts.toCents(xml.getElementText().trim());
+			} else if("CdtrAcct".equals(name) || "DbtrAcct".equals(name)) {
+				String iban = readIban(xml);
+				validIban = iban!=null && IBANUtils.validate(iban);
+			} else {
+				skipElement(xml);
+			}
+		}
+		upload.transactions++;
+		group.nbOfTxs++;
+
+		if(!validIban)
+			tx.reason = "AC01";
+		else if(rejectRate>0 && rejected(tx.endToEndId))
+			tx.reason = "AC04";
+		if(tx.reason!=null)
+			group.rejected.add(tx);
+	}
+
+	private static String readIban(XMLStreamReader xml) throws XMLStreamException {
+		String iban = null;
+		while(xml.nextTag()==START_ELEMENT) {
+			if("Id".equals(xml.getLocalName())) {
+				while(xml.nextTag()==START_ELEMENT) {
+					if("IBAN".equals(xml.getLocalName()))
+						iban = xml.getElementText();
+					else
+						skipElement(xml);
+				}
+			} else {
+				skipElement(xml);
+			}
+		}
+		return iban;
+	}
+
+	/**
+	 * Whether the transaction falls in the rejected share, by a hash of the EndToEndId.
+	 */
+	private boolean rejected(String endToEndId) {
+		int h = endToEndId==null ? 0 : endToEndId.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return (h & 0xffff) < rejectRate * 0x10000;
+	}
+
+	private void writeReport(OutputStream os, Upload upload, long number) throws IOException {
+		String creDtTm = new LocalDateTime().toString("yyyy-MM-dd'T'HH:mm:ss");
+		int rejected = 0;
+		for(Group group : upload.groups)
+			rejected += group.rejected.size();
+
+		try {
+			XmlWriter xml = new XmlWriter(os);
+			xml.startDocument(NAMESPACE);
+			xml.start("CstmrPmtStsRpt");
+
+			xml.start("GrpHdr");
+			xml.element("MsgId", "STS-" + System.currentTimeMillis() + "-" + number);
+			xml.element("CreDtTm", creDtTm);
+			xml.end();
+
+			xml.start("OrgnlGrpInfAndSts");
+			xml.element("OrgnlMsgId", upload.msgId!=null ? upload.msgId : "NOTPROVIDED");
+			xml.element("OrgnlMsgNmId", upload.msgNmId!=null ? upload.msgNmId : "UNKNOWN");
+			if(upload.reason!=null) {
+				xml.element("GrpSts", "RJCT");
+				writeReason(xml, upload.reason);
+			} else {
+				xml.element("OrgnlNbOfTxs", String.valueOf(upload.transactions));
+				xml.element("GrpSts", status(rejected, upload.transactions));
+			}
+			xml.end();
+
+			if(upload.reason==null) {
+				for(Group group : upload.groups) {
+					xml.start("OrgnlPmtInfAndSts");
+					xml.element("OrgnlPmtInfId", group.pmtInfId);
+					xml.element("OrgnlNbOfTxs", String.valueOf(group.nbOfTxs));
+					xml.element("PmtInfSts", status(group.rejected.size(), group.nbOfTxs));
+					for(Transaction tx : group.rejected) {
+						xml.start("TxInfAndSts");
+						if(tx.instrId!=null)
+							xml.element("OrgnlInstrId", tx.instrId);
+						if(tx.endToEndId!=null)
+							xml.element("OrgnlEndToEndId", tx.endToEndId);
+						xml.element("TxSts", "RJCT");
+						writeReason(xml, tx.reason);
+						xml.end();
+					}
+					xml.end();
+				}
+			}
+
+			xml.end();
+			xml.endDocument();
+		} catch(XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static String status(int rejected, int transactions) {
+		if(rejected==0)
+			return "ACCP";
+		return rejected==transactions ? "RJCT" : "PART";
+	}
+
+	private static void writeReason(XmlWriter xml, String code) throws XMLStreamException {
+		xml.start("StsRsnInf");
+		xml.nested("Rsn", "Cd", code);
+		xml.end();
+	}
+
+}
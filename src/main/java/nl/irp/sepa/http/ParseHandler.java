@@ -0,0 +1,56 @@
+package nl.irp.sepa.http;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.camt.EntryExporter;
+import nl.irp.sepa.camt.EntryField;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * <code>POST /parse/camt.053</code>: streams the entries of a statement as CSV, one row per
+ * transaction, see {@link EntryExporter}. The columns are chosen with the query, for example
+ * <code>?columns=ACCOUNT_IBAN,BOOKING_DATE,AMOUNT,CDT_DBT_IND</code>; all {@link EntryField}s
+ * by default.
+ *
+ * The rows are written while the statement is read, so a statement that turns out to be
+ * invalid halfway gives an incomplete response.
+ */
+class ParseHandler extends PostHandler {
+
+	private static final Splitter splitter = Splitter.on(',').trimResults().omitEmptyStrings();
+
+	@Override
+	protected void handle(HttpExchange exchange, String type) throws IOException, XMLStreamException {
+		if(!"camt.053".equals(type))
+			throw new UnknownTypeException(type);
+		List<EntryField> columns = columns(exchange.getRequestURI().getQuery());
+
+		OutputStream os = new BufferedOutputStream(startResponse(exchange, "text/csv; charset=UTF-8"));
+		EntryExporter.exportCsv(exchange.getRequestBody(), os, columns);
+		os.close();
+	}
+
+	private static List<EntryField> columns(String query) {
+		if(query!=null) {
+			for(String parameter : Splitter.on('&').split(query)) {
+				if(parameter.startsWith("columns=")) {
+					List<EntryField> columns = Lists.newArrayList();
+					for(String column : splitter.split(parameter.substring("columns=".length())))
+						columns.add(EntryField.valueOf(column));
+					return columns;
+				}
+			}
+		}
+		return ImmutableList.copyOf(EntryField.values());
+	}
+
+}
@@ -0,0 +1,99 @@
+package nl.irp.sepa.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * A handler of POST requests with the message type as the last part of the path, like
+ * <code>/validate/pain.001</code>. Errors are answered with a status code and the message as
+ * plain text:
+ * <ul>
+ * <li>400 for a request that can't be read: {@link IllegalArgumentException} or {@link XMLStreamException}</li>
+ * <li>404 for an unknown message type</li>
+ * <li>405 for another method than POST</li>
+ * <li>500 for anything else</li>
+ * </ul>
+ * An error after the response headers were sent can't change the status anymore; the response
+ * is cut off then, which the client sees as an incomplete chunked body.
+ */
+abstract class PostHandler implements HttpHandler {
+
+	static final int UNPROCESSABLE_ENTITY = 422;
+
+	/**
+	 * Thrown for a message type the handler doesn't know.
+	 */
+	static class UnknownTypeException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		UnknownTypeException(String type) {
+			super("unknown message type: " + type);
+		}
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			if(!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				sendText(exchange, HttpURLConnection.HTTP_BAD_METHOD, "only POST is allowed\n");
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			String type = path.substring(path.lastIndexOf('/') + 1);
+			handle(exchange, type);
+		} catch(UnknownTypeException e) {
+			sendError(exchange, HttpURLConnection.HTTP_NOT_FOUND, e);
+		} catch(IllegalArgumentException e) {
+			sendError(exchange, HttpURLConnection.HTTP_BAD_REQUEST, e);
+		} catch(XMLStreamException e) {
+			sendError(exchange, HttpURLConnection.HTTP_BAD_REQUEST, e);
+		} catch(JAXBException e) {
+			sendError(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, e);
+		} catch(RuntimeException e) {
+			sendError(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Handle a POST request.
+	 * @param type the last part of the path
+	 */
+	protected abstract void handle(HttpExchange exchange, String type)
+			throws IOException, XMLStreamException, JAXBException;
+
+	/**
+	 * Send the status and headers of a streamed (chunked) response.
+	 */
+	static OutputStream startResponse(HttpExchange exchange, String contentType) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+		return exchange.getResponseBody();
+	}
+
+	static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] body = text.getBytes(Charsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(body);
+		os.close();
+	}
+
+	private static void sendError(HttpExchange exchange, int status, Exception e) throws IOException {
+		if(exchange.getResponseCode()>0)
+			return; // too late, the headers are sent
+		String message = e.getMessage()!=null ? e.getMessage() : e.toString();
+		sendText(exchange, status, message + "\n");
+	}
+
+}
@@ -0,0 +1,111 @@
+package nl.irp.sepa.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small embedded HTTP server, on the HTTP server of the JDK, for services that generate
+ * payment messages and read statements:
+ * <ul>
+ * <li><code>POST /generate/pain.001</code> and <code>/generate/pain.008</code>: a message from tab
+ * separated lines, a line per group header (H), payment information group (G) or transaction (T)</li>
+ * <li><code>POST /validate/&lt;type&gt;</code>: schema validation of a pain or camt message</li>
+ * <li><code>POST /parse/camt.053</code>: the entries of a statement as CSV</li>
+ * <li><code>POST /bank</code>: the {@link MockBank}, if it is added</li>
+ * </ul>
+ * <pre>
+ * SepaHttpServer server = new SepaHttpServer(new InetSocketAddress(8080), 8);
+ * server.addMockBank(new MockBank());
+ * server.start();
+ * ...
+ * server.stop(1);
+ * </pre>
+ *
+ * Request and response bodies are streamed; a response is sent chunked while it is written.
+ * Requests are handled by a bounded pool of daemon threads with a bounded queue. When the
+ * queue is full the thread that accepts the connections handles the request itself, so it
+ * stops accepting new connections until the pool catches up.
+ *
+ * The JDK server writes the headers and every chunk of a response separately; with Nagle's
+ * algorithm each small write waits for the delayed ACK of the client, about 40 ms per request.
+ * Start the JVM with <code>-Dsun.net.httpserver.nodelay=true</code>, or call
+ * {@link #enableNoDelay()} before the first server is created, to send them without delay. The
+ * setting is for every JDK HTTP server in the JVM, so the server doesn't change it by itself.
+ */
+public class SepaHttpServer {
+
+	private static final String NODELAY = "sun.net.httpserver.nodelay";
+
+	private final HttpServer server;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * A server with a queue of 8 requests per thread.
+	 * @param address the port 0 picks a free port, see {@link #getAddress()}
+	 */
+	public SepaHttpServer(InetSocketAddress address, int threads) throws IOException {
+		this(address, threads, 8 * threads);
+	}
+
+	public SepaHttpServer(InetSocketAddress address, int threads, int queueSize) throws IOException {
+		checkArgument(threads>0, "no threads");
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize),
+				new ThreadFactoryBuilder().setNameFormat("sepa-http-%d").setDaemon(true).build(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+
+		server = HttpServer.create(address, 0);
+		server.setExecutor(executor);
+		server.createContext("/generate/", new GenerateHandler());
+		server.createContext("/validate/", new ValidateHandler());
+		server.createContext("/parse/", new ParseHandler());
+	}
+
+	/**
+	 * Create the sockets of all JDK HTTP servers in this JVM with TCP_NODELAY, unless the system
+	 * property <code>sun.net.httpserver.nodelay</code> is set already. The JDK reads the property
+	 * once, so this only has effect before the first server is created.
+	 */
+	public static void enableNoDelay() {
+		if(System.getProperty(NODELAY)==null)
+			System.setProperty(NODELAY, "true");
+	}
+
+	/**
+	 * Answer uploads to <code>/bank</code> with the mock bank.
+	 */
+	public void addMockBank(MockBank bank) {
+		server.createContext("/bank", bank);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * The address the server listens on.
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Stop accepting requests and wait for the requests that are being handled.
+	 * @param delaySeconds the time the requests in progress get to finish
+	 */
+	public void stop(int delaySeconds) throws InterruptedException {
+		server.stop(delaySeconds);
+		executor.shutdown();
+		executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,131 @@
+package nl.irp.sepa.http;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import nl.irp.sepa.XmlStreams;
+import nl.irp.sepa.metrics.Measurement;
+import nl.irp.sepa.metrics.MessageType;
+import nl.irp.sepa.metrics.Metrics;
+import nl.irp.sepa.metrics.Phase;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Resources;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * <code>POST /validate/&lt;type&gt;</code>: validates a message against the bundled XML schema
+ * of its type (pain.001, pain.002, pain.008, camt.053 or camt.054) while it is read. Answers
+ * 200 with <code>valid</code>, or 422 with the first {@value #MAX_ERRORS} errors, one
+ * <code>line:column: message</code> per line.
+ *
+ * The message is read with the reader of {@link XmlStreams}, which doesn't resolve a DTD or
+ * external entities, so a request can't make the server read its files or other URLs.
+ */
+class ValidateHandler extends PostHandler {
+
+	static final int MAX_ERRORS = 100;
+
+	private static final Map<String, String> schemas = ImmutableMap.of(
+			"pain.001", "pain.001.001.03.xsd",
+			"pain.002", "pain.002.001.03.xsd",
+			"pain.008", "pain.008.001.02.xsd",
+			"camt.053", "camt.053.001.02.xsd",
+			"camt.054", "camt.054.001.02.xsd");
+
+	private static final Map<String, MessageType> types = ImmutableMap.of(
+			"pain.001", MessageType.PAIN_001,
+			"pain.002", MessageType.PAIN_002,
+			"pain.008", MessageType.PAIN_008,
+			"camt.053", MessageType.CAMT_053,
+			"camt.054", MessageType.CAMT_054);
+
+	// a compiled schema is thread safe, validators are not
+	private final Map<String, Schema> compiled = Maps.newConcurrentMap();
+
+	@Override
+	protected void handle(HttpExchange exchange, String type) throws IOException {
+		Validator validator = schema(type).newValidator();
+		final List<String> errors = Lists.newArrayList();
+		validator.setErrorHandler(new ErrorHandler() {
+			public void warning(SAXParseException e) {
+			}
+			public void error(SAXParseException e) throws SAXException {
+				errors.add(e.getLineNumber() + ":" + e.getColumnNumber() + ": " + e.getMessage());
+				if(errors.size()>=MAX_ERRORS)
+					throw e;
+			}
+			public void fatalError(SAXParseException e) throws SAXException {
+				errors.add(e.getLineNumber() + ":" + e.getColumnNumber() + ": " + e.getMessage());
+				throw e;
+			}
+		});
+
+		// only the phase is reported, a validated message is not counted as read
+		Measurement measurement = Metrics.start(types.get(type));
+		try {
+			validator.validate(new StAXSource(XmlStreams.createReader(exchange.getRequestBody())));
+		} catch(XMLStreamException e) {
+			errors.add(error(e));
+		} catch(SAXException e) {
+			// reported to the error handler, unless the message is not well-formed
+			if(e.getException() instanceof XMLStreamException)
+				errors.add(error((XMLStreamException) e.getException()));
+			else if(errors.isEmpty())
+				errors.add("0:0: " + e.getMessage());
+		}
+		measurement.phase(Phase.VALIDATE);
+
+		if(errors.isEmpty())
+			sendText(exchange, HttpURLConnection.HTTP_OK, "valid\n");
+		else
+			sendText(exchange, UNPROCESSABLE_ENTITY, Joiner.on('\n').join(errors) + "\n");
+	}
+
+	private static String error(XMLStreamException e) {
+		// the message of the reader starts with the location: ParseError at [row,col]:[1,1]\nMessage: ...
+		String message = e.getMessage();
+		int start = message.indexOf("Message: ");
+		if(start>=0)
+			message = message.substring(start + "Message: ".length());
+		Location location = e.getLocation();
+		if(location==null)
+			return "0:0: " + message;
+		return location.getLineNumber() + ":" + location.getColumnNumber() + ": " + message;
+	}
+
+	private Schema schema(String type) {
+		Schema schema = compiled.get(type);
+		if(schema==null) {
+			String resource = schemas.get(type);
+			if(resource==null)
+				throw new UnknownTypeException(type);
+			try {
+				schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+						.newSchema(Resources.getResource(resource));
+			} catch(SAXException e) {
+				throw new IllegalStateException("can't read the schema " + resource, e);
+			}
+			compiled.put(type, schema);
+		}
+		return schema;
+	}
+
+}
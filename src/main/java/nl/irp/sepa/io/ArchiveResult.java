@@ -0,0 +1,59 @@
+package nl.irp.sepa.io;
+
+/**
+ * The outcome of writing a message with an {@link ArchivingWriter}: the SHA-256 of the XML and
+ * its size before and after compression.
+ */
+public class ArchiveResult {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final byte[] sha256;
+	private final long size;
+	private final long compressedSize;
+
+	ArchiveResult(byte[] sha256, long size, long compressedSize) {
+		this.sha256 = sha256;
+		this.size = size;
+		this.compressedSize = compressedSize;
+	}
+
+	/**
+	 * SHA-256 of the uncompressed XML.
+	 */
+	public byte[] getSha256() {
+		return sha256.clone();
+	}
+
+	/**
+	 * SHA-256 of the uncompressed XML as 64 lower case hexadecimal characters.
+	 */
+	public String getSha256Hex() {
+		char[] hex = new char[sha256.length * 2];
+		for(int i=0; i<sha256.length; i++) {
+			hex[2*i] = HEX[(sha256[i] >> 4) & 0xf];
+			hex[2*i+1] = HEX[sha256[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Size of the XML in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Bytes written to the output, equal to {@link #getSize()} if the output is not compressed.
+	 */
+	public long getCompressedSize() {
+		return compressedSize;
+	}
+
+	@Override
+	public String toString() {
+		return "sha256=" + getSha256Hex() + ", size=" + size + ", compressed=" + compressedSize;
+	}
+
+}
@@ -0,0 +1,100 @@
+package nl.irp.sepa.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.bind.JAXBException;
+
+import nl.irp.sepa.PaymentMessage;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Writes a message for the archive in one pass: the XML is hashed with SHA-256 and optionally
+ * gzip compressed while it is written, so the file never has to be read back.
+ * <pre>
+ * ArchiveResult result = ArchivingWriter.write(creditTransfer, new File("pain.001.xml.gz"), true);
+ * audit.record(result.getSha256Hex(), result.getSize());
+ * </pre>
+ *
+ * The digest is always computed over the uncompressed XML, so it matches the file the bank
+ * receives.
+ */
+public class ArchivingWriter {
+
+	/**
+	 * A gzip stream of which the deflater can be ended without closing the stream it writes to.
+	 */
+	private static class GzipStream extends GZIPOutputStream {
+
+		GzipStream(OutputStream os) throws IOException {
+			super(os, 8192);
+		}
+
+		/**
+		 * Release the native memory of the deflater, which is otherwise only done by close().
+		 */
+		void end() {
+			def.end();
+		}
+
+	}
+
+	private ArchivingWriter() {
+	}
+
+	/**
+	 * Write the message to a stream. The stream is flushed, not closed.
+	 * @param gzip compress the XML
+	 */
+	public static ArchiveResult write(PaymentMessage message, OutputStream os, boolean gzip)
+			throws JAXBException, IOException {
+		CountingOutputStream compressed = new CountingOutputStream(os);
+		GzipStream gzipped = gzip ? new GzipStream(compressed) : null;
+		try {
+			MessageDigest digest = sha256();
+			CountingOutputStream uncompressed = new CountingOutputStream(
+					new DigestOutputStream(gzipped!=null ? gzipped : compressed, digest));
+
+			message.write(uncompressed);
+			if(gzipped!=null)
+				gzipped.finish();
+			compressed.flush();
+			return new ArchiveResult(digest.digest(), uncompressed.getCount(), compressed.getCount());
+		} finally {
+			if(gzipped!=null)
+				gzipped.end();
+		}
+	}
+
+	/**
+	 * Write the message to a file.
+	 * @param gzip compress the XML
+	 */
+	public static ArchiveResult write(PaymentMessage message, File file, boolean gzip)
+			throws JAXBException, IOException {
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+		try {
+			return write(message, os, gzip);
+		} finally {
+			os.close();
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
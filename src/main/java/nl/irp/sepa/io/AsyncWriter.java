@@ -0,0 +1,99 @@
+package nl.irp.sepa.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import nl.irp.sepa.PaymentMessage;
+
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes messages to files in the background, so that a slow (network) file system doesn't
+ * block the caller:
+ * <pre>
+ * AsyncWriter writer = new AsyncWriter();
+ * Future&lt;File&gt; written = writer.write(creditTransfer, file, true);
+ * ...
+ * written.get();
+ * </pre>
+ *
+ * The messages are marshalled on a pool of encoder threads into pooled buffers; one writer
+ * thread writes the buffers to the files with a {@link java.nio.channels.FileChannel}. Every file
+ * is double buffered, see {@link ChannelOutputStream}, so marshalling and writing overlap.
+ *
+ * A message must not be changed until its future is done.
+ */
+public class AsyncWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final ExecutorService encoders;
+	private final ExecutorService writer;
+	private final BufferPool pool;
+
+	/**
+	 * A writer with one encoder thread.
+	 */
+	public AsyncWriter() {
+		this(1);
+	}
+
+	public AsyncWriter(int encoderThreads) {
+		encoders = Executors.newFixedThreadPool(encoderThreads,
+				new ThreadFactoryBuilder().setNameFormat("sepa-encoder-%d").setDaemon(true).build());
+		writer = Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setNameFormat("sepa-writer-%d").setDaemon(true).build());
+		// two buffers per file that is being written
+		pool = new BufferPool(BUFFER_SIZE, 2 * encoderThreads);
+	}
+
+	/**
+	 * Write a message to a file without forcing it to the disk.
+	 */
+	public Future<File> write(PaymentMessage message, File file) {
+		return write(message, file, false);
+	}
+
+	/**
+	 * Write a message to a file. The future fails with the {@link javax.xml.bind.JAXBException}
+	 * or {@link IOException} of the write; the file may be incomplete then.
+	 * @param force fsync the file before the future completes
+	 */
+	public Future<File> write(final PaymentMessage message, final File file, final boolean force) {
+		return encoders.submit(new Callable<File>() {
+			public File call() throws Exception {
+				OutputStream os = new ChannelOutputStream(
+						new FileOutputStream(file).getChannel(), writer, pool, force);
+				boolean written = false;
+				try {
+					message.write(os);
+					os.close();
+					written = true;
+				} finally {
+					if(!written)
+						Closeables.closeQuietly(os);
+				}
+				return file;
+			}
+		});
+	}
+
+	/**
+	 * Stop accepting messages and wait until the messages that were submitted are written.
+	 */
+	public void shutdown() throws InterruptedException {
+		encoders.shutdown();
+		encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		writer.shutdown();
+		writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+}
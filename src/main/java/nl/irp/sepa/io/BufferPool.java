@@ -0,0 +1,48 @@
+package nl.irp.sepa.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reuses direct byte buffers of a fixed size. Direct buffers are expensive to allocate and are
+ * only released by the garbage collector, so the buffers for writing files are kept here.
+ * Buffers are allocated when the pool is empty; at most <code>maximumPooled</code> released
+ * buffers are kept.
+ */
+public class BufferPool {
+
+	private final int bufferSize;
+	private final BlockingQueue<ByteBuffer> free;
+
+	public BufferPool(int bufferSize, int maximumPooled) {
+		checkArgument(bufferSize>0, "buffer size %s", bufferSize);
+		this.bufferSize = bufferSize;
+		this.free = new ArrayBlockingQueue<ByteBuffer>(maximumPooled);
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * An empty buffer, from the pool if possible.
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = free.poll();
+		if(buffer==null)
+			return ByteBuffer.allocateDirect(bufferSize);
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Return a buffer to the pool. It must not be used anymore.
+	 */
+	public void release(ByteBuffer buffer) {
+		free.offer(buffer);
+	}
+
+}
@@ -0,0 +1,144 @@
+package nl.irp.sepa.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+
+/**
+ * An output stream to a file channel that writes on another thread, double buffered: while the
+ * writer thread writes one buffer to the channel, the stream fills the next. The stream only
+ * waits for the writer when it fills a buffer faster than the previous one is written.
+ *
+ * Write errors are reported by the next write, flush or close. {@link #close()} waits until all
+ * data is written, forces it to the disk if asked to, and closes the channel.
+ */
+public class ChannelOutputStream extends OutputStream {
+
+	private final FileChannel channel;
+	private final ExecutorService writer;
+	private final BufferPool pool;
+	private final boolean force;
+
+	private ByteBuffer buffer;
+	private Future<?> pending;
+	private boolean closed;
+
+	/**
+	 * @param writer the thread that writes to the channel, a single thread executor
+	 * @param force fsync the file on close
+	 */
+	public ChannelOutputStream(FileChannel channel, ExecutorService writer, BufferPool pool, boolean force) {
+		this.channel = channel;
+		this.writer = writer;
+		this.pool = pool;
+		this.force = force;
+		this.buffer = pool.acquire();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		if(!buffer.hasRemaining())
+			swap();
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		while(len>0) {
+			if(!buffer.hasRemaining())
+				swap();
+			int n = Math.min(len, buffer.remaining());
+			buffer.put(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Hands the buffered data to the writer thread, it doesn't wait until it is written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkOpen();
+		if(buffer.position()>0)
+			swap();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed)
+			return;
+		closed = true;
+		try {
+			if(buffer.position()>0)
+				swap();
+			await();
+			if(force) {
+				pending = writer.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						channel.force(true);
+						return null;
+					}
+				});
+				await();
+			}
+		} finally {
+			pool.release(buffer);
+			buffer = null;
+			channel.close();
+		}
+	}
+
+	/**
+	 * Wait for the previous buffer to be written, then hand over the current one.
+	 */
+	private void swap() throws IOException {
+		await();
+		final ByteBuffer full = buffer;
+		full.flip();
+		buffer = pool.acquire();
+		pending = writer.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				try {
+					while(full.hasRemaining())
+						channel.write(full);
+				} finally {
+					pool.release(full);
+				}
+				return null;
+			}
+		});
+	}
+
+	private void await() throws IOException {
+		if(pending==null)
+			return;
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the writer");
+		} catch (ExecutionException e) {
+			Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+			throw Throwables.propagate(e.getCause());
+		} finally {
+			pending = null;
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if(closed)
+			throw new IOException("stream is closed");
+	}
+
+}
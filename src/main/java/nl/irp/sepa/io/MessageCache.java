@@ -0,0 +1,103 @@
+package nl.irp.sepa.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.bind.JAXBException;
+
+import nl.irp.sepa.PaymentMessage;
+
+import com.google.common.io.Closeables;
+
+/**
+ * Remembers the file every message was written to by its content hash (see
+ * {@link PaymentMessage#getContentHash()}), so that generating the same message again, for
+ * example when a job is retried after a timeout, returns the file that was already written instead
+ * of a new one with another message id:
+ * <pre>
+ * MessageCache cache = new MessageCache(new File("outgoing"));
+ * File file = cache.write(creditTransfer);
+ * </pre>
+ *
+ * The files are named after the hash, <code>&lt;hash&gt;.xml</code>, in one directory, so the
+ * cache survives a restart. A message is marshalled once: it is written to a temporary file and
+ * hashed at the same time, and the file is renamed to its hash when it is complete, or dropped
+ * if a file with that hash is already there. When two threads write the same message at the same
+ * time, both write it and the first complete file is kept. Nothing is kept in memory, a written
+ * message is found by its file.
+ */
+public class MessageCache {
+
+	private static final String SUFFIX = ".xml";
+
+	private final File directory;
+	// held while a complete file is put in its place
+	private final Object lock = new Object();
+
+	/**
+	 * A cache in the directory, which is created if it doesn't exist.
+	 */
+	public MessageCache(File directory) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("can't create " + directory);
+		this.directory = directory;
+	}
+
+	/**
+	 * The file of a message with the content hash, <code>null</code> if none was written.
+	 */
+	public File get(String contentHash) {
+		File file = file(contentHash);
+		return file.isFile() ? file : null;
+	}
+
+	/**
+	 * The file of a message with the same content, written now if there is none yet.
+	 */
+	public File write(PaymentMessage message) throws JAXBException, IOException {
+		File temporary = File.createTempFile("message", SUFFIX + ".tmp", directory);
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(temporary), 64 * 1024);
+		String hash = null;
+		try {
+			hash = message.writeWithContentHash(os);
+			os.close();
+		} finally {
+			if(hash==null) {
+				Closeables.closeQuietly(os);
+				temporary.delete();
+			}
+		}
+		synchronized(lock) {
+			File file = get(hash);
+			if(file!=null) {
+				temporary.delete();
+				return file;
+			}
+			file = file(hash);
+			if(!temporary.renameTo(file)) {
+				temporary.delete();
+				throw new IOException("can't rename " + temporary + " to " + file);
+			}
+			return file;
+		}
+	}
+
+	/**
+	 * Forget a message, for example after it was rejected; the next {@link #write(PaymentMessage)}
+	 * of the same content writes a new file.
+	 * @return <code>true</code> if the file was removed
+	 */
+	public boolean remove(String contentHash) {
+		synchronized(lock) {
+			return file(contentHash).delete();
+		}
+	}
+
+	private File file(String contentHash) {
+		return new File(directory, contentHash + SUFFIX);
+	}
+
+}
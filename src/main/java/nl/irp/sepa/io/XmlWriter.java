@@ -0,0 +1,99 @@
+package nl.irp.sepa.io;
+
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import nl.irp.sepa.XmlStreams;
+
+/**
+ * Writes indented XML in the default namespace of a message, one element at a time, for the
+ * messages that are streamed without building their JAXB object tree.
+ */
+public class XmlWriter {
+
+	private final XMLStreamWriter writer;
+	private int depth;
+	private boolean text;
+
+	public XmlWriter(OutputStream os) throws XMLStreamException {
+		writer = XmlStreams.createWriter(os);
+	}
+
+	/**
+	 * The XML declaration and the <code>Document</code> root element.
+	 */
+	public void startDocument(String namespace) throws XMLStreamException {
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.setDefaultNamespace(namespace);
+		start("Document");
+		writer.writeDefaultNamespace(namespace);
+	}
+
+	public void endDocument() throws XMLStreamException {
+		end();
+		writer.writeEndDocument();
+		writer.writeCharacters("\n");
+		writer.flush();
+	}
+
+	public void start(String name) throws XMLStreamException {
+		indent();
+		writer.writeStartElement(name);
+		depth++;
+	}
+
+	public void end() throws XMLStreamException {
+		depth--;
+		if(!text)
+			indent();
+		writer.writeEndElement();
+		text = false;
+	}
+
+	/**
+	 * An element with text only.
+	 */
+	public void element(String name, String value) throws XMLStreamException {
+		start(name);
+		writer.writeCharacters(value);
+		text = true;
+		end();
+	}
+
+	/**
+	 * An amount in euro, <code>&lt;Amt Ccy="EUR"&gt;12.50&lt;/Amt&gt;</code>.
+	 */
+	public void amount(String name, String value) throws XMLStreamException {
+		start(name);
+		writer.writeAttribute("Ccy", "EUR");
+		writer.writeCharacters(value);
+		text = true;
+		end();
+	}
+
+	/**
+	 * Nested elements with a text in the innermost one, e.g. <code>nested("SvcLvl", "Cd", "SEPA")</code>.
+	 */
+	public void nested(String... namesAndValue) throws XMLStreamException {
+		int elements = namesAndValue.length - 1;
+		for(int i=0; i<elements-1; i++)
+			start(namesAndValue[i]);
+		element(namesAndValue[elements-1], namesAndValue[elements]);
+		for(int i=0; i<elements-1; i++)
+			end();
+	}
+
+	public void flush() throws XMLStreamException {
+		writer.flush();
+	}
+
+	private void indent() throws XMLStreamException {
+		StringBuilder sb = new StringBuilder(depth + 1).append('\n');
+		for(int i=0; i<depth; i++)
+			sb.append('\t');
+		writer.writeCharacters(sb.toString());
+	}
+
+}
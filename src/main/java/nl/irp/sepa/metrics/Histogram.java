@@ -0,0 +1,61 @@
+package nl.irp.sepa.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of non-negative values with power of two buckets, so percentiles are
+ * accurate to a factor of two. Good enough to see where the time goes, and cheap to update.
+ */
+public class Histogram {
+
+	private final AtomicLongArray buckets = new AtomicLongArray(64);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void update(long value) {
+		if(value<0)
+			value = 0;
+		buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value) - (value==0 ? 0 : 1));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current;
+		while(value>(current = max.get()) && !max.compareAndSet(current, value));
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getMean() {
+		long n = count.get();
+		return n==0 ? 0 : sum.get() / n;
+	}
+
+	/**
+	 * The upper bound of the bucket that contains the percentile, for example 0.99.
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.get();
+		if(n==0)
+			return 0;
+		long rank = (long) Math.ceil(percentile * n);
+		long seen = 0;
+		for(int i=0; i<64; i++) {
+			seen += buckets.get(i);
+			if(seen>=rank)
+				return Math.min(i==63 ? Long.MAX_VALUE : (2L << i) - 1, max.get());
+		}
+		return max.get();
+	}
+
+}
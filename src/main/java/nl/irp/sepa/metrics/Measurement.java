@@ -0,0 +1,166 @@
+package nl.irp.sepa.metrics;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Measures the phases of writing or reading one message:
+ *
+ * <pre>
+ * Measurement measurement = Metrics.start(MessageType.PAIN_001);
+ * os = measurement.count(os);
+ * ... acquire the context
+ * measurement.phase(Phase.CONTEXT);
+ * ... marshal
+ * measurement.phase(Phase.MARSHAL);
+ * measurement.completed(transactions);
+ * </pre>
+ *
+ * Every {@link #phase(Phase)} reports the time since the previous one (or since the start).
+ * Not thread safe, a measurement belongs to one message.
+ */
+public class Measurement {
+
+	/**
+	 * Measures nothing.
+	 */
+	static final Measurement NONE = new Measurement(null, null) {
+		@Override
+		public void restart() {
+		}
+		@Override
+		public long time() {
+			return 0;
+		}
+		@Override
+		public void built(long since) {
+		}
+		@Override
+		public void setType(MessageType type) {
+		}
+		@Override
+		public void phase(Phase phase) {
+		}
+		@Override
+		public OutputStream count(OutputStream os) {
+			return os;
+		}
+		@Override
+		public InputStream count(InputStream is) {
+			return is;
+		}
+		@Override
+		public void completed(long transactions) {
+		}
+	};
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private final MetricsListener listener;
+	private MessageType type;
+	private final boolean allocations;
+	private long start;
+	private long phaseStart;
+	private long phaseAllocated;
+	private long buildNanos;
+	private CountingOutputStream out;
+	private CountingInputStream in;
+
+	Measurement(MetricsListener listener, MessageType type) {
+		this.listener = listener;
+		this.type = type;
+		this.allocations = listener!=null && listener.isTrackingAllocations() && supportsAllocations();
+		this.start = this.phaseStart = System.nanoTime();
+		this.phaseAllocated = allocated();
+	}
+
+	/**
+	 * Start over, for a builder that measures from its creation until it is written.
+	 * Reports the build time collected so far.
+	 */
+	public void restart() {
+		if(buildNanos>0) {
+			listener.phase(type, Phase.BUILD, buildNanos, -1);
+			buildNanos = 0;
+		}
+		out = null;
+		in = null;
+		start = phaseStart = System.nanoTime();
+		phaseAllocated = allocated();
+	}
+
+	/**
+	 * The clock, for {@link #built(long)}; 0 when nothing is measured.
+	 */
+	public long time() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Add the time since <code>since</code> to the build phase, which is reported by the next
+	 * {@link #restart()}.
+	 */
+	public void built(long since) {
+		buildNanos += System.nanoTime() - since;
+	}
+
+	/**
+	 * Change the message type, for a reader that only knows it once it has read the message.
+	 * Applies to the phases that are reported after it.
+	 */
+	public void setType(MessageType type) {
+		this.type = type;
+	}
+
+	/**
+	 * End a phase that started at the previous phase.
+	 */
+	public void phase(Phase phase) {
+		long now = System.nanoTime();
+		long allocated = allocated();
+		listener.phase(type, phase, now - phaseStart, allocated<0 ? -1 : allocated - phaseAllocated);
+		phaseStart = now;
+		phaseAllocated = allocated;
+	}
+
+	/**
+	 * Count the bytes written to the stream.
+	 */
+	public OutputStream count(OutputStream os) {
+		return out = new CountingOutputStream(os);
+	}
+
+	/**
+	 * Count the bytes read from the stream.
+	 */
+	public InputStream count(InputStream is) {
+		return in = new CountingInputStream(is);
+	}
+
+	public void completed(long transactions) {
+		long bytes = out!=null ? out.getCount() : in!=null ? in.getCount() : -1;
+		listener.completed(type, transactions, bytes, System.nanoTime() - start);
+	}
+
+	private long allocated() {
+		if(!allocations)
+			return -1;
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static boolean supportsAllocations() {
+		try {
+			return threads instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+					&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+		} catch(NoClassDefFoundError e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package nl.irp.sepa.metrics;
+
+/**
+ * The messages that are measured.
+ */
+public enum MessageType {
+
+	PAIN_001("pain.001.001.03"),
+	PAIN_002("pain.002.001.03"),
+	PAIN_008("pain.008.001.02"),
+	CAMT_053("camt.053.001.02"),
+	CAMT_054("camt.054.001.02");
+
+	private final String name;
+
+	private MessageType(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * The ISO 20022 message name, for example <code>pain.001.001.03</code>.
+	 */
+	public String getName() {
+		return name;
+	}
+
+}
@@ -0,0 +1,55 @@
+package nl.irp.sepa.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The global {@link MetricsListener}.
+ *
+ * By default nothing is measured: the messages then get a no-op {@link Measurement} and don't
+ * even read the clock.
+ */
+public class Metrics {
+
+	public static final MetricsListener NOOP = new MetricsListener() {
+		public boolean isTrackingAllocations() {
+			return false;
+		}
+		public void phase(MessageType type, Phase phase, long nanos, long allocatedBytes) {
+		}
+		public void completed(MessageType type, long transactions, long bytes, long nanos) {
+		}
+	};
+
+	private static volatile MetricsListener listener = NOOP;
+
+	private Metrics() {
+	}
+
+	/**
+	 * Install a listener. Builders that already exist keep reporting to the previous listener
+	 * until they are reset.
+	 */
+	public static void setListener(MetricsListener listener) {
+		Metrics.listener = checkNotNull(listener);
+	}
+
+	/**
+	 * Stop measuring.
+	 */
+	public static void reset() {
+		listener = NOOP;
+	}
+
+	public static MetricsListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Start measuring a message.
+	 */
+	public static Measurement start(MessageType type) {
+		MetricsListener current = listener;
+		return current==NOOP ? Measurement.NONE : new Measurement(current, type);
+	}
+
+}
@@ -0,0 +1,33 @@
+package nl.irp.sepa.metrics;
+
+/**
+ * Receives the timings of writing and reading messages. Install a listener with
+ * {@link Metrics#setListener(MetricsListener)}; a {@link MetricsRegistry} collects the figures.
+ *
+ * Listeners are called on the thread that writes or reads the message, so they must be thread
+ * safe and fast.
+ */
+public interface MetricsListener {
+
+	/**
+	 * Whether the bytes allocated by the current thread should be measured per phase.
+	 * This needs a HotSpot JVM; the measurement itself is cheap but not free.
+	 */
+	boolean isTrackingAllocations();
+
+	/**
+	 * A phase has ended.
+	 * @param nanos the time the phase took
+	 * @param allocatedBytes the bytes allocated during the phase, or -1 if not measured
+	 */
+	void phase(MessageType type, Phase phase, long nanos, long allocatedBytes);
+
+	/**
+	 * A message has been written or read.
+	 * @param transactions the number of transactions of a pain message, or entries of a statement
+	 * @param bytes the bytes written or read
+	 * @param nanos the time from the first phase until now, build time excluded
+	 */
+	void completed(MessageType type, long transactions, long bytes, long nanos);
+
+}
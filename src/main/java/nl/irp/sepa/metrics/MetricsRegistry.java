@@ -0,0 +1,133 @@
+package nl.irp.sepa.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MetricsListener} that collects counters and histograms per message type:
+ * the number of messages, transactions and bytes, a histogram of the total time, and per
+ * phase a histogram of the time and the allocated bytes.
+ *
+ * <pre>
+ * MetricsRegistry registry = new MetricsRegistry(false);
+ * Metrics.setListener(registry);
+ * </pre>
+ */
+public class MetricsRegistry implements MetricsListener {
+
+	private static class Counters {
+		final AtomicLong messages = new AtomicLong();
+		final AtomicLong transactions = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+		final Histogram durations = new Histogram();
+		final Map<Phase, Histogram> phases = new EnumMap<Phase, Histogram>(Phase.class);
+		final Map<Phase, Histogram> allocations = new EnumMap<Phase, Histogram>(Phase.class);
+
+		Counters() {
+			for(Phase phase : Phase.values()) {
+				phases.put(phase, new Histogram());
+				allocations.put(phase, new Histogram());
+			}
+		}
+	}
+
+	private final boolean trackingAllocations;
+	private final Map<MessageType, Counters> counters = new EnumMap<MessageType, Counters>(MessageType.class);
+
+	/**
+	 * @param trackingAllocations measure the bytes allocated per phase
+	 */
+	public MetricsRegistry(boolean trackingAllocations) {
+		this.trackingAllocations = trackingAllocations;
+		// all maps are filled up front, so no locking is needed
+		for(MessageType type : MessageType.values())
+			counters.put(type, new Counters());
+	}
+
+	public boolean isTrackingAllocations() {
+		return trackingAllocations;
+	}
+
+	public void phase(MessageType type, Phase phase, long nanos, long allocatedBytes) {
+		Counters c = counters.get(type);
+		c.phases.get(phase).update(nanos);
+		if(allocatedBytes>=0)
+			c.allocations.get(phase).update(allocatedBytes);
+	}
+
+	public void completed(MessageType type, long transactions, long bytes, long nanos) {
+		Counters c = counters.get(type);
+		c.messages.incrementAndGet();
+		c.transactions.addAndGet(transactions);
+		if(bytes>0)
+			c.bytes.addAndGet(bytes);
+		c.durations.update(nanos);
+	}
+
+	public long getMessages(MessageType type) {
+		return counters.get(type).messages.get();
+	}
+
+	public long getTransactions(MessageType type) {
+		return counters.get(type).transactions.get();
+	}
+
+	public long getBytes(MessageType type) {
+		return counters.get(type).bytes.get();
+	}
+
+	/**
+	 * The total time per message in nanoseconds, build time excluded.
+	 */
+	public Histogram getDurations(MessageType type) {
+		return counters.get(type).durations;
+	}
+
+	/**
+	 * The time of a phase in nanoseconds.
+	 */
+	public Histogram getPhase(MessageType type, Phase phase) {
+		return counters.get(type).phases.get(phase);
+	}
+
+	/**
+	 * The bytes allocated in a phase, empty unless allocations are tracked.
+	 */
+	public Histogram getAllocations(MessageType type, Phase phase) {
+		return counters.get(type).allocations.get(phase);
+	}
+
+	/**
+	 * Transactions per second of writing or reading time.
+	 */
+	public double getTransactionsPerSecond(MessageType type) {
+		long nanos = getDurations(type).getSum();
+		return nanos==0 ? 0 : getTransactions(type) * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+	}
+
+	/**
+	 * A one line summary of a message type, for example for a log file.
+	 */
+	public String summary(MessageType type) {
+		StringBuilder sb = new StringBuilder(type.getName()).append(": ")
+			.append(getMessages(type)).append(" messages, ")
+			.append(getTransactions(type)).append(" transactions, ")
+			.append(getBytes(type)).append(" bytes, ")
+			.append(String.format("%.0f", getTransactionsPerSecond(type))).append(" tx/s");
+		for(Phase phase : Phase.values()) {
+			Histogram histogram = getPhase(type, phase);
+			if(histogram.getCount()==0)
+				continue;
+			sb.append(", ").append(phase.name().toLowerCase())
+				.append(" mean ").append(TimeUnit.NANOSECONDS.toMicros(histogram.getMean())).append("us")
+				.append(" p99 ").append(TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(0.99))).append("us");
+			Histogram allocated = getAllocations(type, phase);
+			if(allocated.getCount()>0)
+				sb.append(" ").append(allocated.getMean() / 1024).append("KB");
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,43 @@
+package nl.irp.sepa.metrics;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the summary of a {@link MetricsRegistry} for every message type that was measured.
+ *
+ * <pre>
+ * MetricsSummaryLogger.schedule(registry, executor, 1, TimeUnit.MINUTES);
+ * </pre>
+ */
+public class MetricsSummaryLogger implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MetricsSummaryLogger.class);
+
+	private final MetricsRegistry registry;
+
+	public MetricsSummaryLogger(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Log the summaries periodically.
+	 */
+	public static ScheduledFuture<?> schedule(MetricsRegistry registry, ScheduledExecutorService executor,
+			long period, TimeUnit unit) {
+		return executor.scheduleAtFixedRate(new MetricsSummaryLogger(registry), period, period, unit);
+	}
+
+	public void run() {
+		if(!logger.isInfoEnabled())
+			return;
+		for(MessageType type : MessageType.values())
+			if(registry.getMessages(type)>0)
+				logger.info(registry.summary(type));
+	}
+
+}
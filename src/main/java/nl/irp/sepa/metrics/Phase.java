@@ -0,0 +1,23 @@
+package nl.irp.sepa.metrics;
+
+/**
+ * The phases of writing or reading a message.
+ */
+public enum Phase {
+
+	/** Adding the payment information groups and transactions to the builder, in total. */
+	BUILD,
+	/** Acquiring the JAXBContext. */
+	CONTEXT,
+	/** Validating the message against its XML schema, while it is read. */
+	VALIDATE,
+	/** Writing the JAXB document as XML. */
+	MARSHAL,
+	/** Parsing the XML into a JAXB document. */
+	UNMARSHAL,
+	/** Streaming the XML to a handler, including the work of the handler, like checking the balances. */
+	READ,
+	/** Flushing the output stream. */
+	FLUSH
+
+}
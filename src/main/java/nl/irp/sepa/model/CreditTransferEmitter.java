@@ -0,0 +1,58 @@
+package nl.irp.sepa.model;
+
+import static nl.irp.sepa.Amounts.format;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.io.XmlWriter;
+
+/**
+ * Writes a pain.001.001.03 credit transfer initiation, see {@link PaymentEmitter}.
+ */
+public class CreditTransferEmitter extends PaymentEmitter {
+
+	@Override
+	protected String getNamespace() {
+		return "urn:iso:std:iso:20022:tech:xsd:pain.001.001.03";
+	}
+
+	@Override
+	protected String getRootElement() {
+		return "CstmrCdtTrfInitn";
+	}
+
+	@Override
+	protected void check(PaymentGroup group) {
+		// every group can be paid
+	}
+
+	@Override
+	protected void writeGroup(XmlWriter xml, PaymentGroup group) throws XMLStreamException {
+		writeGroupStart(xml, group, "TRF");
+		xml.start("PmtTpInf");
+		xml.nested("SvcLvl", "Cd", "SEPA");
+		xml.end();
+		xml.element("ReqdExctnDt", group.getDate().toString());
+		writeParty(xml, "Dbtr", group.getOwner());
+		writeAccount(xml, "DbtrAcct", group.getOwner());
+		writeAgent(xml, "DbtrAgt", group.getOwner());
+		xml.element("ChrgBr", "SLEV");
+
+		for(Payment payment : group.getPayments()) {
+			xml.start("CdtTrfTxInf");
+			writePaymentId(xml, payment);
+			xml.start("Amt");
+			xml.amount("InstdAmt", format(payment.getAmount()));
+			xml.end();
+			// the creditor agent is optional, it is left out if the bank is unknown
+			if(payment.getCounterparty().getAgentBic()!=null)
+				writeAgent(xml, "CdtrAgt", payment.getCounterparty());
+			writeParty(xml, "Cdtr", payment.getCounterparty());
+			writeAccount(xml, "CdtrAcct", payment.getCounterparty());
+			writeRemittanceInformation(xml, payment);
+			xml.end();
+		}
+		xml.end();
+	}
+
+}
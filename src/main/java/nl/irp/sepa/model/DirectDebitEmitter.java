@@ -0,0 +1,79 @@
+package nl.irp.sepa.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static nl.irp.sepa.Amounts.format;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.io.XmlWriter;
+
+/**
+ * Writes a pain.008.001.02 direct debit initiation, see {@link PaymentEmitter}. Every group
+ * needs a creditor id and sequence type, and every payment a mandate.
+ */
+public class DirectDebitEmitter extends PaymentEmitter {
+
+	@Override
+	protected String getNamespace() {
+		return "urn:iso:std:iso:20022:tech:xsd:pain.008.001.02";
+	}
+
+	@Override
+	protected String getRootElement() {
+		return "CstmrDrctDbtInitn";
+	}
+
+	@Override
+	protected void check(PaymentGroup group) {
+		checkArgument(group.getCreditorId()!=null && group.getLocalInstrument()!=null && group.getSequenceType()!=null,
+				"group %s is not a direct debit group", group.getPmtInfId());
+		for(Payment payment : group.getPayments())
+			checkArgument(payment.getMandateId()!=null, "payment %s has no mandate", payment.getEndToEndId());
+	}
+
+	@Override
+	protected void writeGroup(XmlWriter xml, PaymentGroup group) throws XMLStreamException {
+		writeGroupStart(xml, group, "DD");
+		xml.start("PmtTpInf");
+		xml.nested("SvcLvl", "Cd", "SEPA");
+		xml.nested("LclInstrm", "Cd", group.getLocalInstrument());
+		xml.element("SeqTp", group.getSequenceType());
+		xml.end();
+		xml.element("ReqdColltnDt", group.getDate().toString());
+		writeParty(xml, "Cdtr", group.getOwner());
+		writeAccount(xml, "CdtrAcct", group.getOwner());
+		writeAgent(xml, "CdtrAgt", group.getOwner());
+		xml.element("ChrgBr", "SLEV");
+
+		for(Payment payment : group.getPayments()) {
+			xml.start("DrctDbtTxInf");
+			writePaymentId(xml, payment);
+			xml.amount("InstdAmt", format(payment.getAmount()));
+			xml.start("DrctDbtTx");
+			xml.start("MndtRltdInf");
+			xml.element("MndtId", payment.getMandateId());
+			xml.element("DtOfSgntr", payment.getDateOfSignature().toString());
+			xml.element("AmdmntInd", "false");
+			xml.end();
+			xml.start("CdtrSchmeId");
+			xml.start("Id");
+			xml.start("PrvtId");
+			xml.start("Othr");
+			xml.element("Id", group.getCreditorId());
+			xml.nested("SchmeNm", "Prtry", "SEPA");
+			xml.end();
+			xml.end();
+			xml.end();
+			xml.end();
+			xml.end();
+			writeAgent(xml, "DbtrAgt", payment.getCounterparty());
+			writeParty(xml, "Dbtr", payment.getCounterparty());
+			writeAccount(xml, "DbtrAcct", payment.getCounterparty());
+			xml.nested("Purp", "Cd", "OTHR");
+			writeRemittanceInformation(xml, payment);
+			xml.end();
+		}
+		xml.end();
+	}
+
+}
@@ -0,0 +1,89 @@
+package nl.irp.sepa.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import nl.irp.sepa.BICUtils;
+import nl.irp.sepa.BicDirectory;
+import nl.irp.sepa.SepaText;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A party of a payment and its account: the debtor or creditor of a {@link PaymentGroup}, or
+ * the counterparty of a {@link Payment}. The name is transliterated and cut off at 70
+ * characters when the party is created (see {@link SepaText}), so it is checked only once
+ * however many messages it is written to.
+ */
+public class Party {
+
+	private final String name;
+	private final String iban;
+	private final String bic;
+	private final String country;
+	private final List<String> addressLines;
+
+	/**
+	 * A party whose BIC is derived from the IBAN, see {@link BicDirectory}.
+	 */
+	public Party(String name, String iban) {
+		this(name, iban, null);
+	}
+
+	public Party(String name, String iban, String bic) {
+		this(name, iban, bic, null, Collections.<String>emptyList());
+	}
+
+	/**
+	 * @param bic the BIC of the bank, <code>null</code> to derive it from the IBAN
+	 * @param country the country of the postal address, <code>null</code> for none
+	 */
+	public Party(String name, String iban, String bic, String country, List<String> addressLines) {
+		this.name = SepaText.sanitize(checkNotNull(name, "name"), 70);
+		checkArgument(this.name.length()>=1, "name is empty");
+		this.iban = checkNotNull(iban, "iban");
+		checkArgument(bic==null || BICUtils.isValid(bic), "not a BIC: %s", bic);
+		this.bic = bic;
+		this.country = country;
+		this.addressLines = ImmutableList.copyOf(addressLines);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getIban() {
+		return iban;
+	}
+
+	/**
+	 * The BIC as given, can be <code>null</code>.
+	 */
+	public String getBic() {
+		return bic;
+	}
+
+	/**
+	 * The BIC as given or else the BIC of the IBAN, <code>null</code> if the bank is unknown.
+	 */
+	public String getAgentBic() {
+		return bic!=null ? bic : BicDirectory.getDefault().getBic(iban);
+	}
+
+	public String getCountry() {
+		return country;
+	}
+
+	public List<String> getAddressLines() {
+		return addressLines;
+	}
+
+	@Override
+	public String toString() {
+		return name + " " + iban;
+	}
+
+}
@@ -0,0 +1,106 @@
+package nl.irp.sepa.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import nl.irp.sepa.Amounts;
+import nl.irp.sepa.SepaText;
+
+import org.joda.time.LocalDate;
+
+/**
+ * A single transaction of a {@link PaymentGroup}, the same for a credit transfer and a direct
+ * debit: the counterparty is the creditor of a credit transfer and the debtor of a direct
+ * debit. The amount is kept in euro cents, see {@link Amounts}.
+ *
+ * Text is transliterated to the SEPA character set when the payment is created; the
+ * identifications are never cut off, the remittance information is cut off at 140 characters.
+ */
+public class Payment {
+
+	private final String instrId;
+	private final String endToEndId;
+	private final long amount;
+	private final Party counterparty;
+	private final String mandateId;
+	private final LocalDate dateOfSignature;
+	private final String remittanceInformation;
+
+	/**
+	 * @param instrId the instruction identification, <code>null</code> for none
+	 * @param amount in cents
+	 * @param mandateId the mandate of a direct debit, <code>null</code> for a credit transfer
+	 * @param remittanceInformation unstructured remittance information, <code>null</code> for none
+	 */
+	public Payment(String instrId, String endToEndId, long amount, Party counterparty,
+			String mandateId, LocalDate dateOfSignature, String remittanceInformation) {
+		this.instrId = instrId==null ? null : identification(instrId);
+		this.endToEndId = identification(checkNotNull(endToEndId, "endToEndId"));
+		checkArgument(amount>0, "amount must be positive: %s", amount);
+		this.amount = amount;
+		this.counterparty = checkNotNull(counterparty, "counterparty");
+		checkArgument(mandateId==null || dateOfSignature!=null, "mandate %s has no date of signature", mandateId);
+		this.mandateId = mandateId==null ? null : identification(mandateId);
+		this.dateOfSignature = dateOfSignature;
+		this.remittanceInformation = remittanceInformation==null ? null : SepaText.sanitize(remittanceInformation, 140);
+		checkArgument(this.remittanceInformation==null || this.remittanceInformation.length()>=1,
+				"remittance information is empty");
+	}
+
+	/**
+	 * A payment to the creditor.
+	 */
+	public static Payment creditTransfer(String endToEndId, long amount, Party creditor, String text) {
+		return new Payment(null, endToEndId, amount, creditor, null, null, text);
+	}
+
+	/**
+	 * A collection from the debtor under a mandate.
+	 */
+	public static Payment directDebit(String instrId, String endToEndId, long amount, Party debtor,
+			String mandateId, LocalDate dateOfSignature, String text) {
+		return new Payment(instrId, endToEndId, amount, debtor, checkNotNull(mandateId, "mandateId"), dateOfSignature, text);
+	}
+
+	public String getInstrId() {
+		return instrId;
+	}
+
+	public String getEndToEndId() {
+		return endToEndId;
+	}
+
+	/**
+	 * The amount in cents.
+	 */
+	public long getAmount() {
+		return amount;
+	}
+
+	public Party getCounterparty() {
+		return counterparty;
+	}
+
+	public String getMandateId() {
+		return mandateId;
+	}
+
+	public LocalDate getDateOfSignature() {
+		return dateOfSignature;
+	}
+
+	public String getRemittanceInformation() {
+		return remittanceInformation;
+	}
+
+	@Override
+	public String toString() {
+		return endToEndId + " " + Amounts.format(amount) + " " + counterparty;
+	}
+
+	private static String identification(String id) {
+		id = SepaText.transliterate(id);
+		checkArgument(id.length()>=1 && id.length()<=35, "length of identification '%s' is not 1 to 35", id);
+		return id;
+	}
+
+}
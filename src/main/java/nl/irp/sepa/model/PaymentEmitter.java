@@ -0,0 +1,134 @@
+package nl.irp.sepa.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static nl.irp.sepa.Amounts.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.SepaText;
+import nl.irp.sepa.io.XmlWriter;
+
+import org.joda.time.LocalDateTime;
+
+/**
+ * Writes {@link PaymentGroup}s as a payment initiation message with StAX, one transaction at a
+ * time, without building the JAXB object tree. The output is the same as that of the JAXB
+ * builders ({@link nl.irp.sepa.SEPACreditTransfer}, {@link nl.irp.sepa.sdd.DirectDebitInitiation}).
+ *
+ * An emitter has no state and can be shared between threads.
+ */
+public abstract class PaymentEmitter {
+
+	/**
+	 * Write the message. Groups without payments are left out.
+	 * @param msgId the message id, <code>null</code> to generate one
+	 */
+	public void write(OutputStream os, String msgId, String initgPtyNm, Date creDtTm,
+			Iterable<PaymentGroup> groups) throws IOException {
+		if(msgId==null)
+			msgId = UUID.randomUUID().toString().replaceAll("-", "");
+		checkArgument(msgId.length()<=35, "length of msgId is more than 35");
+		checkArgument(msgId.length()>1, "length of msgId is less than 1");
+
+		long nbOfTxs = 0;
+		long ctrlSum = 0;
+		for(PaymentGroup group : groups) {
+			check(group);
+			nbOfTxs += group.getNbOfTxs();
+			ctrlSum += group.getCtrlSum();
+		}
+
+		try {
+			XmlWriter xml = new XmlWriter(os);
+			xml.startDocument(getNamespace());
+			xml.start(getRootElement());
+
+			xml.start("GrpHdr");
+			xml.element("MsgId", msgId);
+			xml.element("CreDtTm", new LocalDateTime(creDtTm).toString("yyyy-MM-dd'T'HH:mm:ss"));
+			xml.element("NbOfTxs", String.valueOf(nbOfTxs));
+			xml.element("CtrlSum", format(ctrlSum));
+			xml.nested("InitgPty", "Nm", SepaText.sanitize(initgPtyNm, 70));
+			xml.end();
+
+			for(PaymentGroup group : groups)
+				if(group.getNbOfTxs()>0)
+					writeGroup(xml, group);
+
+			xml.end();
+			xml.endDocument();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	protected abstract String getNamespace();
+
+	protected abstract String getRootElement();
+
+	/**
+	 * Check that the group has what the message type needs.
+	 * @throws IllegalArgumentException if it doesn't
+	 */
+	protected abstract void check(PaymentGroup group);
+
+	protected abstract void writeGroup(XmlWriter xml, PaymentGroup group) throws XMLStreamException;
+
+	/**
+	 * The header fields of <code>PmtInf</code> up to the payment type information.
+	 */
+	protected static void writeGroupStart(XmlWriter xml, PaymentGroup group, String pmtMtd) throws XMLStreamException {
+		xml.start("PmtInf");
+		xml.element("PmtInfId", group.getPmtInfId());
+		xml.element("PmtMtd", pmtMtd);
+		xml.element("NbOfTxs", String.valueOf(group.getNbOfTxs()));
+		xml.element("CtrlSum", format(group.getCtrlSum()));
+	}
+
+	protected static void writePaymentId(XmlWriter xml, Payment payment) throws XMLStreamException {
+		xml.start("PmtId");
+		if(payment.getInstrId()!=null)
+			xml.element("InstrId", payment.getInstrId());
+		xml.element("EndToEndId", payment.getEndToEndId());
+		xml.end();
+	}
+
+	protected static void writeParty(XmlWriter xml, String element, Party party) throws XMLStreamException {
+		xml.start(element);
+		xml.element("Nm", party.getName());
+		if(party.getCountry()!=null) {
+			xml.start("PstlAdr");
+			xml.element("Ctry", party.getCountry());
+			for(String line : party.getAddressLines())
+				xml.element("AdrLine", line);
+			xml.end();
+		}
+		xml.end();
+	}
+
+	protected static void writeAccount(XmlWriter xml, String element, Party party) throws XMLStreamException {
+		xml.nested(element, "Id", "IBAN", party.getIban());
+	}
+
+	/**
+	 * The agent of the party, NOTPROVIDED if the bank is unknown.
+	 */
+	protected static void writeAgent(XmlWriter xml, String element, Party party) throws XMLStreamException {
+		String bic = party.getAgentBic();
+		if(bic!=null)
+			xml.nested(element, "FinInstnId", "BIC", bic);
+		else
+			xml.nested(element, "FinInstnId", "Othr", "Id", "NOTPROVIDED");
+	}
+
+	protected static void writeRemittanceInformation(XmlWriter xml, Payment payment) throws XMLStreamException {
+		if(payment.getRemittanceInformation()!=null)
+			xml.nested("RmtInf", "Ustrd", payment.getRemittanceInformation());
+	}
+
+}
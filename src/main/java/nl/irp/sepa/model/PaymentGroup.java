@@ -0,0 +1,108 @@
+package nl.irp.sepa.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A payment information group (<code>PmtInf</code>): the payments from or to one account on
+ * one date. The owner is the debtor of credit transfers and the creditor of direct debits;
+ * the direct debit fields are ignored when the group is written as credit transfers, so the
+ * same group can be written in both formats.
+ */
+public class PaymentGroup {
+
+	private final String pmtInfId;
+	private final LocalDate date;
+	private final Party owner;
+	private final String creditorId;
+	private final String localInstrument;
+	private final String sequenceType;
+	private final List<Payment> payments = Lists.newArrayList();
+	private long ctrlSum;
+
+	/**
+	 * @param date the requested execution date of credit transfers, the collection date of direct debits
+	 * @param creditorId the creditor scheme id of direct debits
+	 * @param localInstrument CORE or B2B
+	 * @param sequenceType FRST, RCUR, FNAL or OOFF
+	 */
+	public PaymentGroup(String pmtInfId, LocalDate date, Party owner,
+			String creditorId, String localInstrument, String sequenceType) {
+		checkArgument(pmtInfId.length()>1 && pmtInfId.length()<=35, "length of pmtInfId is not 2 to 35");
+		this.pmtInfId = pmtInfId;
+		this.date = checkNotNull(date, "date");
+		this.owner = checkNotNull(owner, "owner");
+		this.creditorId = creditorId;
+		this.localInstrument = localInstrument;
+		this.sequenceType = sequenceType;
+	}
+
+	/**
+	 * Credit transfers from the account of the debtor.
+	 */
+	public static PaymentGroup creditTransfers(String pmtInfId, LocalDate reqdExctnDt, Party debtor) {
+		return new PaymentGroup(pmtInfId, reqdExctnDt, debtor, null, null, null);
+	}
+
+	/**
+	 * CORE direct debits to the account of the creditor.
+	 */
+	public static PaymentGroup directDebits(String pmtInfId, LocalDate reqdColltnDt, Party creditor,
+			String creditorId, String sequenceType) {
+		return new PaymentGroup(pmtInfId, reqdColltnDt, creditor, checkNotNull(creditorId, "creditorId"),
+				"CORE", checkNotNull(sequenceType, "sequenceType"));
+	}
+
+	public PaymentGroup add(Payment payment) {
+		payments.add(payment);
+		ctrlSum += payment.getAmount();
+		return this;
+	}
+
+	public String getPmtInfId() {
+		return pmtInfId;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public Party getOwner() {
+		return owner;
+	}
+
+	public String getCreditorId() {
+		return creditorId;
+	}
+
+	public String getLocalInstrument() {
+		return localInstrument;
+	}
+
+	public String getSequenceType() {
+		return sequenceType;
+	}
+
+	public List<Payment> getPayments() {
+		return Collections.unmodifiableList(payments);
+	}
+
+	public int getNbOfTxs() {
+		return payments.size();
+	}
+
+	/**
+	 * The total amount in cents.
+	 */
+	public long getCtrlSum() {
+		return ctrlSum;
+	}
+
+}
@@ -0,0 +1,87 @@
+package nl.irp.sepa.sdd;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import nl.irp.sepa.model.Party;
+import nl.irp.sepa.model.PaymentGroup;
+
+import org.joda.time.DateTime;
+
+/**
+ * The direct debits of one creditor that were cut at a submission deadline, see
+ * {@link DirectDebitScheduler}: one pain.008 message with a payment information group per
+ * sequence type and collection date.
+ */
+public class DirectDebitBatch {
+
+	private final String msgId;
+	private final DateTime cutTime;
+	private final Party creditor;
+	private final List<PaymentGroup> groups;
+	// replaced when a failed batch is written again
+	private volatile Future<File> file;
+
+	DirectDebitBatch(String msgId, DateTime cutTime, Party creditor, List<PaymentGroup> groups) {
+		this.msgId = msgId;
+		this.cutTime = cutTime;
+		this.creditor = creditor;
+		this.groups = Collections.unmodifiableList(groups);
+	}
+
+	public String getMsgId() {
+		return msgId;
+	}
+
+	/**
+	 * The deadline at which the batch was cut.
+	 */
+	public DateTime getCutTime() {
+		return cutTime;
+	}
+
+	public Party getCreditor() {
+		return creditor;
+	}
+
+	public List<PaymentGroup> getGroups() {
+		return groups;
+	}
+
+	public int getNbOfTxs() {
+		int nbOfTxs = 0;
+		for(PaymentGroup group : groups)
+			nbOfTxs += group.getNbOfTxs();
+		return nbOfTxs;
+	}
+
+	/**
+	 * The total amount in cents.
+	 */
+	public long getCtrlSum() {
+		long ctrlSum = 0;
+		for(PaymentGroup group : groups)
+			ctrlSum += group.getCtrlSum();
+		return ctrlSum;
+	}
+
+	/**
+	 * The message file, done when it has been written. The future fails with the
+	 * {@link java.io.IOException} of the write; see {@link DirectDebitScheduler#rewrite(DirectDebitBatch)}.
+	 */
+	public Future<File> getFile() {
+		return file;
+	}
+
+	void setFile(Future<File> file) {
+		this.file = file;
+	}
+
+	@Override
+	public String toString() {
+		return msgId + " " + creditor.getName() + ": " + getNbOfTxs() + " direct debits";
+	}
+
+}
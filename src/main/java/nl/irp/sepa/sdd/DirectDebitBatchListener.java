@@ -0,0 +1,16 @@
+package nl.irp.sepa.sdd;
+
+/**
+ * Receives the batches that a {@link DirectDebitScheduler} cuts. Install a listener with
+ * {@link DirectDebitScheduler#setListener(DirectDebitBatchListener)}.
+ *
+ * The listener is called on the thread that cuts the batches, the scheduler thread for cuts
+ * at a deadline, so it should be fast. It is called when all batches of the cut are handed to
+ * the writer, the messages are still being written then. An exception of the listener is
+ * logged, it doesn't affect the cut.
+ */
+public interface DirectDebitBatchListener {
+
+	void batchCut(DirectDebitBatch batch);
+
+}
@@ -1,13 +1,19 @@
 package nl.irp.sepa.sdd;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static nl.irp.sepa.sdd.Utils.createAccount;
 import static nl.irp.sepa.sdd.Utils.createAmount;
+import static nl.irp.sepa.sdd.Utils.createDate;
 import static nl.irp.sepa.sdd.Utils.createFinInstnId;
 import static nl.irp.sepa.sdd.Utils.createIdParty;
+import static nl.irp.sepa.sdd.Utils.createLocalInstrument;
 import static nl.irp.sepa.sdd.Utils.createParty;
 import static nl.irp.sepa.sdd.Utils.createPaymentIdentification;
+import static nl.irp.sepa.sdd.Utils.createPurpose;
 import static nl.irp.sepa.sdd.Utils.createRmtInf;
+import static nl.irp.sepa.sdd.Utils.createRmtInf_struct;
+import static nl.irp.sepa.sdd.Utils.createServiceLevel;
 import static nl.irp.sepa.sdd.Utils.createXMLGregorianCalendar;
 import static nl.irp.sepa.sdd.Utils.createXMLGregorianCalendarDate;
 import iso.std.iso._20022.tech.xsd.pain_008_001.ChargeBearerType1Code;
@@ -16,16 +22,15 @@ import iso.std.iso._20022.tech.xsd.pain_008_001.DirectDebitTransaction6;
 import iso.std.iso._20022.tech.xsd.pain_008_001.DirectDebitTransactionInformation9;
 import iso.std.iso._20022.tech.xsd.pain_008_001.Document;
 import iso.std.iso._20022.tech.xsd.pain_008_001.GroupHeader39;
-import iso.std.iso._20022.tech.xsd.pain_008_001.LocalInstrument2Choice;
 import iso.std.iso._20022.tech.xsd.pain_008_001.MandateRelatedInformation6;
 import iso.std.iso._20022.tech.xsd.pain_008_001.ObjectFactory;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PaymentInstructionInformation4;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PaymentMethod2Code;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PaymentTypeInformation20;
-import iso.std.iso._20022.tech.xsd.pain_008_001.Purpose2Choice;
+import iso.std.iso._20022.tech.xsd.pain_008_001.RemittanceInformation5;
 import iso.std.iso._20022.tech.xsd.pain_008_001.SequenceType1Code;
-import iso.std.iso._20022.tech.xsd.pain_008_001.ServiceLevel8Choice;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -34,8 +39,17 @@ import java.util.UUID;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.MarshalException;
 import javax.xml.bind.Marshaller;
 
+import nl.irp.sepa.ContentHash;
+import nl.irp.sepa.CreditorReference;
+import nl.irp.sepa.PaymentMessage;
+import nl.irp.sepa.metrics.Measurement;
+import nl.irp.sepa.metrics.MessageType;
+import nl.irp.sepa.metrics.Metrics;
+import nl.irp.sepa.metrics.Phase;
+
 import org.joda.time.LocalDate;
 
 
@@ -46,15 +60,61 @@ import org.joda.time.LocalDate;
  * @author "Jasper Krijgsman <jasper@irp.nl>"
  *
  */
-public class DirectDebitInitiation {
+public class DirectDebitInitiation implements PaymentMessage {
+
+	private static class ContextHolder {
+		// creating a JAXBContext is expensive, the context itself is thread safe
+		static final JAXBContext context = createContext();
+	}
+
+	private static final ObjectFactory factory = new ObjectFactory();
 
-	private Document document = new Document();
+	private static final ThreadLocal<DirectDebitInitiation> perThread = new ThreadLocal<DirectDebitInitiation>() {
+		@Override
+		protected DirectDebitInitiation initialValue() {
+			return new DirectDebitInitiation();
+		}
+	};
+
+	private Document document;
 	private CustomerDirectDebitInitiationV02 customerDirectDebitInitiationV02;
 	private GroupHeader39 groupHeader;
+	private Measurement measurement;
+	private final ContentHash contentHash = new ContentHash("pain.008.001.02");
+	// created on the first write and kept by reset()
+	private Marshaller marshaller;
 	
 	public DirectDebitInitiation() {
+		clear();
+	}
+	
+	/**
+	 * The builder of the current thread, {@link #reset()} for a new message. Every call on the
+	 * same thread returns the same builder, so write the message before the next call and don't
+	 * pass the builder to another thread.
+	 */
+	public static DirectDebitInitiation forCurrentThread() {
+		DirectDebitInitiation builder = perThread.get();
+		builder.reset();
+		return builder;
+	}
+	
+	/**
+	 * Forget the message, to build the next one with the same builder. The marshaller is kept,
+	 * so the next message doesn't pay for its setup. The document of the previous message must
+	 * not be used anymore, and its groups throw {@link IllegalStateException} when a transaction
+	 * is added.
+	 */
+	public void reset() {
+		clear();
+	}
+	
+	private void clear() {
+		document = new Document();
 		customerDirectDebitInitiationV02 = new CustomerDirectDebitInitiationV02();
 		document.setCstmrDrctDbtInitn(customerDirectDebitInitiationV02);
+		groupHeader = null;
+		measurement = Metrics.start(MessageType.PAIN_008);
 	}
 	
 	/**
@@ -90,13 +150,79 @@ public class DirectDebitInitiation {
 	}
 	
 	public void write(OutputStream os) throws JAXBException {
-		JAXBContext jc = JAXBContext.newInstance(Document.class);
-		Marshaller marshaller = jc.createMarshaller();
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        
-        // The UTF-8 character encoding standard must be used in the UNIFI messages.
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-        marshaller.marshal(new ObjectFactory().createDocument(document), os);
+		write(os, false);
+	}
+	
+	public String writeWithContentHash(OutputStream os) throws JAXBException {
+		return write(os, true);
+	}
+	
+	private String write(OutputStream os, boolean hash) throws JAXBException {
+		measurement.restart();
+		os = measurement.count(os);
+		Marshaller marshaller = getMarshaller();
+		measurement.phase(Phase.CONTEXT);
+		String hex = null;
+		if(hash)
+			hex = contentHash.getHex(marshaller, factory.createDocument(document), os);
+		else
+			marshaller.marshal(factory.createDocument(document), os);
+        measurement.phase(Phase.MARSHAL);
+        flush(os);
+        measurement.phase(Phase.FLUSH);
+        measurement.completed(countTransactions());
+        return hex;
+	}
+	
+	private Marshaller getMarshaller() throws JAXBException {
+		if(marshaller==null) {
+			marshaller = ContextHolder.context.createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			
+			// The UTF-8 character encoding standard must be used in the UNIFI messages.
+			marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+		}
+		return marshaller;
+	}
+	
+	private static JAXBContext createContext() {
+		try {
+			return JAXBContext.newInstance(Document.class);
+		} catch (JAXBException e) {
+			throw new IllegalStateException("can't create the JAXB context for pain.008", e);
+		}
+	}
+	
+	// counted in the groups, the group header is optional until the message is written
+	private long countTransactions() {
+		long transactions = 0;
+		for(PaymentInstructionInformation4 group : customerDirectDebitInitiationV02.getPmtInf())
+			transactions += group.getDrctDbtTxInf().size();
+		return transactions;
+	}
+	
+	private static void flush(OutputStream os) throws MarshalException {
+		try {
+			os.flush();
+		} catch (IOException e) {
+			throw new MarshalException(e);
+		}
+	}
+	
+	/**
+	 * Returns the JAXB document that is being built.
+	 */
+	public Document getDocument() {
+		return document;
+	}
+	
+	/**
+	 * SHA-256 of the content of the message, without the message id and creation time. See
+	 * {@link ContentHash}. The message is marshalled for it, so take the hash when the message
+	 * is complete.
+	 */
+	public String getContentHash() throws JAXBException {
+		return contentHash.getHex(getMarshaller(), factory.createDocument(document));
 	}
 	
 	public PaymentInstruction paymentInstruction(
@@ -104,25 +230,29 @@ public class DirectDebitInitiation {
 			String creditor, SequenceType1Code type,
 			String creditorCountry, List<String> addressLines, 
 			String creditorAccount, String creditorBic) {
-		
+		long start = measurement.time();
 		PaymentInstruction paymentInstruction = new PaymentInstruction(
 				pmtInfId, reqdColltnDt, 
 				creditor, type,
 				creditorCountry, addressLines, 
 				creditorAccount, creditorBic);
 		this.customerDirectDebitInitiationV02.getPmtInf().add(paymentInstruction.getPaymentInstructionInformation());
+		measurement.built(start);
 		return paymentInstruction;
 	}
 	
 	public class PaymentInstruction {
 		
 		private PaymentInstructionInformation4 paymentInstructionInformation;
+		// the message of the group, a group from before reset() can't add to the next message
+		private final Document message = document;
 		
 		/**
 		 * 
 		 * @param pmtInfId
 		 * @param reqdColltnDt Date and time at which the creditor requests that the amount of money is to be 
 		 * collected from the debtor.
+		 * @param creditorBic BIC of the creditor's bank, <code>null</code> to derive it from the IBAN.
 		 */
 		public PaymentInstruction(
 				String pmtInfId, Date reqdColltnDt, 
@@ -161,12 +291,15 @@ public class DirectDebitInitiation {
 			// be posted as a result of the payment transaction. Only IBAN is allowed.
 			paymentInstructionInformation.setCdtrAcct( createAccount(creditorAccount) );
 			
-			paymentInstructionInformation.setCdtrAgt( createFinInstnId(creditorBic) );	
+			paymentInstructionInformation.setCdtrAgt( createFinInstnId(creditorBic, creditorAccount) );
 			
 			paymentInstructionInformation.setChrgBr(ChargeBearerType1Code.SLEV);
-			
 		}
 		
+		/**
+		 * Add a transaction. The <code>debtorBic</code> may be <code>null</code>, it is then
+		 * derived from the IBAN.
+		 */
 		public DirectDebitTransactionInformation9 addTransaction(
 				String instructionIdentification, String endToEndIdentification,
 				BigDecimal amount,
@@ -174,6 +307,36 @@ public class DirectDebitInitiation {
 				String debtor, String debtorIban, String debtorBic,
 				String debtorCtry, List<String> debtorAdrLine,
 				String remittanceInformation) {
+			return add(instructionIdentification, endToEndIdentification, amount,
+					mandateId, dateOfSignature, cdtrSchmeId, debtor, debtorIban, debtorBic,
+					createRmtInf(remittanceInformation));
+		}
+		
+		/**
+		 * Add a transaction with structured remittance information instead of a text: the
+		 * creditor reference of the invoice, for example an RF creditor reference (see
+		 * {@link CreditorReference}). A reference starting with RF must be valid.
+		 */
+		public DirectDebitTransactionInformation9 addTransactionWithReference(
+				String instructionIdentification, String endToEndIdentification,
+				BigDecimal amount,
+				String mandateId, LocalDate dateOfSignature, String cdtrSchmeId,
+				String debtor, String debtorIban, String debtorBic,
+				String creditorReference) {
+			return add(instructionIdentification, endToEndIdentification, amount,
+					mandateId, dateOfSignature, cdtrSchmeId, debtor, debtorIban, debtorBic,
+					createRmtInf_struct(creditorReference));
+		}
+		
+		private DirectDebitTransactionInformation9 add(
+				String instructionIdentification, String endToEndIdentification,
+				BigDecimal amount,
+				String mandateId, LocalDate dateOfSignature, String cdtrSchmeId,
+				String debtor, String debtorIban, String debtorBic,
+				RemittanceInformation5 remittanceInformation) {
+			checkState(message==document, "payment instruction %s belongs to a message before reset()",
+					paymentInstructionInformation.getPmtInfId());
+			long start = measurement.time();
 			DirectDebitTransactionInformation9 directDebitTransactionInformation = new DirectDebitTransactionInformation9();
 			
 			// Set of elements used to reference a payment instruction.
@@ -187,18 +350,17 @@ public class DirectDebitInitiation {
 			directDebitTransactionInformation.setDrctDbtTx(t(mandateId, dateOfSignature, cdtrSchmeId));
 			
 			// Financial institution servicing an account for the debtor.
-			directDebitTransactionInformation.setDbtrAgt( createFinInstnId(debtorBic) );
+			// The BIC is derived from the IBAN if it isn't given.
+			directDebitTransactionInformation.setDbtrAgt( createFinInstnId(debtorBic, debtorIban) );
 			
 			// Party that owes an amount of money to the (ultimate) creditor.
 			directDebitTransactionInformation.setDbtr( createParty(debtor) );
 			directDebitTransactionInformation.setDbtrAcct( createAccount(debtorIban) );
 			
 			//TODO:
-			Purpose2Choice purpose = new Purpose2Choice();
-			purpose.setCd("OTHR");
-			directDebitTransactionInformation.setPurp(purpose);
+			directDebitTransactionInformation.setPurp(createPurpose("OTHR"));
 			
-			directDebitTransactionInformation.setRmtInf( createRmtInf(remittanceInformation) );
+			directDebitTransactionInformation.setRmtInf( remittanceInformation );
 			
 			paymentInstructionInformation.getDrctDbtTxInf().add(directDebitTransactionInformation);
 			
@@ -220,7 +382,7 @@ public class DirectDebitInitiation {
 			inbOfTxs = inbOfTxs+1;
 			paymentInstructionInformation.setNbOfTxs(String.valueOf(inbOfTxs));
 
-			
+			measurement.built(start);
 			return directDebitTransactionInformation;
 		}
 		
@@ -233,13 +395,10 @@ public class DirectDebitInitiation {
 			// Payment Type Information
 			PaymentTypeInformation20 paymentTypeInformation = new PaymentTypeInformation20();
 
-			ServiceLevel8Choice serviceLevel8Choice = new ServiceLevel8Choice();
-			serviceLevel8Choice.setCd("SEPA");//Vaste waarde 'SEPA'
-			paymentTypeInformation.setSvcLvl(serviceLevel8Choice);
+			paymentTypeInformation.setSvcLvl(createServiceLevel("SEPA"));//Vaste waarde 'SEPA'
 			
-			LocalInstrument2Choice localInstrument = new LocalInstrument2Choice();
-			localInstrument.setCd("CORE"); // "CORE" voor incasso's van particulieren
-			paymentTypeInformation.setLclInstrm(localInstrument);
+			// "CORE" voor incasso's van particulieren
+			paymentTypeInformation.setLclInstrm(createLocalInstrument("CORE"));
 
 			//FRST eerste incasso binnen een serie op hetzelfde mandaat
 			//RCUR vervolgincasso binnen hetzelfde mandaat
@@ -260,7 +419,7 @@ public class DirectDebitInitiation {
 			
 			MandateRelatedInformation6 mandateInf = new MandateRelatedInformation6();
 			mandateInf.setMndtId(mandateId);
-			mandateInf.setDtOfSgntr( createXMLGregorianCalendarDate(dtOfSgntr.toDate()));
+			mandateInf.setDtOfSgntr( createDate(dtOfSgntr) );
 			mandateInf.setAmdmntInd(false);
 			transaction.setMndtRltdInf(mandateInf);
 
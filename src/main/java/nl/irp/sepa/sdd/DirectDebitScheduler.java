@@ -0,0 +1,430 @@
+package nl.irp.sepa.sdd;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import nl.irp.sepa.model.DirectDebitEmitter;
+import nl.irp.sepa.model.Party;
+import nl.irp.sepa.model.Payment;
+import nl.irp.sepa.model.PaymentGroup;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Collects direct debits as they come in and cuts them into batches at the submission
+ * deadlines of the bank, one pain.008 message per creditor:
+ * <pre>
+ * DirectDebitScheduler scheduler = new DirectDebitScheduler(outbox, "Klantnaam",
+ *         new LocalTime(11, 0), new LocalTime(16, 0));
+ * scheduler.start();
+ * ...
+ * scheduler.submit(creditor, creditorId, "RCUR", payment);
+ * ...
+ * scheduler.shutdown();
+ * </pre>
+ *
+ * The collection date of a direct debit is assigned when its batch is cut: the earliest date
+ * that the lead time of its sequence type allows, counted in TARGET2 business days from the
+ * day of the cut, or the requested date if that is later. By default the lead time of FRST and
+ * OOFF is 5 business days and that of RCUR and FNAL 2, see {@link #setLeadTime(String, int)}.
+ * The direct debits of a creditor are grouped per sequence type and collection date.
+ *
+ * Every batch is written to <code>&lt;msgId&gt;.xml</code> in the directory by a background
+ * thread with a {@link DirectDebitEmitter}; the file is created under a temporary name and
+ * renamed when it is complete, so that a process that picks up the files never sees a partial
+ * message. The message id holds the cut time, a random id of the scheduler and a sequence
+ * number, so that a restarted scheduler or a second one doesn't repeat it; an existing file is
+ * never overwritten. {@link #start()} cuts the batches at the deadlines of every business day, or call
+ * {@link #cut(DateTime)} yourself. A batch that can't be written is logged and kept in
+ * {@link #getFailed()}, from where it can be {@link #rewrite(DirectDebitBatch) written again}.
+ */
+public class DirectDebitScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectDebitScheduler.class);
+
+	private static final DirectDebitEmitter emitter = new DirectDebitEmitter();
+
+	/**
+	 * A direct debit waiting for the next cut.
+	 */
+	private static class Request {
+		final Party creditor;
+		final String creditorId;
+		final String sequenceType;
+		final Payment payment;
+		final LocalDate requested;
+
+		Request(Party creditor, String creditorId, String sequenceType, Payment payment, LocalDate requested) {
+			this.creditor = creditor;
+			this.creditorId = creditorId;
+			this.sequenceType = sequenceType;
+			this.payment = payment;
+			this.requested = requested;
+		}
+	}
+
+	private final File directory;
+	private final String initgPtyNm;
+	private final Target2Calendar calendar;
+	private final List<LocalTime> deadlines;
+	private final Map<String, Integer> leadTimes = Maps.newConcurrentMap();
+
+	// distinguishes the message ids of this scheduler from those of earlier runs or other schedulers
+	private final String run = runId();
+	private final ExecutorService writer;
+	private ScheduledExecutorService timer;
+	private volatile DirectDebitBatchListener listener;
+
+	private List<Request> pending = Lists.newArrayList();
+	private int sequence;
+	private final List<DirectDebitBatch> failed = Lists.newArrayList();
+
+	/**
+	 * A scheduler with the {@link Target2Calendar#getDefault() default} calendar.
+	 * @param directory where the messages are written
+	 * @param deadlines the submission deadlines of a business day
+	 */
+	public DirectDebitScheduler(File directory, String initgPtyNm, LocalTime... deadlines) {
+		this(directory, initgPtyNm, Target2Calendar.getDefault(), ImmutableList.copyOf(deadlines));
+	}
+
+	public DirectDebitScheduler(File directory, String initgPtyNm, Target2Calendar calendar, List<LocalTime> deadlines) {
+		checkArgument(directory.isDirectory(), "%s is not a directory", directory);
+		checkArgument(!deadlines.isEmpty(), "no deadlines");
+		this.directory = directory;
+		this.initgPtyNm = checkNotNull(initgPtyNm, "initgPtyNm");
+		this.calendar = checkNotNull(calendar, "calendar");
+		this.deadlines = Ordering.natural().immutableSortedCopy(deadlines);
+
+		setLeadTime("FRST", 5);
+		setLeadTime("OOFF", 5);
+		setLeadTime("RCUR", 2);
+		setLeadTime("FNAL", 2);
+
+		writer = Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setNameFormat("sepa-batch-writer-%d").setDaemon(true).build());
+	}
+
+	/**
+	 * The number of TARGET2 business days between the submission of a direct debit and its
+	 * collection date.
+	 */
+	public void setLeadTime(String sequenceType, int businessDays) {
+		checkArgument(businessDays>=0, "negative lead time: %s", businessDays);
+		leadTimes.put(sequenceType, businessDays);
+	}
+
+	public int getLeadTime(String sequenceType) {
+		Integer businessDays = leadTimes.get(sequenceType);
+		checkArgument(businessDays!=null, "unknown sequence type: %s", sequenceType);
+		return businessDays;
+	}
+
+	public void setListener(DirectDebitBatchListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Collect a direct debit at the earliest possible date.
+	 * @param sequenceType FRST, RCUR, FNAL or OOFF
+	 */
+	public void submit(Party creditor, String creditorId, String sequenceType, Payment payment) {
+		submit(creditor, creditorId, sequenceType, payment, null);
+	}
+
+	/**
+	 * Collect a direct debit on the requested date, or at the earliest possible date if that is later.
+	 * A requested date that is not a business day moves to the next business day.
+	 * @param requested the collection date, <code>null</code> for the earliest possible date
+	 * @throws IllegalArgumentException if the requested date is outside the calendar
+	 */
+	public void submit(Party creditor, String creditorId, String sequenceType, Payment payment, LocalDate requested) {
+		checkNotNull(creditor, "creditor");
+		checkNotNull(creditorId, "creditorId");
+		getLeadTime(sequenceType);
+		checkArgument(payment.getMandateId()!=null, "payment %s has no mandate", payment.getEndToEndId());
+		// fail here rather than in the cut, where it would hold up the other direct debits
+		if(requested!=null)
+			calendar.nextBusinessDay(requested);
+		Request request = new Request(creditor, creditorId, sequenceType, payment, requested);
+		synchronized(this) {
+			pending.add(request);
+		}
+	}
+
+	/**
+	 * The number of direct debits waiting for the next cut.
+	 */
+	public synchronized int getPending() {
+		return pending.size();
+	}
+
+	/**
+	 * The batches of which the message couldn't be written, in the order they failed. Their
+	 * direct debits are not collected until they are {@link #rewrite(DirectDebitBatch) written again}.
+	 */
+	public synchronized List<DirectDebitBatch> getFailed() {
+		return ImmutableList.copyOf(failed);
+	}
+
+	/**
+	 * Write the message of a failed batch again in the background, with the same message id.
+	 * @return the new {@link DirectDebitBatch#getFile() file} of the batch
+	 * @throws IllegalArgumentException if the batch is not one of {@link #getFailed()}
+	 */
+	public Future<File> rewrite(DirectDebitBatch batch) {
+		synchronized(this) {
+			checkState(!writer.isShutdown(), "the scheduler is shut down");
+			checkArgument(failed.remove(batch), "batch %s did not fail", batch.getMsgId());
+		}
+		Future<File> file = writer.submit(write(batch));
+		batch.setFile(file);
+		return file;
+	}
+
+	/**
+	 * The earliest collection date of a direct debit submitted at the given time: the lead
+	 * time in business days after the submission day, or after the next business day if the
+	 * submission day isn't one.
+	 */
+	public LocalDate earliestCollectionDate(String sequenceType, DateTime submission) {
+		LocalDate submissionDay = calendar.nextBusinessDay(submission.toLocalDate());
+		return calendar.addBusinessDays(submissionDay, getLeadTime(sequenceType));
+	}
+
+	/**
+	 * The first deadline after the given time.
+	 */
+	public DateTime nextDeadline(DateTime now) {
+		for(LocalDate day = calendar.nextBusinessDay(now.toLocalDate()); ; day = calendar.addBusinessDays(day, 1)) {
+			for(LocalTime deadline : deadlines) {
+				DateTime time = day.toDateTime(deadline, now.getZone());
+				if(time.isAfter(now))
+					return time;
+			}
+		}
+	}
+
+	/**
+	 * Cut the pending direct debits into batches and write them in the background. The listener
+	 * hears of the batches when they are all handed to the writer.
+	 * @return the batches, one per creditor, in order of the first submitted direct debit
+	 * @throws IllegalArgumentException if a collection date is outside the calendar, the direct
+	 * debits stay pending
+	 */
+	public List<DirectDebitBatch> cut(DateTime now) {
+		List<Request> requests;
+		int first;
+		synchronized(this) {
+			if(pending.isEmpty())
+				return Collections.emptyList();
+			checkState(!writer.isShutdown(), "the scheduler is shut down");
+			requests = pending;
+			pending = Lists.newArrayList();
+			first = sequence;
+			sequence += requests.size();
+		}
+
+		List<DirectDebitBatch> batches;
+		try {
+			batches = batches(requests, now, first);
+		} catch(RuntimeException e) {
+			// back in front of the direct debits that were submitted in the meantime
+			synchronized(this) {
+				requests.addAll(pending);
+				pending = requests;
+			}
+			throw e;
+		}
+		for(DirectDebitBatch batch : batches)
+			batch.setFile(writer.submit(write(batch)));
+
+		DirectDebitBatchListener listener = this.listener;
+		if(listener!=null) {
+			for(DirectDebitBatch batch : batches) {
+				try {
+					listener.batchCut(batch);
+				} catch(RuntimeException e) {
+					logger.error("listener failed on batch " + batch.getMsgId(), e);
+				}
+			}
+		}
+		return batches;
+	}
+
+	private List<DirectDebitBatch> batches(List<Request> requests, DateTime now, int first) {
+		// per creditor the groups by sequence type and collection date
+		Map<String, Map<String, PaymentGroup>> creditors = Maps.newLinkedHashMap();
+		Map<String, String> msgIds = Maps.newHashMap();
+		Map<String, LocalDate> earliest = Maps.newHashMap();
+		for(Request request : requests) {
+			String creditorKey = request.creditor.getIban() + '\u0000' + request.creditorId;
+			Map<String, PaymentGroup> groups = creditors.get(creditorKey);
+			if(groups==null) {
+				creditors.put(creditorKey, groups = Maps.newLinkedHashMap());
+				msgIds.put(creditorKey, msgId(now, run, first + creditors.size()));
+			}
+
+			LocalDate date = earliest.get(request.sequenceType);
+			if(date==null)
+				earliest.put(request.sequenceType, date = earliestCollectionDate(request.sequenceType, now));
+			if(request.requested!=null && request.requested.isAfter(date))
+				date = calendar.nextBusinessDay(request.requested);
+
+			String groupKey = request.sequenceType + ' ' + date;
+			PaymentGroup group = groups.get(groupKey);
+			if(group==null) {
+				String pmtInfId = msgIds.get(creditorKey) + "-" + (groups.size() + 1);
+				groups.put(groupKey, group = PaymentGroup.directDebits(pmtInfId, date,
+						request.creditor, request.creditorId, request.sequenceType));
+			}
+			group.add(request.payment);
+		}
+
+		List<DirectDebitBatch> batches = Lists.newArrayList();
+		for(Map.Entry<String, Map<String, PaymentGroup>> entry : creditors.entrySet()) {
+			List<PaymentGroup> groups = ImmutableList.copyOf(entry.getValue().values());
+			batches.add(new DirectDebitBatch(msgIds.get(entry.getKey()), now,
+					groups.get(0).getOwner(), groups));
+		}
+		return batches;
+	}
+
+	/**
+	 * Cut the batches at the deadlines of every business day.
+	 */
+	public synchronized void start() {
+		checkState(timer==null, "already started");
+		timer = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("sepa-batch-timer-%d").setDaemon(true).build());
+		scheduleNextCut();
+	}
+
+	/**
+	 * Stop cutting batches and wait until the batches that were cut are written. Direct debits
+	 * that are still pending are not written; {@link #cut(DateTime)} them first if they should be.
+	 */
+	public void shutdown() throws InterruptedException {
+		ScheduledExecutorService timer;
+		synchronized(this) {
+			timer = this.timer;
+		}
+		if(timer!=null) {
+			timer.shutdownNow();
+			timer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		writer.shutdown();
+		writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	private void scheduleNextCut() {
+		final DateTime deadline = nextDeadline(new DateTime());
+		long delay = Math.max(0, deadline.getMillis() - System.currentTimeMillis());
+		timer.schedule(new Runnable() {
+			public void run() {
+				try {
+					cut(deadline);
+				} catch(RuntimeException e) {
+					logger.error("can't cut the direct debits at " + deadline, e);
+				} finally {
+					if(!timer.isShutdown())
+						scheduleNextCut();
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private Callable<File> write(final DirectDebitBatch batch) {
+		return new Callable<File>() {
+			public File call() throws IOException {
+				try {
+					return writeFile(batch);
+				} catch(IOException e) {
+					failed(batch, e);
+					throw e;
+				} catch(RuntimeException e) {
+					failed(batch, e);
+					throw e;
+				}
+			}
+		};
+	}
+
+	private File writeFile(DirectDebitBatch batch) throws IOException {
+		File file = new File(directory, batch.getMsgId() + ".xml");
+		File tmp = new File(directory, batch.getMsgId() + ".tmp");
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp));
+		boolean written = false;
+		try {
+			emitter.write(os, batch.getMsgId(), initgPtyNm, batch.getCutTime().toDate(), batch.getGroups());
+			os.close();
+			written = true;
+		} finally {
+			if(!written) {
+				Closeables.closeQuietly(os);
+				tmp.delete();
+			}
+		}
+		// a rename replaces an existing file on most platforms
+		if(file.exists()) {
+			tmp.delete();
+			throw new IOException(file + " already exists");
+		}
+		if(!tmp.renameTo(file))
+			throw new IOException("can't rename " + tmp + " to " + file);
+		return file;
+	}
+
+	private void failed(DirectDebitBatch batch, Exception e) {
+		synchronized(this) {
+			failed.add(batch);
+		}
+		logger.error("can't write batch " + batch + ", it is kept for rewrite()", e);
+	}
+
+	/**
+	 * DD, the cut time, the run and a sequence number: at most 35 characters.
+	 */
+	private static String msgId(DateTime cutTime, String run, int number) {
+		return "DD" + cutTime.toString("yyyyMMddHHmm") + "-" + run + "-" + number;
+	}
+
+	/**
+	 * Five random characters, 0-9 and A-Z.
+	 */
+	private static String runId() {
+		int id = new SecureRandom().nextInt(36 * 36 * 36 * 36 * 36);
+		return Strings.padStart(Integer.toString(id, 36), 5, '0').toUpperCase(Locale.ROOT);
+	}
+
+}
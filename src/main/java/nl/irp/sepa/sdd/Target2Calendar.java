@@ -0,0 +1,136 @@
+package nl.irp.sepa.sdd;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.BitSet;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+/**
+ * The TARGET2 business days, on which SEPA direct debits are settled: every day except
+ * Saturdays, Sundays, New Year's Day, Good Friday, Easter Monday, 1 May, Christmas Day and
+ * 26 December.
+ *
+ * The days of a range of years are computed once into a bit set, so a lookup is an index
+ * computation and adding business days skips to the next set bit.
+ */
+public class Target2Calendar {
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private static class DefaultHolder {
+		static final Target2Calendar instance = new Target2Calendar(2000, 2099);
+	}
+
+	private final LocalDate first;
+	private final LocalDate last;
+	private final long firstDay;
+	private final BitSet businessDays = new BitSet();
+
+	/**
+	 * A calendar of the years <code>from</code> up to and including <code>to</code>.
+	 */
+	public Target2Calendar(int from, int to) {
+		checkArgument(from<=to, "no years from %s to %s", from, to);
+		first = new LocalDate(from, 1, 1);
+		last = new LocalDate(to, 12, 31);
+		firstDay = epochDay(first);
+
+		int index = 0;
+		for(LocalDate day = first; !day.isAfter(last); day = day.plusDays(1), index++)
+			if(isWeekday(day) && !isHoliday(day))
+				businessDays.set(index);
+	}
+
+	/**
+	 * The calendar of 2000 up to and including 2099.
+	 */
+	public static Target2Calendar getDefault() {
+		return DefaultHolder.instance;
+	}
+
+	public boolean isBusinessDay(LocalDate day) {
+		return businessDays.get(index(day));
+	}
+
+	/**
+	 * The day itself if it is a business day, otherwise the first business day after it.
+	 */
+	public LocalDate nextBusinessDay(LocalDate day) {
+		return day(businessDays.nextSetBit(index(day)));
+	}
+
+	/**
+	 * The business day that is <code>days</code> business days after the day, which need not be
+	 * a business day itself.
+	 */
+	public LocalDate addBusinessDays(LocalDate day, int days) {
+		checkArgument(days>=0, "negative number of days: %s", days);
+		int index = index(day);
+		for(int i=0; i<days; i++)
+			index = businessDays.nextSetBit(index + 1);
+		return day(index);
+	}
+
+	/**
+	 * The number of business days after <code>from</code> up to and including <code>to</code>.
+	 */
+	public int businessDaysBetween(LocalDate from, LocalDate to) {
+		int count = 0;
+		for(int i = businessDays.nextSetBit(index(from) + 1); i>=0 && i<=index(to); i = businessDays.nextSetBit(i + 1))
+			count++;
+		return count;
+	}
+
+	private int index(LocalDate day) {
+		checkArgument(!day.isBefore(first) && !day.isAfter(last), "%s is outside the calendar, %s to %s", day, first, last);
+		return (int) (epochDay(day) - firstDay);
+	}
+
+	private LocalDate day(int index) {
+		checkArgument(index>=0, "beyond the end of the calendar, %s", last);
+		return first.plusDays(index);
+	}
+
+	private static boolean isWeekday(LocalDate day) {
+		return day.getDayOfWeek()!=DateTimeConstants.SATURDAY && day.getDayOfWeek()!=DateTimeConstants.SUNDAY;
+	}
+
+	private static boolean isHoliday(LocalDate day) {
+		int month = day.getMonthOfYear();
+		int dayOfMonth = day.getDayOfMonth();
+		if((month==1 && dayOfMonth==1) || (month==5 && dayOfMonth==1)
+				|| (month==12 && (dayOfMonth==25 || dayOfMonth==26)))
+			return true;
+		LocalDate easter = easter(day.getYear());
+		return day.equals(easter.minusDays(2)) || day.equals(easter.plusDays(1));
+	}
+
+	/**
+	 * Easter Sunday in the Gregorian calendar (the anonymous Gregorian algorithm).
+	 */
+	static LocalDate easter(int year) {
+		int a = year % 19;
+		int b = year / 100;
+		int c = year % 100;
+		int d = b / 4;
+		int e = b % 4;
+		int f = (b + 8) / 25;
+		int g = (b - f + 1) / 3;
+		int h = (19 * a + b - d - g + 15) % 30;
+		int i = c / 4;
+		int k = c % 4;
+		int l = (32 + 2 * e + 2 * i - h - k) % 7;
+		int m = (a + 11 * h + 22 * l) / 451;
+		int month = (h + l - 7 * m + 114) / 31;
+		int dayOfMonth = (h + l - 7 * m + 114) % 31 + 1;
+		return new LocalDate(year, month, dayOfMonth);
+	}
+
+	private static long epochDay(LocalDate day) {
+		return day.toDateMidnight(DateTimeZone.UTC).getMillis() / MILLIS_PER_DAY;
+	}
+
+}
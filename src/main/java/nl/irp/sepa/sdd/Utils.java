@@ -11,14 +11,18 @@ import iso.std.iso._20022.tech.xsd.pain_008_001.CreditorReferenceType1Choice;
 import iso.std.iso._20022.tech.xsd.pain_008_001.CreditorReferenceType2;
 import iso.std.iso._20022.tech.xsd.pain_008_001.DocumentType3Code;
 import iso.std.iso._20022.tech.xsd.pain_008_001.FinancialInstitutionIdentification7;
+import iso.std.iso._20022.tech.xsd.pain_008_001.GenericFinancialIdentification1;
 import iso.std.iso._20022.tech.xsd.pain_008_001.GenericPersonIdentification1;
+import iso.std.iso._20022.tech.xsd.pain_008_001.LocalInstrument2Choice;
 import iso.std.iso._20022.tech.xsd.pain_008_001.Party6Choice;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PartyIdentification32;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PaymentIdentification1;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PersonIdentification5;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PersonIdentificationSchemeName1Choice;
 import iso.std.iso._20022.tech.xsd.pain_008_001.PostalAddress6;
+import iso.std.iso._20022.tech.xsd.pain_008_001.Purpose2Choice;
 import iso.std.iso._20022.tech.xsd.pain_008_001.RemittanceInformation5;
+import iso.std.iso._20022.tech.xsd.pain_008_001.ServiceLevel8Choice;
 import iso.std.iso._20022.tech.xsd.pain_008_001.StructuredRemittanceInformation7;
 
 import java.math.BigDecimal;
@@ -26,19 +30,22 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 
+import nl.irp.sepa.BICUtils;
+import nl.irp.sepa.BicDirectory;
+import nl.irp.sepa.CreditorReference;
+import nl.irp.sepa.SepaText;
+
+import org.joda.time.LocalDate;
+
 public class Utils {
 	
 	
-	private static Pattern bicRegex =
-			Pattern.compile("([a-zA-Z]{4}[a-zA-Z]{2}[a-zA-Z0-9]{2}([a-zA-Z0-9]{3})?)");
-
 	public static XMLGregorianCalendar createXMLGregorianCalendar(Date currentDateTime) {
 		GregorianCalendar calendar = new GregorianCalendar();
 		calendar.setTime(currentDateTime);
@@ -75,10 +82,12 @@ public class Utils {
 	 * Information supplied to enable the matching of an entry with the items that the
 	 * transfer is intended to settle, such as commercial invoices in an accounts' receivable
 	 * system
-	 * max length: 140
+	 * max length: 140, longer text is cut off and characters outside the SEPA character set
+	 * are transliterated (see {@link SepaText})
 	 * @return
 	 */
 	public static RemittanceInformation5 createRmtInf(String info) {
+		info = SepaText.sanitize(info, 140);
 		checkMax140Text(info);
 		
 		RemittanceInformation5 remittanceInformation = new RemittanceInformation5();
@@ -90,11 +99,15 @@ public class Utils {
 	 * Information supplied to enable the matching of an entry with the items that the
 	 * transfer is intended to settle, such as commercial invoices in an accounts' receivable
 	 * system
-	 * max length: 140
+	 * The creditor reference (SCOR) has at most 35 SEPA characters; a reference that starts
+	 * with RF must be a valid ISO 11649 creditor reference, see {@link CreditorReference}.
 	 * @return
 	 */
 	public static RemittanceInformation5 createRmtInf_struct(String ref) {
 		checkMax35Text(ref);
+		checkArgument(SepaText.isValid(ref), "reference '%s' contains characters outside the SEPA character set", ref);
+		checkArgument(!CreditorReference.isCreditorReference(ref) || CreditorReference.isValid(ref),
+				"'%s' is not a valid RF creditor reference", ref);
 		
 		RemittanceInformation5 remittanceInformation = new RemittanceInformation5();
 		StructuredRemittanceInformation7 structuredRemittanceInformation = new StructuredRemittanceInformation7();
@@ -136,8 +149,15 @@ public class Utils {
 		return account;
 	}
 	
+	/**
+	 * A party with a name of at most 70 SEPA characters, see {@link SepaText}. The name is
+	 * optional and may be <code>null</code>.
+	 */
 	public static PartyIdentification32 createParty(String nm) {
-		checkMax70Text(nm);
+		if(nm!=null) {
+			nm = SepaText.sanitize(nm, 70);
+			checkMax70Text(nm);
+		}
 		
 		PartyIdentification32 party = new PartyIdentification32();
 		party.setNm(nm);
@@ -145,7 +165,10 @@ public class Utils {
 	}
 	
 	public static PartyIdentification32 createParty(String nm, String ctry, List<String> adrLine) {
-		checkMax70Text(nm);
+		if(nm!=null) {
+			nm = SepaText.sanitize(nm, 70);
+			checkMax70Text(nm);
+		}
 		
 		PartyIdentification32 party = new PartyIdentification32();
 		party.setNm(nm);
@@ -158,7 +181,10 @@ public class Utils {
 		return party;
 	}
 	
-	public static PartyIdentification32 createIdParty(String id) {	
+	/**
+	 * The identification of a party, like the creditor scheme id.
+	 */
+	public static PartyIdentification32 createIdParty(String id) {
 		PartyIdentification32 party = new PartyIdentification32();
 		Party6Choice idChoice = new Party6Choice();
 		PersonIdentification5 personIdentification = new PersonIdentification5();
@@ -176,28 +202,71 @@ public class Utils {
 		return party;
 	}
 	
+	/**
+	 * The purpose of a transaction, for example 'OTHR'.
+	 */
+	public static Purpose2Choice createPurpose(String cd) {
+		Purpose2Choice purpose = new Purpose2Choice();
+		purpose.setCd(cd);
+		return purpose;
+	}
+	
+	/**
+	 * The local instrument, for example 'CORE'.
+	 */
+	public static LocalInstrument2Choice createLocalInstrument(String cd) {
+		LocalInstrument2Choice localInstrument = new LocalInstrument2Choice();
+		localInstrument.setCd(cd);
+		return localInstrument;
+	}
+	
+	/**
+	 * A date, like the date of signature of a mandate.
+	 */
+	public static XMLGregorianCalendar createDate(LocalDate date) {
+		return createXMLGregorianCalendarDate(date.toDate());
+	}
+	
 	/**
 	 * @param instructionIdentification Unique identification as assigned by an instructing party for an instructed party to 
 	 * unambiguously identify the instruction.
 	 * @param endToEndIdentification Unique identification assigned by the initiating party to unumbiguously identify the
 	 * transaction. This identification is passed on, unchanged, throughout the entire end-
 	 * to-end chain.
+	 * Characters outside the SEPA character set are transliterated, but the identifications
+	 * are never cut off.
 	 * @return
 	 */
 	public static PaymentIdentification1 createPaymentIdentification(String instructionIdentification, String endToEndIdentification) {
 		PaymentIdentification1 paymentIdentification = new PaymentIdentification1();
 		 
+		instructionIdentification = SepaText.transliterate(instructionIdentification);
 		checkMax35Text(instructionIdentification);
 		paymentIdentification.setInstrId(instructionIdentification);
 
+		endToEndIdentification = SepaText.transliterate(endToEndIdentification);
 		checkMax35Text(endToEndIdentification);
 		paymentIdentification.setEndToEndId(endToEndIdentification);
 		
 		return paymentIdentification;
 	}
 	
+	/**
+	 * The agent that services an account: the given BIC, or if <code>bic</code> is <code>null</code>
+	 * the BIC of the IBAN according to the {@link BicDirectory}. An unknown bank is identified as
+	 * <code>Othr/Id</code> NOTPROVIDED, as allowed for payments with only an IBAN.
+	 */
+	public static BranchAndFinancialInstitutionIdentification4 createFinInstnId(String bic, String iban) {
+		if(bic==null)
+			bic = BicDirectory.getDefault().getBic(iban);
+		if(bic!=null)
+			return createFinInstnId(bic);
+		
+		return createNotProvided();
+	}
+	
 	public static BranchAndFinancialInstitutionIdentification4 createFinInstnId(String bic) {
-		checkArgument(bicRegex.matcher(bic).matches(), "This doesn't look like a correct BIC id '"+bic+"'");
+		checkArgument(BICUtils.isValid(bic), "This doesn't look like a correct BIC id '%s'", bic);
 		
 		BranchAndFinancialInstitutionIdentification4 creditorAgent = new BranchAndFinancialInstitutionIdentification4();
 		FinancialInstitutionIdentification7 creditorfinancialInstitutionIdentification = new FinancialInstitutionIdentification7();
@@ -207,6 +276,25 @@ public class Utils {
 		return creditorAgent;
 	}
 	
+	/**
+	 * The service level, for example 'SEPA'.
+	 */
+	public static ServiceLevel8Choice createServiceLevel(String cd) {
+		ServiceLevel8Choice serviceLevel = new ServiceLevel8Choice();
+		serviceLevel.setCd(cd);
+		return serviceLevel;
+	}
+	
+	private static BranchAndFinancialInstitutionIdentification4 createNotProvided() {
+		BranchAndFinancialInstitutionIdentification4 agent = new BranchAndFinancialInstitutionIdentification4();
+		FinancialInstitutionIdentification7 financialInstitutionIdentification = new FinancialInstitutionIdentification7();
+		GenericFinancialIdentification1 other = new GenericFinancialIdentification1();
+		other.setId("NOTPROVIDED");
+		financialInstitutionIdentification.setOthr(other);
+		agent.setFinInstnId(financialInstitutionIdentification);
+		return agent;
+	}
+	
 	public static ActiveOrHistoricCurrencyAndAmount createAmount(BigDecimal amount) {
 		ActiveOrHistoricCurrencyAndAmount instdAmt = new ActiveOrHistoricCurrencyAndAmount();
 		instdAmt.setValue(amount);
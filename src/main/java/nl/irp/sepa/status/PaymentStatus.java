@@ -0,0 +1,107 @@
+package nl.irp.sepa.status;
+
+/**
+ * A status from a pain.002 Customer Payment Status Report, for the original message, a payment
+ * information group or a single transaction.
+ */
+public class PaymentStatus {
+
+	public enum Level {
+		/** <code>OrgnlGrpInfAndSts/GrpSts</code>, the status of the original message. */
+		GROUP,
+		/** <code>OrgnlPmtInfAndSts/PmtInfSts</code>, the status of a payment information group. */
+		PAYMENT_INFORMATION,
+		/** <code>TxInfAndSts/TxSts</code>, the status of a transaction. */
+		TRANSACTION
+	}
+
+	private final Level level;
+	String orgnlMsgId;
+	String orgnlPmtInfId;
+	String orgnlInstrId;
+	String orgnlEndToEndId;
+	String status;
+	String reasonCode;
+	String additionalInformation;
+
+	PaymentStatus(Level level) {
+		this.level = level;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * MsgId of the original pain.001 or pain.008 message.
+	 */
+	public String getOrgnlMsgId() {
+		return orgnlMsgId;
+	}
+
+	/**
+	 * PmtInfId of the original payment information group, <code>null</code> on group level.
+	 */
+	public String getOrgnlPmtInfId() {
+		return orgnlPmtInfId;
+	}
+
+	public String getOrgnlInstrId() {
+		return orgnlInstrId;
+	}
+
+	/**
+	 * EndToEndId of the original transaction, only on transaction level.
+	 */
+	public String getOrgnlEndToEndId() {
+		return orgnlEndToEndId;
+	}
+
+	/**
+	 * The status code:
+	 * <dl>
+	 * <dt>ACCP</dt><dd>Accepted customer profile</dd>
+	 * <dt>ACSC</dt><dd>Accepted settlement completed</dd>
+	 * <dt>ACSP</dt><dd>Accepted settlement in process</dd>
+	 * <dt>ACTC</dt><dd>Accepted technical validation</dd>
+	 * <dt>ACWC</dt><dd>Accepted with change</dd>
+	 * <dt>PART</dt><dd>Partially accepted, only for groups</dd>
+	 * <dt>PDNG</dt><dd>Pending</dd>
+	 * <dt>RCVD</dt><dd>Received, only for groups</dd>
+	 * <dt>RJCT</dt><dd>Rejected</dd>
+	 * </dl>
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * The reason code of the first <code>StsRsnInf</code>, for example AC04 (closed account),
+	 * or the proprietary reason.
+	 */
+	public String getReasonCode() {
+		return reasonCode;
+	}
+
+	public String getAdditionalInformation() {
+		return additionalInformation;
+	}
+
+	public boolean isRejected() {
+		return "RJCT".equals(status);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(status==null ? "-" : status);
+		if(reasonCode!=null)
+			sb.append(' ').append(reasonCode);
+		sb.append(" (").append(level);
+		if(orgnlPmtInfId!=null)
+			sb.append(' ').append(orgnlPmtInfId);
+		if(orgnlEndToEndId!=null)
+			sb.append(' ').append(orgnlEndToEndId);
+		return sb.append(')').toString();
+	}
+
+}
@@ -0,0 +1,12 @@
+package nl.irp.sepa.status;
+
+/**
+ * Receives the statuses of a pain.002 report while it is streamed by the
+ * {@link PaymentStatusReportReader}: first the group status, then for every payment
+ * information group its own status followed by those of its transactions.
+ */
+public interface PaymentStatusHandler {
+
+	void status(PaymentStatus status);
+
+}
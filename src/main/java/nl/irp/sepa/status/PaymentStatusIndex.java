@@ -0,0 +1,201 @@
+package nl.irp.sepa.status;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import iso.std.iso._20022.tech.xsd.pain_001_001.CreditTransferTransactionInformation10;
+import iso.std.iso._20022.tech.xsd.pain_001_001.GroupHeader32;
+import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentInstructionInformation3;
+import iso.std.iso._20022.tech.xsd.pain_008_001.DirectDebitTransactionInformation9;
+import iso.std.iso._20022.tech.xsd.pain_008_001.GroupHeader39;
+import iso.std.iso._20022.tech.xsd.pain_008_001.PaymentInstructionInformation4;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.SEPACreditTransfer;
+import nl.irp.sepa.sdd.DirectDebitInitiation;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Index of the statuses in one or more pain.002 reports by OrgnlPmtInfId and OrgnlEndToEndId.
+ *
+ * Banks can send several reports for the same message (for example ACCP first and RJCT for some
+ * transactions later); read them in the order they were received, a later status replaces an
+ * earlier one.
+ *
+ * <pre>
+ * PaymentStatusIndex index = PaymentStatusIndex.read(pain002);
+ * for(TransactionStatus tx : index.merge(creditTransfer))
+ *     if(tx.isRejected()) ...
+ * </pre>
+ */
+public class PaymentStatusIndex implements PaymentStatusHandler {
+
+	private static final PaymentStatusReportReader reader = new PaymentStatusReportReader();
+
+	private PaymentStatus group;
+	private final Map<String, PaymentStatus> paymentInformation = Maps.newHashMap();
+	private final Map<String, PaymentStatus> transactions = Maps.newHashMap();
+	private final Map<String, PaymentStatus> endToEndIds = Maps.newHashMap();
+	private final List<PaymentStatus> rejected = Lists.newArrayList();
+
+	/**
+	 * Build an index of a single report.
+	 */
+	public static PaymentStatusIndex read(InputStream is) throws XMLStreamException {
+		PaymentStatusIndex index = new PaymentStatusIndex();
+		index.add(is);
+		return index;
+	}
+
+	/**
+	 * Add the statuses of another report for the same message.
+	 */
+	public void add(InputStream is) throws XMLStreamException {
+		reader.read(is, this);
+	}
+
+	public void status(PaymentStatus status) {
+		switch(status.getLevel()) {
+		case GROUP:
+			checkMessage(status.getOrgnlMsgId());
+			// a report about some transactions may leave out the status of the message
+			if(group==null || group.getStatus()==null || status.getStatus()!=null)
+				group = status;
+			break;
+		case PAYMENT_INFORMATION:
+			paymentInformation.put(status.getOrgnlPmtInfId(), status);
+			break;
+		default:
+			transactions.put(key(status.getOrgnlPmtInfId(), status.getOrgnlEndToEndId()), status);
+			endToEndIds.put(status.getOrgnlEndToEndId(), status);
+		}
+		if(status.isRejected())
+			rejected.add(status);
+	}
+
+	/**
+	 * MsgId of the original message, <code>null</code> if no report was read.
+	 */
+	public String getOrgnlMsgId() {
+		return group==null ? null : group.getOrgnlMsgId();
+	}
+
+	/**
+	 * The status of the original message.
+	 */
+	public PaymentStatus getGroupStatus() {
+		return group;
+	}
+
+	/**
+	 * The status of a payment information group, or of the message if the group has no own status.
+	 */
+	public PaymentStatus get(String pmtInfId) {
+		PaymentStatus status = paymentInformation.get(pmtInfId);
+		return status!=null && status.getStatus()!=null ? status : group;
+	}
+
+	/**
+	 * The most specific status of a transaction: its own status, or else that of its payment
+	 * information group or the message. For a partially accepted group (PART) the status of
+	 * a transaction without its own status is PART.
+	 */
+	public PaymentStatus get(String pmtInfId, String endToEndId) {
+		PaymentStatus status = transactions.get(key(pmtInfId, endToEndId));
+		return status!=null && status.getStatus()!=null ? status : get(pmtInfId);
+	}
+
+	/**
+	 * The transaction status by EndToEndId only, <code>null</code> if the transaction has no own status.
+	 */
+	public PaymentStatus getByEndToEndId(String endToEndId) {
+		return endToEndIds.get(endToEndId);
+	}
+
+	/**
+	 * All rejected groups and transactions, in the order they were reported. A rejection that
+	 * was replaced by a later status of the same group or transaction is left out.
+	 */
+	public List<PaymentStatus> getRejected() {
+		List<PaymentStatus> result = Lists.newArrayList();
+		for(PaymentStatus status : rejected)
+			if(isLatest(status))
+				result.add(status);
+		return Collections.unmodifiableList(result);
+	}
+
+	private boolean isLatest(PaymentStatus status) {
+		switch(status.getLevel()) {
+		case GROUP:
+			return status==group;
+		case PAYMENT_INFORMATION:
+			return status==paymentInformation.get(status.getOrgnlPmtInfId());
+		default:
+			return status==transactions.get(key(status.getOrgnlPmtInfId(), status.getOrgnlEndToEndId()));
+		}
+	}
+
+	/**
+	 * Match every transaction of a credit transfer with its status.
+	 * @throws IllegalArgumentException if the reports are for another message
+	 * @throws IllegalStateException if the credit transfer has no group header
+	 */
+	public List<TransactionStatus> merge(SEPACreditTransfer creditTransfer) {
+		GroupHeader32 groupHeader = creditTransfer.getDocument().getCstmrCdtTrfInitn().getGrpHdr();
+		checkState(groupHeader!=null, "the credit transfer has no group header, build it before merging");
+		checkMessage(groupHeader.getMsgId());
+
+		List<TransactionStatus> result = Lists.newArrayList();
+		for(PaymentInstructionInformation3 pmtInf : creditTransfer.getDocument().getCstmrCdtTrfInitn().getPmtInf()) {
+			String pmtInfId = pmtInf.getPmtInfId();
+			for(CreditTransferTransactionInformation10 tx : pmtInf.getCdtTrfTxInf()) {
+				String endToEndId = tx.getPmtId().getEndToEndId();
+				result.add(new TransactionStatus(pmtInfId, endToEndId,
+						tx.getAmt().getInstdAmt().getValue(), get(pmtInfId, endToEndId)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Match every transaction of a direct debit with its status.
+	 * @throws IllegalArgumentException if the reports are for another message
+	 * @throws IllegalStateException if the direct debit has no group header
+	 */
+	public List<TransactionStatus> merge(DirectDebitInitiation directDebit) {
+		GroupHeader39 groupHeader = directDebit.getDocument().getCstmrDrctDbtInitn().getGrpHdr();
+		checkState(groupHeader!=null, "the direct debit has no group header, build it before merging");
+		checkMessage(groupHeader.getMsgId());
+
+		List<TransactionStatus> result = Lists.newArrayList();
+		for(PaymentInstructionInformation4 pmtInf : directDebit.getDocument().getCstmrDrctDbtInitn().getPmtInf()) {
+			String pmtInfId = pmtInf.getPmtInfId();
+			for(DirectDebitTransactionInformation9 tx : pmtInf.getDrctDbtTxInf()) {
+				String endToEndId = tx.getPmtId().getEndToEndId();
+				result.add(new TransactionStatus(pmtInfId, endToEndId,
+						tx.getInstdAmt().getValue(), get(pmtInfId, endToEndId)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A report without OrgnlMsgId can't be checked and is accepted.
+	 */
+	private void checkMessage(String msgId) {
+		checkArgument(group==null || group.getOrgnlMsgId()==null || msgId==null || group.getOrgnlMsgId().equals(msgId),
+				"status report is for message '%s', not '%s'", getOrgnlMsgId(), msgId);
+	}
+
+	private static String key(String pmtInfId, String endToEndId) {
+		return pmtInfId + '\u0000' + endToEndId;
+	}
+
+}
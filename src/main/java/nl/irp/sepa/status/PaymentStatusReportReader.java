@@ -0,0 +1,137 @@
+package nl.irp.sepa.status;
+
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static nl.irp.sepa.XmlStreams.skipElement;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.irp.sepa.XmlStreams;
+import nl.irp.sepa.status.PaymentStatus.Level;
+
+/**
+ * Streams the statuses of a pain.002.001.03 Customer Payment Status Report, as sent by the bank
+ * in response to a pain.001 or pain.008 message.
+ *
+ * Only the references, status and reason of each level are read, the rest of the report
+ * (like <code>OrgnlTxRef</code>) is skipped.
+ */
+public class PaymentStatusReportReader {
+
+	/**
+	 * Read a report and pass every status to the handler. The stream is not closed.
+	 */
+	public void read(InputStream is, PaymentStatusHandler handler) throws XMLStreamException {
+		XMLStreamReader reader = XmlStreams.createReader(is);
+		try {
+			String orgnlMsgId = null;
+			while(reader.hasNext()) {
+				if(reader.next()!=START_ELEMENT)
+					continue;
+				String name = reader.getLocalName();
+				if("OrgnlGrpInfAndSts".equals(name)) {
+					PaymentStatus group = readGroup(reader);
+					orgnlMsgId = group.orgnlMsgId;
+					handler.status(group);
+				} else if("OrgnlPmtInfAndSts".equals(name)) {
+					readPaymentInformation(reader, orgnlMsgId, handler);
+				} else if("GrpHdr".equals(name)) {
+					skipElement(reader);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private PaymentStatus readGroup(XMLStreamReader reader) throws XMLStreamException {
+		PaymentStatus status = new PaymentStatus(Level.GROUP);
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("OrgnlMsgId".equals(name))
+				status.orgnlMsgId = reader.getElementText();
+			else if("GrpSts".equals(name))
+				status.status = reader.getElementText();
+			else if("StsRsnInf".equals(name))
+				readReason(reader, status);
+			else
+				skipElement(reader);
+		}
+		return status;
+	}
+
+	private void readPaymentInformation(XMLStreamReader reader, String orgnlMsgId, PaymentStatusHandler handler)
+			throws XMLStreamException {
+		PaymentStatus status = new PaymentStatus(Level.PAYMENT_INFORMATION);
+		status.orgnlMsgId = orgnlMsgId;
+		boolean reported = false;
+
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("OrgnlPmtInfId".equals(name)) {
+				status.orgnlPmtInfId = reader.getElementText();
+			} else if("PmtInfSts".equals(name)) {
+				status.status = reader.getElementText();
+			} else if("StsRsnInf".equals(name)) {
+				readReason(reader, status);
+			} else if("TxInfAndSts".equals(name)) {
+				if(!reported) {
+					handler.status(status);
+					reported = true;
+				}
+				handler.status(readTransaction(reader, status));
+			} else {
+				skipElement(reader);
+			}
+		}
+
+		if(!reported)
+			handler.status(status);
+	}
+
+	private PaymentStatus readTransaction(XMLStreamReader reader, PaymentStatus paymentInformation)
+			throws XMLStreamException {
+		PaymentStatus status = new PaymentStatus(Level.TRANSACTION);
+		status.orgnlMsgId = paymentInformation.orgnlMsgId;
+		status.orgnlPmtInfId = paymentInformation.orgnlPmtInfId;
+
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if("OrgnlInstrId".equals(name))
+				status.orgnlInstrId = reader.getElementText();
+			else if("OrgnlEndToEndId".equals(name))
+				status.orgnlEndToEndId = reader.getElementText();
+			else if("TxSts".equals(name))
+				status.status = reader.getElementText();
+			else if("StsRsnInf".equals(name))
+				readReason(reader, status);
+			else
+				skipElement(reader);
+		}
+		return status;
+	}
+
+	/**
+	 * StsRsnInf: only the first reason is kept.
+	 */
+	private void readReason(XMLStreamReader reader, PaymentStatus status) throws XMLStreamException {
+		boolean first = status.reasonCode==null && status.additionalInformation==null;
+		while(reader.nextTag()==START_ELEMENT) {
+			String name = reader.getLocalName();
+			if(first && "Rsn".equals(name)) {
+				// Cd or Prtry
+				while(reader.nextTag()==START_ELEMENT)
+					status.reasonCode = reader.getElementText();
+			} else if(first && "AddtlInf".equals(name)) {
+				String text = reader.getElementText();
+				status.additionalInformation = status.additionalInformation==null
+						? text : status.additionalInformation + " " + text;
+			} else {
+				skipElement(reader);
+			}
+		}
+	}
+
+}
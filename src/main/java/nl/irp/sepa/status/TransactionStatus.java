@@ -0,0 +1,54 @@
+package nl.irp.sepa.status;
+
+import java.math.BigDecimal;
+
+/**
+ * A transaction of a generated pain.001 or pain.008 message together with the status the bank
+ * reported for it.
+ *
+ * @see PaymentStatusIndex#merge(nl.irp.sepa.SEPACreditTransfer)
+ */
+public class TransactionStatus {
+
+	private final String pmtInfId;
+	private final String endToEndId;
+	private final BigDecimal amount;
+	private final PaymentStatus status;
+
+	TransactionStatus(String pmtInfId, String endToEndId, BigDecimal amount, PaymentStatus status) {
+		this.pmtInfId = pmtInfId;
+		this.endToEndId = endToEndId;
+		this.amount = amount;
+		this.status = status;
+	}
+
+	public String getPmtInfId() {
+		return pmtInfId;
+	}
+
+	public String getEndToEndId() {
+		return endToEndId;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	/**
+	 * The most specific status reported for this transaction: its own, that of its payment
+	 * information group, or that of the message. <code>null</code> if nothing was reported.
+	 */
+	public PaymentStatus getStatus() {
+		return status;
+	}
+
+	public boolean isRejected() {
+		return status!=null && status.isRejected();
+	}
+
+	@Override
+	public String toString() {
+		return pmtInfId + "/" + endToEndId + " " + amount + ": " + status;
+	}
+
+}
@@ -0,0 +1,32 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class AmountsTest {
+
+	@Test
+	public void testToCents() {
+		assertThat(Amounts.toCents("105678.50"), is(10567850L));
+		assertThat(Amounts.toCents("-3"), is(-300L));
+		assertThat(Amounts.toCents("0.1"), is(10L));
+		assertThat(Amounts.toCents("92233720368547758.07"), is(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testTooLarge() {
+		// fits in a long, but not once it is scaled to cents
+		for(String amount : new String[] { "922337203685477580", "92233720368547758.1", "100000000000000000000" }) {
+			try {
+				Amounts.toCents(amount);
+				fail(amount);
+			} catch(IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+import nl.irp.sepa.io.ArchiveResult;
+import nl.irp.sepa.io.ArchivingWriter;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class ArchivingWriterTest {
+
+	@Test
+	public void testArchive() throws Exception {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		SEPACreditTransfer.Betaalgroep group = transfer.betaalgroep("12345", new LocalDate(2013, 4, 19),
+				"Debiteur", "NL02ABNA0123456789", "ABNANL2A");
+		for(int i=0; i<100; i++)
+			group.creditTransfer("E2E-" + i, new BigDecimal("1.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref " + i);
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		transfer.write(xml);
+		byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(xml.toByteArray());
+
+		ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		ArchiveResult result = ArchivingWriter.write(transfer, plain, false);
+		assertArrayEquals(sha256, result.getSha256());
+		assertThat(result.getSize(), is((long) xml.size()));
+		assertThat(result.getCompressedSize(), is((long) xml.size()));
+		assertThat(result.getSha256Hex().length(), is(64));
+
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		result = ArchivingWriter.write(transfer, gzipped, true);
+		assertArrayEquals(sha256, result.getSha256());
+		assertThat(result.getSize(), is((long) xml.size()));
+		assertThat(result.getCompressedSize(), is((long) gzipped.size()));
+		assertTrue(result.getCompressedSize() < result.getSize());
+		assertArrayEquals(xml.toByteArray(),
+				ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))));
+	}
+
+}
@@ -0,0 +1,71 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import nl.irp.sepa.io.AsyncWriter;
+import nl.irp.sepa.io.BufferPool;
+import nl.irp.sepa.io.ChannelOutputStream;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class AsyncWriterTest {
+
+	@Test
+	public void testWrite() throws Exception {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		SEPACreditTransfer.Betaalgroep group = transfer.betaalgroep("12345", new LocalDate(2013, 4, 19),
+				"Debiteur", "NL02ABNA0123456789", "ABNANL2A");
+		for(int i=0; i<2000; i++)
+			group.creditTransfer("E2E-" + i, new BigDecimal("1.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref " + i);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		transfer.write(expected);
+
+		File file = File.createTempFile("pain.001", ".xml");
+		file.deleteOnExit();
+		AsyncWriter writer = new AsyncWriter();
+		Future<File> written = writer.write(transfer, file, true);
+		assertThat(written.get(), is(file));
+		writer.shutdown();
+
+		assertArrayEquals(expected.toByteArray(), Files.toByteArray(file));
+	}
+
+	@Test
+	public void testDoubleBuffering() throws Exception {
+		byte[] data = new byte[10000];
+		new Random(1).nextBytes(data);
+
+		File file = File.createTempFile("channel", ".bin");
+		file.deleteOnExit();
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		BufferPool pool = new BufferPool(64, 2);
+		OutputStream os = new ChannelOutputStream(new FileOutputStream(file).getChannel(), writer, pool, false);
+		os.write(data, 0, 100);
+		for(int i=100; i<200; i++)
+			os.write(data[i]);
+		os.flush();
+		os.write(data, 200, data.length - 200);
+		os.close();
+		writer.shutdown();
+
+		assertArrayEquals(data, Files.toByteArray(file));
+	}
+
+}
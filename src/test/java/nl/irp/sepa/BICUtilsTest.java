@@ -0,0 +1,71 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThat;
+import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentInstructionInformation3;
+
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+public class BICUtilsTest {
+
+	@Test
+	public void testValid() {
+		assertThat(BICUtils.isValid("ABNANL2A"), is(true));
+		assertThat(BICUtils.isValid("RABONL2UXXX"), is(true));
+		assertThat(BICUtils.isValid("ingbnl2a"), is(true));
+		assertThat(BICUtils.isValid("DEUTDEFF500"), is(true));
+	}
+
+	@Test
+	public void testInvalid() {
+		assertThat(BICUtils.isValid(""), is(false));
+		assertThat(BICUtils.isValid("ABNANL2"), is(false));
+		assertThat(BICUtils.isValid("ABNANL2AX"), is(false));
+		assertThat(BICUtils.isValid("ABNANL2AXXXX"), is(false));
+		assertThat(BICUtils.isValid("ABN1NL2A"), is(false));
+		assertThat(BICUtils.isValid("ABNAN12A"), is(false));
+		assertThat(BICUtils.isValid("ABNANL2-"), is(false));
+		assertThat(BICUtils.isValid("ABNANL2AXX "), is(false));
+	}
+
+	@Test
+	public void testNotShared() {
+		assertThat(Utils.createFinInstnId("ABNANL2A").getFinInstnId().getBIC(), is("ABNANL2A"));
+		// a new agent every time, that the caller may change
+		assertNotSame(Utils.createFinInstnId("ABNANL2A"), Utils.createFinInstnId("ABNANL2A"));
+		assertNotSame(Utils.createServiceLevel("SEPA"), Utils.createServiceLevel("SEPA"));
+	}
+
+	@Test
+	public void testMessagesDontShareAgents() {
+		SEPACreditTransfer first = transfer("000001");
+		SEPACreditTransfer second = transfer("000002");
+		PaymentInstructionInformation3 group = first.getDocument().getCstmrCdtTrfInitn().getPmtInf().get(0);
+		group.getDbtrAgt().getFinInstnId().setBIC("INGBNL2A");
+		group.getCdtTrfTxInf().get(0).getCdtrAgt().getFinInstnId().setBIC("INGBNL2A");
+		group.getPmtTpInf().getSvcLvl().setCd("URGP");
+
+		PaymentInstructionInformation3 other = second.getDocument().getCstmrCdtTrfInitn().getPmtInf().get(0);
+		assertThat(other.getDbtrAgt().getFinInstnId().getBIC(), is("ABNANL2A"));
+		assertThat(other.getCdtTrfTxInf().get(0).getCdtrAgt().getFinInstnId().getBIC(), is("RABONL2U"));
+		assertThat(other.getPmtTpInf().getSvcLvl().getCd(), is("SEPA"));
+	}
+
+	private static SEPACreditTransfer transfer(String msgId) {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader(msgId, "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		transfer.betaalgroep("PMT-1", new LocalDate(2013, 4, 19), "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("1.00"), "RABONL2U", "Energie BV", "NL44RABO0123456789", "Factuur 1");
+		return transfer;
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidAgent() {
+		nl.irp.sepa.sdd.Utils.createFinInstnId("ABNA");
+	}
+
+}
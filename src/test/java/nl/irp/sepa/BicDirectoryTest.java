@@ -0,0 +1,71 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class BicDirectoryTest {
+
+	@Test
+	public void testBundled() {
+		BicDirectory directory = BicDirectory.getDefault();
+		assertThat(directory.getBic("NL91ABNA0417164300"), is("ABNANL2A"));
+		assertThat(directory.getBic("NL20INGB0001234567"), is("INGBNL2A"));
+		assertThat(directory.getBic("NL44RABO0123456789"), is("RABONL2U"));
+		assertThat(directory.getBic("NL02XXXX0123456789"), is(nullValue()));
+		assertThat(directory.getBic("GB29NWBK60161331926819"), is(nullValue()));
+		assertThat(directory.getBic("NL91"), is(nullValue()));
+	}
+
+	@Test
+	public void testReload() throws IOException {
+		BicDirectory directory = new BicDirectory();
+		assertThat(directory.getBic("NL91ABNA0417164300"), is(nullValue()));
+
+		directory.reload(stream("@NL 4 4\nNL ABNA ABNANL2A\n# comment\n@BE 4 3\nBE 539 SPAABE22\n"));
+		assertThat(directory.getBic("NL91ABNA0417164300"), is("ABNANL2A"));
+		assertThat(directory.getBic("BE68539007547034"), is("SPAABE22"));
+
+		try {
+			directory.reload(stream("@NL 4 4\nNL INGB INGBNL2A\nNL RABO RABO\n"));
+			fail();
+		} catch(IllegalArgumentException e) {
+			// the old table is still used
+		}
+		assertThat(directory.getBic("NL91ABNA0417164300"), is("ABNANL2A"));
+		assertThat(directory.getBic("NL20INGB0001234567"), is(nullValue()));
+	}
+
+	@Test
+	public void testCreditTransfer() {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", new LocalDate("2013-04-02").toDate());
+		transfer
+			.betaalgroep("12345", new LocalDate("2013-04-19"), "Debiteur", "NL02ABNA0123456789", null)
+				.creditTransfer("E2E-1", new BigDecimal("1.00"), "Crediteur", "NL44RABO0123456789", "Ref")
+				.creditTransfer("E2E-2", new BigDecimal("2.00"), "Crediteur", "NL02XXXX0123456789", "Ref");
+
+		assertThat(transfer.getDocument().getCstmrCdtTrfInitn().getPmtInf().get(0)
+				.getDbtrAgt().getFinInstnId().getBIC(), is("ABNANL2A"));
+		assertThat(transfer.getDocument().getCstmrCdtTrfInitn().getPmtInf().get(0)
+				.getCdtTrfTxInf().get(0).getCdtrAgt().getFinInstnId().getBIC(), is("RABONL2U"));
+		assertThat(transfer.getDocument().getCstmrCdtTrfInitn().getPmtInf().get(0)
+				.getCdtTrfTxInf().get(1).getCdtrAgt(), is(nullValue()));
+		assertThat(Utils.createFinInstnId(null, "NL02XXXX0123456789").getFinInstnId().getOthr().getId(), is("NOTPROVIDED"));
+	}
+
+	private static ByteArrayInputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(Charsets.UTF_8));
+	}
+
+}
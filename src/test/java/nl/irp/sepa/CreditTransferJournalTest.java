@@ -0,0 +1,139 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.custommonkey.xmlunit.XMLUnit;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CreditTransferJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Date creDtTm = new LocalDateTime("2013-04-02T14:52:09").toDate();
+	private final LocalDate reqdExctnDt = new LocalDate("2013-04-19");
+
+	@Test
+	public void testReopenAndFinish() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		CreditTransferJournal journal = CreditTransferJournal.create(file, "000001", "Klantnaam", creDtTm);
+		journal.betaalgroep("PMT-1", reqdExctnDt, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref 1");
+		journal.betaalgroep("PMT-2", reqdExctnDt, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-2", new BigDecimal("12.50"), "Crediteur", "NL44RABO0123456789", "Ref 2");
+		journal.close();
+
+		journal = CreditTransferJournal.open(file);
+		assertThat(journal.getNbOfTxs(), is(2L));
+		journal.getBetaalgroep("PMT-1")
+			.creditTransfer("E2E-3", new BigDecimal("0.01"), "INGBNL2A", "Crediteur", "NL69INGB0123456789", "Ref 3");
+		journal.close();
+
+		journal = CreditTransferJournal.open(file);
+		assertThat(journal.getCtrlSum(), is(new BigDecimal("398.51")));
+		ByteArrayOutputStream finished = new ByteArrayOutputStream();
+		journal.finish(finished);
+		journal.close();
+
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", creDtTm);
+		transfer.betaalgroep("PMT-1", reqdExctnDt, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref 1")
+			.creditTransfer("E2E-3", new BigDecimal("0.01"), "INGBNL2A", "Crediteur", "NL69INGB0123456789", "Ref 3");
+		transfer.betaalgroep("PMT-2", reqdExctnDt, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-2", new BigDecimal("12.50"), "Crediteur", "NL44RABO0123456789", "Ref 2");
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		transfer.write(expected);
+
+		XMLUnit.setIgnoreWhitespace(true);
+		assertTrue(XMLUnit.compareXML(expected.toString("UTF-8"), finished.toString("UTF-8")).identical());
+	}
+
+	@Test
+	public void testGeneratedMsgId() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		CreditTransferJournal journal = CreditTransferJournal.create(file, null, "Klantnaam", creDtTm);
+		journal.betaalgroep("PMT-1", reqdExctnDt, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref 1");
+		journal.close();
+
+		journal = CreditTransferJournal.open(file);
+		ByteArrayOutputStream finished = new ByteArrayOutputStream();
+		journal.finish(finished);
+		journal.close();
+		assertTrue(finished.toString("UTF-8").matches("(?s).*<MsgId>[0-9a-f]{32}</MsgId>.*"));
+	}
+
+	@Test
+	public void testInvalidHeaderKeepsJournal() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		CreditTransferJournal journal = CreditTransferJournal.create(file, "000001", "Klantnaam", creDtTm);
+		journal.betaalgroep("PMT-1", reqdExctnDt, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref 1");
+		journal.close();
+
+		try {
+			CreditTransferJournal.create(file, "000002", "Klant\tnaam", creDtTm);
+			fail();
+		} catch(IllegalArgumentException e) {
+			// the existing journal is not deleted
+		}
+		journal = CreditTransferJournal.open(file);
+		assertThat(journal.getNbOfTxs(), is(1L));
+		journal.close();
+	}
+
+	@Test
+	public void testIncompleteWrite() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		CreditTransferJournal journal = CreditTransferJournal.create(file, "000001", "Klantnaam", creDtTm);
+		journal.betaalgroep("PMT-1", reqdExctnDt, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref 1");
+		journal.close();
+
+		// a transaction that was stored, but not indexed, and half an index line
+		File dataFile = new File(folder.getRoot(), "journal.data");
+		File indexFile = new File(folder.getRoot(), "journal.idx");
+		long dataLength = dataFile.length();
+		long indexLength = indexFile.length();
+		FileOutputStream data = new FileOutputStream(dataFile, true);
+		data.write("<CdtTrfTxInf><PmtId>".getBytes("UTF-8"));
+		data.close();
+		FileOutputStream index = new FileOutputStream(indexFile, true);
+		index.write("T\t0\t".getBytes("UTF-8"));
+		index.close();
+
+		journal = CreditTransferJournal.open(file);
+		assertThat(journal.getNbOfTxs(), is(1L));
+		assertThat(dataFile.length(), is(dataLength));
+		assertThat(indexFile.length(), is(indexLength));
+		journal.getBetaalgroep("PMT-1")
+			.creditTransfer("E2E-2", new BigDecimal("1.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref 2");
+		journal.close();
+
+		journal = CreditTransferJournal.open(file);
+		assertThat(journal.getNbOfTxs(), is(2L));
+		assertThat(journal.getBetaalgroep("PMT-1").getCtrlSum(), is(new BigDecimal("387.00")));
+		ByteArrayOutputStream finished = new ByteArrayOutputStream();
+		journal.finish(finished);
+		journal.close();
+		String xml = finished.toString("UTF-8");
+		assertTrue(xml.contains("<NbOfTxs>2</NbOfTxs>"));
+		assertThat(xml.split("<CdtTrfTxInf>", -1).length - 1, is(2));
+		assertThat(xml.split("</CdtTrfTxInf>", -1).length - 1, is(2));
+	}
+
+}
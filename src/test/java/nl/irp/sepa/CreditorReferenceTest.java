@@ -0,0 +1,106 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import nl.irp.sepa.camt.CreditorReferenceVerifier;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+
+public class CreditorReferenceTest {
+
+	@Test
+	public void testCreate() {
+		assertThat(CreditorReference.create("539007547034"), is("RF18539007547034"));
+		assertThat(CreditorReference.create("a1"), is("RF90A1"));
+		assertThat(CreditorReference.makeReadable("RF18539007547034"), is("RF18 5390 0754 7034"));
+	}
+
+	@Test
+	public void testValidate() {
+		assertThat(CreditorReference.isValid("RF18539007547034"), is(true));
+		assertThat(CreditorReference.isValid("rf90a1"), is(true));
+		assertThat(CreditorReference.isValid("RF19539007547034"), is(false));
+		assertThat(CreditorReference.isValid("RF18 5390 0754 7034"), is(false));
+		assertThat(CreditorReference.isValid("RF18"), is(false));
+		assertThat(CreditorReference.isValid("NL18539007547034"), is(false));
+		for(int i=0; i<1000; i++)
+			assertThat(CreditorReference.isValid(CreditorReference.create("INV" + i)), is(true));
+	}
+
+	@Test
+	public void testMod97() {
+		// an IBAN is valid when the rearranged IBAN leaves remainder 1
+		String iban = "NL91ABNA0417164300";
+		assertThat(Mod97.remainder(iban, 0, 4, Mod97.remainder(iban, 4, iban.length(), 0)), is(1));
+		assertThat(Mod97.checkDigits("ABNA0417164300NL00"), is("91"));
+		assertThat(Mod97.remainder("12-3", 0, 4, 0), is(-1));
+	}
+
+	@Test
+	public void testBuilder() throws Exception {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		transfer.betaalgroep("12345", new LocalDate(2013, 4, 19), "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransferWithReference("E2E-1", new BigDecimal("100.50"), null, "Energie BV", "NL44RABO0123456789",
+					CreditorReference.create("539007547034"));
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		transfer.write(os);
+		String xml = os.toString("UTF-8");
+		assertThat(xml.contains("<Ref>RF18539007547034</Ref>"), is(true));
+		assertThat(xml.contains("<Ustrd>"), is(false));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBuilderRejectsInvalidReference() {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		transfer.betaalgroep("12345", new LocalDate(2013, 4, 19), "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransferWithReference("E2E-1", new BigDecimal("100.50"), null, "Energie BV", "NL44RABO0123456789",
+					"RF19539007547034");
+	}
+
+	@Test
+	public void testOtherReferences() throws Exception {
+		assertThat(CreditorReference.isCreditorReference("RF18539007547034"), is(true));
+		assertThat(CreditorReference.isCreditorReference("rfq-2013"), is(false));
+		assertThat(CreditorReference.isCreditorReference("Rfnd 12"), is(false));
+		assertThat(CreditorReference.isCreditorReference("RFQ-2013"), is(false));
+
+		// structured references that only look like RF are accepted as they are
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		transfer.betaalgroep("12345", new LocalDate(2013, 4, 19), "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransferWithReference("E2E-1", new BigDecimal("100.50"), null, "Energie BV", "NL44RABO0123456789", "rfq-2013")
+			.creditTransferWithReference("E2E-2", new BigDecimal("100.50"), null, "Energie BV", "NL44RABO0123456789", "Rfnd 12");
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		transfer.write(os);
+		assertThat(os.toString("UTF-8").contains("<Ref>rfq-2013</Ref>"), is(true));
+	}
+
+	@Test
+	public void testVerifyStatement() throws Exception {
+		String xml = Resources.toString(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml"), Charsets.UTF_8);
+		CreditorReferenceVerifier verifier = new CreditorReferenceVerifier();
+		assertThat(verifier.verify(new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8))).isEmpty(), is(true));
+		assertThat(verifier.getCreditorReferences(), is(1L));
+
+		String broken = xml.replace("RF18539007547034", "RF18539007547043");
+		List<CreditorReferenceVerifier.InvalidReference> invalid =
+				verifier.verify(new ByteArrayInputStream(broken.getBytes(Charsets.UTF_8)));
+		assertThat(invalid.size(), is(1));
+		assertThat(invalid.get(0).getReference(), is("RF18539007547043"));
+		assertThat(verifier.getCreditorReferences(), is(2L));
+		assertThat(verifier.isValid(), is(false));
+	}
+
+}
@@ -0,0 +1,90 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import iso.std.iso._20022.tech.xsd.camt_054_001.Document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stream.StreamSource;
+
+import nl.irp.sepa.camt.AbstractStatementHandler;
+import nl.irp.sepa.camt.EntryExporter;
+import nl.irp.sepa.camt.EntryField;
+import nl.irp.sepa.camt.StatementEntry;
+import nl.irp.sepa.camt.StatementHeader;
+import nl.irp.sepa.camt.StatementReader;
+import nl.irp.sepa.camt.StatementVerifier;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Resources;
+
+public class DebitCreditNotificationTest {
+
+	private InputStream notification() throws IOException {
+		return Resources.getResource("camt/camt.054.001.02 voorbeeldbestand.xml").openStream();
+	}
+
+	@Test
+	public void testRead() throws XMLStreamException, IOException {
+		final List<StatementHeader> headers = Lists.newArrayList();
+		final List<StatementEntry> entries = Lists.newArrayList();
+		new StatementReader().read(notification(), new AbstractStatementHandler() {
+			@Override
+			public void startStatement(StatementHeader statement) {
+				headers.add(statement);
+			}
+			@Override
+			public void entry(StatementEntry entry) {
+				entries.add(entry);
+			}
+		});
+
+		assertThat(headers.size(), is(1));
+		assertThat(headers.get(0).isNotification(), is(true));
+		assertThat(headers.get(0).getAccount(), is("NL91ABNA0417164300"));
+		assertThat(headers.get(0).getElctrncSeqNb(), is("12"));
+
+		assertThat(entries.size(), is(2));
+		assertThat(entries.get(0).getAmount(), is(25000L));
+		assertThat(entries.get(0).get(EntryField.COUNTERPARTY_NAME, 0), is("J. Jansen"));
+		assertThat(entries.get(1).getSignedAmount(), is(-10050L));
+	}
+
+	@Test
+	public void testSameConsumer() throws XMLStreamException, IOException {
+		List<EntryField> columns = ImmutableList.of(EntryField.ACCOUNT_IBAN, EntryField.AMOUNT, EntryField.END_TO_END_ID);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EntryExporter.exportCsv(notification(), out, columns);
+
+		String[] lines = out.toString("UTF-8").split("\r\n");
+		assertThat(lines.length, is(3));
+		assertThat(lines[1], is("NL91ABNA0417164300,250.00,E2E-0001"));
+		assertThat(lines[2], is("NL91ABNA0417164300,100.50,E2E-0002"));
+	}
+
+	@Test
+	public void testVerify() throws XMLStreamException, IOException {
+		StatementVerifier verifier = new StatementVerifier();
+		verifier.verify(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml").openStream());
+		verifier.verify(notification());
+		assertThat(verifier.getDiscrepancies().toString(), verifier.isValid(), is(true));
+	}
+
+	@Test
+	public void testSchema() throws JAXBException, IOException {
+		Document document = JAXBContext.newInstance(Document.class).createUnmarshaller()
+				.unmarshal(new StreamSource(notification()), Document.class).getValue();
+		assertThat(document.getBkToCstmrDbtCdtNtfctn().getNtfctn().get(0).getNtry().size(), is(2));
+	}
+
+}
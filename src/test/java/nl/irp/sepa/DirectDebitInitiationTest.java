@@ -1,10 +1,12 @@
 package nl.irp.sepa;
 
+import iso.std.iso._20022.tech.xsd.pain_008_001.DirectDebitTransactionInformation9;
 import iso.std.iso._20022.tech.xsd.pain_008_001.SequenceType1Code;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.HashMap;
 
 import javax.xml.bind.JAXBException;
@@ -113,5 +115,92 @@ public class DirectDebitInitiationTest extends XMLTestCase {
 		assertXMLEqual(example, xml);
 	}
 	
+	@Test
+	public void testTransactionsDontShareParts() {
+		DirectDebitInitiation directDebit = new DirectDebitInitiation();
+		directDebit.buildGroupHeader("MSG-1", "Incassant", new LocalDate(2013, 4, 2).toDate());
+		PaymentInstruction instruction = directDebit.paymentInstruction(
+				"PMT-1", new LocalDate(2013, 4, 19).toDate(), "Incassant", SequenceType1Code.RCUR,
+				"NL", Collections.<String>emptyList(), "NL91ABNA0417164300", "ABNANL2A");
+		DirectDebitTransactionInformation9 tx1 = instruction.addTransaction("I-1", "E2E-1", new BigDecimal("1.00"),
+				"M-1", new LocalDate(2012, 1, 1), "NL00ZZZ123456780000",
+				"Debiteur", "NL20INGB0001234567", "INGBNL2A", "NL", Collections.<String>emptyList(), "Contributie");
+		DirectDebitTransactionInformation9 tx2 = instruction.addTransaction("I-2", "E2E-2", new BigDecimal("2.00"),
+				"M-2", new LocalDate(2012, 1, 1), "NL00ZZZ123456780000",
+				"Debiteur", "NL20INGB0001234567", "INGBNL2A", "NL", Collections.<String>emptyList(), "Contributie");
+
+		// a change to the transaction that addTransaction returns stays in that transaction
+		tx1.getPurp().setCd("CHAR");
+		tx1.getDbtrAgt().getFinInstnId().setBIC("RABONL2U");
+		tx1.getDrctDbtTx().getMndtRltdInf().getDtOfSgntr().setDay(2);
+		assertEquals("OTHR", tx2.getPurp().getCd());
+		assertEquals("INGBNL2A", tx2.getDbtrAgt().getFinInstnId().getBIC());
+		assertEquals("2012-01-01", tx2.getDrctDbtTx().getMndtRltdInf().getDtOfSgntr().toXMLFormat());
+		assertNotSame(tx1.getDrctDbtTx().getCdtrSchmeId(), tx2.getDrctDbtTx().getCdtrSchmeId());
+
+		// and so does a change to the group
+		DirectDebitInitiation other = new DirectDebitInitiation();
+		PaymentInstruction otherInstruction = other.paymentInstruction(
+				"PMT-1", new LocalDate(2013, 4, 19).toDate(), "Incassant", SequenceType1Code.RCUR,
+				"NL", Collections.<String>emptyList(), "NL91ABNA0417164300", "ABNANL2A");
+		instruction.getPaymentInstructionInformation().getPmtTpInf().getLclInstrm().setCd("B2B");
+		instruction.getPaymentInstructionInformation().getCdtrAgt().getFinInstnId().setBIC("RABONL2U");
+		assertEquals("CORE", otherInstruction.getPaymentInstructionInformation().getPmtTpInf().getLclInstrm().getCd());
+		assertEquals("ABNANL2A", otherInstruction.getPaymentInstructionInformation().getCdtrAgt().getFinInstnId().getBIC());
+	}
+	
+	@Test
+	public void testReset() throws Exception {
+		DirectDebitInitiation debitInitiation = DirectDebitInitiation.forCurrentThread();
+		PaymentInstruction previous = instruction(debitInitiation, "MSGID001", "E2EID001");
+		previous.addTransaction("INSTR-2", "E2EID002", new BigDecimal("2.00"), "MANDAATIDNR002",
+				new LocalDate("2011-12-31"), "NL89ZZZ011234567890", "NAAM", "NL98INGB0000000002", null,
+				null, null, "Tweede");
+		String previousHash = debitInitiation.getContentHash();
+		debitInitiation.write(new ByteArrayOutputStream());
+
+		assertSame(debitInitiation, DirectDebitInitiation.forCurrentThread());
+		instruction(debitInitiation, "MSGID002", "E2EID003");
+		DirectDebitInitiation fresh = new DirectDebitInitiation();
+		instruction(fresh, "MSGID003", "E2EID003");
+		assertEquals(fresh.getContentHash(), debitInitiation.getContentHash());
+		assertFalse(previousHash.equals(debitInitiation.getContentHash()));
+
+		// a group of the previous message doesn't add to the next one
+		try {
+			previous.addTransaction("INSTR-3", "E2EID004", new BigDecimal("3.00"), "MANDAATIDNR003",
+					new LocalDate("2011-12-31"), "NL89ZZZ011234567890", "NAAM", "NL98INGB0000000002", null,
+					null, null, "Derde");
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals("1", debitInitiation.getDocument().getCstmrDrctDbtInitn().getGrpHdr().getNbOfTxs());
+		assertEquals(fresh.getContentHash(), debitInitiation.getContentHash());
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		fresh.getDocument().getCstmrDrctDbtInitn().getGrpHdr().setMsgId("MSGID002");
+		fresh.write(expected);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		debitInitiation.write(stream);
+		assertXMLEqual(expected.toString("UTF-8"), stream.toString("UTF-8"));
+	}
+	
+	private static PaymentInstruction instruction(DirectDebitInitiation debitInitiation, String msgId, String endToEndId) {
+		debitInitiation.buildGroupHeader(msgId, "IPNORGANISATIENAAM", new LocalDateTime("2012-02-22T09:29:54").toDate());
+		PaymentInstruction paymentInstruction = debitInitiation
+			.paymentInstruction(
+				"PAYID001", new LocalDate("2012-02-05").toDate(),
+				"NAAM", SequenceType1Code.RCUR,
+				"NL", ImmutableList.of("Dorpstraat 1", "Amsterdam"),
+				"NL28INGB0000000001", "INGBNL2A");
+		paymentInstruction.addTransaction(
+			"01-E30220000000382012", endToEndId, new BigDecimal("1.01"),
+			"MANDAATIDNR001", new LocalDate("2011-12-31"), "NL89ZZZ011234567890",
+			"NAAM", "NL98INGB0000000002", "INGBNL2A",
+			null, null, "Omschrijving / vrije tekst");
+		return paymentInstruction;
+	}
+	
 
 }
@@ -0,0 +1,263 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import nl.irp.sepa.model.Party;
+import nl.irp.sepa.model.Payment;
+import nl.irp.sepa.model.PaymentGroup;
+import nl.irp.sepa.sdd.DirectDebitBatch;
+import nl.irp.sepa.sdd.DirectDebitBatchListener;
+import nl.irp.sepa.sdd.DirectDebitScheduler;
+import nl.irp.sepa.sdd.Target2Calendar;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class DirectDebitSchedulerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Target2Calendar calendar = Target2Calendar.getDefault();
+	private final Party creditor = new Party("Vereniging", "NL91ABNA0417164300", "ABNANL2A");
+	private final Party other = new Party("Stichting", "NL02ABNA0123456789", "ABNANL2A");
+	private final Party debtor = new Party("Lid", "NL44RABO0123456789", "RABONL2U");
+
+	@Test
+	public void testCalendar() {
+		// Easter 2013 was on 31 March
+		assertFalse(calendar.isBusinessDay(new LocalDate("2013-03-29")));
+		assertFalse(calendar.isBusinessDay(new LocalDate("2013-04-01")));
+		assertTrue(calendar.isBusinessDay(new LocalDate("2013-04-02")));
+		assertFalse(calendar.isBusinessDay(new LocalDate("2013-05-01")));
+		assertFalse(calendar.isBusinessDay(new LocalDate("2013-12-26")));
+		assertFalse(calendar.isBusinessDay(new LocalDate("2013-04-06")));
+		// Ascension Day is not a TARGET2 holiday
+		assertTrue(calendar.isBusinessDay(new LocalDate("2013-05-09")));
+
+		assertThat(calendar.nextBusinessDay(new LocalDate("2013-03-29")), is(new LocalDate("2013-04-02")));
+		assertThat(calendar.nextBusinessDay(new LocalDate("2013-04-02")), is(new LocalDate("2013-04-02")));
+		assertThat(calendar.addBusinessDays(new LocalDate("2013-03-28"), 2), is(new LocalDate("2013-04-03")));
+		assertThat(calendar.addBusinessDays(new LocalDate("2013-12-23"), 2), is(new LocalDate("2013-12-27")));
+		assertThat(calendar.businessDaysBetween(new LocalDate("2013-03-28"), new LocalDate("2013-04-03")), is(2));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testOutsideCalendar() {
+		calendar.isBusinessDay(new LocalDate("1999-12-31"));
+	}
+
+	@Test
+	public void testEarliestCollectionDate() throws Exception {
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(folder.getRoot(), "Klantnaam", new LocalTime(11, 0));
+		DateTime thursday = new DateTime("2013-03-28T11:00");
+		assertThat(scheduler.earliestCollectionDate("RCUR", thursday), is(new LocalDate("2013-04-03")));
+		assertThat(scheduler.earliestCollectionDate("FRST", thursday), is(new LocalDate("2013-04-08")));
+		// Good Friday counts from the next business day
+		assertThat(scheduler.earliestCollectionDate("RCUR", new DateTime("2013-03-29T11:00")), is(new LocalDate("2013-04-04")));
+
+		scheduler.setLeadTime("RCUR", 1);
+		assertThat(scheduler.earliestCollectionDate("RCUR", thursday), is(new LocalDate("2013-04-02")));
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testNextDeadline() throws Exception {
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(folder.getRoot(), "Klantnaam",
+				new LocalTime(16, 0), new LocalTime(11, 0));
+		assertThat(scheduler.nextDeadline(new DateTime("2013-03-28T09:00")), is(new DateTime("2013-03-28T11:00")));
+		assertThat(scheduler.nextDeadline(new DateTime("2013-03-28T11:00")), is(new DateTime("2013-03-28T16:00")));
+		assertThat(scheduler.nextDeadline(new DateTime("2013-03-28T17:00")), is(new DateTime("2013-04-02T11:00")));
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testCut() throws Exception {
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(folder.getRoot(), "Klantnaam", new LocalTime(11, 0));
+		LocalDate signed = new LocalDate("2012-01-01");
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-1", "E2E-1", 1000, debtor, "M-1", signed, "Contributie"));
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "FRST", Payment.directDebit("I-2", "E2E-2", 2000, debtor, "M-2", signed, "Contributie"));
+		scheduler.submit(other, "NL00ZZZ888888888888", "RCUR", Payment.directDebit("I-3", "E2E-3", 3000, debtor, "M-3", signed, "Donatie"));
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-4", "E2E-4", 4000, debtor, "M-4", signed, "Contributie"));
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-5", "E2E-5", 5000, debtor, "M-5", signed, "Contributie"),
+				new LocalDate("2013-04-13"));
+		assertThat(scheduler.getPending(), is(5));
+
+		List<DirectDebitBatch> batches = scheduler.cut(new DateTime("2013-03-28T11:00"));
+		assertThat(scheduler.getPending(), is(0));
+		assertThat(batches.size(), is(2));
+
+		DirectDebitBatch batch = batches.get(0);
+		assertThat(batch.getCreditor(), is(creditor));
+		assertThat(batch.getNbOfTxs(), is(4));
+		assertThat(batch.getCtrlSum(), is(12000L));
+		List<PaymentGroup> groups = batch.getGroups();
+		assertThat(groups.size(), is(3));
+		assertThat(groups.get(0).getSequenceType(), is("RCUR"));
+		assertThat(groups.get(0).getDate(), is(new LocalDate("2013-04-03")));
+		assertThat(groups.get(0).getNbOfTxs(), is(2));
+		assertThat(groups.get(1).getSequenceType(), is("FRST"));
+		assertThat(groups.get(1).getDate(), is(new LocalDate("2013-04-08")));
+		// the requested date is a Saturday
+		assertThat(groups.get(2).getDate(), is(new LocalDate("2013-04-15")));
+		assertThat(batches.get(1).getNbOfTxs(), is(1));
+
+		scheduler.shutdown();
+		File file = batch.getFile().get();
+		assertThat(file.getName(), is(batch.getMsgId() + ".xml"));
+		String xml = Files.toString(file, Charsets.UTF_8);
+		assertTrue(xml.contains("<ReqdColltnDt>2013-04-08</ReqdColltnDt>"));
+		assertTrue(xml.contains("<NbOfTxs>4</NbOfTxs>"));
+		assertTrue(batches.get(1).getFile().get().isFile());
+		assertThat(folder.getRoot().list().length, is(2));
+
+		assertTrue(scheduler.cut(new DateTime("2013-03-28T16:00")).isEmpty());
+	}
+
+	@Test
+	public void testListenerFails() throws Exception {
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(folder.getRoot(), "Klantnaam", new LocalTime(11, 0));
+		final List<String> heard = Lists.newArrayList();
+		scheduler.setListener(new DirectDebitBatchListener() {
+			public void batchCut(DirectDebitBatch batch) {
+				heard.add(batch.getMsgId());
+				throw new IllegalStateException("listener");
+			}
+		});
+		LocalDate signed = new LocalDate("2012-01-01");
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-1", "E2E-1", 1000, debtor, "M-1", signed, "Contributie"));
+		scheduler.submit(other, "NL00ZZZ888888888888", "RCUR", Payment.directDebit("I-2", "E2E-2", 2000, debtor, "M-2", signed, "Donatie"));
+
+		List<DirectDebitBatch> batches = scheduler.cut(new DateTime("2013-03-28T11:00"));
+		assertThat(batches.size(), is(2));
+		assertThat(heard.size(), is(2));
+		scheduler.shutdown();
+		assertTrue(batches.get(1).getFile().get().isFile());
+	}
+
+	@Test
+	public void testWriteFails() throws Exception {
+		File outbox = folder.newFolder("outbox");
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(outbox, "Klantnaam", new LocalTime(11, 0));
+		LocalDate signed = new LocalDate("2012-01-01");
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-1", "E2E-1", 1000, debtor, "M-1", signed, "Contributie"));
+
+		// the outbox is gone when the batch is written
+		outbox.delete();
+		DirectDebitBatch batch = scheduler.cut(new DateTime("2013-03-28T11:00")).get(0);
+		try {
+			batch.getFile().get();
+			fail();
+		} catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertThat(scheduler.getFailed(), is((List<DirectDebitBatch>) ImmutableList.of(batch)));
+
+		outbox.mkdir();
+		File file = scheduler.rewrite(batch).get();
+		assertThat(file.getName(), is(batch.getMsgId() + ".xml"));
+		assertThat(batch.getFile().get(), is(file));
+		assertTrue(scheduler.getFailed().isEmpty());
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testMsgIdPerRun() throws Exception {
+		LocalDate signed = new LocalDate("2012-01-01");
+		DirectDebitScheduler first = new DirectDebitScheduler(folder.getRoot(), "Klantnaam", new LocalTime(11, 0));
+		first.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-1", "E2E-1", 1000, debtor, "M-1", signed, "Contributie"));
+		DirectDebitBatch batch = first.cut(new DateTime("2013-03-28T11:00")).get(0);
+		first.shutdown();
+		assertTrue(batch.getMsgId(), batch.getMsgId().matches("DD201303281100-[0-9A-Z]{5}-1"));
+
+		// a restart cuts at the same deadline
+		DirectDebitScheduler restarted = new DirectDebitScheduler(folder.getRoot(), "Klantnaam", new LocalTime(11, 0));
+		restarted.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-2", "E2E-2", 2000, debtor, "M-2", signed, "Contributie"));
+		DirectDebitBatch again = restarted.cut(new DateTime("2013-03-28T11:00")).get(0);
+		restarted.shutdown();
+		assertFalse(again.getMsgId().equals(batch.getMsgId()));
+		assertThat(folder.getRoot().list().length, is(2));
+	}
+
+	@Test
+	public void testNoOverwrite() throws Exception {
+		File outbox = folder.newFolder("outbox");
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(outbox, "Klantnaam", new LocalTime(11, 0));
+		LocalDate signed = new LocalDate("2012-01-01");
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-1", "E2E-1", 1000, debtor, "M-1", signed, "Contributie"));
+		outbox.delete();
+		DirectDebitBatch batch = scheduler.cut(new DateTime("2013-03-28T11:00")).get(0);
+		try {
+			batch.getFile().get();
+			fail();
+		} catch(ExecutionException e) {
+		}
+
+		// another message with the same name appeared in the meantime
+		outbox.mkdir();
+		File file = new File(outbox, batch.getMsgId() + ".xml");
+		Files.write("another message", file, Charsets.UTF_8);
+		try {
+			scheduler.rewrite(batch).get();
+			fail();
+		} catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertThat(Files.toString(file, Charsets.UTF_8), is("another message"));
+		assertThat(outbox.list().length, is(1));
+		assertThat(scheduler.getFailed().size(), is(1));
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testCutFails() throws Exception {
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(folder.getRoot(), "Klantnaam",
+				new Target2Calendar(2013, 2013), ImmutableList.of(new LocalTime(11, 0)));
+		LocalDate signed = new LocalDate("2012-01-01");
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR", Payment.directDebit("I-1", "E2E-1", 1000, debtor, "M-1", signed, "Contributie"));
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "FRST", Payment.directDebit("I-2", "E2E-2", 2000, debtor, "M-2", signed, "Contributie"));
+		try {
+			// the collection date of FRST is in 2014, beyond the calendar
+			scheduler.cut(new DateTime("2013-12-23T11:00"));
+			fail();
+		} catch(IllegalArgumentException e) {
+			assertThat(scheduler.getPending(), is(2));
+		}
+		assertThat(folder.getRoot().list().length, is(0));
+
+		try {
+			scheduler.submit(creditor, "NL00ZZZ999999999999", "RCUR",
+					Payment.directDebit("I-3", "E2E-3", 3000, debtor, "M-3", signed, "Contributie"), new LocalDate("2014-01-06"));
+			fail();
+		} catch(IllegalArgumentException e) {
+			assertThat(scheduler.getPending(), is(2));
+		}
+		scheduler.shutdown();
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownSequenceType() throws Exception {
+		DirectDebitScheduler scheduler = new DirectDebitScheduler(folder.getRoot(), "Klantnaam", new LocalTime(11, 0));
+		scheduler.submit(creditor, "NL00ZZZ999999999999", "XXXX",
+				Payment.directDebit("I-1", "E2E-1", 1000, debtor, "M-1", new LocalDate("2012-01-01"), "Contributie"));
+	}
+
+}
@@ -0,0 +1,166 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+public class DuplicateDetectorTest {
+
+	private static final LocalDate DAY = new LocalDate(2013, 4, 19);
+
+	@Test
+	public void testFingerprint() {
+		long fingerprint = DuplicateDetector.fingerprint("NL44RABO0123456789", 10050, "Factuur 1");
+		assertThat(DuplicateDetector.fingerprint("NL44 RABO 0123 4567 89", 10050, "Factuur 1"), is(fingerprint));
+		assertThat(DuplicateDetector.fingerprint("nl44rabo0123456789", 10050, "Factuur 1"), is(fingerprint));
+		assertThat(DuplicateDetector.fingerprint("NL44RABO0123456789", 10051, "Factuur 1"), is(not(fingerprint)));
+		assertThat(DuplicateDetector.fingerprint("NL44RABO0123456789", 10050, "Factuur 2"), is(not(fingerprint)));
+		assertThat(DuplicateDetector.fingerprint("NL44RABO0123456789", 10050, null), is(not(fingerprint)));
+	}
+
+	@Test
+	public void testExpiry() {
+		DuplicateDetector detector = DuplicateDetector.inMemory(3, 16);
+		long fingerprint = DuplicateDetector.fingerprint("NL44RABO0123456789", 10050, "Factuur 1");
+		assertThat(detector.add(fingerprint, DAY), is(false));
+		assertThat(detector.add(fingerprint, DAY), is(true));
+		assertThat(detector.contains(fingerprint, DAY.plusDays(2)), is(true));
+		assertThat(detector.contains(fingerprint, DAY.minusDays(2)), is(true));
+		assertThat(detector.contains(fingerprint, DAY.plusDays(3)), is(false));
+		assertThat(detector.add(fingerprint, DAY.plusDays(3)), is(false));
+		assertThat(detector.contains(fingerprint, DAY.plusDays(5)), is(true));
+	}
+
+	@Test
+	public void testGrowAndCompact() {
+		DuplicateDetector detector = DuplicateDetector.inMemory(2, 16);
+		for(int i=0; i<10000; i++)
+			assertThat(detector.add(DuplicateDetector.fingerprint("NL44RABO0123456789", i, null), DAY), is(false));
+		for(int i=0; i<10000; i++)
+			assertThat(detector.contains(DuplicateDetector.fingerprint("NL44RABO0123456789", i, null), DAY), is(true));
+
+		// a week later the old fingerprints are dropped instead of growing the table further
+		int size = detector.size();
+		for(int i=0; i<10000; i++)
+			detector.add(DuplicateDetector.fingerprint("NL02ABNA0123456789", i, null), DAY.plusDays(7));
+		assertThat(detector.size()<=size, is(true));
+		assertThat(detector.contains(DuplicateDetector.fingerprint("NL02ABNA0123456789", 1, null), DAY.plusDays(7)), is(true));
+	}
+
+	@Test
+	public void testFutureDateKeepsCurrent() {
+		LocalDate today = new LocalDate();
+		DuplicateDetector detector = DuplicateDetector.inMemory(30, 8);
+		for(int i=0; i<16; i++)
+			detector.add(DuplicateDetector.fingerprint("NL44RABO0123456789", i, null), today);
+
+		// the table is half full, so the transfer in two months compacts it
+		detector.add(DuplicateDetector.fingerprint("NL02ABNA0123456789", 1, null), today.plusDays(60));
+		assertThat(detector.add(DuplicateDetector.fingerprint("NL44RABO0123456789", 1, null), today), is(true));
+		assertThat(detector.size(), is(17));
+	}
+
+	@Test
+	public void testCheckTransfer() throws Exception {
+		File file = File.createTempFile("duplicates", ".bin");
+		file.delete();
+		try {
+			DuplicateDetector detector = DuplicateDetector.open(file, 30, 1000);
+			SEPACreditTransfer first = transfer("000001", DAY);
+			assertThat(detector.check(first).isEmpty(), is(true));
+			detector.record(first);
+			detector.close();
+
+			// the history survives a restart
+			detector = DuplicateDetector.open(file, 30, 1000);
+			SEPACreditTransfer second = transfer("000002", DAY.plusDays(1));
+			second.betaalgroep("67890", DAY.plusDays(1), "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+				.creditTransfer("E2E-4", new BigDecimal("12.00"), "Jansen", "NL44RABO0123456789", "Huur mei")
+				.creditTransfer("E2E-5", new BigDecimal("12.00"), "Jansen", "NL44RABO0123456789", "Huur mei");
+			List<DuplicateDetector.Suspect> suspects = detector.check(second);
+			assertThat(suspects.size(), is(4));
+			assertThat(suspects.get(0).getEndToEndId(), is("E2E-1"));
+			assertThat(suspects.get(0).getEarlier(), is(DAY));
+			assertThat(suspects.get(1).getEndToEndId(), is("E2E-2"));
+			assertThat(suspects.get(2).getEndToEndId(), is("E2E-3"));
+			assertThat(suspects.get(3).getEndToEndId(), is("E2E-5"));
+			assertThat(suspects.get(3).getEarlier(), is(nullValue()));
+			detector.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testGrowFile() throws Exception {
+		File file = File.createTempFile("duplicates", ".bin");
+		file.delete();
+		try {
+			DuplicateDetector detector = DuplicateDetector.open(file, 30, 16);
+			for(int i=0; i<1000; i++)
+				detector.add(DuplicateDetector.fingerprint("NL44RABO0123456789", i, null), DAY);
+			detector.close();
+			assertThat(new File(file.getPath() + ".tmp").exists(), is(false));
+
+			detector = DuplicateDetector.open(file, 30, 16);
+			assertThat(detector.size(), is(1000));
+			for(int i=0; i<1000; i++)
+				assertThat(detector.contains(DuplicateDetector.fingerprint("NL44RABO0123456789", i, null), DAY), is(true));
+			detector.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testTruncatedFile() throws Exception {
+		File file = File.createTempFile("duplicates", ".bin");
+		file.delete();
+		try {
+			DuplicateDetector detector = DuplicateDetector.open(file, 30, 16);
+			detector.add(DuplicateDetector.fingerprint("NL44RABO0123456789", 1, null), DAY);
+			detector.close();
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(raf.length() - 8);
+			raf.close();
+			long length = file.length();
+
+			try {
+				DuplicateDetector.open(file, 30, 16);
+				fail();
+			} catch (IOException e) {
+				// the history is not thrown away
+				assertThat(file.length(), is(length));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testCapacityTooLarge() {
+		DuplicateDetector.inMemory(30, Integer.MAX_VALUE / 2);
+	}
+
+	private static SEPACreditTransfer transfer(String msgId, LocalDate date) {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader(msgId, "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		transfer.betaalgroep("12345", date, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("100.50"), "Energie BV", "NL44RABO0123456789", "Factuur 1")
+			.creditTransfer("E2E-2", new BigDecimal("100.50"), "Energie BV", "NL44RABO0123456789", "Factuur 2")
+			.creditTransfer("E2E-3", new BigDecimal("75.00"), "Jansen", "NL44RABO0123456789", "Factuur 1");
+		return transfer;
+	}
+
+}
@@ -0,0 +1,126 @@
+package nl.irp.sepa;
+
+import static nl.irp.sepa.camt.EntryField.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.camt.AbstractStatementHandler;
+import nl.irp.sepa.camt.ColumnarEntryReader;
+import nl.irp.sepa.camt.EntryExporter;
+import nl.irp.sepa.camt.EntryField;
+import nl.irp.sepa.camt.StatementEntry;
+import nl.irp.sepa.camt.StatementReader;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Resources;
+
+public class EntryExporterTest {
+
+	private static final List<EntryField> COLUMNS = ImmutableList.of(
+			ACCOUNT_IBAN, BOOKING_DATE, VALUE_DATE, AMOUNT, CDT_DBT_IND,
+			END_TO_END_ID, COUNTERPARTY_NAME, COUNTERPARTY_IBAN, REMITTANCE_INFO);
+
+	private InputStream statement() throws IOException {
+		return Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml").openStream();
+	}
+
+	@Test
+	public void testCsv() throws XMLStreamException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long rows = EntryExporter.exportCsv(statement(), out, COLUMNS);
+
+		assertThat(rows, is(5L));
+		String[] lines = out.toString("UTF-8").split("\r\n");
+		assertThat(lines.length, is(6));
+		assertThat(lines[0], is("account_iban,booking_date,value_date,amount,cdt_dbt_ind,end_to_end_id,counterparty_name,counterparty_iban,remittance_info"));
+		assertThat(lines[1], is("NL91ABNA0417164300,2013-04-02,2013-04-02,250.00,CRDT,E2E-0001,J. Jansen,NL20INGB0001234567,Factuur 2013-001"));
+		assertThat(lines[2], is("NL91ABNA0417164300,2013-04-02,2013-04-03,100.50,DBIT,E2E-0002,Energie BV,NL44RABO0123456789,RF18539007547034"));
+		assertThat(lines[3], is("NL91ABNA0417164300,2013-04-02,2013-04-02,120.00,DBIT,SAL-1,P. de Vries,,Salaris april"));
+		assertThat(lines[4], is("NL91ABNA0417164300,2013-04-02,2013-04-02,180.00,DBIT,SAL-2,K. Bakker,,"));
+		assertThat(lines[5], is("NL02ABNA0123456789,2013-04-02,2013-04-02,75.25,CRDT,E2E-0003,Bakkerij & Zn,NL39RABO0300065264,\"Huur \"\"april\"\", kamer 3\""));
+	}
+
+	@Test
+	public void testColumnarRoundTrip() throws XMLStreamException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EntryExporter.exportColumnar(statement(), out, COLUMNS);
+
+		ColumnarEntryReader reader = new ColumnarEntryReader(
+				new ByteArrayInputStream(out.toByteArray()), EnumSet.of(AMOUNT, END_TO_END_ID, BOOKING_DATE));
+		assertThat(reader.getColumns(), is(COLUMNS));
+
+		List<String[]> rows = Lists.newArrayList();
+		for(String[] row = reader.next(); row!=null; row = reader.next())
+			rows.add(row);
+		reader.close();
+
+		assertThat(rows.size(), is(5));
+		assertThat(rows.get(1)[COLUMNS.indexOf(AMOUNT)], is("100.50"));
+		assertThat(rows.get(1)[COLUMNS.indexOf(BOOKING_DATE)], is("2013-04-02"));
+		assertThat(rows.get(3)[COLUMNS.indexOf(END_TO_END_ID)], is("SAL-2"));
+		// not in the projection
+		assertThat(rows.get(3)[COLUMNS.indexOf(COUNTERPARTY_NAME)], is(nullValue()));
+
+		String csv = Resources.toString(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml"), Charsets.UTF_8);
+		assertThat(out.size() < csv.length()/10, is(true));
+	}
+
+	@Test(expected=EOFException.class)
+	public void testColumnarTruncated() throws XMLStreamException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EntryExporter.exportColumnar(statement(), out, COLUMNS);
+		// cut off in the last column, which is skipped
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 8);
+
+		ColumnarEntryReader reader = new ColumnarEntryReader(new ByteArrayInputStream(truncated), EnumSet.of(ACCOUNT_IBAN));
+		reader.next();
+	}
+
+	@Test
+	public void testProjection() throws XMLStreamException, IOException {
+		final List<StatementEntry> entries = Lists.newArrayList();
+		new StatementReader(EnumSet.of(AMOUNT)).read(statement(), new AbstractStatementHandler() {
+			@Override
+			public void entry(StatementEntry entry) {
+				entries.add(entry);
+			}
+		});
+
+		assertThat(entries.size(), is(4));
+		assertThat(entries.get(0).get(AMOUNT), is("250.00"));
+		assertThat(entries.get(0).get(END_TO_END_ID), is(nullValue()));
+		assertThat(entries.get(0).get(BOOKING_DATE), is(nullValue()));
+		assertThat(entries.get(2).getTransactionCount(), is(2));
+		assertThat(entries.get(2).get(AMOUNT), is("300.00"));
+		assertThat(entries.get(2).get(AMOUNT, 1), is("180.00"));
+	}
+
+	@Test
+	public void testOriginalExample() throws XMLStreamException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EntryExporter.exportCsv(Resources.getResource("camt.053.001.02.xml").openStream(), out,
+				ImmutableList.of(ACCOUNT_IBAN, BOOKING_DATE, AMOUNT, CURRENCY, END_TO_END_ID, COUNTERPARTY_NAME));
+
+		String[] lines = out.toString("UTF-8").split("\r\n");
+		assertThat(lines.length, is(4));
+		assertThat(lines[1], is("50000000054910000003,2010-10-18,105678.50,SEK,MUELL/FINP/RA12345,MUELLER"));
+		assertThat(lines[2], is("50000000054910000003,2010-10-18,200000,SEK,,"));
+	}
+
+}
@@ -0,0 +1,212 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.camt.AbstractStatementHandler;
+import nl.irp.sepa.camt.LenientStatementReader;
+import nl.irp.sepa.camt.ReadProblem;
+import nl.irp.sepa.camt.StatementBalance;
+import nl.irp.sepa.camt.StatementEntry;
+import nl.irp.sepa.camt.StatementHeader;
+import nl.irp.sepa.camt.StatementReader;
+import nl.irp.sepa.generator.MessageGenerator;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Resources;
+
+public class LenientStatementReaderTest {
+
+	private static class Recorder extends AbstractStatementHandler {
+		final List<String> events = Lists.newArrayList();
+
+		@Override
+		public void startStatement(StatementHeader statement) {
+			events.add("start " + statement.getId());
+		}
+		@Override
+		public void entry(StatementEntry entry) {
+			events.add(String.valueOf(entry.getSignedAmount()));
+		}
+		@Override
+		public void endStatement(StatementHeader statement) {
+			events.add("end");
+		}
+	}
+
+	private String sample() throws IOException {
+		return Resources.toString(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml"), Charsets.UTF_8);
+	}
+
+	private List<ReadProblem> read(String xml, Recorder recorder) throws IOException {
+		return new LenientStatementReader().read(new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8)), recorder);
+	}
+
+	private static int nthIndexOf(String s, String part, int n) {
+		int index = -1;
+		for(int i=0; i<n; i++)
+			index = s.indexOf(part, index + 1);
+		return index;
+	}
+
+	@Test
+	public void testSameAsStatementReader() throws IOException, XMLStreamException {
+		Recorder strict = new Recorder();
+		new StatementReader().read(new ByteArrayInputStream(sample().getBytes(Charsets.UTF_8)), strict);
+
+		Recorder lenient = new Recorder();
+		assertThat(read(sample(), lenient).isEmpty(), is(true));
+		assertThat(lenient.events, is(strict.events));
+	}
+
+	@Test
+	public void testBrokenEntry() throws IOException {
+		String xml = sample()
+				.replace("<Amt Ccy=\"EUR\">100.50</Amt>", "<Amt Ccy=\"EUR\">100.50</Amount>")
+				.replace("<Amt Ccy=\"EUR\">75.25</Amt>", "<Amt Ccy=\"EUR\">zeventig</Amt>");
+		Recorder recorder = new Recorder();
+		List<ReadProblem> problems = read(xml, recorder);
+
+		assertThat(recorder.events, is(Arrays.asList(
+				"start 0417164300-2013-101", "25000", "-30000", "end",
+				"start 0123456789-2013-57", "end")));
+
+		assertThat(problems.size(), is(2));
+		ReadProblem problem = problems.get(0);
+		assertThat(problem.getLevel(), is(ReadProblem.Level.ENTRY));
+		assertThat(problem.getStatementId(), is("0417164300-2013-101"));
+		assertThat(problem.getEntry(), is(2));
+		assertThat(problem.getOffset(), is((long) nthIndexOf(xml, "<Ntry>", 2)));
+		assertThat(problem.getLength(), is((long) (xml.indexOf("</Ntry>", (int) problem.getOffset()) + 7 - problem.getOffset())));
+
+		// not a well-formedness error, but the entry can't be decoded
+		assertThat(problems.get(1).getStatementId(), is("0123456789-2013-57"));
+		assertThat(problems.get(1).getEntry(), is(1));
+		assertThat(problems.get(1).getOffset(), is((long) nthIndexOf(xml, "<Ntry>", 4)));
+		assertTrue(problems.get(1).toString(), problems.get(1).toString().startsWith("ENTRY\t"));
+	}
+
+	@Test
+	public void testBrokenStatement() throws IOException {
+		String xml = sample().replace("<Id>0417164300-2013-101</Id>", "<Id>0417164300-2013-101</Idd>");
+		Recorder recorder = new Recorder();
+		List<ReadProblem> problems = read(xml, recorder);
+
+		assertThat(recorder.events, is(Arrays.asList("start 0123456789-2013-57", "7525", "end")));
+		assertThat(problems.size(), is(1));
+		ReadProblem problem = problems.get(0);
+		assertThat(problem.getLevel(), is(ReadProblem.Level.STATEMENT));
+		assertThat(problem.getStatementId(), is(nullValue()));
+		assertThat(problem.getOffset(), is((long) xml.indexOf("<Stmt>")));
+		assertThat(problem.getLength(), is((long) (xml.indexOf("</Stmt>") + 7 - xml.indexOf("<Stmt>"))));
+	}
+
+	@Test
+	public void testManyEntries() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new MessageGenerator(42).writeStatements(os, 2, 150);
+		String xml = new String(os.toByteArray(), Charsets.UTF_8);
+		// the 100th entry of the first statement
+		int broken = nthIndexOf(xml, "<Ntry>", 100);
+		xml = xml.substring(0, broken) + "<Ntry><Amt>" + xml.substring(broken + "<Ntry>".length());
+
+		Recorder recorder = new Recorder();
+		List<ReadProblem> problems = read(xml, recorder);
+		assertThat(problems.size(), is(1));
+		assertThat(problems.get(0).getEntry(), is(100));
+		assertThat(problems.get(0).getOffset(), is((long) broken));
+		assertThat(recorder.events.size(), is(2 + 149 + 2 + 150));
+	}
+
+	@Test
+	public void testHandlerFails() throws IOException {
+		Recorder recorder = new Recorder() {
+			@Override
+			public void entry(StatementEntry entry) {
+				if(entry.getSignedAmount()<0)
+					throw new IllegalStateException("no debits");
+				super.entry(entry);
+			}
+		};
+		List<ReadProblem> problems = read(sample(), recorder);
+
+		assertThat(recorder.events, is(Arrays.asList(
+				"start 0417164300-2013-101", "25000", "end", "start 0123456789-2013-57", "7525", "end")));
+		assertThat(problems.size(), is(2));
+		assertThat(problems.get(0).getEntry(), is(2));
+		assertThat(problems.get(0).getReason(), is("no debits"));
+		assertThat(problems.get(1).getEntry(), is(3));
+	}
+
+	@Test
+	public void testHandlerFailsOnBalance() throws IOException, XMLStreamException {
+		Recorder strict = new Recorder();
+		new StatementReader().read(new ByteArrayInputStream(sample().getBytes(Charsets.UTF_8)), strict);
+
+		Recorder recorder = new Recorder() {
+			@Override
+			public void balance(StatementBalance balance) {
+				throw new IllegalStateException("no balances");
+			}
+		};
+		List<ReadProblem> problems = read(sample(), recorder);
+
+		// the statements go on with their entries and end
+		assertThat(recorder.events, is(strict.events));
+		assertThat(problems.size(), is(4));
+		ReadProblem problem = problems.get(0);
+		assertThat(problem.getLevel(), is(ReadProblem.Level.HEAD));
+		assertThat(problem.getStatementId(), is("0417164300-2013-101"));
+		assertThat(problem.getReason(), is("no balances"));
+		assertThat(problem.getOffset(), is((long) sample().indexOf("<Stmt>")));
+		assertThat(problem.getLength(), is((long) (sample().indexOf("<Ntry>") - sample().indexOf("<Stmt>"))));
+		assertThat(problems.get(2).getStatementId(), is("0123456789-2013-57"));
+	}
+
+	@Test
+	public void testTruncatedAfterBrokenEntry() throws IOException {
+		String xml = sample().replace("<Amt Ccy=\"EUR\">100.50</Amt>", "<Amt Ccy=\"EUR\">100.50</Amount>");
+		xml = xml.substring(0, xml.indexOf("</Stmt>"));
+		Recorder recorder = new Recorder();
+		List<ReadProblem> problems = read(xml, recorder);
+
+		assertThat(recorder.events, is(Arrays.asList("start 0417164300-2013-101", "25000", "-30000", "end")));
+		assertThat(problems.size(), is(2));
+		assertThat(problems.get(0).getLevel(), is(ReadProblem.Level.ENTRY));
+		assertThat(problems.get(0).getEntry(), is(2));
+		assertThat(problems.get(1).getLevel(), is(ReadProblem.Level.STATEMENT));
+		assertThat(problems.get(1).getReason(), is("the message ends inside the statement"));
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		String xml = sample();
+		xml = xml.substring(0, xml.indexOf("SAL-2"));
+		Recorder recorder = new Recorder();
+		List<ReadProblem> problems = read(xml, recorder);
+
+		assertThat(recorder.events, is(Arrays.asList("start 0417164300-2013-101", "25000", "-10050", "end")));
+		assertThat(problems.size(), is(2));
+		assertThat(problems.get(0).getLevel(), is(ReadProblem.Level.ENTRY));
+		assertThat(problems.get(0).getEntry(), is(3));
+		assertThat(problems.get(0).getReason(), is("the entry is not closed"));
+		assertThat(problems.get(0).getOffset(), is((long) nthIndexOf(xml, "<Ntry>", 3)));
+		assertThat(problems.get(0).getLength(), is(xml.length() - problems.get(0).getOffset()));
+		assertThat(problems.get(1).getLevel(), is(ReadProblem.Level.STATEMENT));
+		assertThat(problems.get(1).getLength(), is((long) (xml.length() - xml.indexOf("<Stmt>"))));
+	}
+
+}
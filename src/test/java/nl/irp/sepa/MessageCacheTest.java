@@ -0,0 +1,137 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import iso.std.iso._20022.tech.xsd.pain_001_001.GroupHeader32;
+import iso.std.iso._20022.tech.xsd.pain_008_001.SequenceType1Code;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigDecimal;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import nl.irp.sepa.io.MessageCache;
+import nl.irp.sepa.sdd.DirectDebitInitiation;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+public class MessageCacheTest {
+
+	private static final LocalDate DAY = new LocalDate(2013, 4, 19);
+
+	@Test
+	public void testCreditTransferHash() throws Exception {
+		String hash = creditTransfer("000001", new LocalDateTime(2013, 4, 2, 10, 0), "100.50").getContentHash();
+		assertThat(hash.length(), is(64));
+		// another message id and creation time
+		assertThat(creditTransfer(null, new LocalDateTime(2013, 4, 3, 11, 0), "100.50").getContentHash(), is(hash));
+		assertThat(creditTransfer("000001", new LocalDateTime(2013, 4, 2, 10, 0), "100.5").getContentHash(), is(not(hash)));
+		assertThat(creditTransfer("000001", new LocalDateTime(2013, 4, 2, 10, 0), "100.51").getContentHash(), is(not(hash)));
+
+		// transactions added to the groups in another order
+		SEPACreditTransfer interleaved = new SEPACreditTransfer();
+		interleaved.buildGroupHeader("000002", "Klantnaam", new LocalDate(2013, 4, 2).toDate());
+		SEPACreditTransfer.Betaalgroep first = interleaved.betaalgroep("PMT-1", DAY, "Debiteur", "NL02ABNA0123456789", "ABNANL2A");
+		SEPACreditTransfer.Betaalgroep second = interleaved.betaalgroep("PMT-2", DAY, "Debiteur", "NL02ABNA0123456789", "ABNANL2A");
+		second.creditTransfer("E2E-3", new BigDecimal("7.00"), "Jansen", "NL44RABO0123456789", "Huur");
+		first.creditTransfer("E2E-1", new BigDecimal("100.50"), "Energie BV", "NL44RABO0123456789", "Factuur 1");
+		first.creditTransferWithReference("E2E-2", new BigDecimal("12.00"), null, "Energie BV", "NL44RABO0123456789",
+				CreditorReference.create("539007547034"));
+		assertThat(interleaved.getContentHash(), is(hash));
+
+		// the header is left as it is while the message is hashed
+		SEPACreditTransfer message = creditTransfer("000003", new LocalDateTime(2013, 4, 2, 10, 0), "100.50");
+		GroupHeader32 groupHeader = message.getDocument().getCstmrCdtTrfInitn().getGrpHdr();
+		XMLGregorianCalendar creDtTm = groupHeader.getCreDtTm();
+		assertThat(message.getContentHash(), is(hash));
+		assertThat(groupHeader.getMsgId(), is("000003"));
+		assertThat(groupHeader.getCreDtTm(), is(sameInstance(creDtTm)));
+	}
+
+	@Test
+	public void testDirectDebitHash() throws Exception {
+		String hash = directDebit("1000004207", "Contributie 2013").getContentHash();
+		assertThat(directDebit(null, "Contributie 2013").getContentHash(), is(hash));
+		assertThat(directDebit("1000004207", "Contributie 2014").getContentHash(), is(not(hash)));
+
+		// a change to a transaction after it was added
+		DirectDebitInitiation changed = directDebit("1000004207", "Contributie 2013");
+		changed.getDocument().getCstmrDrctDbtInitn().getPmtInf().get(0).getDrctDbtTxInf().get(0)
+			.getPmtId().setEndToEndId("E2E-2");
+		assertThat(changed.getContentHash(), is(not(hash)));
+		assertThat(changed.getDocument().getCstmrDrctDbtInitn().getGrpHdr().getMsgId(), is("1000004207"));
+	}
+
+	@Test
+	public void testWriteWithContentHash() throws Exception {
+		SEPACreditTransfer message = creditTransfer("000001", new LocalDateTime(2013, 4, 2, 10, 0), "100.50");
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		message.write(written);
+		ByteArrayOutputStream hashed = new ByteArrayOutputStream();
+		assertThat(message.writeWithContentHash(hashed), is(message.getContentHash()));
+		assertThat(hashed.toString("UTF-8"), is(written.toString("UTF-8")));
+
+		DirectDebitInitiation debit = directDebit("1000004207", "Contributie 2013");
+		assertThat(debit.writeWithContentHash(new ByteArrayOutputStream()), is(debit.getContentHash()));
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		File directory = Files.createTempDir();
+		try {
+			MessageCache cache = new MessageCache(directory);
+			SEPACreditTransfer message = creditTransfer("000001", new LocalDateTime(2013, 4, 2, 10, 0), "100.50");
+			assertThat(cache.get(message.getContentHash()), is(nullValue()));
+			File file = cache.write(message);
+			assertThat(file.getName(), is(message.getContentHash() + ".xml"));
+
+			// a retry gets the file of the first attempt, also after a restart
+			SEPACreditTransfer retry = creditTransfer("000002", new LocalDateTime(2013, 4, 2, 10, 5), "100.50");
+			assertThat(cache.write(retry), is(file));
+			assertThat(new MessageCache(directory).write(retry), is(file));
+			assertThat(Files.toString(file, Charsets.UTF_8).contains("<MsgId>000001</MsgId>"), is(true));
+
+			assertThat(cache.remove(retry.getContentHash()), is(true));
+			cache.write(retry);
+			assertThat(Files.toString(file, Charsets.UTF_8).contains("<MsgId>000002</MsgId>"), is(true));
+			assertThat(directory.list().length, is(1));
+		} finally {
+			for(File file : directory.listFiles())
+				file.delete();
+			directory.delete();
+		}
+	}
+
+	private static SEPACreditTransfer creditTransfer(String msgId, LocalDateTime created, String amount) {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader(msgId, "Klantnaam", created.toDate());
+		transfer.betaalgroep("PMT-1", DAY, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal(amount), "Energie BV", "NL44RABO0123456789", "Factuur 1")
+			.creditTransferWithReference("E2E-2", new BigDecimal("12.00"), null, "Energie BV", "NL44RABO0123456789",
+					CreditorReference.create("539007547034"));
+		transfer.betaalgroep("PMT-2", DAY, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-3", new BigDecimal("7.00"), "Jansen", "NL44RABO0123456789", "Huur");
+		return transfer;
+	}
+
+	private static DirectDebitInitiation directDebit(String msgId, String text) {
+		DirectDebitInitiation debitInitiation = new DirectDebitInitiation();
+		debitInitiation.buildGroupHeader(msgId, "Naam", new LocalDateTime().toDate());
+		debitInitiation.paymentInstruction("1000004207", DAY.toDate(), "Naam", SequenceType1Code.RCUR,
+					"NL", ImmutableList.of("Dorpstraat 1", "Amsterdam"), "NL02ABNA0123456789", null)
+			.addTransaction("INSTR-1", "E2E-1", new BigDecimal("25.00"), "MANDAAT-1", new LocalDate(2012, 1, 1),
+					"NL00ZZZ123456780000", "Debiteur", "NL44RABO0123456789", null, null, null, text);
+		return debitInitiation;
+	}
+
+}
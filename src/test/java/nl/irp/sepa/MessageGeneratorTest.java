@@ -0,0 +1,86 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.transform.stream.StreamSource;
+
+import nl.irp.sepa.camt.StatementPages;
+import nl.irp.sepa.camt.StatementVerifier;
+import nl.irp.sepa.generator.MessageGenerator;
+
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class MessageGeneratorTest {
+
+	@Test
+	public void testStatements() throws Exception {
+		ByteArrayOutputStream first = new ByteArrayOutputStream();
+		new MessageGenerator(42).writeStatements(first, 5, 20);
+		ByteArrayOutputStream second = new ByteArrayOutputStream();
+		new MessageGenerator(42).writeStatements(second, 5, 20);
+		assertArrayEquals(first.toByteArray(), second.toByteArray());
+
+		// balances and summaries match the entries
+		StatementVerifier verifier = new StatementVerifier();
+		verifier.verify(new ByteArrayInputStream(first.toByteArray()));
+		assertThat(verifier.getDiscrepancies().toString(), verifier.isValid(), is(true));
+		assertThat(verifier.getStatements(), is(5L));
+	}
+
+	@Test
+	public void testPages() throws Exception {
+		File directory = Files.createTempDir();
+		List<File> files = new MessageGenerator(7).writeStatementPages(directory, 3, 10, 7);
+		assertThat(files.size(), is(5));
+
+		StatementPages pages = new StatementPages();
+		for(File file : files)
+			pages.add(file);
+		assertThat(pages.isComplete(), is(true));
+		assertThat(pages.getProblems().isEmpty(), is(true));
+		assertThat(pages.getAccounts().size(), is(3));
+
+		StatementVerifier verifier = new StatementVerifier();
+		pages.read(verifier);
+		assertThat(verifier.getDiscrepancies().toString(), verifier.isValid(), is(true));
+		assertThat(verifier.getStatements(), is(3L));
+
+		for(File file : files)
+			file.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void testPayments() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new MessageGenerator(1).writeCreditTransfers(os, 3, 4);
+		JAXBElement<iso.std.iso._20022.tech.xsd.pain_001_001.Document> pain001 =
+				JAXBContext.newInstance(iso.std.iso._20022.tech.xsd.pain_001_001.Document.class).createUnmarshaller()
+				.unmarshal(new StreamSource(new ByteArrayInputStream(os.toByteArray())), iso.std.iso._20022.tech.xsd.pain_001_001.Document.class);
+		assertThat(pain001.getValue().getCstmrCdtTrfInitn().getGrpHdr().getNbOfTxs(), is("12"));
+		BigDecimal sum = BigDecimal.ZERO;
+		for(iso.std.iso._20022.tech.xsd.pain_001_001.PaymentInstructionInformation3 pmtInf : pain001.getValue().getCstmrCdtTrfInitn().getPmtInf())
+			sum = sum.add(pmtInf.getCtrlSum());
+		assertThat(pain001.getValue().getCstmrCdtTrfInitn().getGrpHdr().getCtrlSum(), is(sum));
+
+		os.reset();
+		new MessageGenerator(1).writeDirectDebits(os, 2, 5);
+		JAXBElement<iso.std.iso._20022.tech.xsd.pain_008_001.Document> pain008 =
+				JAXBContext.newInstance(iso.std.iso._20022.tech.xsd.pain_008_001.Document.class).createUnmarshaller()
+				.unmarshal(new StreamSource(new ByteArrayInputStream(os.toByteArray())), iso.std.iso._20022.tech.xsd.pain_008_001.Document.class);
+		assertThat(pain008.getValue().getCstmrDrctDbtInitn().getPmtInf().get(1).getDrctDbtTxInf().size(), is(5));
+	}
+
+}
@@ -0,0 +1,104 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.camt.StatementVerifier;
+import nl.irp.sepa.metrics.Histogram;
+import nl.irp.sepa.metrics.MessageType;
+import nl.irp.sepa.metrics.Metrics;
+import nl.irp.sepa.metrics.MetricsRegistry;
+import nl.irp.sepa.metrics.Phase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Resources;
+
+public class MetricsRegistryTest {
+
+	private MetricsRegistry registry;
+
+	@Before
+	public void setUp() {
+		registry = new MetricsRegistry(true);
+		Metrics.setListener(registry);
+	}
+
+	@After
+	public void tearDown() {
+		Metrics.reset();
+	}
+
+	@Test
+	public void testWrite() throws JAXBException {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("MSGID005", "IPNORGANIZTIONNAME", new LocalDateTime("2013-04-02T14:52:09").toDate());
+		transfer
+			.betaalgroep("PAYID001", new LocalDate("2013-04-19"), "NAAM Debtor", "NL28INGB0000000001", "INGBNL2A")
+				.creditTransfer("E2EID001", new BigDecimal("1.01"), "INGBNL2A", "NAAM cdtr", "NL98INGB0000000002", "Ref. 1")
+				.creditTransfer("E2EID002", new BigDecimal("2.02"), "INGBNL2A", "NAAM cdtr", "NL98INGB0000000002", "Ref. 2");
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		transfer.write(stream);
+
+		assertThat(registry.getMessages(MessageType.PAIN_001), is(1L));
+		assertThat(registry.getTransactions(MessageType.PAIN_001), is(2L));
+		assertThat(registry.getBytes(MessageType.PAIN_001), is((long) stream.size()));
+		for(Phase phase : new Phase[] { Phase.BUILD, Phase.CONTEXT, Phase.MARSHAL, Phase.FLUSH })
+			assertThat(phase.name(), registry.getPhase(MessageType.PAIN_001, phase).getCount(), is(1L));
+		assertTrue(registry.getTransactionsPerSecond(MessageType.PAIN_001)>0);
+		assertThat(registry.getMessages(MessageType.PAIN_008), is(0L));
+	}
+
+	@Test
+	public void testWriteWithoutGroupHeader() throws JAXBException {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.betaalgroep("PAYID001", new LocalDate("2013-04-19"), "NAAM Debtor", "NL28INGB0000000001", "INGBNL2A");
+		transfer.write(new ByteArrayOutputStream());
+
+		assertThat(registry.getMessages(MessageType.PAIN_001), is(1L));
+		assertThat(registry.getTransactions(MessageType.PAIN_001), is(0L));
+	}
+
+	@Test
+	public void testRead() throws JAXBException, XMLStreamException, IOException {
+		BankToCustomerStatement.read(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml").openStream());
+		new StatementVerifier().verify(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml").openStream());
+
+		assertThat(registry.getMessages(MessageType.CAMT_053), is(2L));
+		assertThat(registry.getTransactions(MessageType.CAMT_053), is(8L));
+		assertThat(registry.getPhase(MessageType.CAMT_053, Phase.UNMARSHAL).getCount(), is(1L));
+		assertThat(registry.getPhase(MessageType.CAMT_053, Phase.READ).getCount(), is(1L));
+		assertTrue(registry.summary(MessageType.CAMT_053).startsWith("camt.053.001.02: 2 messages, 8 transactions"));
+
+		new StatementVerifier().verify(Resources.getResource("camt/camt.054.001.02 voorbeeldbestand.xml").openStream());
+		assertThat(registry.getMessages(MessageType.CAMT_053), is(2L));
+		assertThat(registry.getMessages(MessageType.CAMT_054), is(1L));
+		assertThat(registry.getPhase(MessageType.CAMT_054, Phase.READ).getCount(), is(1L));
+	}
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		for(int i=1; i<=100; i++)
+			histogram.update(i);
+		assertThat(histogram.getCount(), is(100L));
+		assertThat(histogram.getMean(), is(50L));
+		assertThat(histogram.getMax(), is(100L));
+		assertThat(histogram.getPercentile(0.5), is(63L));
+		assertThat(histogram.getPercentile(0.99), is(100L));
+	}
+
+}
@@ -0,0 +1,95 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import nl.irp.sepa.camt.AbstractStatementHandler;
+import nl.irp.sepa.camt.AccountStatement;
+import nl.irp.sepa.camt.ParallelStatementReader;
+import nl.irp.sepa.camt.StatementEntry;
+import nl.irp.sepa.camt.StatementHeader;
+import nl.irp.sepa.camt.StatementProcessor;
+import nl.irp.sepa.camt.StatementReader;
+import nl.irp.sepa.generator.MessageGenerator;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ParallelStatementReaderTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Account and net amount of a statement.
+	 */
+	private static final StatementProcessor<String> total = new StatementProcessor<String>() {
+		public String process(AccountStatement statement) {
+			long total = 0;
+			for(StatementEntry entry : statement.getEntries())
+				total += entry.getSignedAmount();
+			return statement.getHeader().getAccount() + " " + total;
+		}
+	};
+
+	@Test
+	public void testDocumentOrder() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new MessageGenerator(3).writeStatements(os, 40, 25);
+		byte[] xml = os.toByteArray();
+
+		// the same totals, sequentially
+		final List<String> expected = Lists.newArrayList();
+		new StatementReader().read(new ByteArrayInputStream(xml), new AbstractStatementHandler() {
+			private long total;
+			@Override
+			public void entry(StatementEntry entry) {
+				total += entry.getSignedAmount();
+			}
+			@Override
+			public void endStatement(StatementHeader statement) {
+				expected.add(statement.getAccount() + " " + total);
+				total = 0;
+			}
+		});
+
+		// few pending statements, so that the parser has to wait for the workers
+		ParallelStatementReader reader = new ParallelStatementReader(new StatementReader(), executor, 3);
+		List<String> results = reader.read(new ByteArrayInputStream(xml), total);
+		assertThat(results.size(), is(40));
+		assertThat(results, is(expected));
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new MessageGenerator(3).writeStatements(os, 10, 5);
+
+		ParallelStatementReader reader = new ParallelStatementReader(executor);
+		try {
+			reader.read(new ByteArrayInputStream(os.toByteArray()), new StatementProcessor<Object>() {
+				public Object process(AccountStatement statement) {
+					throw new IllegalStateException(statement.getHeader().getId());
+				}
+			});
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof IllegalStateException, is(true));
+		}
+	}
+
+}
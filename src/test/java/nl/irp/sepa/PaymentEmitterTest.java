@@ -0,0 +1,92 @@
+package nl.irp.sepa;
+
+import static org.junit.Assert.assertTrue;
+import iso.std.iso._20022.tech.xsd.pain_008_001.SequenceType1Code;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import nl.irp.sepa.model.CreditTransferEmitter;
+import nl.irp.sepa.model.DirectDebitEmitter;
+import nl.irp.sepa.model.Party;
+import nl.irp.sepa.model.Payment;
+import nl.irp.sepa.model.PaymentGroup;
+import nl.irp.sepa.sdd.DirectDebitInitiation;
+
+import org.custommonkey.xmlunit.Diff;
+import org.custommonkey.xmlunit.XMLUnit;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class PaymentEmitterTest {
+
+	private final Date creDtTm = new LocalDateTime("2013-04-02T14:52:09").toDate();
+	private final LocalDate date = new LocalDate("2013-04-19");
+
+	@Test
+	public void testCreditTransfer() throws Exception {
+		List<PaymentGroup> groups = ImmutableList.of(
+				PaymentGroup.creditTransfers("PMT-1", date, new Party("Debiteur", "NL02ABNA0123456789", "ABNANL2A"))
+					.add(Payment.creditTransfer("E2E-1", 38600, new Party("Crediteur", "NL44RABO0123456789", "RABONL2U"), "Ref. 2012.0386"))
+					.add(Payment.creditTransfer("E2E-2", 1, new Party("Créditeur", "NL44RABO0123456789"), "Factuur & co")),
+				PaymentGroup.creditTransfers("PMT-2", date, new Party("Debiteur", "NL02ABNA0123456789"))
+					.add(Payment.creditTransfer("E2E-3", 125050, new Party("Onbekend", "DE12345678901234567890"), "Ref 3")));
+		ByteArrayOutputStream emitted = new ByteArrayOutputStream();
+		new CreditTransferEmitter().write(emitted, "000001", "Klantnaam", creDtTm, groups);
+
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("000001", "Klantnaam", creDtTm);
+		transfer.betaalgroep("PMT-1", date, "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+			.creditTransfer("E2E-1", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref. 2012.0386")
+			.creditTransfer("E2E-2", new BigDecimal("0.01"), "Créditeur", "NL44RABO0123456789", "Factuur & co");
+		transfer.betaalgroep("PMT-2", date, "Debiteur", "NL02ABNA0123456789", null)
+			.creditTransfer("E2E-3", new BigDecimal("1250.50"), "Onbekend", "DE12345678901234567890", "Ref 3");
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		transfer.write(expected);
+
+		assertIdentical(expected, emitted);
+	}
+
+	@Test
+	public void testDirectDebit() throws Exception {
+		Party debtor = new Party("FICO Customer account", "DE12345678901234567890", "NBAGDE3E");
+		List<PaymentGroup> groups = ImmutableList.of(
+				PaymentGroup.directDebits("1000004207", date,
+						new Party("Naam", "DE12345678901234567890", "ABNADEFFFRA", "NL", ImmutableList.of("Dorpstraat 1", "Amsterdam")),
+						"NL89ZZZ011234567890", "RCUR")
+					.add(Payment.directDebit("01-E30220000000382012", "2000000038", 160000, debtor,
+							"MANDAAT123456", new LocalDate("2010-09-05"), "/INV/ 8/29/2011"))
+					.add(Payment.directDebit("01-E30220000000382013", "2000000039", 99, new Party("Klant", "NL44RABO0123456789"),
+							"MANDAAT123457", new LocalDate("2011-01-31"), "Contributie")));
+		ByteArrayOutputStream emitted = new ByteArrayOutputStream();
+		new DirectDebitEmitter().write(emitted, "1000004207", "Naam", creDtTm, groups);
+
+		DirectDebitInitiation debitInitiation = new DirectDebitInitiation();
+		debitInitiation.buildGroupHeader("1000004207", "Naam", creDtTm);
+		DirectDebitInitiation.PaymentInstruction paymentInstruction = debitInitiation.paymentInstruction(
+				"1000004207", date.toDate(), "Naam", SequenceType1Code.RCUR,
+				"NL", ImmutableList.of("Dorpstraat 1", "Amsterdam"), "DE12345678901234567890", "ABNADEFFFRA");
+		paymentInstruction.addTransaction("01-E30220000000382012", "2000000038", new BigDecimal("1600.00"),
+				"MANDAAT123456", new LocalDate("2010-09-05"), "NL89ZZZ011234567890",
+				"FICO Customer account", "DE12345678901234567890", "NBAGDE3E", null, null, "/INV/ 8/29/2011");
+		paymentInstruction.addTransaction("01-E30220000000382013", "2000000039", new BigDecimal("0.99"),
+				"MANDAAT123457", new LocalDate("2011-01-31"), "NL89ZZZ011234567890",
+				"Klant", "NL44RABO0123456789", null, null, null, "Contributie");
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		debitInitiation.write(expected);
+
+		assertIdentical(expected, emitted);
+	}
+
+	private static void assertIdentical(ByteArrayOutputStream expected, ByteArrayOutputStream actual) throws Exception {
+		XMLUnit.setIgnoreWhitespace(true);
+		Diff diff = XMLUnit.compareXML(expected.toString("UTF-8"), actual.toString("UTF-8"));
+		assertTrue(diff.toString() + "\n" + actual.toString("UTF-8"), diff.identical());
+	}
+
+}
@@ -0,0 +1,121 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import iso.std.iso._20022.tech.xsd.pain_002_001.Document;
+import iso.std.iso._20022.tech.xsd.pain_002_001.TransactionGroupStatus3Code;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stream.StreamSource;
+
+import nl.irp.sepa.status.PaymentStatus;
+import nl.irp.sepa.status.PaymentStatusIndex;
+import nl.irp.sepa.status.TransactionStatus;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+
+public class PaymentStatusIndexTest {
+
+	private InputStream report() throws IOException {
+		return Resources.getResource("status/pain.002.001.03 voorbeeldbestand.xml").openStream();
+	}
+
+	@Test
+	public void testIndex() throws XMLStreamException, IOException {
+		PaymentStatusIndex index = PaymentStatusIndex.read(report());
+
+		assertThat(index.getOrgnlMsgId(), is("MSGID005"));
+		assertThat(index.getGroupStatus().getStatus(), is("PART"));
+
+		PaymentStatus rejected = index.get("PAYID001", "E2EID002");
+		assertThat(rejected.getStatus(), is("RJCT"));
+		assertThat(rejected.getReasonCode(), is("AC04"));
+		assertThat(rejected.getAdditionalInformation(), is("Rekening opgeheven"));
+		assertThat(index.getByEndToEndId("E2EID002"), is(rejected));
+
+		assertThat(index.get("PAYID001", "E2EID001").getStatus(), is("PART"));
+		assertThat(index.get("PAYID002", "E2EID003").getReasonCode(), is("AM05"));
+		assertThat(index.getByEndToEndId("E2EID003"), is(nullValue()));
+		assertThat(index.getRejected().size(), is(2));
+	}
+
+	@Test
+	public void testLaterReport() throws XMLStreamException, IOException {
+		PaymentStatusIndex index = PaymentStatusIndex.read(report());
+		String accepted = Resources.toString(Resources.getResource("status/pain.002.001.03 voorbeeldbestand.xml"), Charsets.UTF_8)
+				.replace("<TxSts>RJCT</TxSts>", "<TxSts>ACCP</TxSts>");
+		index.add(new ByteArrayInputStream(accepted.getBytes(Charsets.UTF_8)));
+
+		assertThat(index.get("PAYID001", "E2EID002").getStatus(), is("ACCP"));
+		assertThat(index.getRejected().size(), is(1));
+		assertThat(index.getRejected().get(0).getOrgnlPmtInfId(), is("PAYID002"));
+
+		// a report without GrpSts keeps the status of the message
+		index.add(new ByteArrayInputStream(accepted.replace("<GrpSts>PART</GrpSts>", "").getBytes(Charsets.UTF_8)));
+		assertThat(index.getGroupStatus().getStatus(), is("PART"));
+		assertThat(index.get("PAYID001", "E2EID001").getStatus(), is("PART"));
+
+		// a report without OrgnlMsgId
+		String anonymous = accepted.replace("<OrgnlMsgId>MSGID005</OrgnlMsgId>", "");
+		index = PaymentStatusIndex.read(new ByteArrayInputStream(anonymous.getBytes(Charsets.UTF_8)));
+		index.add(new ByteArrayInputStream(anonymous.getBytes(Charsets.UTF_8)));
+		assertThat(index.getOrgnlMsgId(), is(nullValue()));
+	}
+
+	@Test
+	public void testMerge() throws XMLStreamException, IOException {
+		LocalDateTime today = new LocalDateTime("2013-04-02T14:52:09");
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("MSGID005", "IPNORGANIZTIONNAME", today.toDate());
+		transfer
+			.betaalgroep("PAYID001", new LocalDate("2013-04-19"), "NAAM Debtor", "NL28INGB0000000001", "INGBNL2A")
+				.creditTransfer("E2EID001", new BigDecimal("1.01"), "INGBNL2A", "NAAM cdtr", "NL98INGB0000000002", "Ref. 1")
+				.creditTransfer("E2EID002", new BigDecimal("2.02"), "INGBNL2A", "NAAM cdtr", "NL98INGB0000000002", "Ref. 2");
+		transfer
+			.betaalgroep("PAYID002", new LocalDate("2013-04-19"), "NAAM Debtor", "NL28INGB0000000001", "INGBNL2A")
+				.creditTransfer("E2EID003", new BigDecimal("13.01"), "INGBNL2A", "NAAM cdtr", "NL98INGB0000000002", "Ref. 3");
+
+		List<TransactionStatus> statuses = PaymentStatusIndex.read(report()).merge(transfer);
+
+		assertThat(statuses.size(), is(3));
+		assertThat(statuses.get(0).isRejected(), is(false));
+		assertThat(statuses.get(1).isRejected(), is(true));
+		assertThat(statuses.get(1).getAmount(), is(new BigDecimal("2.02")));
+		assertThat(statuses.get(2).isRejected(), is(true));
+		assertThat(statuses.get(2).getStatus().getLevel(), is(PaymentStatus.Level.PAYMENT_INFORMATION));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testOtherMessage() throws XMLStreamException, IOException {
+		SEPACreditTransfer transfer = new SEPACreditTransfer();
+		transfer.buildGroupHeader("MSGID006", "IPNORGANIZTIONNAME", new LocalDateTime().toDate());
+		PaymentStatusIndex.read(report()).merge(transfer);
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testMergeWithoutGroupHeader() throws XMLStreamException, IOException {
+		PaymentStatusIndex.read(report()).merge(new SEPACreditTransfer());
+	}
+
+	@Test
+	public void testSchema() throws JAXBException, IOException {
+		Document document = JAXBContext.newInstance(Document.class).createUnmarshaller()
+				.unmarshal(new StreamSource(report()), Document.class).getValue();
+		assertThat(document.getCstmrPmtStsRpt().getOrgnlGrpInfAndSts().getGrpSts(), is(TransactionGroupStatus3Code.PART));
+	}
+
+}
@@ -0,0 +1,75 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.irp.sepa.camt.Projection;
+
+import org.junit.Test;
+
+import com.google.common.io.Resources;
+
+public class ProjectionTest {
+
+	@Test
+	public void testProjection() throws Exception {
+		Projection projection = Projection.compile("Stmt",
+				"Acct/Id/IBAN",
+				"Bal[Tp=CLBD]/Amt",
+				"Bal[Tp=CLBD]/Amt/@Ccy",
+				"Bal[Tp='OPBD'][CdtDbtInd=DBIT]/Amt",
+				"Ntry[BkTxCd/Domn/Fmly/Cd=RCDT]/Amt",
+				"Ntry/NtryDtls/TxDtls/Refs/EndToEndId",
+				"Bal/Tp",
+				"Ntry/Chrgs");
+		List<Projection.Row> rows = read(projection);
+		assertThat(rows.size(), is(2));
+
+		Projection.Row first = rows.get(0);
+		assertThat(first.get("Acct/Id/IBAN"), is("NL91ABNA0417164300"));
+		assertThat(first.get(1), is("849.50"));
+		assertThat(first.get(2), is("EUR"));
+		assertThat(first.get(3), is(nullValue()));
+		assertThat(first.getAll(4), is(Arrays.asList("250.00")));
+		assertThat(first.getAll(5), is(Arrays.asList("E2E-0001", "E2E-0002", "SAL-1", "SAL-2")));
+		assertThat(first.getAll(6), is(Arrays.asList("OPBD", "CLBD")));
+		assertThat(first.getAll(7).isEmpty(), is(true));
+
+		Projection.Row second = rows.get(1);
+		assertThat(second.get(0), is("NL02ABNA0123456789"));
+		assertThat(second.get(1), is("25.25"));
+		assertThat(second.get(3), is("50.00"));
+		assertThat(second.getAll(4), is(Arrays.asList("75.25")));
+	}
+
+	@Test
+	public void testRecordCondition() throws Exception {
+		Projection projection = Projection.compile("Stmt[Acct/Id/IBAN=NL02ABNA0123456789]", "Id", "Bal[Tp=CLBD]/Amt");
+		List<Projection.Row> rows = read(projection);
+		assertThat(rows.size(), is(1));
+		assertThat(rows.get(0).get(1), is("25.25"));
+
+		rows = read(Projection.compile("GrpHdr", "MsgId"));
+		assertThat(rows.get(0).get(0), is("ABNA-20130402-0001"));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidPath() {
+		Projection.compile("Stmt", "Bal[Tp=CLBD/Amt");
+	}
+
+	private static List<Projection.Row> read(Projection projection) throws Exception {
+		InputStream is = Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml").openStream();
+		try {
+			return projection.read(is);
+		} finally {
+			is.close();
+		}
+	}
+
+}
@@ -75,4 +75,42 @@ public class SEPACreditTransferTest extends XMLTestCase {
 		assertXMLEqual(example, xml);
 	}
 
+	@Test
+	public void testReset() throws Exception {
+		LocalDateTime today = new LocalDateTime("2013-04-02T14:52:09"); 
+		SEPACreditTransfer transfer = SEPACreditTransfer.forCurrentThread();
+		transfer.buildGroupHeader("OTHER", "Andere klant", today.toDate());
+		SEPACreditTransfer.Betaalgroep other = transfer
+			.betaalgroep("99999", new LocalDate("2013-05-01"), "Ander", "NL91ABNA0417164300", "ABNANL2A")
+				.creditTransfer("E2E-1", new BigDecimal("1.00"), "Crediteur", "NL44RABO0123456789", "Eerste");
+		String otherHash = transfer.getContentHash();
+		transfer.write(new ByteArrayOutputStream());
+		
+		assertSame(transfer, SEPACreditTransfer.forCurrentThread());
+		try {
+			other.creditTransfer("E2E-2", new BigDecimal("2.00"), "Crediteur", "NL44RABO0123456789", "Tweede");
+			fail();
+		} catch (IllegalStateException e) {
+			// a group of the previous message
+		}
+		assertEquals(0, transfer.getDocument().getCstmrCdtTrfInitn().getPmtInf().size());
+		transfer.buildGroupHeader("000001", "Klantnaam", today.toDate());
+		transfer
+			.betaalgroep("12345", new LocalDate("2013-04-19"), "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+				.creditTransfer("Onze referentie: 123456", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref. 2012.0386");
+		
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		transfer.write(stream);
+		String example = Resources.toString( Resources.getResource("abn/pain.001.001.03 voorbeeldbestand.xml"), Charsets.UTF_8);
+		assertXMLEqual(example, stream.toString("UTF-8"));
+		
+		SEPACreditTransfer fresh = new SEPACreditTransfer();
+		fresh.buildGroupHeader("000002", "Klantnaam", today.toDate());
+		fresh
+			.betaalgroep("12345", new LocalDate("2013-04-19"), "Debiteur", "NL02ABNA0123456789", "ABNANL2A")
+				.creditTransfer("Onze referentie: 123456", new BigDecimal("386.00"), "RABONL2U", "Crediteur", "NL44RABO0123456789", "Ref. 2012.0386");
+		assertEquals(fresh.getContentHash(), transfer.getContentHash());
+		assertFalse(otherHash.equals(transfer.getContentHash()));
+	}
+
 }
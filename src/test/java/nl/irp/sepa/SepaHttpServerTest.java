@@ -0,0 +1,214 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import nl.irp.sepa.http.MockBank;
+import nl.irp.sepa.http.SepaHttpServer;
+import nl.irp.sepa.metrics.MessageType;
+import nl.irp.sepa.metrics.Metrics;
+import nl.irp.sepa.metrics.MetricsRegistry;
+import nl.irp.sepa.metrics.Phase;
+import nl.irp.sepa.status.PaymentStatus;
+import nl.irp.sepa.status.PaymentStatusIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+public class SepaHttpServerTest {
+
+	private static final String CREDIT_TRANSFERS =
+			"# a message with two transfers\n"
+			+ "H\tMSG-1\tKlantnaam\t2013-04-02T14:52:09\n"
+			+ "G\tPMT-1\t2013-04-19\tDebiteur\tNL02ABNA0123456789\tABNANL2A\n"
+			+ "T\tE2E-1\t386.00\tCrediteur\tNL44RABO0123456789\tRABONL2U\tFactuur 1\n"
+			+ "T\tE2E-2\t12.50\tCrediteur\tNL44RABO0123456789\t\tFactuur 2\n";
+
+	private static final String DIRECT_DEBITS =
+			"H\tMSG-2\tKlantnaam\n"
+			+ "G\tPMT-1\t2013-04-19\tRCUR\tVereniging\tNL91ABNA0417164300\t\tNL\tDorpstraat 1\n"
+			+ "T\tI-1\tE2E-1\t10.00\tM-1\t2012-01-01\tNL00ZZZ123456780000\tLid\tNL44RABO0123456789\t\tContributie\n";
+
+	private final MockBank bank = new MockBank();
+	private SepaHttpServer server;
+
+	/**
+	 * The status and body of a response.
+	 */
+	private static class Response {
+		int status;
+		byte[] body;
+
+		String text() {
+			return new String(body, Charsets.UTF_8);
+		}
+	}
+
+	@Before
+	public void start() throws IOException {
+		server = new SepaHttpServer(new InetSocketAddress("localhost", 0), 2);
+		server.addMockBank(bank);
+		server.start();
+	}
+
+	@After
+	public void stop() throws InterruptedException {
+		server.stop(0);
+	}
+
+	@Test
+	public void testGenerate() throws Exception {
+		Response pain001 = post("/generate/pain.001", CREDIT_TRANSFERS.getBytes(Charsets.UTF_8));
+		assertThat(pain001.status, is(200));
+		assertTrue(pain001.text().contains("<CtrlSum>398.50</CtrlSum>"));
+		assertThat(post("/validate/pain.001", pain001.body).text(), is("valid\n"));
+
+		Response pain008 = post("/generate/pain.008", DIRECT_DEBITS.getBytes(Charsets.UTF_8));
+		assertThat(pain008.status, is(200));
+		assertThat(post("/validate/pain.008", pain008.body).text(), is("valid\n"));
+	}
+
+	@Test
+	public void testGenerateErrors() throws Exception {
+		Response response = post("/generate/pain.001", "H\tMSG-1\tKlantnaam\nT\tE2E-1\t1.00\n".getBytes(Charsets.UTF_8));
+		assertThat(response.status, is(400));
+		assertTrue(response.text().startsWith("line 2: "));
+
+		assertThat(post("/generate/pain.999", new byte[0]).status, is(404));
+
+		HttpURLConnection connection = connect("/generate/pain.001");
+		assertThat(connection.getResponseCode(), is(405));
+		connection.disconnect();
+	}
+
+	@Test
+	public void testValidate() throws Exception {
+		byte[] example = Resources.toByteArray(Resources.getResource("abn/pain.001.001.03 voorbeeldbestand.xml"));
+		assertThat(post("/validate/pain.001", example).text(), is("valid\n"));
+
+		Response response = post("/validate/pain.008", example);
+		assertThat(response.status, is(422));
+		assertTrue(response.text(), response.text().matches("(?s)\\d+:\\d+: .*"));
+	}
+
+	@Test
+	public void testValidateMetrics() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry(false);
+		Metrics.setListener(registry);
+		try {
+			byte[] example = Resources.toByteArray(Resources.getResource("abn/pain.001.001.03 voorbeeldbestand.xml"));
+			assertThat(post("/validate/pain.001", example).text(), is("valid\n"));
+			assertThat(registry.getPhase(MessageType.PAIN_001, Phase.VALIDATE).getCount(), is(1L));
+			assertThat(registry.getMessages(MessageType.PAIN_001), is(0L));
+		} finally {
+			Metrics.reset();
+		}
+	}
+
+	@Test
+	public void testValidateExternalEntity() throws Exception {
+		File secret = File.createTempFile("secret", ".txt");
+		try {
+			Files.write("geheim-0123456789", secret, Charsets.UTF_8);
+			String xml = "<?xml version=\"1.0\"?>\n"
+					+ "<!DOCTYPE Document [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>\n"
+					+ "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pain.001.001.03\">"
+					+ "<CstmrCdtTrfInitn><GrpHdr><MsgId>M</MsgId><CreDtTm>&xxe;</CreDtTm></GrpHdr></CstmrCdtTrfInitn></Document>";
+			Response response = post("/validate/pain.001", xml.getBytes(Charsets.UTF_8));
+			assertThat(response.status, is(422));
+			assertFalse(response.text(), response.text().contains("geheim"));
+		} finally {
+			secret.delete();
+		}
+
+		Response response = post("/validate/pain.001", "not xml".getBytes(Charsets.UTF_8));
+		assertThat(response.status, is(422));
+		assertTrue(response.text(), response.text().matches("(?s)\\d+:\\d+: .*"));
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		byte[] statement = Resources.toByteArray(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml"));
+		Response response = post("/parse/camt.053?columns=ACCOUNT_IBAN,END_TO_END_ID", statement);
+		assertThat(response.status, is(200));
+		String[] lines = response.text().split("\r?\n");
+		assertThat(lines.length, is(6));
+		assertTrue(lines[1].contains("E2E-0001"));
+
+		assertThat(post("/parse/camt.053?columns=NONSENSE", statement).status, is(400));
+	}
+
+	@Test
+	public void testMockBank() throws Exception {
+		Response pain001 = post("/generate/pain.001", CREDIT_TRANSFERS.getBytes(Charsets.UTF_8));
+		Response report = post("/bank", pain001.body);
+		assertThat(report.status, is(200));
+		assertThat(post("/validate/pain.002", report.body).text(), is("valid\n"));
+		PaymentStatusIndex index = PaymentStatusIndex.read(new ByteArrayInputStream(report.body));
+		assertThat(index.getOrgnlMsgId(), is("MSG-1"));
+		assertThat(index.getGroupStatus().getStatus(), is("ACCP"));
+
+		bank.setRejectRate(1);
+		index = PaymentStatusIndex.read(new ByteArrayInputStream(post("/bank", pain001.body).body));
+		assertThat(index.getGroupStatus().getStatus(), is("RJCT"));
+		PaymentStatus rejected = index.get("PMT-1", "E2E-2");
+		assertThat(rejected.getStatus(), is("RJCT"));
+		assertThat(rejected.getReasonCode(), is("AC04"));
+		assertThat(index.getRejected().size(), is(4));
+
+		// a control sum that doesn't add up
+		byte[] tampered = pain001.text().replace("<CtrlSum>398.50</CtrlSum>", "<CtrlSum>398.51</CtrlSum>").getBytes(Charsets.UTF_8);
+		index = PaymentStatusIndex.read(new ByteArrayInputStream(post("/bank", tampered).body));
+		assertThat(index.getGroupStatus().getReasonCode(), is("AM10"));
+
+		index = PaymentStatusIndex.read(new ByteArrayInputStream(post("/bank", "not xml".getBytes(Charsets.UTF_8)).body));
+		assertThat(index.getGroupStatus().getReasonCode(), is("FF01"));
+		assertThat(bank.getReports(), is(4L));
+	}
+
+	private HttpURLConnection connect(String path) throws IOException {
+		InetSocketAddress address = server.getAddress();
+		URL url = new URL("http", address.getHostName(), address.getPort(), path);
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	private Response post(String path, byte[] body) throws IOException {
+		HttpURLConnection connection = connect(path);
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setChunkedStreamingMode(4096);
+		OutputStream os = connection.getOutputStream();
+		os.write(body);
+		os.close();
+
+		Response response = new Response();
+		response.status = connection.getResponseCode();
+		InputStream is = response.status<400 ? connection.getInputStream() : connection.getErrorStream();
+		try {
+			response.body = ByteStreams.toByteArray(is);
+		} finally {
+			Closeables.closeQuietly(is);
+		}
+		connection.disconnect();
+		return response;
+	}
+
+}
@@ -0,0 +1,56 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+public class SepaTextTest {
+
+	@Test
+	public void testValid() {
+		String name = "J. Jansen (Beheer) B.V.";
+		assertSame(name, SepaText.transliterate(name));
+		assertSame(name, SepaText.sanitize(name, 70));
+		assertThat(SepaText.isValid(name), is(true));
+		assertThat(SepaText.isValid("Café"), is(false));
+	}
+
+	@Test
+	public void testTransliterate() {
+		assertThat(SepaText.transliterate("Müller & Söhne"), is("Muller + Sohne"));
+		assertThat(SepaText.transliterate("Straße 1"), is("Strasse 1"));
+		assertThat(SepaText.transliterate("Ærø Łódź"), is("AEro Lodz"));
+		assertThat(SepaText.transliterate("Factuur #12; \"spoed\""), is("Factuur .12, 'spoed'"));
+		// one replacement for a surrogate pair
+		assertThat(SepaText.transliterate("Pizza 🍕"), is("Pizza ."));
+	}
+
+	@Test
+	public void testTruncate() {
+		assertThat(SepaText.sanitize(Strings.repeat("a", 80), 70), is(Strings.repeat("a", 70)));
+		assertThat(SepaText.sanitize(Strings.repeat("a", 69) + " b", 70), is(Strings.repeat("a", 69)));
+		assertThat(SepaText.sanitize(Strings.repeat("ß", 40), 70), is(Strings.repeat("ss", 35)));
+		assertThat(SepaText.sanitize("é" + Strings.repeat("ß", 40), 70).length(), is(70));
+	}
+
+	@Test
+	public void testUtils() {
+		assertThat(Utils.createParty("Bakkerij & Zön").getNm(), is("Bakkerij + Zon"));
+		assertThat(Utils.createRmtInf(Strings.repeat("x", 200)).getUstrd().get(0).length(), is(140));
+		assertThat(nl.irp.sepa.sdd.Utils.createParty("Renée").getNm(), is("Renee"));
+		assertThat(Utils.createParty(null).getNm(), is(nullValue()));
+		assertThat(nl.irp.sepa.sdd.Utils.createParty(null).getNm(), is(nullValue()));
+		assertThat(nl.irp.sepa.sdd.Utils.createPaymentIdentification("INSTRÉ", "E2E-1").getInstrId(), is("INSTRE"));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testIdentificationNotTruncated() {
+		Utils.createPaymentIdentification(Strings.repeat("1", 36));
+	}
+
+}
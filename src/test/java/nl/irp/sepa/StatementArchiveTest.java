@@ -0,0 +1,126 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import nl.irp.sepa.camt.ArchivedEntry;
+import nl.irp.sepa.camt.EntryField;
+import nl.irp.sepa.camt.StatementArchive;
+import nl.irp.sepa.generator.MessageGenerator;
+
+import org.joda.time.LocalDate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Resources;
+
+public class StatementArchiveTest {
+
+	private static final LocalDate DAY = new LocalDate(2013, 4, 2);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFind() throws Exception {
+		File directory = folder.newFolder("archive");
+		StatementArchive archive = StatementArchive.open(directory);
+		assertThat(add(archive, "camt/camt.053.001.02 voorbeeldbestand.xml"), is(5L));
+
+		List<ArchivedEntry> entries = archive.find("NL91ABNA0417164300", DAY, DAY);
+		assertThat(entries.size(), is(4));
+		assertThat(entries.get(0).getAmount(), is(25000L));
+		assertThat(entries.get(1).getSignedAmount(), is(-10050L));
+		assertThat(entries.get(2).get(EntryField.END_TO_END_ID), is("SAL-1"));
+		assertThat(entries.get(2).getAmount(), is(12000L));
+		assertThat(archive.find("NL91ABNA0417164300", DAY.plusDays(1), DAY.plusDays(7)).isEmpty(), is(true));
+		assertThat(archive.find("NL00UNKN0000000000", DAY, DAY).isEmpty(), is(true));
+
+		List<ArchivedEntry> byId = archive.findByEndToEndId("E2E-0002");
+		assertThat(byId.size(), is(1));
+		assertThat(byId.get(0).getAccount(), is("NL91ABNA0417164300"));
+		assertThat(byId.get(0).getBookingDate(), is("2013-04-02"));
+		assertThat(archive.findByEndToEndId("E2E-9999").isEmpty(), is(true));
+		archive.close();
+
+		// the index is read back, and rows are added after the existing ones
+		archive = StatementArchive.open(directory);
+		assertThat(archive.size(), is(5));
+		add(archive, "camt/camt.053.001.02 voorbeeldbestand.xml");
+		assertThat(archive.findByEndToEndId("E2E-0002").size(), is(2));
+		assertThat(archive.find("NL02ABNA0123456789", DAY, DAY).size(), is(2));
+		archive.close();
+	}
+
+	@Test
+	public void testSegments() throws Exception {
+		File directory = folder.newFolder("archive");
+		StatementArchive archive = new StatementArchive(directory, 64 * 1024);
+		for(int day=0; day<10; day++) {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			new MessageGenerator(42, DAY.plusDays(day)).writeStatements(os, 3, 200);
+			archive.add(new ByteArrayInputStream(os.toByteArray()));
+		}
+		assertThat(directory.list().length>4, is(true));
+		String account = archive.getAccounts().get(0);
+		int all = archive.find(account, DAY, DAY.plusDays(9)).size();
+		List<ArchivedEntry> week = archive.find(account, DAY.plusDays(2), DAY.plusDays(8));
+		assertThat(week.size()>0 && week.size()<all, is(true));
+		for(int i=1; i<week.size(); i++)
+			assertThat(week.get(i-1).getBookingDate().compareTo(week.get(i).getBookingDate())<=0, is(true));
+		assertThat(week.get(0).getBookingDate().compareTo("2013-04-04")>=0, is(true));
+		assertThat(week.get(week.size()-1).getBookingDate().compareTo("2013-04-10")<=0, is(true));
+
+		String endToEndId = week.get(0).get(EntryField.END_TO_END_ID);
+		assertThat(archive.findByEndToEndId(endToEndId).get(0).get(EntryField.END_TO_END_ID), is(endToEndId));
+		archive.close();
+	}
+
+	@Test
+	public void testIncompleteWrite() throws Exception {
+		File directory = folder.newFolder("archive");
+		StatementArchive archive = StatementArchive.open(directory);
+		add(archive, "camt/camt.053.001.02 voorbeeldbestand.xml");
+		archive.close();
+
+		// a crash in the middle of the next message
+		File segment = new File(directory, "segment-00000.dat");
+		long size = segment.length();
+		FileOutputStream os = new FileOutputStream(segment, true);
+		os.write(new byte[] { 0, 0, 1, 0, 1, 2, 3 });
+		os.close();
+		RandomAccessFile index = new RandomAccessFile(new File(directory, "index.dat"), "rw");
+		index.seek(index.length());
+		index.writeInt(0);
+		index.writeInt(20130403);
+		index.writeLong(size);
+		index.writeInt(0);
+		index.close();
+
+		archive = StatementArchive.open(directory);
+		assertThat(archive.size(), is(5));
+		assertThat(segment.length(), is(size));
+		add(archive, "camt/camt.053.001.02 voorbeeldbestand.xml");
+		assertThat(archive.find("NL91ABNA0417164300", DAY, DAY).size(), is(8));
+		archive.close();
+	}
+
+	private static long add(StatementArchive archive, String resource) throws Exception {
+		InputStream is = Resources.getResource(resource).openStream();
+		try {
+			return archive.add(is);
+		} finally {
+			is.close();
+		}
+	}
+
+}
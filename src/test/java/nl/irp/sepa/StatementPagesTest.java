@@ -0,0 +1,87 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.camt.AbstractStatementHandler;
+import nl.irp.sepa.camt.PaginationProblem;
+import nl.irp.sepa.camt.StatementEntry;
+import nl.irp.sepa.camt.StatementHeader;
+import nl.irp.sepa.camt.StatementPages;
+import nl.irp.sepa.camt.StatementVerifier;
+import nl.irp.sepa.camt.TeeStatementHandler;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Resources;
+
+public class StatementPagesTest {
+
+	private File page(int pgNb) throws URISyntaxException {
+		return new File(Resources.getResource("camt/pages/page" + pgNb + ".xml").toURI());
+	}
+
+	@Test
+	public void testStitch() throws IOException, XMLStreamException, URISyntaxException {
+		StatementPages pages = new StatementPages();
+		pages.add(page(3));
+		assertThat(pages.isComplete(), is(false));
+		assertThat(pages.getMissingPages(), is(Arrays.asList(1, 2)));
+
+		pages.add(page(1));
+		assertThat(pages.add(page(1)), is(nullValue()));
+		pages.add(page(2));
+		assertThat(pages.isComplete(), is(true));
+
+		List<PaginationProblem> problems = pages.getProblems();
+		assertThat(problems.size(), is(3));
+		assertThat(problems.get(0).getType(), is(PaginationProblem.Type.OUT_OF_ORDER));
+		assertThat(problems.get(1).getType(), is(PaginationProblem.Type.DUPLICATE));
+		assertThat(problems.get(2).getType(), is(PaginationProblem.Type.OUT_OF_ORDER));
+		assertThat(pages.getPages().get(0).getStatementCount(), is(1));
+
+		final List<String> events = Lists.newArrayList();
+		StatementVerifier verifier = new StatementVerifier();
+		pages.read(new TeeStatementHandler(verifier, new AbstractStatementHandler() {
+			@Override
+			public void startStatement(StatementHeader statement) {
+				events.add("start " + statement.getAccount());
+			}
+			@Override
+			public void entry(StatementEntry entry) {
+				events.add(String.valueOf(entry.getSignedAmount()));
+			}
+			@Override
+			public void endStatement(StatementHeader statement) {
+				events.add("end");
+			}
+		}));
+
+		assertThat(events, is(Arrays.asList(
+				"start NL91ABNA0417164300", "25000", "-10050", "-30000", "end",
+				"start NL02ABNA0123456789", "7525", "end")));
+		// opening balance on page 1, closing balance and last entry on page 2
+		assertThat(verifier.getDiscrepancies().toString(), verifier.isValid(), is(true));
+		assertThat(verifier.getStatements(), is(2L));
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testIncomplete() throws IOException, XMLStreamException, URISyntaxException {
+		StatementPages pages = new StatementPages();
+		pages.add(page(1));
+		pages.add(page(3));
+		assertThat(pages.getProblems().get(0).getType(), is(PaginationProblem.Type.MISSING));
+		pages.read(new StatementVerifier());
+	}
+
+}
@@ -0,0 +1,118 @@
+package nl.irp.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import nl.irp.sepa.camt.StatementDiscrepancy;
+import nl.irp.sepa.camt.StatementDiscrepancy.Type;
+import nl.irp.sepa.camt.StatementVerifier;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+
+public class StatementVerifierTest {
+
+	private String statement() throws IOException {
+		return Resources.toString(Resources.getResource("camt/camt.053.001.02 voorbeeldbestand.xml"), Charsets.UTF_8);
+	}
+
+	private InputStream stream(String xml) {
+		return new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8));
+	}
+
+	@Test
+	public void testValid() throws XMLStreamException, IOException {
+		StatementVerifier verifier = new StatementVerifier();
+		List<StatementDiscrepancy> discrepancies = verifier.verify(stream(statement()));
+
+		assertThat(discrepancies.toString(), discrepancies.isEmpty(), is(true));
+		assertThat(verifier.getStatements(), is(2L));
+	}
+
+	@Test
+	public void testBalanceAndSummary() throws XMLStreamException, IOException {
+		String xml = statement()
+				.replace("<Amt Ccy=\"EUR\">849.50</Amt>", "<Amt Ccy=\"EUR\">849.00</Amt>")
+				.replace("<NbOfNtries>3</NbOfNtries>", "<NbOfNtries>4</NbOfNtries>");
+
+		List<StatementDiscrepancy> discrepancies = new StatementVerifier().verify(stream(xml));
+
+		assertThat(discrepancies.toString(), discrepancies.size(), is(2));
+		assertThat(discrepancies.get(0).getType(), is(Type.BALANCE));
+		assertThat(discrepancies.get(0).getExpected(), is(84950L));
+		assertThat(discrepancies.get(0).getActual(), is(84900L));
+		assertThat(discrepancies.get(0).getStatement().getAccount(), is("NL91ABNA0417164300"));
+		assertThat(discrepancies.get(1).getType(), is(Type.TOTAL_COUNT));
+	}
+
+	@Test
+	public void testUnreadableAmount() throws XMLStreamException, IOException {
+		String xml = statement()
+				.replace("<Amt Ccy=\"EUR\">250.00</Amt>", "<Amt Ccy=\"EUR\">250.005</Amt>")
+				.replace("<Amt Ccy=\"EUR\">25.25</Amt>", "<Amt Ccy=\"EUR\">25.2.5</Amt>");
+
+		StatementVerifier verifier = new StatementVerifier();
+		List<StatementDiscrepancy> discrepancies = verifier.verify(stream(xml));
+
+		// the sums and balances that depend on them are not checked
+		assertThat(discrepancies.toString(), discrepancies.size(), is(2));
+		assertThat(discrepancies.get(0).getType(), is(Type.UNREADABLE));
+		assertThat(discrepancies.get(0).getValue(), is("250.005"));
+		assertThat(discrepancies.get(1).getValue(), is("25.2.5"));
+		assertThat(verifier.getStatements(), is(2L));
+	}
+
+	@Test
+	public void testContinuity() throws XMLStreamException, IOException {
+		StatementVerifier verifier = new StatementVerifier();
+		verifier.verify(stream(statement()));
+
+		// the next day
+		String next = statement()
+				.replace("<ElctrncSeqNb>101</ElctrncSeqNb>", "<ElctrncSeqNb>102</ElctrncSeqNb>")
+				.replace("<ElctrncSeqNb>57</ElctrncSeqNb>", "<ElctrncSeqNb>59</ElctrncSeqNb>")
+				.replace("<Amt Ccy=\"EUR\">1000.00</Amt>", "<Amt Ccy=\"EUR\">849.50</Amt>")
+				.replace("<Amt Ccy=\"EUR\">849.50</Amt>\n\t\t\t\t<CdtDbtInd>CRDT</CdtDbtInd>\n\t\t\t\t<Dt>\n\t\t\t\t\t<Dt>2013-04-02</Dt>",
+						"<Amt Ccy=\"EUR\">699.00</Amt>\n\t\t\t\t<CdtDbtInd>CRDT</CdtDbtInd>\n\t\t\t\t<Dt>\n\t\t\t\t\t<Dt>2013-04-02</Dt>");
+		List<StatementDiscrepancy> discrepancies = verifier.verify(stream(next));
+
+		// the second account skipped a statement and doesn't open with the last closing balance
+		assertThat(discrepancies.toString(), discrepancies.size(), is(2));
+		assertThat(discrepancies.get(0).getType(), is(Type.SEQUENCE));
+		assertThat(discrepancies.get(0).getExpected(), is(58L));
+		assertThat(discrepancies.get(1).getType(), is(Type.BALANCE_CONTINUITY));
+		assertThat(discrepancies.get(1).getStatement().getAccount(), is("NL02ABNA0123456789"));
+		assertThat(verifier.getDiscrepancies().size(), is(2));
+	}
+
+	@Test
+	public void testUnreadableSequence() throws XMLStreamException, IOException {
+		StatementVerifier verifier = new StatementVerifier();
+		verifier.verify(stream(statement()));
+
+		String next = statement()
+				.replace("<ElctrncSeqNb>101</ElctrncSeqNb>", "<ElctrncSeqNb>102</ElctrncSeqNb>")
+				.replace("<ElctrncSeqNb>57</ElctrncSeqNb>", "<ElctrncSeqNb>5 8</ElctrncSeqNb>")
+				.replace("<Amt Ccy=\"EUR\">1000.00</Amt>", "<Amt Ccy=\"EUR\">849.50</Amt>")
+				.replace("<Amt Ccy=\"EUR\">849.50</Amt>\n\t\t\t\t<CdtDbtInd>CRDT</CdtDbtInd>\n\t\t\t\t<Dt>\n\t\t\t\t\t<Dt>2013-04-02</Dt>",
+						"<Amt Ccy=\"EUR\">699.00</Amt>\n\t\t\t\t<CdtDbtInd>CRDT</CdtDbtInd>\n\t\t\t\t<Dt>\n\t\t\t\t\t<Dt>2013-04-02</Dt>");
+		List<StatementDiscrepancy> discrepancies = verifier.verify(stream(next));
+
+		// the balances are still compared with the previous statement
+		assertThat(discrepancies.toString(), discrepancies.size(), is(2));
+		assertThat(discrepancies.get(0).getType(), is(Type.UNREADABLE));
+		assertThat(discrepancies.get(0).getValue(), is("5 8"));
+		assertThat(discrepancies.get(1).getType(), is(Type.BALANCE_CONTINUITY));
+		assertThat(discrepancies.get(1).getStatement().getAccount(), is("NL02ABNA0123456789"));
+	}
+
+}
@@ -0,0 +1,68 @@
+package nl.irp.sepa.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+
+import nl.irp.sepa.camt.ArchivedEntry;
+import nl.irp.sepa.camt.EntryField;
+import nl.irp.sepa.camt.StatementArchive;
+import nl.irp.sepa.generator.MessageGenerator;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.io.Files;
+
+/**
+ * Archives a statement per day for a number of days, then opens the archive again and queries
+ * a range of booking dates of an account and some EndToEndIds:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.ArchiveBenchmark [days] [accounts] [entries per account]
+ * </pre>
+ */
+public class ArchiveBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int days = args.length>0 ? Integer.parseInt(args[0]) : 60;
+		int accounts = args.length>1 ? Integer.parseInt(args[1]) : 20;
+		int entries = args.length>2 ? Integer.parseInt(args[2]) : 1000;
+		File directory = Files.createTempDir();
+		LocalDate first = new LocalDate(2013, 1, 1);
+
+		StatementArchive archive = StatementArchive.open(directory);
+		long start = System.nanoTime();
+		for(int day=0; day<days; day++) {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			new MessageGenerator(42, first.plusDays(day)).writeStatements(os, accounts, entries);
+			archive.add(new ByteArrayInputStream(os.toByteArray()));
+		}
+		archive.close();
+		System.out.printf("added %,d days in %.0f ms%n", days, (System.nanoTime() - start) / 1e6);
+
+		start = System.nanoTime();
+		archive = StatementArchive.open(directory);
+		System.out.printf("opened %,d rows in %.0f ms%n", archive.size(), (System.nanoTime() - start) / 1e6);
+
+		String account = archive.getAccounts().get(0);
+		for(int run=0; run<5; run++) {
+			start = System.nanoTime();
+			List<ArchivedEntry> month = archive.find(account, first.plusDays(10), first.plusDays(40));
+			long range = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int found = 0;
+			for(int i=0; i<1000; i++)
+				found += archive.findByEndToEndId(month.get(i * month.size() / 1000).get(EntryField.END_TO_END_ID)).size();
+			long point = System.nanoTime() - start;
+
+			System.out.printf("run %d: range of %,d rows %.2f ms, EndToEndId %.3f ms per lookup (%,d rows)%n",
+					run, month.size(), range / 1e6, point / 1e9, found);
+		}
+		archive.close();
+		for(File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+}
@@ -0,0 +1,65 @@
+package nl.irp.sepa.benchmark;
+
+import iso.std.iso._20022.tech.xsd.pain_001_001.BranchAndFinancialInstitutionIdentification4;
+import iso.std.iso._20022.tech.xsd.pain_001_001.FinancialInstitutionIdentification7;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import nl.irp.sepa.Utils;
+
+/**
+ * Creates the creditor agent of millions of transactions, once the way it used to be done (a
+ * regular expression) and once with {@link nl.irp.sepa.BICUtils}. Both create new objects for
+ * every transaction, as the builders do:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.BICBenchmark [count]
+ * </pre>
+ */
+public class BICBenchmark {
+
+	private static final String[] BICS = { "ABNANL2A", "INGBNL2A", "RABONL2U", "SNSBNL2A", "ASNBNL21",
+		"TRIONL2U", "KNABNL2H", "BUNQNL2A", "DEUTDEFF", "GEBABEBB", "BNPAFRPPXXX" };
+
+	private static final Pattern bicRegex =
+			Pattern.compile("([a-zA-Z]{4}[a-zA-Z]{2}[a-zA-Z0-9]{2}([a-zA-Z0-9]{3})?)");
+
+	public static void main(String[] args) {
+		int count = args.length>0 ? Integer.parseInt(args[0]) : 5000000;
+		String[] bics = new String[count];
+		Random random = new Random(42);
+		for(int i=0; i<count; i++)
+			// a new string for every transaction, as read from a database or file
+			bics[i] = new String(BICS[random.nextInt(BICS.length)]);
+
+		for(int run=0; run<5; run++) {
+			long start = System.nanoTime();
+			int hash = 0;
+			for(String bic : bics)
+				hash += System.identityHashCode(regex(bic));
+			long regex = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(String bic : bics)
+				hash += System.identityHashCode(Utils.createFinInstnId(bic));
+			long checked = System.nanoTime() - start;
+
+			System.out.printf("run %d: %,d agents, regex %.1f ns/agent, BICUtils %.1f ns/agent (%d)%n",
+					run, count, regex / (double) count, checked / (double) count, hash & 1);
+		}
+	}
+
+	/**
+	 * The agent as it was created before.
+	 */
+	private static BranchAndFinancialInstitutionIdentification4 regex(String bic) {
+		if(!bicRegex.matcher(bic).matches())
+			throw new IllegalArgumentException("This doesn't look like a correct BIC id '"+bic+"'");
+		BranchAndFinancialInstitutionIdentification4 agent = new BranchAndFinancialInstitutionIdentification4();
+		FinancialInstitutionIdentification7 financialInstitutionIdentification = new FinancialInstitutionIdentification7();
+		financialInstitutionIdentification.setBIC(bic);
+		agent.setFinInstnId(financialInstitutionIdentification);
+		return agent;
+	}
+
+}
@@ -0,0 +1,100 @@
+package nl.irp.sepa.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import nl.irp.sepa.http.MockBank;
+import nl.irp.sepa.http.SepaHttpServer;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * End-to-end load on the {@link SepaHttpServer}: every client generates a pain.001 and uploads
+ * it to the {@link MockBank}, over and over:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.BankLoadBenchmark [clients] [server threads] [transactions]
+ * </pre>
+ */
+public class BankLoadBenchmark {
+
+	private static final long RUN_MILLIS = 5000;
+
+	public static void main(String[] args) throws Exception {
+		int clients = args.length>0 ? Integer.parseInt(args[0]) : 16;
+		int threads = args.length>1 ? Integer.parseInt(args[1]) : 4;
+		int transactions = args.length>2 ? Integer.parseInt(args[2]) : 10;
+
+		StringBuilder request = new StringBuilder();
+		request.append("H\tMSG-1\tKlantnaam\n");
+		request.append("G\tPMT-1\t2013-04-19\tDebiteur\tNL02ABNA0123456789\tABNANL2A\n");
+		for(int i=0; i<transactions; i++)
+			request.append("T\tE2E-").append(i).append("\t12.50\tCrediteur\tNL44RABO0123456789\t\tFactuur ").append(i).append('\n');
+		final byte[] body = request.toString().getBytes(Charsets.UTF_8);
+
+		MockBank bank = new MockBank();
+		bank.setRejectRate(0.01);
+		SepaHttpServer.enableNoDelay();
+		SepaHttpServer server = new SepaHttpServer(new InetSocketAddress("localhost", 0), threads);
+		server.addMockBank(bank);
+		server.start();
+		final InetSocketAddress address = server.getAddress();
+
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		for(int run=0; run<3; run++) {
+			final long end = System.currentTimeMillis() + RUN_MILLIS;
+			List<Future<Integer>> results = Lists.newArrayList();
+			for(int c=0; c<clients; c++) {
+				results.add(pool.submit(new Callable<Integer>() {
+					public Integer call() throws IOException {
+						int uploads = 0;
+						while(System.currentTimeMillis()<end) {
+							byte[] message = post(address, "/generate/pain.001", body);
+							post(address, "/bank", message);
+							uploads++;
+						}
+						return uploads;
+					}
+				}));
+			}
+			long uploads = 0;
+			for(Future<Integer> result : results)
+				uploads += result.get();
+			System.out.printf("run %d: %d clients, %d server threads, %d transactions: %,.0f generate + upload round trips/s%n",
+					run, clients, threads, transactions, uploads * 1000.0 / RUN_MILLIS);
+		}
+		pool.shutdown();
+		server.stop(0);
+	}
+
+	private static byte[] post(InetSocketAddress address, String path, byte[] body) throws IOException {
+		URL url = new URL("http", address.getHostName(), address.getPort(), path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(body.length);
+		OutputStream os = connection.getOutputStream();
+		os.write(body);
+		os.close();
+		if(connection.getResponseCode()!=HttpURLConnection.HTTP_OK)
+			throw new IOException(path + ": " + connection.getResponseCode());
+		InputStream is = connection.getInputStream();
+		try {
+			return ByteStreams.toByteArray(is);
+		} finally {
+			Closeables.closeQuietly(is);
+		}
+	}
+
+}
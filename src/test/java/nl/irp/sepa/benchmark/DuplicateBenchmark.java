@@ -0,0 +1,60 @@
+package nl.irp.sepa.benchmark;
+
+import java.util.Random;
+
+import nl.irp.sepa.DuplicateDetector;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Checks and records the transactions of a month of payments, a day at a time, against a
+ * history of 30 days:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.DuplicateBenchmark [transactions per day]
+ * </pre>
+ */
+public class DuplicateBenchmark {
+
+	public static void main(String[] args) {
+		int perDay = args.length>0 ? Integer.parseInt(args[0]) : 100000;
+		String[] ibans = new String[1000];
+		String[] texts = new String[1000];
+		Random random = new Random(42);
+		for(int i=0; i<ibans.length; i++) {
+			ibans[i] = String.format("NL%02dRABO%010d", random.nextInt(100), random.nextInt(Integer.MAX_VALUE));
+			texts[i] = "Factuur " + random.nextInt(1000000) + " periode " + (i % 12 + 1);
+		}
+
+		DuplicateDetector detector = DuplicateDetector.inMemory(30, perDay * 30);
+		String[] dayIbans = new String[perDay];
+		String[] dayTexts = new String[perDay];
+		long[] amounts = new long[perDay];
+		long[] fingerprints = new long[perDay];
+		LocalDate day = new LocalDate(2013, 1, 1);
+		for(int run=0; run<5; run++) {
+			int duplicates = 0;
+			long hashing = 0;
+			long checking = 0;
+			for(int d=0; d<30; d++, day = day.plusDays(1)) {
+				for(int i=0; i<perDay; i++) {
+					dayIbans[i] = ibans[random.nextInt(ibans.length)];
+					dayTexts[i] = texts[random.nextInt(texts.length)];
+					amounts[i] = random.nextInt(100000000);
+				}
+				long start = System.nanoTime();
+				for(int i=0; i<perDay; i++)
+					fingerprints[i] = DuplicateDetector.fingerprint(dayIbans[i], amounts[i], dayTexts[i]);
+				long hashed = System.nanoTime();
+				for(int i=0; i<perDay; i++)
+					if(detector.add(fingerprints[i], day))
+						duplicates++;
+				checking += System.nanoTime() - hashed;
+				hashing += hashed - start;
+			}
+			int count = perDay * 30;
+			System.out.printf("run %d: %,d transactions, fingerprint %.1f ns, check and record %.1f ns, %d duplicates, %,d slots used%n",
+					run, count, hashing / (double) count, checking / (double) count, duplicates, detector.size());
+		}
+	}
+
+}
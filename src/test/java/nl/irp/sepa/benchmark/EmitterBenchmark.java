@@ -0,0 +1,77 @@
+package nl.irp.sepa.benchmark;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+
+import nl.irp.sepa.SEPACreditTransfer;
+import nl.irp.sepa.model.CreditTransferEmitter;
+import nl.irp.sepa.model.DirectDebitEmitter;
+import nl.irp.sepa.model.Party;
+import nl.irp.sepa.model.Payment;
+import nl.irp.sepa.model.PaymentGroup;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Writing a batch of credit transfers with the JAXB builder and with the {@link CreditTransferEmitter},
+ * and the same payments as direct debits with the {@link DirectDebitEmitter}:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.EmitterBenchmark [count]
+ * </pre>
+ */
+public class EmitterBenchmark {
+
+	private static final String[] BICS = { "ABNANL2A", "INGBNL2A", "RABONL2U", "SNSBNL2A" };
+	private static final String[] IBANS = { "NL91ABNA0417164300", "NL20INGB0001234567", "NL44RABO0123456789", "NL02SNSB0123456789" };
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length>0 ? Integer.parseInt(args[0]) : 100000;
+		Date creDtTm = new Date();
+		LocalDate date = new LocalDate(2013, 4, 19);
+		LocalDate signed = new LocalDate(2012, 1, 1);
+		OutputStream os = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+
+		for(int run=0; run<5; run++) {
+			long start = System.nanoTime();
+			SEPACreditTransfer creditTransfer = new SEPACreditTransfer();
+			creditTransfer.buildGroupHeader("MSG-1", "Betaler", creDtTm);
+			SEPACreditTransfer.Betaalgroep betaalgroep = creditTransfer.betaalgroep(
+					"PMT-1", date, "Betaler", "NL91ABNA0417164300", "ABNANL2A");
+			for(int i=0; i<count; i++)
+				betaalgroep.creditTransfer("E2E-" + i, new BigDecimal("12.50"), BICS[i % BICS.length],
+						"Crediteur " + i, IBANS[i % IBANS.length], "Factuur " + i);
+			creditTransfer.write(os);
+			long jaxb = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			Party owner = new Party("Betaler", "NL91ABNA0417164300", "ABNANL2A");
+			PaymentGroup group = PaymentGroup.directDebits("PMT-1", date, owner, "NL00ZZZ123456780000", "RCUR");
+			for(int i=0; i<count; i++)
+				group.add(Payment.directDebit(null, "E2E-" + i, 1250,
+						new Party("Crediteur " + i, IBANS[i % IBANS.length], BICS[i % BICS.length]),
+						"M-" + i, signed, "Factuur " + i));
+			long model = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			new CreditTransferEmitter().write(os, "MSG-1", "Betaler", creDtTm, Collections.singletonList(group));
+			long pain001 = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			new DirectDebitEmitter().write(os, "MSG-1", "Betaler", creDtTm, Collections.singletonList(group));
+			long pain008 = System.nanoTime() - start;
+
+			System.out.printf("run %d: %,d transactions, JAXB pain.001 %,d ms, model %,d ms, emit pain.001 %,d ms, emit pain.008 %,d ms%n",
+					run, count, jaxb / 1000000, model / 1000000, pain001 / 1000000, pain008 / 1000000);
+		}
+	}
+
+}
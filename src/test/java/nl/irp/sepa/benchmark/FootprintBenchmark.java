@@ -0,0 +1,84 @@
+package nl.irp.sepa.benchmark;
+
+import iso.std.iso._20022.tech.xsd.pain_008_001.SequenceType1Code;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import nl.irp.sepa.SEPACreditTransfer;
+import nl.irp.sepa.sdd.DirectDebitInitiation;
+
+import org.joda.time.LocalDate;
+
+/**
+ * The heap that a message in memory takes per transaction, for a batch of direct debits with
+ * one creditor scheme id and a batch of credit transfers to a few banks:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.FootprintBenchmark [count]
+ * </pre>
+ */
+public class FootprintBenchmark {
+
+	private static final String[] BICS = { "ABNANL2A", "INGBNL2A", "RABONL2U", "SNSBNL2A" };
+	private static final String[] IBANS = { "NL91ABNA0417164300", "NL20INGB0001234567", "NL44RABO0123456789", "NL02SNSB0123456789" };
+
+	public static void main(String[] args) {
+		int count = args.length>0 ? Integer.parseInt(args[0]) : 200000;
+
+		for(int run=0; run<3; run++) {
+			long before = usedHeap();
+			DirectDebitInitiation directDebit = directDebit(count);
+			long directDebitBytes = usedHeap() - before;
+
+			before = usedHeap();
+			SEPACreditTransfer creditTransfer = creditTransfer(count);
+			long creditTransferBytes = usedHeap() - before;
+
+			System.out.printf("run %d: %,d transactions, pain.008 %,d bytes/tx, pain.001 %,d bytes/tx (%d)%n",
+					run, count, directDebitBytes / count, creditTransferBytes / count,
+					System.identityHashCode(directDebit) + System.identityHashCode(creditTransfer) & 1);
+		}
+	}
+
+	private static DirectDebitInitiation directDebit(int count) {
+		DirectDebitInitiation directDebit = new DirectDebitInitiation();
+		directDebit.buildGroupHeader("MSG-1", "Incassant", new LocalDate(2013, 4, 2).toDate());
+		List<String> address = Collections.singletonList("Straat 1");
+		DirectDebitInitiation.PaymentInstruction instruction = directDebit.paymentInstruction(
+				"PMT-1", new LocalDate(2013, 4, 19).toDate(), "Incassant", SequenceType1Code.RCUR,
+				"NL", address, "NL91ABNA0417164300", "ABNANL2A");
+		LocalDate signed = new LocalDate(2012, 1, 1);
+		for(int i=0; i<count; i++)
+			instruction.addTransaction("I-" + i, "E2E-" + i, new BigDecimal("12.50"),
+					"M-" + i, signed, "NL00ZZZ123456780000",
+					"Debiteur " + i, IBANS[i % IBANS.length], BICS[i % BICS.length],
+					"NL", address, "Contributie " + i);
+		return directDebit;
+	}
+
+	private static SEPACreditTransfer creditTransfer(int count) {
+		SEPACreditTransfer creditTransfer = new SEPACreditTransfer();
+		creditTransfer.buildGroupHeader("MSG-2", "Betaler", new LocalDate(2013, 4, 2).toDate());
+		SEPACreditTransfer.Betaalgroep group = creditTransfer.betaalgroep(
+				"PMT-2", new LocalDate(2013, 4, 19), "Betaler", "NL91ABNA0417164300", "ABNANL2A");
+		for(int i=0; i<count; i++)
+			group.creditTransfer("E2E-" + i, new BigDecimal("12.50"), BICS[i % BICS.length],
+					"Crediteur " + i, IBANS[i % IBANS.length], "Factuur " + i);
+		return creditTransfer;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i=0; i<4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,53 @@
+package nl.irp.sepa.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import nl.irp.sepa.camt.AbstractStatementHandler;
+import nl.irp.sepa.camt.LenientStatementReader;
+import nl.irp.sepa.camt.StatementEntry;
+import nl.irp.sepa.camt.StatementReader;
+import nl.irp.sepa.generator.MessageGenerator;
+
+/**
+ * Reads a camt.053 message with the {@link StatementReader} and with the
+ * {@link LenientStatementReader}, to show what parsing every entry on its own costs:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.LenientReaderBenchmark [accounts] [entries per account]
+ * </pre>
+ */
+public class LenientReaderBenchmark {
+
+	private static class Counter extends AbstractStatementHandler {
+		long entries;
+		@Override
+		public void entry(StatementEntry entry) {
+			entries++;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int accounts = args.length>0 ? Integer.parseInt(args[0]) : 100;
+		int entries = args.length>1 ? Integer.parseInt(args[1]) : 1000;
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new MessageGenerator(42).writeStatements(os, accounts, entries);
+		byte[] xml = os.toByteArray();
+		StatementReader reader = new StatementReader();
+		LenientStatementReader lenient = new LenientStatementReader(reader);
+
+		for(int run=0; run<5; run++) {
+			Counter counter = new Counter();
+			long start = System.nanoTime();
+			reader.read(new ByteArrayInputStream(xml), counter);
+			long strict = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int problems = lenient.read(new ByteArrayInputStream(xml), counter).size();
+			long tolerant = System.nanoTime() - start;
+
+			System.out.printf("run %d: %,d bytes, %d entries, %d problems, strict %.1f ms, lenient %.1f ms%n",
+					run, xml.length, counter.entries, problems, strict / 1e6, tolerant / 1e6);
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package nl.irp.sepa.benchmark;
+
+import iso.std.iso._20022.tech.xsd.camt_053_001.CashBalance3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import nl.irp.sepa.BankToCustomerStatement;
+import nl.irp.sepa.camt.Projection;
+import nl.irp.sepa.generator.MessageGenerator;
+
+/**
+ * Reads the IBAN and closing balance of every statement of a camt.053 message, once with a full
+ * unmarshal and once with a {@link Projection}:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.ProjectionBenchmark [accounts] [entries per account]
+ * </pre>
+ */
+public class ProjectionBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int accounts = args.length>0 ? Integer.parseInt(args[0]) : 100;
+		int entries = args.length>1 ? Integer.parseInt(args[1]) : 1000;
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new MessageGenerator(42).writeStatements(os, accounts, entries);
+		byte[] xml = os.toByteArray();
+		Projection projection = Projection.compile("Stmt", "Acct/Id/IBAN", "Bal[Tp=CLBD]/Amt");
+
+		for(int run=0; run<5; run++) {
+			long start = System.nanoTime();
+			int balances = 0;
+			for(BankToCustomerStatement.AccountStatement stmt : BankToCustomerStatement.read(new ByteArrayInputStream(xml)).getStmt())
+				for(CashBalance3 balance : stmt.getBal())
+					if("CLBD".equals(balance.getTp().getCdOrPrtry().getCd().value()) && stmt.getAcct().getId().getIBAN()!=null)
+						balances++;
+			long unmarshal = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(Projection.Row row : projection.read(new ByteArrayInputStream(xml)))
+				if(row.get(0)!=null && row.get(1)!=null)
+					balances++;
+			long projected = System.nanoTime() - start;
+
+			System.out.printf("run %d: %,d bytes, %d balances, unmarshal %.1f ms, projection %.1f ms%n",
+					run, xml.length, balances, unmarshal / 1e6, projected / 1e6);
+		}
+	}
+
+}
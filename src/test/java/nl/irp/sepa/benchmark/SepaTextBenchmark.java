@@ -0,0 +1,37 @@
+package nl.irp.sepa.benchmark;
+
+import java.util.Random;
+
+import nl.irp.sepa.SepaText;
+
+/**
+ * Transliterates millions of names, most of them plain ASCII:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.SepaTextBenchmark [count]
+ * </pre>
+ */
+public class SepaTextBenchmark {
+
+	private static final String[] FIRST = { "Jan", "Pieter", "Renée", "Jürgen", "Anna", "François", "Sanne", "Åsa" };
+	private static final String[] LAST = { "Jansen", "de Vries", "Müller & Zn", "Bakker", "Großmann", "Visser", "Østergaard", "Smit" };
+
+	public static void main(String[] args) {
+		int count = args.length>0 ? Integer.parseInt(args[0]) : 5000000;
+		String[] names = new String[count];
+		Random random = new Random(42);
+		for(int i=0; i<count; i++)
+			names[i] = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)] + " " + i;
+
+		for(int run=0; run<5; run++) {
+			long start = System.nanoTime();
+			int copies = 0;
+			for(String name : names)
+				if(SepaText.sanitize(name, 70)!=name)
+					copies++;
+			long nanos = System.nanoTime() - start;
+			System.out.printf("run %d: %,d names in %,d ms, %.1f ns/name, %,d transliterated%n",
+					run, count, nanos / 1000000, nanos / (double) count, copies);
+		}
+	}
+
+}
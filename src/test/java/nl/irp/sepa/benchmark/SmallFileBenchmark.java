@@ -0,0 +1,98 @@
+package nl.irp.sepa.benchmark;
+
+import iso.std.iso._20022.tech.xsd.pain_008_001.SequenceType1Code;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import nl.irp.sepa.SEPACreditTransfer;
+import nl.irp.sepa.sdd.DirectDebitInitiation;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Writing many small messages, one per customer, with a new builder per message and with the
+ * reused builder of the thread ({@link SEPACreditTransfer#forCurrentThread()}):
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.irp.sepa.benchmark.SmallFileBenchmark [messages] [transactions]
+ * </pre>
+ */
+public class SmallFileBenchmark {
+
+	private static final Date creDtTm = new Date();
+	private static final LocalDate date = new LocalDate(2013, 4, 19);
+	private static final LocalDate signed = new LocalDate(2012, 1, 1);
+	private static final List<String> address = ImmutableList.of("Dorpstraat 1", "Amsterdam");
+
+	public static void main(String[] args) throws Exception {
+		int messages = args.length>0 ? Integer.parseInt(args[0]) : 2000;
+		int transactions = args.length>1 ? Integer.parseInt(args[1]) : 5;
+		ByteArrayOutputStream os = new ByteArrayOutputStream(64 * 1024);
+
+		for(int run=0; run<5; run++) {
+			long start = System.nanoTime();
+			for(int m=0; m<messages; m++) {
+				os.reset();
+				fill(new SEPACreditTransfer(), m, transactions).write(os);
+			}
+			long newCreditTransfer = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int m=0; m<messages; m++) {
+				os.reset();
+				fill(SEPACreditTransfer.forCurrentThread(), m, transactions).write(os);
+			}
+			long reusedCreditTransfer = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int m=0; m<messages; m++) {
+				os.reset();
+				fill(new DirectDebitInitiation(), m, transactions).write(os);
+			}
+			long newDirectDebit = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int m=0; m<messages; m++) {
+				os.reset();
+				fill(DirectDebitInitiation.forCurrentThread(), m, transactions).write(os);
+			}
+			long reusedDirectDebit = System.nanoTime() - start;
+
+			System.out.printf("run %d: %,d messages of %d transactions, pain.001 new %,.0f/s reused %,.0f/s, pain.008 new %,.0f/s reused %,.0f/s%n",
+					run, messages, transactions,
+					perSecond(messages, newCreditTransfer), perSecond(messages, reusedCreditTransfer),
+					perSecond(messages, newDirectDebit), perSecond(messages, reusedDirectDebit));
+		}
+	}
+
+	private static SEPACreditTransfer fill(SEPACreditTransfer creditTransfer, int m, int transactions) {
+		creditTransfer.buildGroupHeader("MSG-" + m, "Betaler", creDtTm);
+		SEPACreditTransfer.Betaalgroep betaalgroep = creditTransfer.betaalgroep(
+				"PMT-" + m, date, "Klant " + m, "NL91ABNA0417164300", "ABNANL2A");
+		for(int i=0; i<transactions; i++)
+			betaalgroep.creditTransfer("E2E-" + m + "-" + i, new BigDecimal("12.50"), "RABONL2U",
+					"Crediteur " + i, "NL44RABO0123456789", "Factuur " + i);
+		return creditTransfer;
+	}
+
+	private static DirectDebitInitiation fill(DirectDebitInitiation directDebit, int m, int transactions) {
+		directDebit.buildGroupHeader("MSG-" + m, "Incassant", creDtTm);
+		DirectDebitInitiation.PaymentInstruction instruction = directDebit.paymentInstruction(
+				"PMT-" + m, date.toDate(), "Incassant", SequenceType1Code.RCUR, "NL", address,
+				"NL91ABNA0417164300", "ABNANL2A");
+		for(int i=0; i<transactions; i++)
+			instruction.addTransaction("I-" + i, "E2E-" + m + "-" + i, new BigDecimal("12.50"), "M-" + i, signed,
+					"NL00ZZZ123456780000", "Klant " + i, "NL44RABO0123456789", "RABONL2U", null, null,
+					"Contributie " + i);
+		return directDebit;
+	}
+
+	private static double perSecond(int messages, long nanos) {
+		return messages * 1e9 / nanos;
+	}
+
+}